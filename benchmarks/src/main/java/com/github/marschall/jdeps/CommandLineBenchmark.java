@@ -0,0 +1,99 @@
+package com.github.marschall.jdeps;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building the jdeps command line, which is dominated by the
+ * class path argument, for class paths of different sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CommandLineBenchmark {
+
+  @Param({"10", "100", "500"})
+  public int jars;
+
+  private SyntheticProject project;
+  private JDepsMojo mojo;
+
+  @Setup
+  public void setUp() throws ReflectiveOperationException, IOException {
+    this.project = SyntheticProject.generate(1, this.jars);
+
+    Set<Artifact> artifacts = new LinkedHashSet<>();
+    int i = 0;
+    for (File jar : this.project.getClassPath()) {
+      Artifact artifact = new DefaultArtifact("org.example", "lib" + i++, "1.0", Artifact.SCOPE_COMPILE, "jar", null,
+              new DefaultArtifactHandler("jar"));
+      artifact.setFile(jar);
+      artifacts.add(artifact);
+    }
+    MavenProject mavenProject = new MavenProject();
+    mavenProject.setDependencyArtifacts(artifacts);
+
+    this.mojo = new JDepsMojo();
+    setField(this.mojo, "project", mavenProject);
+    setField(this.mojo, "outputDirectory", this.project.getOutputDirectory());
+    // resolved at the start of execute()
+    setField(this.mojo, "classPathArtifacts", ClassPath.getArtifacts(mavenProject, false, Artifact.SCOPE_COMPILE));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    this.project.delete();
+  }
+
+  @Benchmark
+  public String[] buildCommandLine() throws MojoFailureException {
+    return this.mojo.buildCommandLine("jdeps").getArguments();
+  }
+
+  /**
+   * Sets a parameter of a mojo the way Maven injects it. Parameters may
+   * be declared in a superclass of the mojo.
+   */
+  static void setField(Object target, String name, Object value) throws ReflectiveOperationException {
+    Class<?> type = target.getClass();
+    while (true) {
+      try {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+        return;
+      } catch (NoSuchFieldException e) {
+        type = type.getSuperclass();
+        if (type == null) {
+          throw e;
+        }
+      }
+    }
+  }
+
+}
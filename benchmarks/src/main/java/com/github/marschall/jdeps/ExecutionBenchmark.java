@@ -0,0 +1,92 @@
+package com.github.marschall.jdeps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineUtils.StringStreamConsumer;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures running an analysis and capturing its output on projects of
+ * different sizes, either by forking jdeps, by running jdeps in-process
+ * or with the builtin engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExecutionBenchmark {
+
+  private static final long OUTPUT_MEMORY_LIMIT = 16L * 1024L * 1024L;
+
+  @Param({"1000", "10000", "100000"})
+  public int classes;
+
+  @Param({"10", "100", "500"})
+  public int jars;
+
+  @Param({"fork", "inProcess", "builtin"})
+  public String engine;
+
+  private SyntheticProject project;
+  private File workDirectory;
+  private JDepsExecutor executor;
+  private Commandline cmd;
+
+  @Setup
+  public void setUp() throws IOException {
+    this.project = SyntheticProject.generate(this.classes, this.jars);
+    this.workDirectory = Files.createTempDirectory("jdeps-benchmark-work").toFile();
+
+    String executable;
+    if ("builtin".equals(this.engine)) {
+      executable = ClassFileScanner.getExecutable();
+    } else {
+      executable = new File(System.getProperty("java.home"), "bin/jdeps").getAbsolutePath();
+    }
+    String[] arguments = {
+      "-classpath", StringUtils.join(this.project.getClassPath().iterator(), File.pathSeparator),
+      this.project.getOutputDirectory().getAbsolutePath()
+    };
+    this.cmd = JDepsExecutor.newCommandline(executable, arguments);
+    this.executor = new JDepsExecutor(new SystemStreamLog(), "inProcess".equals(this.engine));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    this.project.delete();
+    SyntheticProject.deleteRecursively(this.workDirectory.toPath());
+  }
+
+  @Benchmark
+  public int execute() throws CommandLineException, IOException {
+    StringStreamConsumer err = new StringStreamConsumer();
+    try (OutputBuffer output = new OutputBuffer(this.workDirectory, OUTPUT_MEMORY_LIMIT)) {
+      int exitCode = this.executor.execute(this.cmd, output, err);
+      if (exitCode != 0) {
+        throw new IllegalStateException("exit code " + exitCode + ": " + err.getOutput());
+      }
+      return exitCode;
+    }
+  }
+
+}
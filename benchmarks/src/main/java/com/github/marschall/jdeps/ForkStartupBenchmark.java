@@ -0,0 +1,100 @@
+package com.github.marschall.jdeps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineUtils.StringStreamConsumer;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures forking jdeps on a small project, where the startup of the
+ * JVM dominates, with the default JVM, with options for a short lived
+ * JVM, with a CDS archive and with both.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ForkStartupBenchmark {
+
+  private static final long OUTPUT_MEMORY_LIMIT = 16L * 1024L * 1024L;
+
+  private static final List<String> TUNED_OPTIONS = Arrays.asList("-XX:TieredStopAtLevel=1", "-XX:+UseSerialGC");
+
+  @Param({"100"})
+  public int classes;
+
+  @Param({"5"})
+  public int jars;
+
+  @Param({"default", "tuned", "cds", "tunedCds"})
+  public String jvm;
+
+  private SyntheticProject project;
+  private File workDirectory;
+  private File cdsDirectory;
+  private JDepsExecutor executor;
+  private Commandline cmd;
+
+  @Setup
+  public void setUp() throws IOException, CommandLineException {
+    this.project = SyntheticProject.generate(this.classes, this.jars);
+    this.workDirectory = Files.createTempDirectory("jdeps-benchmark-work").toFile();
+    this.cdsDirectory = Files.createTempDirectory("jdeps-benchmark-cds").toFile();
+
+    String executable = new File(System.getProperty("java.home"), "bin/jdeps").getAbsolutePath();
+    String[] arguments = {
+      "-classpath", StringUtils.join(this.project.getClassPath().iterator(), File.pathSeparator),
+      this.project.getOutputDirectory().getAbsolutePath()
+    };
+    this.cmd = JDepsExecutor.newCommandline(executable, arguments);
+    List<String> jvmOptions = this.jvm.startsWith("tuned") ? TUNED_OPTIONS : Collections.<String>emptyList();
+    boolean cds = "cds".equals(this.jvm) || "tunedCds".equals(this.jvm);
+    ForkedJvm forkedJvm = new ForkedJvm(jvmOptions, cds ? this.cdsDirectory : null, 0, new SystemStreamLog());
+    this.executor = new JDepsExecutor(new SystemStreamLog(), false, null, forkedJvm, null);
+    // creates the CDS archive
+    this.execute();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    this.project.delete();
+    SyntheticProject.deleteRecursively(this.workDirectory.toPath());
+    SyntheticProject.deleteRecursively(this.cdsDirectory.toPath());
+  }
+
+  @Benchmark
+  public int execute() throws CommandLineException, IOException {
+    StringStreamConsumer err = new StringStreamConsumer();
+    try (OutputBuffer output = new OutputBuffer(this.workDirectory, OUTPUT_MEMORY_LIMIT)) {
+      int exitCode = this.executor.execute(this.cmd, output, err);
+      if (exitCode != 0) {
+        throw new IllegalStateException("exit code " + exitCode + ": " + err.getOutput());
+      }
+      return exitCode;
+    }
+  }
+
+}
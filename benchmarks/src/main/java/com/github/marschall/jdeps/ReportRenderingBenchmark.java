@@ -0,0 +1,94 @@
+package com.github.marschall.jdeps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.doxia.module.xhtml5.Xhtml5SinkFactory;
+import org.apache.maven.doxia.sink.Sink;
+import org.apache.maven.doxia.sink.SinkFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures rendering the report, with all sub pages, for class level
+ * output of different sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportRenderingBenchmark {
+
+  private static final int CLASSES_PER_PACKAGE = 100;
+
+  @Param({"1000", "10000", "100000"})
+  public int classes;
+
+  private File workDirectory;
+  private File reportDirectory;
+  private OutputBuffer output;
+  private DependencyGraph graph;
+  private SinkFactory sinkFactory;
+
+  @Setup
+  public void setUp() throws IOException {
+    this.workDirectory = Files.createTempDirectory("jdeps-benchmark-report").toFile();
+    this.reportDirectory = new File(this.workDirectory, "site");
+    this.reportDirectory.mkdirs();
+    this.output = new OutputBuffer(this.workDirectory, Long.MAX_VALUE);
+
+    // what jdeps -verbose prints for a SyntheticProject
+    this.output.consumeLine("classes -> java.base");
+    this.output.consumeLine("classes -> not found");
+    for (int i = 0; i < this.classes; i++) {
+      String source = projectClass(i);
+      this.output.consumeLine(edge(source, projectClass((i + 1) % this.classes), "classes"));
+      this.output.consumeLine(edge(source, projectClass(((i * 31) + 7) % this.classes), "classes"));
+      this.output.consumeLine(edge(source, "java.lang.Object", "java.base"));
+      this.output.consumeLine(edge(source, "org.example.lib" + (i % 10) + ".L" + (i % 10), "not found"));
+    }
+    DependencyGraphParser parser = new DependencyGraphParser();
+    this.output.replay(parser);
+    this.graph = parser.getGraph();
+    this.sinkFactory = new Xhtml5SinkFactory();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    this.output.close();
+    SyntheticProject.deleteRecursively(this.workDirectory.toPath());
+  }
+
+  private static String projectClass(int index) {
+    return "com.example.p" + (index / CLASSES_PER_PACKAGE) + ".C" + index;
+  }
+
+  private static String edge(String source, String target, String archive) {
+    return String.format("   %-50s -> %-50s %s", source, target, archive);
+  }
+
+  @Benchmark
+  public void render() throws Exception {
+    Sink sink = this.sinkFactory.createSink(this.reportDirectory, "jdeps-report.html");
+    try {
+      new JDepsReportRenderer(sink, this.sinkFactory, this.reportDirectory, this.graph, true, 500).render(this.output);
+    } finally {
+      sink.close();
+    }
+  }
+
+}
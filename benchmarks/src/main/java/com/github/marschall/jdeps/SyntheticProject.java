@@ -0,0 +1,218 @@
+package com.github.marschall.jdeps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A synthetic project on disk: an output directory with class files and
+ * a class path of JARs.
+ * <p>
+ * Each class has fields of other classes of the project, of a class in
+ * a JAR and of a JDK class so that jdeps finds dependencies within and
+ * across packages and archives.
+ */
+final class SyntheticProject {
+
+  private static final int CLASSES_PER_PACKAGE = 100;
+
+  private static final int CLASSES_PER_JAR = 10;
+
+  private static final String[] JDK_CLASSES = {
+    "java/lang/String", "java/util/List", "java/util/Map", "java/io/File", "java/time/Instant"
+  };
+
+  private final Path root;
+  private final File outputDirectory;
+  private final List<File> classPath;
+
+  private SyntheticProject(Path root, File outputDirectory, List<File> classPath) {
+    this.root = root;
+    this.outputDirectory = outputDirectory;
+    this.classPath = classPath;
+  }
+
+  /**
+   * Generates a project in a new temporary directory.
+   *
+   * @param classCount the number of classes in the output directory
+   * @param jarCount the number of JARs on the class path
+   * @return the project
+   * @throws IOException if the project can not be written
+   */
+  static SyntheticProject generate(int classCount, int jarCount) throws IOException {
+    Path root = Files.createTempDirectory("jdeps-benchmark");
+    Path outputDirectory = root.resolve("classes");
+    for (int i = 0; i < classCount; i++) {
+      String name = projectClass(i);
+      Path classFile = outputDirectory.resolve(name + ".class");
+      Files.createDirectories(classFile.getParent());
+      Files.write(classFile, classFile(name,
+              projectClass((i + 1) % classCount),
+              projectClass(((i * 31) + 7) % classCount),
+              jarClass(i % jarCount, i % CLASSES_PER_JAR),
+              JDK_CLASSES[i % JDK_CLASSES.length]));
+    }
+
+    Path lib = root.resolve("lib");
+    Files.createDirectories(lib);
+    List<File> classPath = new ArrayList<>(jarCount);
+    for (int jar = 0; jar < jarCount; jar++) {
+      Path jarFile = lib.resolve("lib" + jar + ".jar");
+      try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jarFile))) {
+        for (int i = 0; i < CLASSES_PER_JAR; i++) {
+          String name = jarClass(jar, i);
+          zip.putNextEntry(new ZipEntry(name + ".class"));
+          zip.write(classFile(name, JDK_CLASSES[i % JDK_CLASSES.length]));
+          zip.closeEntry();
+        }
+      }
+      classPath.add(jarFile.toFile());
+    }
+    return new SyntheticProject(root, outputDirectory.toFile(), classPath);
+  }
+
+  private static String projectClass(int index) {
+    return "com/example/p" + (index / CLASSES_PER_PACKAGE) + "/C" + index;
+  }
+
+  private static String jarClass(int jar, int index) {
+    return "org/example/lib" + jar + "/L" + index;
+  }
+
+  /**
+   * Writes a minimal Java 8 class file with one field per type and no
+   * methods.
+   */
+  private static byte[] classFile(String name, String... fieldTypes) throws IOException {
+    ConstantPool pool = new ConstantPool();
+    int thisClass = pool.classInfo(name);
+    int superClass = pool.classInfo("java/lang/Object");
+    int[] names = new int[fieldTypes.length];
+    int[] descriptors = new int[fieldTypes.length];
+    for (int i = 0; i < fieldTypes.length; i++) {
+      names[i] = pool.utf8("f" + i);
+      descriptors[i] = pool.utf8("L" + fieldTypes[i] + ";");
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0xCAFEBABE);
+    out.writeShort(0);
+    out.writeShort(52);
+    pool.writeTo(out);
+    // public super
+    out.writeShort(0x0021);
+    out.writeShort(thisClass);
+    out.writeShort(superClass);
+    // interfaces
+    out.writeShort(0);
+    out.writeShort(fieldTypes.length);
+    for (int i = 0; i < fieldTypes.length; i++) {
+      // package private, no attributes
+      out.writeShort(0);
+      out.writeShort(names[i]);
+      out.writeShort(descriptors[i]);
+      out.writeShort(0);
+    }
+    // methods and attributes
+    out.writeShort(0);
+    out.writeShort(0);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  File getOutputDirectory() {
+    return this.outputDirectory;
+  }
+
+  List<File> getClassPath() {
+    return this.classPath;
+  }
+
+  /**
+   * Deletes all files of the project.
+   *
+   * @throws IOException if a file can not be deleted
+   */
+  void delete() throws IOException {
+    deleteRecursively(this.root);
+  }
+
+  static void deleteRecursively(Path directory) throws IOException {
+    if (!Files.exists(directory)) {
+      return;
+    }
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+
+    });
+  }
+
+  /**
+   * The constant pool of a class file under construction.
+   */
+  static final class ConstantPool {
+
+    private final ByteArrayOutputStream bytes;
+    private final DataOutputStream out;
+    private final Map<String, Integer> utf8Indices;
+    private int count;
+
+    ConstantPool() {
+      this.bytes = new ByteArrayOutputStream();
+      this.out = new DataOutputStream(this.bytes);
+      this.utf8Indices = new HashMap<>();
+      this.count = 1;
+    }
+
+    int utf8(String value) throws IOException {
+      Integer index = this.utf8Indices.get(value);
+      if (index == null) {
+        this.out.writeByte(1);
+        this.out.writeUTF(value);
+        index = this.count++;
+        this.utf8Indices.put(value, index);
+      }
+      return index;
+    }
+
+    int classInfo(String name) throws IOException {
+      int nameIndex = this.utf8(name);
+      this.out.writeByte(7);
+      this.out.writeShort(nameIndex);
+      return this.count++;
+    }
+
+    void writeTo(DataOutputStream target) throws IOException {
+      this.out.flush();
+      target.writeShort(this.count);
+      this.bytes.writeTo(target);
+    }
+
+  }
+
+}
@@ -0,0 +1,33 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark once with the smallest parameters so that changes
+ * to the plugin can not break the benchmarks unnoticed.
+ */
+public class BenchmarkSmokeTest {
+
+  @Test
+  public void runOnce() throws RunnerException {
+    Options options = new OptionsBuilder()
+            .include(this.getClass().getPackage().getName() + "\\..*Benchmark")
+            .mode(Mode.SingleShotTime)
+            .forks(0)
+            .warmupIterations(0)
+            .measurementIterations(1)
+            .param("jars", "10")
+            .param("classes", "1000")
+            .shouldFailOnError(true)
+            .build();
+    assertFalse(new Runner(options).run().isEmpty());
+  }
+
+}
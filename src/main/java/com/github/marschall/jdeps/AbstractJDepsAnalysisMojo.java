@@ -0,0 +1,127 @@
+package com.github.marschall.jdeps;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Base class of the goals that run a jdeps analysis of the classes of
+ * the project, holds the options of the analysis shared by the jdeps
+ * goal and the aggregate goal. {@link AbstractJDepsReport} has the same
+ * options for the reports.
+ *
+ * @author Philippe Marschall
+ */
+abstract class AbstractJDepsAnalysisMojo extends AbstractJDepsMojo {
+
+  /**
+   * Print dependency summary only.
+   */
+  @Parameter(defaultValue = "false", property = "jdeps.summary")
+  private boolean summary;
+
+  /**
+   * Restrict analysis to APIs.
+   *
+   * i.e. dependences  from the signature of public and protected
+   * members of public classes including field type, method parameter
+   * types, returned type, checked exception types etc.
+   */
+  @Parameter(defaultValue = "false", property = "jdeps.apiOnly")
+  private boolean apiOnly;
+
+  /**
+   * Print all class level dependencies.
+   */
+  @Parameter(defaultValue = "false", property = "jdeps.verbose")
+  private boolean verbose;
+
+  /**
+   * Print package-level or class-level dependencies
+   * Valid levels are: "package" and "class".
+   */
+  @Parameter(alias = "verbose-level", property = "jdeps.verboseLevel")
+  private String verboseLevel;
+
+  /**
+   * Restrict analysis to classes in these packages.
+   */
+  @Parameter
+  private List<String> packages;
+
+  /**
+   * Restrict analysis to packages matching pattern.
+   * ("packages" and "regex" are exclusive)
+   */
+  @Parameter(property = "jdeps.regex")
+  private String regex;
+
+  /**
+   * Filter dependences matching the given pattern.
+   */
+  @Parameter(property = "jdeps.filter")
+  private String filter;
+
+  /**
+   * Filter mode. Options
+   *
+   * <dl>
+   *  <dt>package</dt>
+   *  <dd>Filter dependences within the same package (default)</dd>
+   *  <dt>archive</dt>
+   *  <dd>Filter dependences within the same archive</dd>
+   *  <dt>none</dt>
+   *  <dd>No package and archive filtering. Filtering specified via the filter option still applies.</dd>
+   * </dl>
+   */
+  @Parameter(property = "jdeps.filterMode")
+  private String filterMode;
+
+  /**
+   * Restricts analysis to classes matching pattern.
+   *
+   * This option filters the list of classes to be analyzed. It can be
+   * used together with "packages" or "regex" which apply pattern to
+   * the dependencies.
+   */
+  @Parameter(property = "jdeps.include")
+  private String include;
+
+  /**
+   * Show profile or the file containing a package.
+   */
+  @Parameter(defaultValue = "false", property = "jdeps.profile")
+  private boolean profile;
+
+  /**
+   * The engine that analyzes the class files: "jdeps" runs the jdeps
+   * tool, "builtin" reads the class files in the Maven JVM without
+   * starting jdeps. The builtin engine requires Maven to run on Java 9
+   * or later, resolves JDK classes against that JDK and does not support
+   * "apiOnly", "profile" and "jdkInternals".
+   */
+  @Parameter(defaultValue = "jdeps", property = "jdeps.engine")
+  private String engine;
+
+  /**
+   * Get the path of the JDeps tool executable of the configured engine.
+   *
+   * @return the path of the JDeps tool
+   * @throws IOException if not found
+   */
+  protected String getJdepsExecutable() throws IOException {
+    return this.getJdepsExecutable(this.engine);
+  }
+
+  /**
+   * Returns the options of the analysis.
+   *
+   * @return the options, not null
+   */
+  protected AnalysisOptions getAnalysisOptions() {
+    return new AnalysisOptions(this.summary, this.apiOnly, this.verbose, this.verboseLevel, this.packages,
+            this.regex, this.filter, this.filterMode, this.include, this.profile);
+  }
+
+}
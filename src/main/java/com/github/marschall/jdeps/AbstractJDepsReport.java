@@ -0,0 +1,284 @@
+package com.github.marschall.jdeps;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.reporting.AbstractMavenReport;
+import org.apache.maven.reporting.MavenReportException;
+import org.apache.maven.toolchain.ToolchainManager;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineUtils.StringStreamConsumer;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Base class of the reports that run jdeps, holds the options of how
+ * jdeps is run and of the analysis. They are the same as the ones of the
+ * goals in {@link AbstractJDepsMojo} and
+ * {@link AbstractJDepsAnalysisMojo}, reports have to extend
+ * {@link AbstractMavenReport} and can not share their base classes.
+ *
+ * @author Philippe Marschall
+ */
+abstract class AbstractJDepsReport extends AbstractMavenReport {
+
+  @Component
+  private ToolchainManager toolchainManager;
+
+  @Parameter(defaultValue = "${session}", readonly = true) // @Component is deprecated
+  protected MavenSession session;
+
+  /**
+   * Run jdeps inside the Maven JVM instead of forking a new process.
+   *
+   * Requires the JDK of the jdeps executable to be the JDK running
+   * Maven (Java 9 or later) or a Java 8 JDK when Maven runs on Java 8.
+   * Falls back to forking otherwise.
+   */
+  @Parameter(defaultValue = "false", property = "jdeps.inProcess")
+  private boolean inProcess;
+
+  /**
+   * Run jdeps or the builtin engine in a daemon that stays running in
+   * the background and is shared by all Maven invocations on the machine.
+   *
+   * There is one daemon per JDK. The daemon keeps jdeps warm and caches
+   * the classes of JARs it read for the builtin engine. Requires Maven
+   * and the JDK of the jdeps executable to be Java 16 or later, falls
+   * back to running without daemon otherwise.
+   */
+  @Parameter(defaultValue = "false", property = "jdeps.daemon")
+  private boolean daemon;
+
+  /**
+   * The directory containing the sockets and log files of the daemons.
+   */
+  @Parameter(defaultValue = "${user.home}/.m2/jdeps-daemon", property = "jdeps.daemonDirectory")
+  private File daemonDirectory;
+
+  /**
+   * The number of minutes after which an unused daemon exits.
+   */
+  @Parameter(defaultValue = "30", property = "jdeps.daemonIdleTimeout")
+  private int daemonIdleTimeout;
+
+  /**
+   * The maximum memory in megabytes a daemon uses to cache the classes
+   * of JARs, least recently used JARs are evicted first.
+   */
+  @Parameter(defaultValue = "256", property = "jdeps.daemonCacheSize")
+  private int daemonCacheSize;
+
+  /**
+   * Options of the JVM of a forked jdeps, for example
+   * {@code -XX:TieredStopAtLevel=1} or {@code -XX:+UseSerialGC} which
+   * make the short lived JVM start faster. Not used when jdeps runs
+   * in-process or in the daemon.
+   */
+  @Parameter(property = "jdeps.jvmOptions")
+  private List<String> jvmOptions;
+
+  /**
+   * Start a forked jdeps with a dynamic CDS archive of the classes it
+   * loads. The archive is created by the first run and reused by later
+   * runs with the same JDK and JVM options. Requires jdeps of Java 13
+   * or later, ignored otherwise.
+   */
+  @Parameter(defaultValue = "false", property = "jdeps.cds")
+  private boolean cds;
+
+  /**
+   * The directory containing the CDS archives of jdeps.
+   */
+  @Parameter(defaultValue = "${settings.localRepository}/.cache/jdeps-maven-plugin/cds", property = "jdeps.cdsDirectory")
+  private File cdsDirectory;
+
+  /**
+   * The seconds after which a forked jdeps is killed and the build
+   * fails, 0 for no timeout. Not used when jdeps runs in-process or in the daemon.
+   */
+  @Parameter(defaultValue = "0", property = "jdeps.timeout")
+  private int timeout;
+
+  /**
+   * The maximum number of analyses that run at the same time in all
+   * modules of a build, 0 for the number of cores. Waiting analyses of
+   * modules with the longest chain of modules depending on them go
+   * first. The first module of a build sets the limit.
+   */
+  @Parameter(defaultValue = "0", property = "jdeps.maxConcurrentAnalyses")
+  private int maxConcurrentAnalyses;
+
+  /**
+   * The maximum memory in megabytes of the analyses that run at the
+   * same time in all modules of a build, 0 for no limit. An analysis
+   * counts with the {@code -Xmx} of jvmOptions, 256 without. The first
+   * module of a build sets the limit.
+   */
+  @Parameter(defaultValue = "0", property = "jdeps.analysisMemoryBudget")
+  private int analysisMemoryBudget;
+
+  /**
+   * Print dependency summary only.
+   */
+  @Parameter(defaultValue = "false", property = "jdeps.summary")
+  private boolean summary;
+
+  /**
+   * Restrict analysis to APIs.
+   *
+   * i.e. dependences  from the signature of public and protected
+   * members of public classes including field type, method parameter
+   * types, returned type, checked exception types etc.
+   */
+  @Parameter(defaultValue = "false", property = "jdeps.apiOnly")
+  private boolean apiOnly;
+
+  /**
+   * Print all class level dependencies.
+   */
+  @Parameter(defaultValue = "false", property = "jdeps.verbose")
+  private boolean verbose;
+
+  /**
+   * Print package-level or class-level dependencies
+   * Valid levels are: "package" and "class".
+   */
+  @Parameter(alias = "verbose-level", property = "jdeps.verboseLevel")
+  private String verboseLevel;
+
+  /**
+   * Restrict analysis to classes in these packages.
+   */
+  @Parameter
+  private List<String> packages;
+
+  /**
+   * Restrict analysis to packages matching pattern.
+   * ("packages" and "regex" are exclusive)
+   */
+  @Parameter(property = "jdeps.regex")
+  private String regex;
+
+  /**
+   * Filter dependences matching the given pattern.
+   */
+  @Parameter(property = "jdeps.filter")
+  private String filter;
+
+  /**
+   * Filter mode. Options
+   *
+   * <dl>
+   *  <dt>package</dt>
+   *  <dd>Filter dependences within the same package (default)</dd>
+   *  <dt>archive</dt>
+   *  <dd>Filter dependences within the same archive</dd>
+   *  <dt>none</dt>
+   *  <dd>No package and archive filtering. Filtering specified via the filter option still applies.</dd>
+   * </dl>
+   */
+  @Parameter(property = "jdeps.filterMode")
+  private String filterMode;
+
+  /**
+   * Restricts analysis to classes matching pattern.
+   *
+   * This option filters the list of classes to be analyzed. It can be
+   * used together with "packages" or "regex" which apply pattern to
+   * the dependencies.
+   */
+  @Parameter(property = "jdeps.include")
+  private String include;
+
+  /**
+   * Show profile or the file containing a package.
+   */
+  @Parameter(defaultValue = "false", property = "jdeps.profile")
+  private boolean profile;
+
+  /**
+   * The engine that analyzes the class files: "jdeps" runs the jdeps
+   * tool, "builtin" reads the class files in the Maven JVM without
+   * starting jdeps. The builtin engine requires Maven to run on Java 9
+   * or later, resolves JDK classes against that JDK and does not support
+   * "apiOnly", "profile" and "jdkInternals".
+   */
+  @Parameter(defaultValue = "jdeps", property = "jdeps.engine")
+  private String engine;
+
+  /**
+   * Get the path of the JDeps tool executable of the configured engine.
+   *
+   * @return the path of the JDeps tool
+   * @throws IOException if not found
+   */
+  protected String getJdepsExecutable() throws IOException {
+    return this.getJdepsExecutable(this.engine);
+  }
+
+  /**
+   * Returns the options of the analysis.
+   *
+   * @return the options, not null
+   */
+  protected AnalysisOptions getAnalysisOptions() {
+    return new AnalysisOptions(this.summary, this.apiOnly, this.verbose, this.verboseLevel, this.packages,
+            this.regex, this.filter, this.filterMode, this.include, this.profile);
+  }
+
+  /**
+   * Get the path of the JDeps tool executable depending the user entry or try to find it depending the OS
+   * or the <code>java.home</code> system property or the <code>JAVA_HOME</code> environment variable.
+   *
+   * @param engine the engine, "jdeps" or "builtin"
+   * @return the path of the JDeps tool
+   * @throws IOException if not found
+   */
+  protected String getJdepsExecutable(String engine) throws IOException {
+    JDepsCommandUtil jdepsCommandUtil = new JDepsCommandUtil(this.toolchainManager, this.getLog(), this.session);
+    return jdepsCommandUtil.getExecutable(engine);
+  }
+
+  /**
+   * Execute the JDeps command line
+   *
+   * @param cmd not null
+   * @param out receives the output of jdeps, not null
+   * @throws MavenReportException if any errors occur
+   */
+  protected void executeJDepsCommandLine(Commandline cmd, StreamConsumer out) throws MavenReportException {
+    StringStreamConsumer err = new StringStreamConsumer();
+    try {
+      int exitCode = this.newExecutor().execute(cmd, out, err);
+      if (exitCode != 0) {
+        throw new MavenReportException(JDepsExecutor.getFailureMessage(cmd, exitCode, err.getOutput()));
+      }
+    } catch (CommandLineException e) {
+      throw new MavenReportException("Unable to execute jdeps command: " + e.getMessage(), e);
+    }
+  }
+
+  private JDepsExecutor newExecutor() {
+    DaemonClient daemonClient = null;
+    if (this.daemon) {
+      daemonClient = new DaemonClient(this.daemonDirectory,
+              TimeUnit.MINUTES.toMillis(this.daemonIdleTimeout),
+              this.daemonCacheSize * 1024L * 1024L,
+              this.getLog());
+    }
+    ForkedJvm forkedJvm = null;
+    if (this.cds || ((this.jvmOptions != null) && !this.jvmOptions.isEmpty()) || (this.timeout > 0)) {
+      forkedJvm = new ForkedJvm(this.jvmOptions, this.cds ? this.cdsDirectory : null, this.timeout, this.getLog());
+    }
+    AnalysisScheduler.Lane lane = AnalysisScheduler.forBuild(this.session, this.maxConcurrentAnalyses, this.analysisMemoryBudget)
+            .lane(this.session.getCurrentProject(), this.getLog());
+    return new JDepsExecutor(this.getLog(), this.inProcess, daemonClient, forkedJvm, lane);
+  }
+
+}
@@ -0,0 +1,292 @@
+package com.github.marschall.jdeps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * A long running process that analyzes class files for all Maven
+ * invocations on the same machine so that they neither pay for the
+ * startup of jdeps nor for reading the same JARs again.
+ * <p>
+ * The daemon listens on a Unix domain socket and runs jdeps of its JDK
+ * through {@code java.util.spi.ToolProvider} or the builtin engine with a
+ * {@link JarCache}. It is started by {@link DaemonClient}, at most one
+ * daemon runs per socket which is guarded by a lock file, and it exits
+ * after being idle for the configured time.
+ * <p>
+ * A request consists of {@link #MAGIC}, {@link #PROTOCOL_VERSION}, the
+ * engine and the arguments. The response is a sequence of frames each
+ * starting with its kind: lines of standard and error output, the exit
+ * code that ends the response or a failure or unavailability message.
+ * Strings are written as length and UTF-8 bytes.
+ */
+final class AnalysisDaemon {
+
+  static final int MAGIC = 0x4A444550;
+
+  static final int PROTOCOL_VERSION = 1;
+
+  static final byte ENGINE_JDEPS = 0;
+
+  static final byte ENGINE_BUILTIN = 1;
+
+  static final byte OUT = 1;
+
+  static final byte ERR = 2;
+
+  static final byte EXIT = 3;
+
+  /**
+   * The analysis failed, followed by a message.
+   */
+  static final byte FAILED = 4;
+
+  /**
+   * The daemon can not run the request, the client should fall back,
+   * followed by a message.
+   */
+  static final byte UNAVAILABLE = 5;
+
+  private final ServerSocketChannel server;
+  private final long idleTimeout;
+  private final JarCache jarCache;
+  private final AtomicInteger activeRequests;
+  private volatile long lastActivity;
+  private InProcessJDeps jdeps;
+
+  private AnalysisDaemon(ServerSocketChannel server, long idleTimeout, JarCache jarCache) {
+    this.server = server;
+    this.idleTimeout = idleTimeout;
+    this.jarCache = jarCache;
+    this.activeRequests = new AtomicInteger();
+    this.lastActivity = System.nanoTime();
+  }
+
+  /**
+   * Runs the daemon.
+   *
+   * @param args the socket path, the idle timeout in milliseconds and
+   *  the maximum memory of the JAR cache in bytes
+   * @throws IOException if the socket can not be bound
+   */
+  public static void main(String[] args) throws IOException {
+    Path socket = Paths.get(args[0]).toAbsolutePath();
+    long idleTimeout = Long.parseLong(args[1]);
+    long cacheSize = Long.parseLong(args[2]);
+
+    Path lockFile = socket.resolveSibling(socket.getFileName() + ".lock");
+    try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      FileLock lock = lockChannel.tryLock();
+      if (lock == null) {
+        log("another daemon is running for " + socket);
+        return;
+      }
+      // left over from a daemon that was killed
+      Files.deleteIfExists(socket);
+      try (ServerSocketChannel server = UnixSockets.bind(socket)) {
+        log("listening on " + socket + " with Java " + System.getProperty("java.version"));
+        new AnalysisDaemon(server, idleTimeout, new JarCache(cacheSize)).serve();
+      } finally {
+        Files.deleteIfExists(socket);
+        lock.release();
+      }
+    }
+    log("idle for " + TimeUnit.MILLISECONDS.toMinutes(idleTimeout) + " minutes, exiting");
+    // pool threads of jdeps may still be around
+    System.exit(0);
+  }
+
+  private void serve() throws IOException {
+    ExecutorService workers = Executors.newCachedThreadPool(new DaemonThreadFactory());
+    ScheduledExecutorService idleCheck = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory());
+    long period = Math.max(1000L, Math.min(this.idleTimeout / 4L, 10000L));
+    idleCheck.scheduleWithFixedDelay(new Runnable() {
+
+      @Override
+      public void run() {
+        AnalysisDaemon.this.closeIfIdle();
+      }
+
+    }, period, period, TimeUnit.MILLISECONDS);
+    try {
+      while (true) {
+        final SocketChannel client;
+        try {
+          client = this.server.accept();
+        } catch (ClosedChannelException e) {
+          // closed by the idle check
+          return;
+        }
+        this.activeRequests.incrementAndGet();
+        workers.execute(new Runnable() {
+
+          @Override
+          public void run() {
+            try {
+              AnalysisDaemon.this.handle(client);
+            } finally {
+              AnalysisDaemon.this.lastActivity = System.nanoTime();
+              AnalysisDaemon.this.activeRequests.decrementAndGet();
+            }
+          }
+
+        });
+      }
+    } finally {
+      idleCheck.shutdownNow();
+      workers.shutdown();
+    }
+  }
+
+  private void closeIfIdle() {
+    long idle = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.lastActivity);
+    if ((this.activeRequests.get() == 0) && (idle >= this.idleTimeout)) {
+      try {
+        this.server.close();
+      } catch (IOException e) {
+        log("could not close server socket: " + e.getMessage());
+      }
+    }
+  }
+
+  private void handle(SocketChannel client) {
+    long start = System.nanoTime();
+    String description = "request";
+    try (SocketChannel channel = client) {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+      if ((in.readInt() != MAGIC) || (in.readInt() != PROTOCOL_VERSION)) {
+        writeFrame(out, UNAVAILABLE, "unsupported protocol version");
+        out.flush();
+        return;
+      }
+      byte engine = in.readByte();
+      String[] arguments = new String[in.readInt()];
+      for (int i = 0; i < arguments.length; i++) {
+        arguments[i] = readString(in);
+      }
+      description = engine == ENGINE_BUILTIN ? "builtin engine" : "jdeps";
+      this.run(engine, arguments, out);
+      out.flush();
+    } catch (IOException e) {
+      log(description + " failed: " + e);
+      return;
+    }
+    log(description + " took " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms, "
+            + this.jarCache.size() + " JARs cached using " + (this.jarCache.getMemory() / (1024L * 1024L)) + " MB");
+  }
+
+  private void run(byte engine, String[] arguments, DataOutputStream out) throws IOException {
+    FrameConsumer outConsumer = new FrameConsumer(out, OUT);
+    FrameConsumer errConsumer = new FrameConsumer(out, ERR);
+    int exitCode;
+    try {
+      if (engine == ENGINE_BUILTIN) {
+        exitCode = ClassFileScanner.run(arguments, outConsumer, errConsumer, this.jarCache);
+      } else {
+        InProcessJDeps jdeps = this.getJDeps();
+        if (jdeps == null) {
+          writeFrame(out, UNAVAILABLE, "jdeps not found in " + System.getProperty("java.home"));
+          return;
+        }
+        exitCode = jdeps.run(arguments, outConsumer, errConsumer);
+      }
+    } catch (CommandLineException | ReflectiveOperationException | RuntimeException e) {
+      writeFrame(out, FAILED, String.valueOf(e.getMessage()));
+      return;
+    }
+    synchronized (out) {
+      out.writeByte(EXIT);
+      out.writeInt(exitCode);
+    }
+  }
+
+  private synchronized InProcessJDeps getJDeps() throws ReflectiveOperationException {
+    if (this.jdeps == null) {
+      this.jdeps = InProcessJDeps.lookUpToolProvider();
+    }
+    return this.jdeps;
+  }
+
+  static void writeFrame(DataOutputStream out, byte kind, String value) throws IOException {
+    synchronized (out) {
+      out.writeByte(kind);
+      writeString(out, value);
+    }
+  }
+
+  static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void log(String message) {
+    System.out.println(new Date() + " " + message);
+  }
+
+  /**
+   * Sends each line as a frame.
+   */
+  static final class FrameConsumer implements StreamConsumer {
+
+    private final DataOutputStream out;
+    private final byte kind;
+
+    FrameConsumer(DataOutputStream out, byte kind) {
+      this.out = out;
+      this.kind = kind;
+    }
+
+    @Override
+    public void consumeLine(String line) throws IOException {
+      writeFrame(this.out, this.kind, line);
+    }
+
+  }
+
+  /**
+   * Creates daemon threads so that they don't keep the JVM alive.
+   */
+  static final class DaemonThreadFactory implements ThreadFactory {
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "jdeps-daemon");
+      thread.setDaemon(true);
+      return thread;
+    }
+
+  }
+
+}
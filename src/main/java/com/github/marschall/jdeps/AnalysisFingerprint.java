@@ -0,0 +1,226 @@
+package com.github.marschall.jdeps;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Computes a fingerprint over everything that influences the output of
+ * jdeps: the jdeps executable and its JDK, the command line options and
+ * the content of the analyzed class files and classpath entries.
+ */
+final class AnalysisFingerprint {
+
+  /**
+   * Content hashes of files, shared by all modules of a build so that
+   * a dependency used by many modules is only hashed once.
+   */
+  private static final ConcurrentMap<FileKey, byte[]> FILE_HASHES = new ConcurrentHashMap<>();
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private AnalysisFingerprint() {
+    throw new AssertionError("not instantiable");
+  }
+
+  /**
+   * Computes the fingerprint of a jdeps invocation.
+   *
+   * @param jdepsExecutable the jdeps executable, not null
+   * @param arguments the command line arguments, the {@code -dotoutput}
+   *  option is ignored as it does not influence the analysis
+   * @param inputs the class directories, jars and classpath entries,
+   *  their content is hashed
+   * @return the fingerprint as a hex string
+   * @throws IOException if an input can not be read
+   */
+  static String compute(String jdepsExecutable, String[] arguments, List<File> inputs) throws IOException {
+    return compute(jdepsExecutable, arguments, Collections.<String>emptyList(), inputs);
+  }
+
+  /**
+   * Computes the fingerprint of an analysis that changes the output of
+   * jdeps through options of the plugin.
+   *
+   * @param jdepsExecutable the jdeps executable, not null
+   * @param arguments the command line arguments, the {@code -dotoutput}
+   *  option is ignored as it does not influence the analysis
+   * @param options the plugin options that change the output but are not
+   *  passed to jdeps, not null
+   * @param inputs the class directories, jars and classpath entries,
+   *  their content is hashed
+   * @return the fingerprint as a hex string
+   * @throws IOException if an input can not be read
+   */
+  static String compute(String jdepsExecutable, String[] arguments, List<String> options, List<File> inputs)
+          throws IOException {
+    MessageDigest digest = newDigest();
+    update(digest, jdepsExecutable);
+    updateJdk(digest, Paths.get(jdepsExecutable));
+    // options and arguments can not be mistaken for each other
+    update(digest, Integer.toString(options.size()));
+    for (String option : options) {
+      update(digest, option);
+    }
+
+    for (int i = 0; i < arguments.length; i++) {
+      String argument = arguments[i];
+      if ("-dotoutput".equals(argument)) {
+        // skip the value as well
+        i += 1;
+      } else {
+        update(digest, argument);
+      }
+    }
+
+    for (File input : inputs) {
+      Path path = input.toPath();
+      update(digest, path.toAbsolutePath().toString());
+      if (Files.isDirectory(path)) {
+        updateDirectory(digest, path);
+      } else if (Files.isRegularFile(path)) {
+        digest.update(hashFile(path));
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Computes the content hash of a single file.
+   *
+   * @param file the file to hash, not null
+   * @return the hash as a hex string
+   * @throws IOException if the file can not be read
+   */
+  static String hash(Path file) throws IOException {
+    return toHex(hashFile(file));
+  }
+
+  private static void updateJdk(MessageDigest digest, Path jdepsExecutable) throws IOException {
+    if (Files.isRegularFile(jdepsExecutable)) {
+      BasicFileAttributes attributes = Files.readAttributes(jdepsExecutable, BasicFileAttributes.class);
+      update(digest, Long.toString(attributes.size()));
+      update(digest, Long.toString(attributes.lastModifiedTime().toMillis()));
+      // <jdk>/bin/jdeps, the release file contains the exact JDK version
+      Path bin = jdepsExecutable.toAbsolutePath().getParent();
+      if ((bin != null) && (bin.getParent() != null)) {
+        Path release = bin.getParent().resolve("release");
+        if (Files.isRegularFile(release)) {
+          digest.update(Files.readAllBytes(release));
+        }
+      }
+    }
+  }
+
+  private static void updateDirectory(MessageDigest digest, final Path directory) throws IOException {
+    final List<Path> files = new ArrayList<>();
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        if (attrs.isRegularFile()) {
+          files.add(directory.relativize(file));
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+    });
+    // the iteration order of the file system is not stable
+    Collections.sort(files);
+    for (Path file : files) {
+      update(digest, file.toString());
+      digest.update(hashFile(directory.resolve(file)));
+    }
+  }
+
+  private static byte[] hashFile(Path file) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    FileKey key = new FileKey(file.toAbsolutePath().toString(), attributes.size(), attributes.lastModifiedTime().toMillis());
+    byte[] hash = FILE_HASHES.get(key);
+    if (hash == null) {
+      MessageDigest digest = newDigest();
+      byte[] buffer = new byte[8192];
+      try (InputStream stream = Files.newInputStream(file)) {
+        int read = stream.read(buffer);
+        while (read != -1) {
+          digest.update(buffer, 0, read);
+          read = stream.read(buffer);
+        }
+      }
+      hash = digest.digest();
+      FILE_HASHES.put(key, hash);
+    }
+    return hash;
+  }
+
+  private static void update(MessageDigest digest, String s) {
+    digest.update(s.getBytes(StandardCharsets.UTF_8));
+    // separator so that "ab", "c" and "a", "bc" differ
+    digest.update((byte) 0);
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not supported", e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+      chars[(i * 2) + 1] = HEX_DIGITS[bytes[i] & 0xF];
+    }
+    return new String(chars);
+  }
+
+  static final class FileKey {
+
+    private final String path;
+    private final long size;
+    private final long lastModified;
+
+    FileKey(String path, long size, long lastModified) {
+      this.path = path;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+
+    @Override
+    public int hashCode() {
+      return this.path.hashCode() ^ Long.valueOf(this.size ^ this.lastModified).hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof FileKey)) {
+        return false;
+      }
+      FileKey other = (FileKey) obj;
+      return this.path.equals(other.path)
+              && (this.size == other.size)
+              && (this.lastModified == other.lastModified);
+    }
+
+  }
+
+}
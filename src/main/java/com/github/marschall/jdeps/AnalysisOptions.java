@@ -0,0 +1,140 @@
+package com.github.marschall.jdeps;
+
+import java.util.List;
+
+import org.codehaus.plexus.util.cli.Commandline;
+
+/**
+ * The options of a jdeps analysis of the classes of a project and how
+ * they are passed to jdeps.
+ * <p>
+ * Both the goals and the reports have these options. Reports have to
+ * extend {@link org.apache.maven.reporting.AbstractMavenReport} so the
+ * parameters are declared in {@link AbstractJDepsAnalysisMojo} and in
+ * {@link AbstractJDepsReport} and passed to an instance of this class
+ * which turns them into arguments.
+ */
+final class AnalysisOptions {
+
+  private final boolean summary;
+  private final boolean apiOnly;
+  private final boolean verbose;
+  private final String verboseLevel;
+  private final List<String> packages;
+  private final String regex;
+  private final String filter;
+  private final String filterMode;
+  private final String include;
+  private final boolean profile;
+
+  AnalysisOptions(boolean summary, boolean apiOnly, boolean verbose, String verboseLevel, List<String> packages,
+          String regex, String filter, String filterMode, String include, boolean profile) {
+    this.summary = summary;
+    this.apiOnly = apiOnly;
+    this.verbose = verbose;
+    this.verboseLevel = verboseLevel;
+    this.packages = packages;
+    this.regex = regex;
+    this.filter = filter;
+    this.filterMode = filterMode;
+    this.include = include;
+    this.profile = profile;
+  }
+
+  /**
+   * Whether only the dependency summary is printed.
+   *
+   * @return {@code true} for the summary only
+   */
+  boolean isSummary() {
+    return this.summary;
+  }
+
+  /**
+   * Whether jdeps prints class level dependencies.
+   *
+   * @return {@code true} for class level, {@code false} for package level
+   */
+  boolean isClassLevel() {
+    // -verbose without level prints classes, a level overrides it
+    return (this.verbose && (this.verboseLevel == null)) || "class".equals(this.verboseLevel);
+  }
+
+  void addPackagesArg(Commandline cmd) {
+    if ((this.packages != null) && !this.packages.isEmpty()) {
+      for (String each : this.packages) {
+        cmd.createArg().setValue("-package");
+        cmd.createArg().setValue(each);
+      }
+    }
+  }
+
+  void addVerboseLevelArg(Commandline cmd) {
+    if (this.verboseLevel != null) {
+      cmd.createArg().setValue("-verbose:" + this.verboseLevel);
+    }
+  }
+
+  void addRegexArg(Commandline cmd) {
+    if (this.regex != null) {
+      cmd.createArg().setValue("-regex");
+      cmd.createArg().setValue(this.regex);
+    }
+  }
+
+  void addInclude(Commandline cmd) {
+    if (this.include != null) {
+      cmd.createArg().setValue("-regex");
+      cmd.createArg().setValue(this.include);
+    }
+  }
+
+  void addVerboseArg(Commandline cmd) {
+    addBooleanArg(this.verbose, "-verbose", cmd);
+  }
+
+  void addSummaryArg(Commandline cmd) {
+    addBooleanArg(this.summary, "-summary", cmd);
+  }
+
+  void addApiOnly(Commandline cmd) {
+    addBooleanArg(this.apiOnly, "-apionly", cmd);
+  }
+
+  void addProfileArg(Commandline cmd) {
+    addBooleanArg(this.profile, "-profile", cmd);
+  }
+
+  void addFilterArg(Commandline cmd) {
+    if (this.filter != null) {
+      cmd.createArg().setValue("-filter");
+      cmd.createArg().setValue(this.filter);
+    }
+  }
+
+  void addFilterModeArg(Commandline cmd) {
+    if (this.filterMode != null) {
+      switch (this.filterMode) {
+        case "package":
+          cmd.createArg().setValue("-filter:package");
+          break;
+        case "archive":
+          cmd.createArg().setValue("-filter:archive");
+          break;
+        case "none":
+          cmd.createArg().setValue("-filter:none");
+          break;
+        default:
+          // throw an exception?
+          break;
+      }
+    }
+  }
+
+  static void addBooleanArg(boolean flag, String name, Commandline cmd) {
+    if (flag) {
+      cmd.createArg().setValue(name);
+    }
+  }
+
+}
@@ -0,0 +1,226 @@
+package com.github.marschall.jdeps;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.WeakHashMap;
+
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.execution.ProjectDependencyGraph;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Limits the number of analyses and the memory they use across all
+ * modules of a build.
+ * <p>
+ * There is one scheduler per build, the mojos of a parallel build share
+ * it because they share the plugin class loader. The first mojo that
+ * uses it sets the limits. Analyses wait in the order of the length of
+ * the longest chain of reactor modules that depend on their module, so
+ * that modules on the critical path of the build go first. Analyses of
+ * the same length go in the order they arrived. The memory of an
+ * analysis is the maximum heap of the forked JVM.
+ */
+final class AnalysisScheduler {
+
+  /**
+   * The memory in megabytes assumed for an analysis that does not set a
+   * maximum heap.
+   */
+  static final int DEFAULT_ANALYSIS_MEMORY = 256;
+
+  private static final Map<MavenExecutionRequest, AnalysisScheduler> SCHEDULERS = new WeakHashMap<>();
+
+  private final int maxConcurrent;
+  private final int memoryBudget;
+  private final ProjectDependencyGraph projectGraph;
+  private final Map<String, Integer> criticalPaths;
+  private final PriorityQueue<Waiter> waiting;
+  private long sequence;
+  private int running;
+  private int memoryUsed;
+
+  private AnalysisScheduler(int maxConcurrent, int memoryBudget, ProjectDependencyGraph projectGraph) {
+    this.maxConcurrent = maxConcurrent;
+    this.memoryBudget = memoryBudget;
+    this.projectGraph = projectGraph;
+    this.criticalPaths = new HashMap<>();
+    this.waiting = new PriorityQueue<>();
+  }
+
+  /**
+   * Returns the scheduler of the build of a session, creates it if
+   * needed.
+   *
+   * @param session the session of the mojo, not null
+   * @param maxConcurrent the maximum number of concurrent analyses,
+   *  0 for the number of cores
+   * @param memoryBudget the maximum memory in megabytes of all concurrent
+   *  analyses, 0 for no limit
+   * @return the scheduler of the build
+   */
+  static synchronized AnalysisScheduler forBuild(MavenSession session, int maxConcurrent, int memoryBudget) {
+    // each module of a parallel build gets a copy of the session but they share the request
+    MavenExecutionRequest request = session.getRequest();
+    AnalysisScheduler scheduler = SCHEDULERS.get(request);
+    if (scheduler == null) {
+      scheduler = new AnalysisScheduler(
+              maxConcurrent <= 0 ? Runtime.getRuntime().availableProcessors() : maxConcurrent,
+              Math.max(memoryBudget, 0),
+              session.getProjectDependencyGraph());
+      SCHEDULERS.put(request, scheduler);
+    }
+    return scheduler;
+  }
+
+  /**
+   * Returns the lane through which the analyses of a module are
+   * scheduled.
+   *
+   * @param project the module, may be null
+   * @param log the log of the mojo, not null
+   * @return the lane
+   */
+  Lane lane(MavenProject project, Log log) {
+    int priority;
+    synchronized (this) {
+      priority = project != null ? this.getCriticalPath(project) : 0;
+    }
+    return new Lane(priority, log);
+  }
+
+  private int getCriticalPath(MavenProject project) {
+    String id = project.getId();
+    Integer cached = this.criticalPaths.get(id);
+    if (cached != null) {
+      return cached;
+    }
+    int length = 0;
+    if (this.projectGraph != null) {
+      List<MavenProject> downstreamProjects = this.projectGraph.getDownstreamProjects(project, false);
+      for (MavenProject downstreamProject : downstreamProjects) {
+        length = Math.max(length, this.getCriticalPath(downstreamProject) + 1);
+      }
+    }
+    this.criticalPaths.put(id, length);
+    return length;
+  }
+
+  private synchronized void acquire(Waiter waiter) throws InterruptedException {
+    waiter.sequence = this.sequence++;
+    this.waiting.add(waiter);
+    try {
+      while ((this.waiting.peek() != waiter) || !this.fits(waiter.memory)) {
+        this.wait();
+      }
+    } catch (InterruptedException e) {
+      this.waiting.remove(waiter);
+      this.notifyAll();
+      throw e;
+    }
+    this.waiting.poll();
+    this.running += 1;
+    this.memoryUsed += waiter.memory;
+    // the next one may fit as well
+    this.notifyAll();
+  }
+
+  private boolean fits(int memory) {
+    return (this.running < this.maxConcurrent)
+            && ((this.memoryBudget == 0) || (this.memoryUsed + memory <= this.memoryBudget));
+  }
+
+  private synchronized void release(int memory) {
+    this.running -= 1;
+    this.memoryUsed -= memory;
+    this.notifyAll();
+  }
+
+  /**
+   * Schedules the analyses of one module.
+   */
+  final class Lane {
+
+    private final int priority;
+    private final Log log;
+
+    Lane(int priority, Log log) {
+      this.priority = priority;
+      this.log = log;
+    }
+
+    /**
+     * Waits until an analysis may run.
+     *
+     * @param maxHeap the maximum heap of the analysis in megabytes, a
+     *  negative value if unknown
+     * @return the permit to release once the analysis is done
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Permit acquire(int maxHeap) throws InterruptedException {
+      int memory = maxHeap < 0 ? DEFAULT_ANALYSIS_MEMORY : maxHeap;
+      if (AnalysisScheduler.this.memoryBudget != 0) {
+        // an analysis larger than the budget runs alone
+        memory = Math.min(memory, AnalysisScheduler.this.memoryBudget);
+      } else {
+        memory = 0;
+      }
+      long start = System.nanoTime();
+      AnalysisScheduler.this.acquire(new Waiter(this.priority, memory));
+      if (this.log.isDebugEnabled()) {
+        long waited = (System.nanoTime() - start) / 1000000L;
+        this.log.debug("Waited " + waited + " ms for an analysis slot, critical path " + this.priority);
+      }
+      return new Permit(memory);
+    }
+
+  }
+
+  /**
+   * Allows one analysis to run until closed.
+   */
+  final class Permit implements AutoCloseable {
+
+    private final int memory;
+    private boolean released;
+
+    Permit(int memory) {
+      this.memory = memory;
+    }
+
+    @Override
+    public void close() {
+      if (!this.released) {
+        this.released = true;
+        AnalysisScheduler.this.release(this.memory);
+      }
+    }
+
+  }
+
+  static final class Waiter implements Comparable<Waiter> {
+
+    final int priority;
+    final int memory;
+    long sequence;
+
+    Waiter(int priority, int memory) {
+      this.priority = priority;
+      this.memory = memory;
+    }
+
+    @Override
+    public int compareTo(Waiter other) {
+      if (this.priority != other.priority) {
+        // longer critical path first
+        return this.priority > other.priority ? -1 : 1;
+      }
+      return Long.compare(this.sequence, other.sequence);
+    }
+
+  }
+
+}
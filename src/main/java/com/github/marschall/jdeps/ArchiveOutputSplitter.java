@@ -0,0 +1,60 @@
+package com.github.marschall.jdeps;
+
+import static com.github.marschall.jdeps.DependencyGraphParser.JDK8_SOURCE;
+import static com.github.marschall.jdeps.DependencyGraphParser.SUMMARY;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Passes the output of one archive of a jdeps run to a different
+ * consumer than the output of all other archives.
+ * <p>
+ * jdeps prints the summary dependencies of an archive followed by the
+ * package or class dependencies of that archive, on Java 8 every source
+ * is followed by its archive. Every line goes to the consumer of the
+ * archive printed last, lines before the first archive go to the other
+ * consumer.
+ */
+final class ArchiveOutputSplitter implements StreamConsumer {
+
+  private final String archive;
+  private final StreamConsumer archiveConsumer;
+  private final StreamConsumer otherConsumer;
+  private StreamConsumer current;
+
+  /**
+   * Creates a new splitter.
+   *
+   * @param archive the name of the archive as printed by jdeps, not null
+   * @param archiveConsumer receives the lines of the archive, not null
+   * @param otherConsumer receives all other lines, not null
+   */
+  ArchiveOutputSplitter(String archive, StreamConsumer archiveConsumer, StreamConsumer otherConsumer) {
+    this.archive = archive;
+    this.archiveConsumer = archiveConsumer;
+    this.otherConsumer = otherConsumer;
+    this.current = otherConsumer;
+  }
+
+  @Override
+  public void consumeLine(String line) throws IOException {
+    Matcher matcher = SUMMARY.matcher(line);
+    if (matcher.matches()) {
+      this.select(matcher.group(1));
+    } else {
+      matcher = JDK8_SOURCE.matcher(line);
+      if (matcher.matches()) {
+        this.select(matcher.group(2));
+      }
+    }
+    this.current.consumeLine(line);
+  }
+
+  private void select(String sourceArchive) {
+    this.current = this.archive.equals(sourceArchive) ? this.archiveConsumer : this.otherConsumer;
+  }
+
+}
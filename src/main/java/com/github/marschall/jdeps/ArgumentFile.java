@@ -0,0 +1,141 @@
+package com.github.marschall.jdeps;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads and writes argument files, which are passed as {@code @<file>}.
+ * <p>
+ * jdeps does not read argument files, it takes {@code @<file>} for the
+ * name of a class or archive. The {@link JDepsExecutor} expands them
+ * before jdeps runs. A forked jdeps of Java 9 or later gets all the
+ * expanded arguments in a temporary argument file for the java launcher
+ * instead, which is written again for every fork.
+ * <p>
+ * Every argument is written quoted on its own line, backslashes and
+ * quotes are escaped. This keeps Windows paths and paths with spaces
+ * intact.
+ */
+final class ArgumentFile {
+
+  private ArgumentFile() {
+    throw new AssertionError("not instantiable");
+  }
+
+  /**
+   * Writes an argument file unless it already has the same content so
+   * that it is only touched when the arguments change.
+   *
+   * @param file the file to write, the parent directories are created
+   * @param arguments the arguments, not null
+   * @return the {@code @<file>} argument that refers to the file
+   * @throws IOException if the file can not be written
+   */
+  static String write(Path file, List<String> arguments) throws IOException {
+    StringBuilder content = new StringBuilder();
+    for (String argument : arguments) {
+      content.append('"');
+      for (int i = 0; i < argument.length(); i++) {
+        char c = argument.charAt(i);
+        if ((c == '"') || (c == '\\')) {
+          content.append('\\');
+        }
+        content.append(c);
+      }
+      content.append("\"\n");
+    }
+    byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+    Path absolute = file.toAbsolutePath();
+    if (!Files.isRegularFile(absolute) || !Arrays.equals(Files.readAllBytes(absolute), bytes)) {
+      Files.createDirectories(absolute.getParent());
+      Files.write(absolute, bytes);
+    }
+    return "@" + absolute;
+  }
+
+  /**
+   * Replaces every {@code @<file>} argument by the arguments in the file.
+   *
+   * @param arguments the arguments, not null
+   * @return the expanded arguments, the given array if there are no
+   *  argument files
+   * @throws IOException if an argument file can not be read
+   */
+  static String[] expand(String[] arguments) throws IOException {
+    List<String> expanded = null;
+    for (int i = 0; i < arguments.length; i++) {
+      String argument = arguments[i];
+      if (argument.startsWith("@") && (argument.length() > 1)) {
+        if (expanded == null) {
+          expanded = new ArrayList<>(arguments.length);
+          expanded.addAll(Arrays.asList(arguments).subList(0, i));
+        }
+        expanded.addAll(read(Paths.get(argument.substring(1))));
+      } else if (expanded != null) {
+        expanded.add(argument);
+      }
+    }
+    if (expanded == null) {
+      return arguments;
+    }
+    return expanded.toArray(new String[expanded.size()]);
+  }
+
+  /**
+   * Reads the arguments of an argument file. Arguments are separated by
+   * white space and may be quoted with single or double quotes, inside
+   * quotes a backslash escapes the next character. Lines starting with
+   * {@code #} are comments.
+   *
+   * @param file the file to read, not null
+   * @return the arguments
+   * @throws IOException if the file can not be read
+   */
+  static List<String> read(Path file) throws IOException {
+    String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    List<String> arguments = new ArrayList<>();
+    StringBuilder current = new StringBuilder();
+    boolean inArgument = false;
+    char quote = 0;
+    for (int i = 0; i < content.length(); i++) {
+      char c = content.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        } else if ((c == '\\') && (i + 1 < content.length())) {
+          i += 1;
+          current.append(content.charAt(i));
+        } else {
+          current.append(c);
+        }
+      } else if (Character.isWhitespace(c)) {
+        if (inArgument) {
+          arguments.add(current.toString());
+          current.setLength(0);
+          inArgument = false;
+        }
+      } else if ((c == '#') && !inArgument) {
+        while ((i + 1 < content.length()) && (content.charAt(i + 1) != '\n')) {
+          i += 1;
+        }
+      } else if ((c == '"') || (c == '\'')) {
+        quote = c;
+        inArgument = true;
+      } else {
+        current.append(c);
+        inArgument = true;
+      }
+    }
+    if (inArgument) {
+      arguments.add(current.toString());
+    }
+    return arguments;
+  }
+
+}
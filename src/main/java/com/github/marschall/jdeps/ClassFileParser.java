@@ -0,0 +1,467 @@
+package com.github.marschall.jdeps;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Extracts the dependencies of a class from its class file the way jdeps
+ * does: classes in the constant pool, descriptors and generic signatures
+ * of the class and its members, descriptors of member references and the
+ * types of runtime visible annotations. Like jdeps the bounds of the type
+ * parameters of the class, method types and the values of annotations
+ * are ignored.
+ * <p>
+ * The class file is read directly from a buffer, no objects are created
+ * for constant pool entries that are not needed.
+ */
+final class ClassFileParser {
+
+  private static final int MAGIC = 0xCAFEBABE;
+
+  private static final int CONSTANT_UTF8 = 1;
+  private static final int CONSTANT_INTEGER = 3;
+  private static final int CONSTANT_FLOAT = 4;
+  private static final int CONSTANT_LONG = 5;
+  private static final int CONSTANT_DOUBLE = 6;
+  private static final int CONSTANT_CLASS = 7;
+  private static final int CONSTANT_STRING = 8;
+  private static final int CONSTANT_FIELDREF = 9;
+  private static final int CONSTANT_METHODREF = 10;
+  private static final int CONSTANT_INTERFACE_METHODREF = 11;
+  private static final int CONSTANT_NAME_AND_TYPE = 12;
+  private static final int CONSTANT_METHOD_HANDLE = 15;
+  private static final int CONSTANT_METHOD_TYPE = 16;
+  private static final int CONSTANT_DYNAMIC = 17;
+  private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+  private static final int CONSTANT_MODULE = 19;
+  private static final int CONSTANT_PACKAGE = 20;
+
+  private final ByteBuffer buffer;
+  private final int[] offsets;
+  private final byte[] tags;
+  private final String[] utf8;
+  private final Set<String> dependencies;
+  private Set<String> exports;
+
+  private ClassFileParser(ByteBuffer buffer, int constantPoolCount) {
+    this.buffer = buffer;
+    this.offsets = new int[constantPoolCount];
+    this.tags = new byte[constantPoolCount];
+    this.utf8 = new String[constantPoolCount];
+    this.dependencies = new HashSet<>();
+  }
+
+  /**
+   * Parses a class file.
+   *
+   * @param buffer the content of the class file, position at the start
+   * @return the name and the dependencies of the class
+   * @throws IllegalArgumentException if the buffer does not contain a
+   *  valid class file
+   */
+  static ClassDependencies parse(ByteBuffer buffer) {
+    try {
+      return newParser(buffer).parse();
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("truncated class file", e);
+    }
+  }
+
+  /**
+   * Parses a {@code module-info.class} file.
+   *
+   * @param buffer the content of the class file, position at the start
+   * @return the packages the module exports to all modules
+   * @throws IllegalArgumentException if the buffer does not contain a
+   *  valid class file
+   */
+  static Set<String> parseExports(ByteBuffer buffer) {
+    try {
+      ClassFileParser parser = newParser(buffer);
+      parser.exports = new HashSet<>();
+      parser.parse();
+      return parser.exports;
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("truncated class file", e);
+    }
+  }
+
+  private static ClassFileParser newParser(ByteBuffer buffer) {
+    if (buffer.getInt() != MAGIC) {
+      throw new IllegalArgumentException("not a class file");
+    }
+    // minor and major version
+    buffer.getInt();
+    return new ClassFileParser(buffer, buffer.getShort() & 0xFFFF);
+  }
+
+  private ClassDependencies parse() {
+    this.readConstantPool();
+
+    // access flags
+    this.buffer.getShort();
+    String className = this.getClassName(this.readIndex());
+    int superClass = this.readIndex();
+    if (superClass != 0) {
+      this.addClass(superClass);
+    }
+    int interfaceCount = this.readIndex();
+    for (int i = 0; i < interfaceCount; i++) {
+      this.addClass(this.readIndex());
+    }
+
+    this.readMembers();
+    this.readMembers();
+    this.readAttributes();
+
+    this.dependencies.remove(className);
+    String[] result = this.dependencies.toArray(new String[this.dependencies.size()]);
+    Arrays.sort(result);
+    return new ClassDependencies(className, result);
+  }
+
+  private void readConstantPool() {
+    // first pass, only remember where the entries are
+    for (int i = 1; i < this.offsets.length; i++) {
+      byte tag = this.buffer.get();
+      this.tags[i] = tag;
+      this.offsets[i] = this.buffer.position();
+      switch (tag) {
+        case CONSTANT_UTF8:
+          this.skip(this.readIndex());
+          break;
+        case CONSTANT_INTEGER:
+        case CONSTANT_FLOAT:
+        case CONSTANT_FIELDREF:
+        case CONSTANT_METHODREF:
+        case CONSTANT_INTERFACE_METHODREF:
+        case CONSTANT_NAME_AND_TYPE:
+        case CONSTANT_DYNAMIC:
+        case CONSTANT_INVOKE_DYNAMIC:
+          this.skip(4);
+          break;
+        case CONSTANT_LONG:
+        case CONSTANT_DOUBLE:
+          this.skip(8);
+          // takes two entries
+          i += 1;
+          break;
+        case CONSTANT_CLASS:
+        case CONSTANT_STRING:
+        case CONSTANT_METHOD_TYPE:
+        case CONSTANT_MODULE:
+        case CONSTANT_PACKAGE:
+          this.skip(2);
+          break;
+        case CONSTANT_METHOD_HANDLE:
+          this.skip(3);
+          break;
+        default:
+          throw new IllegalArgumentException("unknown constant pool tag: " + tag);
+      }
+    }
+    int end = this.buffer.position();
+
+    // second pass, collect dependencies
+    for (int i = 1; i < this.offsets.length; i++) {
+      switch (this.tags[i]) {
+        case CONSTANT_CLASS:
+          this.addClass(i);
+          break;
+        case CONSTANT_NAME_AND_TYPE:
+          this.addDescriptor(this.buffer.getShort(this.offsets[i] + 2) & 0xFFFF);
+          break;
+        default:
+          break;
+      }
+    }
+    this.buffer.position(end);
+  }
+
+  private void readMembers() {
+    int count = this.readIndex();
+    for (int i = 0; i < count; i++) {
+      // access flags and name
+      this.skip(4);
+      this.addDescriptor(this.readIndex());
+      this.readAttributes(true);
+    }
+  }
+
+  private void readAttributes() {
+    this.readAttributes(false);
+  }
+
+  private void readAttributes(boolean member) {
+    int count = this.readIndex();
+    for (int i = 0; i < count; i++) {
+      String name = this.getUtf8(this.readIndex());
+      int length = this.buffer.getInt();
+      int end = this.buffer.position() + length;
+      switch (name) {
+        case "RuntimeVisibleAnnotations":
+          this.readAnnotations();
+          break;
+        case "RuntimeVisibleParameterAnnotations":
+          int parameterCount = this.buffer.get() & 0xFF;
+          for (int j = 0; j < parameterCount; j++) {
+            this.readAnnotations();
+          }
+          break;
+        case "Signature":
+          this.addSignature(this.getUtf8(this.readIndex()), member);
+          break;
+        case "Module":
+          if (this.exports != null) {
+            this.readModule();
+          }
+          break;
+        default:
+          break;
+      }
+      this.buffer.position(end);
+    }
+  }
+
+  private void readModule() {
+    // name, flags and version
+    this.skip(6);
+    // requires: module, flags and version
+    this.skip(this.readIndex() * 6);
+    int exportCount = this.readIndex();
+    for (int i = 0; i < exportCount; i++) {
+      int packageIndex = this.readIndex();
+      // flags
+      this.skip(2);
+      int toCount = this.readIndex();
+      this.skip(toCount * 2);
+      if (toCount == 0) {
+        this.exports.add(this.getClassName(packageIndex));
+      }
+    }
+  }
+
+  private void readAnnotations() {
+    int count = this.readIndex();
+    for (int i = 0; i < count; i++) {
+      this.readAnnotation();
+    }
+  }
+
+  private void readAnnotation() {
+    this.addDescriptor(this.readIndex());
+    this.skipAnnotationValues();
+  }
+
+  private void skipAnnotationValues() {
+    int pairCount = this.readIndex();
+    for (int i = 0; i < pairCount; i++) {
+      // element name
+      this.skip(2);
+      this.skipElementValue();
+    }
+  }
+
+  private void skipElementValue() {
+    char tag = (char) this.buffer.get();
+    switch (tag) {
+      case 'e':
+        // enum type and constant name
+        this.skip(4);
+        break;
+      case '@':
+        // type of the nested annotation
+        this.skip(2);
+        this.skipAnnotationValues();
+        break;
+      case '[':
+        int count = this.readIndex();
+        for (int i = 0; i < count; i++) {
+          this.skipElementValue();
+        }
+        break;
+      default:
+        // constant or class
+        this.skip(2);
+        break;
+    }
+  }
+
+  private void addClass(int classIndex) {
+    int nameIndex = this.buffer.getShort(this.offsets[classIndex]) & 0xFFFF;
+    String name = this.getUtf8(nameIndex);
+    if (name.startsWith("[")) {
+      this.addDescriptor(name);
+    } else {
+      this.dependencies.add(name.replace('/', '.'));
+    }
+  }
+
+  private void addDescriptor(int utf8Index) {
+    this.addDescriptor(this.getUtf8(utf8Index));
+  }
+
+  private void addDescriptor(String descriptor) {
+    int i = descriptor.indexOf('L');
+    while (i != -1) {
+      int end = descriptor.indexOf(';', i);
+      if (end == -1) {
+        return;
+      }
+      this.dependencies.add(descriptor.substring(i + 1, end).replace('/', '.'));
+      i = descriptor.indexOf('L', end);
+    }
+  }
+
+  /**
+   * Adds the classes of a generic class, field or method signature.
+   */
+  private void addSignature(String signature, boolean addBounds) {
+    int i = 0;
+    if (signature.charAt(0) == '<') {
+      // formal type parameters: identifier followed by bounds
+      i = 1;
+      while (signature.charAt(i) != '>') {
+        i = signature.indexOf(':', i);
+        while (signature.charAt(i) == ':') {
+          i += 1;
+          char c = signature.charAt(i);
+          if ((c == 'L') || (c == 'T') || (c == '[')) {
+            i = this.addReferenceTypeSignature(signature, i, addBounds);
+          }
+        }
+      }
+      i += 1;
+    }
+    while (i < signature.length()) {
+      char c = signature.charAt(i);
+      if ((c == 'L') || (c == 'T')) {
+        i = this.addReferenceTypeSignature(signature, i, true);
+      } else {
+        // parenthesis, arrays, primitives and exceptions
+        i += 1;
+      }
+    }
+  }
+
+  private int addReferenceTypeSignature(String signature, int start, boolean add) {
+    int i = start;
+    char c = signature.charAt(i);
+    while (c == '[') {
+      i += 1;
+      c = signature.charAt(i);
+    }
+    if (c == 'T') {
+      // type variable
+      return signature.indexOf(';', i) + 1;
+    }
+    if (c != 'L') {
+      // primitive array
+      return i + 1;
+    }
+    StringBuilder name = new StringBuilder();
+    i += 1;
+    while (true) {
+      c = signature.charAt(i);
+      switch (c) {
+        case ';':
+          if (add) {
+            this.dependencies.add(name.toString().replace('/', '.'));
+          }
+          return i + 1;
+        case '.':
+          // inner class of a parameterized class
+          name.append('$');
+          i += 1;
+          break;
+        case '<':
+          i += 1;
+          while (signature.charAt(i) != '>') {
+            c = signature.charAt(i);
+            if (c == '*') {
+              i += 1;
+            } else {
+              if ((c == '+') || (c == '-')) {
+                i += 1;
+              }
+              i = this.addReferenceTypeSignature(signature, i, add);
+            }
+          }
+          i += 1;
+          break;
+        default:
+          name.append(c);
+          i += 1;
+          break;
+      }
+    }
+  }
+
+  private String getClassName(int index) {
+    // also works for packages
+    return this.getUtf8(this.buffer.getShort(this.offsets[index]) & 0xFFFF).replace('/', '.');
+  }
+
+  private String getUtf8(int index) {
+    String value = this.utf8[index];
+    if (value == null) {
+      if (this.tags[index] != CONSTANT_UTF8) {
+        throw new IllegalArgumentException("constant pool entry " + index + " is not UTF-8");
+      }
+      value = decodeUtf8(this.buffer, this.offsets[index]);
+      this.utf8[index] = value;
+    }
+    return value;
+  }
+
+  /**
+   * Decodes a string in the modified UTF-8 encoding of class files.
+   */
+  private static String decodeUtf8(ByteBuffer buffer, int offset) {
+    int length = buffer.getShort(offset) & 0xFFFF;
+    char[] chars = new char[length];
+    int charCount = 0;
+    int i = offset + 2;
+    int end = i + length;
+    while (i < end) {
+      int b = buffer.get(i++) & 0xFF;
+      if (b < 0x80) {
+        chars[charCount++] = (char) b;
+      } else if ((b & 0xE0) == 0xC0) {
+        chars[charCount++] = (char) (((b & 0x1F) << 6) | (buffer.get(i++) & 0x3F));
+      } else {
+        int b2 = buffer.get(i++) & 0x3F;
+        int b3 = buffer.get(i++) & 0x3F;
+        chars[charCount++] = (char) (((b & 0x0F) << 12) | (b2 << 6) | b3);
+      }
+    }
+    return new String(chars, 0, charCount);
+  }
+
+  private int readIndex() {
+    return this.buffer.getShort() & 0xFFFF;
+  }
+
+  private void skip(int length) {
+    this.buffer.position(this.buffer.position() + length);
+  }
+
+  /**
+   * The name and the dependencies of a class.
+   */
+  static final class ClassDependencies {
+
+    final String className;
+    final String[] dependencies;
+
+    ClassDependencies(String className, String[] dependencies) {
+      this.className = className;
+      this.dependencies = dependencies;
+    }
+
+  }
+
+}
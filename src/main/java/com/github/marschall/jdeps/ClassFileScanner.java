@@ -0,0 +1,893 @@
+package com.github.marschall.jdeps;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * A replacement for jdeps written in Java that reads class files
+ * directly with {@link ClassFileParser} instead of starting the jdeps
+ * tool.
+ * <p>
+ * Takes the same arguments as jdeps and produces the same output for the
+ * options this plugin uses. The class files of all archives are parsed
+ * in parallel. Class files in directories are read into the heap,
+ * entries of JARs are read through {@link ZipFile}. JDK classes are
+ * resolved against the modules of the JDK that runs Maven, see
+ * {@link JdkModules}.
+ * <p>
+ * Not supported are {@code -apionly}, {@code -profile} and
+ * {@code -jdkinternals}.
+ */
+final class ClassFileScanner {
+
+  /**
+   * The prefix of the executable that selects this scanner.
+   */
+  static final String EXECUTABLE_PREFIX = "builtin:";
+
+  /**
+   * Version of the output, is part of the executable so that cached
+   * results are invalidated when it changes.
+   */
+  private static final String VERSION = "2";
+
+  private static final String NOT_FOUND = "not found";
+
+  private static final String UNNAMED_PACKAGE = "<unnamed>";
+
+  private static final int SEQUENTIAL_THRESHOLD = 64;
+
+  private final JarCache jarCache;
+  private final List<Path> inputs;
+  private final List<Path> classPath;
+  private final Set<String> packages;
+  private Pattern regex;
+  private Pattern filter;
+  private Pattern include;
+  private Path dotOutputDirectory;
+  private boolean summary;
+  private boolean classLevel;
+  private boolean filterSamePackage;
+  private boolean filterSameArchive;
+  private boolean filterMode;
+  private boolean recursive;
+  private boolean printVersion;
+
+  private ClassFileScanner(JarCache jarCache) {
+    this.jarCache = jarCache;
+    this.inputs = new ArrayList<>();
+    this.classPath = new ArrayList<>();
+    this.packages = new HashSet<>();
+    this.filterSamePackage = true;
+  }
+
+  /**
+   * Returns the executable that selects this scanner for the JVM that
+   * runs Maven.
+   *
+   * @return the executable
+   */
+  static String getExecutable() {
+    return EXECUTABLE_PREFIX + VERSION + ":" + System.getProperty("java.version");
+  }
+
+  /**
+   * Checks whether an executable selects this scanner.
+   *
+   * @param executable the executable, not null
+   * @return whether the executable selects this scanner
+   */
+  static boolean isBuiltin(String executable) {
+    return executable.startsWith(EXECUTABLE_PREFIX);
+  }
+
+  /**
+   * Analyzes class files like jdeps.
+   *
+   * @param arguments the jdeps arguments, not null
+   * @param out receives standard output line by line, not null
+   * @param err receives error output line by line, not null
+   * @return the exit code, {@code 0} on success
+   * @throws IOException if a consumer fails
+   */
+  static int run(String[] arguments, StreamConsumer out, StreamConsumer err) throws IOException {
+    return run(arguments, out, err, null);
+  }
+
+  /**
+   * Analyzes class files like jdeps, reusing the classes of unchanged
+   * JARs from a cache.
+   *
+   * @param arguments the jdeps arguments, not null
+   * @param out receives standard output line by line, not null
+   * @param err receives error output line by line, not null
+   * @param jarCache the cache for the classes of JARs, {@code null} to
+   *  read all JARs
+   * @return the exit code, {@code 0} on success
+   * @throws IOException if the output can not be consumed
+   */
+  static int run(String[] arguments, StreamConsumer out, StreamConsumer err, JarCache jarCache) throws IOException {
+    ClassFileScanner scanner = new ClassFileScanner(jarCache);
+    String error;
+    try {
+      error = scanner.parseArguments(ArgumentFile.expand(arguments));
+    } catch (IOException e) {
+      error = "can not read argument file: " + e.getMessage();
+    }
+    if (error != null) {
+      err.consumeLine("Error: " + error);
+      return 2;
+    }
+    if (scanner.printVersion) {
+      out.consumeLine("builtin " + VERSION + " (Java " + System.getProperty("java.version") + ")");
+      return 0;
+    }
+    try {
+      scanner.analyze(out);
+      return 0;
+    } catch (IOException | IllegalArgumentException e) {
+      err.consumeLine("Error: " + e.getMessage());
+      return 1;
+    }
+  }
+
+  private String parseArguments(String[] arguments) {
+    try {
+      for (int i = 0; i < arguments.length; i++) {
+        String argument = arguments[i];
+        switch (argument) {
+          case "-p":
+          case "-package":
+          case "--package":
+            this.packages.add(value(arguments, ++i, argument));
+            break;
+          case "-e":
+          case "-regex":
+          case "--regex":
+            this.regex = Pattern.compile(value(arguments, ++i, argument));
+            break;
+          case "-include":
+            this.include = Pattern.compile(value(arguments, ++i, argument));
+            break;
+          case "-f":
+          case "-filter":
+            this.filter = Pattern.compile(value(arguments, ++i, argument));
+            break;
+          case "-cp":
+          case "-classpath":
+          case "--class-path":
+            for (String element : value(arguments, ++i, argument).split(File.pathSeparator)) {
+              if (!element.isEmpty()) {
+                this.classPath.add(Paths.get(element));
+              }
+            }
+            break;
+          case "-dotoutput":
+          case "--dot-output":
+            this.dotOutputDirectory = Paths.get(value(arguments, ++i, argument));
+            break;
+          case "-s":
+          case "-summary":
+            this.summary = true;
+            break;
+          case "-v":
+          case "-verbose":
+            this.classLevel = true;
+            this.filterSamePackage = false;
+            this.filterSameArchive = false;
+            break;
+          case "-verbose:package":
+            this.classLevel = false;
+            break;
+          case "-verbose:class":
+            this.classLevel = true;
+            break;
+          case "-filter:package":
+            this.filterMode = true;
+            this.filterSamePackage = true;
+            this.filterSameArchive = false;
+            break;
+          case "-filter:archive":
+            this.filterMode = true;
+            this.filterSamePackage = false;
+            this.filterSameArchive = true;
+            break;
+          case "-filter:none":
+            this.filterMode = true;
+            this.filterSamePackage = false;
+            this.filterSameArchive = false;
+            break;
+          case "-R":
+          case "-recursive":
+            this.recursive = true;
+            break;
+          case "-version":
+          case "--version":
+            this.printVersion = true;
+            break;
+          default:
+            if (argument.startsWith("-")) {
+              return "option " + argument + " is not supported by the builtin engine";
+            }
+            this.inputs.add(Paths.get(argument));
+            break;
+        }
+      }
+    } catch (PatternSyntaxException e) {
+      return "invalid regular expression: " + e.getMessage();
+    } catch (IllegalArgumentException e) {
+      return e.getMessage();
+    }
+    if (this.recursive && !this.filterMode) {
+      // like jdeps -R does not filter by default
+      this.filterSamePackage = false;
+    }
+    if (this.inputs.isEmpty() && !this.printVersion) {
+      return "no path specified";
+    }
+    return null;
+  }
+
+  private static String value(String[] arguments, int index, String option) {
+    if (index >= arguments.length) {
+      throw new IllegalArgumentException("option " + option + " requires an argument");
+    }
+    return arguments[index];
+  }
+
+  private void analyze(StreamConsumer out) throws IOException {
+    JdkModules jdk = JdkModules.getInstance();
+
+    List<Archive> analyzed = new ArrayList<>();
+    List<Archive> archives = new ArrayList<>();
+    for (Path input : this.inputs) {
+      Archive archive = new Archive(input, input.getFileName().toString(), true, this.jarCache);
+      analyzed.add(archive);
+      archives.add(archive);
+    }
+    List<Archive> classPathArchives = new ArrayList<>();
+    for (Path element : this.classPath) {
+      if (Files.exists(element)) {
+        Archive archive = new Archive(element, element.toString(), false, this.jarCache);
+        classPathArchives.add(archive);
+        archives.add(archive);
+      }
+    }
+    if (!this.packages.isEmpty() || (this.regex != null)) {
+      // like jdeps look for the dependencies in the class path as well
+      analyzed.addAll(classPathArchives);
+    }
+
+    Map<String, Archive> archiveByClass = new HashMap<>();
+    for (Archive archive : archives) {
+      archive.index(archiveByClass);
+    }
+
+    Resolver resolver = new Resolver(archiveByClass, jdk);
+    ForkJoinPool pool = new ForkJoinPool();
+    try {
+      scan(analyzed, pool);
+      if (this.recursive) {
+        this.analyzeReachedClasses(analyzed, resolver, pool);
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    List<ArchiveEdges> results = new ArrayList<>(analyzed.size());
+    for (Archive archive : analyzed) {
+      ArchiveEdges edges = this.computeEdges(archive, resolver);
+      if (!edges.edges.isEmpty()) {
+        results.add(edges);
+      }
+    }
+    if (this.dotOutputDirectory != null) {
+      this.writeDotFiles(results);
+    } else {
+      this.print(results, out);
+    }
+  }
+
+  /**
+   * Like jdeps analyzes only the classes of the class path that are
+   * reached from the input classes through dependencies that are not
+   * filtered, transitively. Dependencies within an archive are followed
+   * even with -filter:archive.
+   */
+  private void analyzeReachedClasses(List<Archive> analyzed, Resolver resolver, ForkJoinPool pool)
+          throws IOException {
+    Deque<ClassFileParser.ClassDependencies> pending = new ArrayDeque<>();
+    for (Archive archive : analyzed) {
+      pending.addAll(archive.classes.values());
+    }
+    while (!pending.isEmpty()) {
+      ClassFileParser.ClassDependencies source = pending.pop();
+      String sourcePackage = getPackageName(source.className);
+      for (String dependency : source.dependencies) {
+        String targetPackage = getPackageName(dependency);
+        Target resolved = resolver.resolve(dependency, targetPackage);
+        Archive archive = resolved.archive;
+        if ((archive == null) || this.isFiltered(null, sourcePackage, dependency, targetPackage, resolved)) {
+          // not found, JDK or filtered
+          continue;
+        }
+        if (!analyzed.contains(archive)) {
+          scan(Collections.singletonList(archive), pool);
+          archive.reached = new HashSet<>();
+          analyzed.add(archive);
+        } else if (archive.reached == null) {
+          // analyzed completely
+          continue;
+        }
+        if (archive.reached.add(dependency)) {
+          ClassFileParser.ClassDependencies reachedClass = archive.classes.get(dependency);
+          if (reachedClass != null) {
+            pending.push(reachedClass);
+          }
+        }
+      }
+    }
+  }
+
+  private static void scan(List<Archive> archives, ForkJoinPool pool) throws IOException {
+    List<ClassFile> classFiles = new ArrayList<>();
+    for (Archive archive : archives) {
+      if ((archive.cached != null) && (archive.cached.classes != null)) {
+        archive.classes.putAll(archive.cached.classes);
+      } else {
+        archive.listClassFiles(classFiles);
+      }
+    }
+    try {
+      pool.invoke(new ScanTask(classFiles, 0, classFiles.size()));
+    } catch (ScanException e) {
+      throw e.getCause();
+    } finally {
+      for (Archive archive : archives) {
+        archive.closeZipFile();
+      }
+    }
+    for (ClassFile classFile : classFiles) {
+      if (classFile.dependencies != null) {
+        classFile.archive.classes.put(classFile.dependencies.className, classFile.dependencies);
+      }
+    }
+    for (Archive archive : archives) {
+      archive.addToCache();
+    }
+  }
+
+  private ArchiveEdges computeEdges(Archive archive, Resolver resolver) {
+    ArchiveEdges result = new ArchiveEdges(archive);
+    // jdeps quirk: a class path archive analyzed because of -p or -e
+    // depends on itself
+    boolean summarizeSelf = !this.recursive && !archive.input;
+    for (ClassFileParser.ClassDependencies classDependencies : archive.classes.values()) {
+      String source = classDependencies.className;
+      if (((this.include != null) && !this.include.matcher(source).matches())
+              || ((archive.reached != null) && !archive.reached.contains(source))) {
+        continue;
+      }
+      String sourcePackage = getPackageName(source);
+      for (String target : classDependencies.dependencies) {
+        String targetPackage = getPackageName(target);
+        Target resolved = resolver.resolve(target, targetPackage);
+        if (this.isFiltered(archive, sourcePackage, target, targetPackage, resolved)) {
+          continue;
+        }
+        if (summarizeSelf || (resolved.archive != archive)) {
+          result.summary.add(resolved);
+        }
+        if (this.classLevel) {
+          result.edges.add(new Edge(source, target, resolved));
+        } else {
+          result.edges.add(new Edge(sourcePackage, targetPackage, resolved));
+        }
+      }
+    }
+    return result;
+  }
+
+  private boolean isFiltered(Archive archive, String sourcePackage, String target, String targetPackage, Target resolved) {
+    return (this.filterSamePackage && sourcePackage.equals(targetPackage))
+            || (this.filterSameArchive && (resolved.archive == archive))
+            || ((this.filter != null) && this.filter.matcher(target).matches())
+            || (!this.packages.isEmpty() && !this.packages.contains(targetPackage))
+            || ((this.regex != null) && !this.regex.matcher(target).matches());
+  }
+
+  private void print(List<ArchiveEdges> results, StreamConsumer out) throws IOException {
+    for (ArchiveEdges result : results) {
+      for (Target target : result.summary) {
+        out.consumeLine(result.archive.name + " -> " + target.summaryLabel);
+      }
+      if (!this.summary) {
+        for (Edge edge : result.edges) {
+          out.consumeLine(String.format("   %-50s -> %-50s %s", edge.source, edge.target, edge.label.label));
+        }
+      }
+    }
+  }
+
+  private void writeDotFiles(List<ArchiveEdges> results) throws IOException {
+    Files.createDirectories(this.dotOutputDirectory);
+    try (Writer writer = Files.newBufferedWriter(this.dotOutputDirectory.resolve("summary.dot"), StandardCharsets.UTF_8)) {
+      writer.write("digraph \"summary\" {\n");
+      for (ArchiveEdges result : results) {
+        if (this.classLevel && !this.summary) {
+          // like jdeps summarize class level dependencies by package
+          Set<Edge> packageEdges = new TreeSet<>();
+          for (Edge edge : result.edges) {
+            packageEdges.add(new Edge(getPackageName(edge.source), getPackageName(edge.target), edge.label));
+          }
+          for (Edge edge : packageEdges) {
+            // modules without "JDK internal API"
+            String label = edge.label.archive != null ? edge.label.label : edge.label.summaryLabel;
+            writer.write(String.format("  %-50s -> \"%s (%s)\";%n", quote(edge.source), edge.target, label));
+          }
+        } else {
+          for (Target target : result.summary) {
+            writer.write(String.format("  %-50s -> \"%s\";%n", quote(result.archive.name), target.dotLabel));
+          }
+        }
+      }
+      writer.write("}\n");
+    }
+    if (this.summary) {
+      return;
+    }
+    for (ArchiveEdges result : results) {
+      Path dotFile = this.dotOutputDirectory.resolve(result.archive.name + ".dot");
+      try (Writer writer = Files.newBufferedWriter(dotFile, StandardCharsets.UTF_8)) {
+        writer.write("digraph \"" + result.archive.name + "\" {\n");
+        writer.write("    // Path: " + result.archive.path + "\n");
+        for (Edge edge : result.edges) {
+          writer.write(String.format("   %-50s -> \"%s (%s)\";%n", quote(edge.source), edge.target, edge.label.label));
+        }
+        writer.write("}\n");
+      }
+    }
+  }
+
+  private static String quote(String s) {
+    return '"' + s + '"';
+  }
+
+  static String getPackageName(String className) {
+    int index = className.lastIndexOf('.');
+    return index == -1 ? UNNAMED_PACKAGE : className.substring(0, index);
+  }
+
+  /**
+   * Resolves classes to archives, JDK modules or "not found".
+   */
+  static final class Resolver {
+
+    private final Map<String, Archive> archiveByClass;
+    private final JdkModules jdk;
+    private final Map<Object, Target> targets;
+    private final Map<String, Target> targetByClass;
+    private final Target notFound;
+
+    Resolver(Map<String, Archive> archiveByClass, JdkModules jdk) {
+      this.archiveByClass = archiveByClass;
+      this.jdk = jdk;
+      this.targets = new HashMap<>();
+      this.targetByClass = new HashMap<>();
+      this.notFound = new Target(null, NOT_FOUND, NOT_FOUND, NOT_FOUND);
+    }
+
+    Target resolve(String className, String packageName) {
+      Target target = this.targetByClass.get(className);
+      if (target == null) {
+        target = this.lookUp(className, packageName);
+        this.targetByClass.put(className, target);
+      }
+      return target;
+    }
+
+    private Target lookUp(String className, String packageName) {
+      Archive archive = this.archiveByClass.get(className);
+      if (archive != null) {
+        Target target = this.targets.get(archive);
+        if (target == null) {
+          target = new Target(archive, archive.name, archive.label, archive.name);
+          this.targets.put(archive, target);
+        }
+        return target;
+      }
+      String module = this.jdk.getModule(className, packageName);
+      if (module == null) {
+        return this.notFound;
+      }
+      boolean internal = this.jdk.isInternal(packageName);
+      String key = internal ? "internal:" + module : module;
+      Target target = this.targets.get(key);
+      if (target == null) {
+        String label = internal ? "JDK internal API (" + module + ")" : module;
+        target = new Target(null, label, module, module + " (" + module + ")");
+        this.targets.put(key, target);
+      }
+      return target;
+    }
+
+  }
+
+  /**
+   * Where a dependency points to.
+   */
+  static final class Target implements Comparable<Target> {
+
+    final Archive archive;
+    final String label;
+    final String summaryLabel;
+    final String dotLabel;
+
+    Target(Archive archive, String label, String summaryLabel, String dotLabel) {
+      this.archive = archive;
+      this.label = label;
+      this.summaryLabel = summaryLabel;
+      this.dotLabel = dotLabel;
+    }
+
+    // jdeps sorts by name but prints archives with their path in the summary
+    private String getName() {
+      return this.archive != null ? this.archive.name : this.summaryLabel;
+    }
+
+    @Override
+    public int compareTo(Target o) {
+      int result = this.getName().compareTo(o.getName());
+      if (result == 0) {
+        result = this.summaryLabel.compareTo(o.summaryLabel);
+      }
+      return result;
+    }
+
+  }
+
+  /**
+   * A dependency between two classes or packages.
+   */
+  static final class Edge implements Comparable<Edge> {
+
+    final String source;
+    final String target;
+    final Target label;
+
+    Edge(String source, String target, Target label) {
+      this.source = source;
+      this.target = target;
+      this.label = label;
+    }
+
+    @Override
+    public int compareTo(Edge o) {
+      int result = this.source.compareTo(o.source);
+      if (result == 0) {
+        result = this.target.compareTo(o.target);
+      }
+      if (result == 0) {
+        result = this.label.label.compareTo(o.label.label);
+      }
+      return result;
+    }
+
+  }
+
+  /**
+   * The dependencies of one archive after filtering.
+   */
+  static final class ArchiveEdges {
+
+    final Archive archive;
+    final Set<Target> summary;
+    final Set<Edge> edges;
+
+    ArchiveEdges(Archive archive) {
+      this.archive = archive;
+      this.summary = new TreeSet<>();
+      this.edges = new TreeSet<>();
+    }
+
+  }
+
+  /**
+   * A directory or JAR with class files.
+   */
+  static final class Archive {
+
+    final Path path;
+    final String name;
+    final String label;
+    final boolean input;
+    final Map<String, ClassFileParser.ClassDependencies> classes;
+    /**
+     * The classes reached from the input with -R, {@code null} if all
+     * classes are analyzed.
+     */
+    Set<String> reached;
+    /**
+     * The classes of this JAR from the cache, {@code null} if not cached.
+     */
+    JarCache.Entry cached;
+    private final JarCache jarCache;
+    private List<String> classNames;
+    private ZipFile zipFile;
+
+    Archive(Path path, String label, boolean input, JarCache jarCache) {
+      this.path = path;
+      this.name = path.getFileName().toString();
+      this.label = label;
+      this.input = input;
+      this.classes = new HashMap<>();
+      this.jarCache = jarCache;
+    }
+
+    boolean isDirectory() {
+      return Files.isDirectory(this.path);
+    }
+
+    /**
+     * Adds the names of the classes in this archive to an index, classes
+     * already in the index are not overwritten.
+     */
+    void index(final Map<String, Archive> archiveByClass) throws IOException {
+      if (this.isDirectory()) {
+        Files.walkFileTree(this.path, new SimpleFileVisitor<Path>() {
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            String entryName = Archive.this.path.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+            Archive.this.addToIndex(entryName, archiveByClass);
+            return FileVisitResult.CONTINUE;
+          }
+
+        });
+      } else {
+        if (this.jarCache != null) {
+          this.cached = this.jarCache.get(this.path);
+          if (this.cached != null) {
+            for (String className : this.cached.classNames) {
+              this.addClassToIndex(className, archiveByClass);
+            }
+            return;
+          }
+          this.classNames = new ArrayList<>();
+        }
+        // read before the content so that a concurrent change invalidates the entry
+        BasicFileAttributes attributes = Files.readAttributes(this.path, BasicFileAttributes.class);
+        try (ZipFile zip = new ZipFile(this.path.toFile())) {
+          Enumeration<? extends ZipEntry> entries = zip.entries();
+          while (entries.hasMoreElements()) {
+            this.addToIndex(entries.nextElement().getName(), archiveByClass);
+          }
+        }
+        if (this.classNames != null) {
+          // JARs on the class path are often only indexed and never parsed
+          this.cached = this.jarCache.put(this.path, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                  Collections.unmodifiableList(this.classNames), null);
+          this.classNames = null;
+        }
+      }
+    }
+
+    private void addToIndex(String entryName, Map<String, Archive> archiveByClass) {
+      if (isClassFile(entryName)) {
+        String className = entryName.substring(0, entryName.length() - ".class".length()).replace('/', '.');
+        if (this.classNames != null) {
+          this.classNames.add(className);
+        }
+        this.addClassToIndex(className, archiveByClass);
+      }
+    }
+
+    private void addClassToIndex(String className, Map<String, Archive> archiveByClass) {
+      if (!archiveByClass.containsKey(className)) {
+        archiveByClass.put(className, this);
+      }
+    }
+
+    /**
+     * Adds the classes of this archive to the cache once they are
+     * parsed, if it is a JAR whose classes were not cached.
+     */
+    void addToCache() {
+      if ((this.cached != null) && (this.cached.classes == null)) {
+        this.cached = this.jarCache.put(this.path, this.cached.size, this.cached.lastModified,
+                this.cached.classNames, Collections.unmodifiableMap(this.classes));
+      }
+    }
+
+    void listClassFiles(final List<ClassFile> classFiles) throws IOException {
+      if (this.isDirectory()) {
+        Files.walkFileTree(this.path, new SimpleFileVisitor<Path>() {
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (isClassFile(Archive.this.path.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/"))) {
+              classFiles.add(new ClassFile(Archive.this, file, null));
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+        });
+      } else {
+        this.zipFile = new ZipFile(this.path.toFile());
+        Enumeration<? extends ZipEntry> entries = this.zipFile.entries();
+        while (entries.hasMoreElements()) {
+          ZipEntry entry = entries.nextElement();
+          if (!entry.isDirectory() && isClassFile(entry.getName())) {
+            classFiles.add(new ClassFile(this, null, entry));
+          }
+        }
+      }
+    }
+
+    ZipFile getZipFile() {
+      return this.zipFile;
+    }
+
+    void closeZipFile() throws IOException {
+      if (this.zipFile != null) {
+        this.zipFile.close();
+        this.zipFile = null;
+      }
+    }
+
+    private static boolean isClassFile(String entryName) {
+      return entryName.endsWith(".class")
+              && !entryName.endsWith("module-info.class")
+              && !entryName.startsWith("META-INF/");
+    }
+
+    @Override
+    public String toString() {
+      return this.path.toString();
+    }
+
+  }
+
+  /**
+   * A class file in a directory or an entry in a JAR.
+   */
+  static final class ClassFile {
+
+    final Archive archive;
+    final Path file;
+    final ZipEntry entry;
+    ClassFileParser.ClassDependencies dependencies;
+
+    ClassFile(Archive archive, Path file, ZipEntry entry) {
+      this.archive = archive;
+      this.file = file;
+      this.entry = entry;
+    }
+
+    void parse() throws IOException {
+      ByteBuffer buffer;
+      if (this.file != null) {
+        // class files are small, a mapping per file costs more than it saves and counts against vm.max_map_count
+        buffer = ByteBuffer.wrap(Files.readAllBytes(this.file));
+      } else {
+        try (InputStream stream = this.archive.getZipFile().getInputStream(this.entry)) {
+          buffer = ByteBuffer.wrap(readFully(stream, this.entry.getSize()));
+        }
+      }
+      try {
+        this.dependencies = ClassFileParser.parse(buffer);
+      } catch (IllegalArgumentException e) {
+        throw new IOException("could not parse " + this, e);
+      }
+    }
+
+    private static byte[] readFully(InputStream stream, long size) throws IOException {
+      byte[] buffer = new byte[size >= 0L ? (int) size : 8192];
+      int length = 0;
+      int read = stream.read(buffer, 0, buffer.length);
+      while (read != -1) {
+        length += read;
+        if (length == buffer.length) {
+          int next = stream.read();
+          if (next == -1) {
+            break;
+          }
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+          buffer[length++] = (byte) next;
+        }
+        read = stream.read(buffer, length, buffer.length - length);
+      }
+      return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+    }
+
+    @Override
+    public String toString() {
+      return this.file != null ? this.file.toString() : this.archive + "!/" + this.entry.getName();
+    }
+
+  }
+
+  /**
+   * Parses a range of class files, splits the range if it is large.
+   */
+  static final class ScanTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<ClassFile> classFiles;
+    private final int start;
+    private final int end;
+
+    ScanTask(List<ClassFile> classFiles, int start, int end) {
+      this.classFiles = classFiles;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if ((this.end - this.start) <= SEQUENTIAL_THRESHOLD) {
+        for (int i = this.start; i < this.end; i++) {
+          try {
+            this.classFiles.get(i).parse();
+          } catch (IOException e) {
+            throw new ScanException(e);
+          }
+        }
+      } else {
+        int middle = (this.start + this.end) >>> 1;
+        invokeAll(new ScanTask(this.classFiles, this.start, middle), new ScanTask(this.classFiles, middle, this.end));
+      }
+    }
+
+  }
+
+  /**
+   * Carries an {@link IOException} out of a {@link ScanTask}.
+   */
+  static final class ScanException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    ScanException(IOException cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized IOException getCause() {
+      return (IOException) super.getCause();
+    }
+
+  }
+
+}
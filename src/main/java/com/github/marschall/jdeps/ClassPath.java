@@ -0,0 +1,133 @@
+package com.github.marschall.jdeps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.DefaultDependencyResolutionRequest;
+import org.apache.maven.project.DependencyResolutionException;
+import org.apache.maven.project.DependencyResolutionResult;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectDependenciesResolver;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+
+/**
+ * Assembles the classpath jdeps analyzes a project with.
+ * <p>
+ * All goals go through here so that the same options give the same
+ * classpath, otherwise the {@link AnalysisFingerprint} of the jdeps goal
+ * never matches the one of the report. The direct dependencies are in
+ * declaration order, the transitive ones sorted by file so that an
+ * argument file only changes with the dependencies.
+ */
+final class ClassPath {
+
+  private ClassPath() {
+    throw new AssertionError("not instantiable");
+  }
+
+  /**
+   * Returns the dependencies Maven resolved for the project.
+   *
+   * @param project the project, not null
+   * @param transitive whether to include the dependencies of the
+   *  dependencies
+   * @param scope the scope of the dependencies, for example
+   *  {@link Artifact#SCOPE_COMPILE}
+   * @return the dependencies by their file
+   */
+  static Map<File, Artifact> getArtifacts(MavenProject project, boolean transitive, String scope) {
+    Collection<Artifact> artifacts = transitive ? project.getArtifacts() : project.getDependencyArtifacts();
+    return filter(artifacts, transitive, new ScopeArtifactFilter(scope));
+  }
+
+  /**
+   * Resolves all dependencies of the project including the test
+   * dependencies. Used instead of requiring test resolution for the goal
+   * so that test dependencies are only resolved when test classes are
+   * analyzed.
+   *
+   * @param resolver the resolver, not null
+   * @param session the session, not null
+   * @param project the project, not null
+   * @param transitive whether to include the dependencies of the
+   *  dependencies
+   * @return the dependencies by their file
+   * @throws DependencyResolutionException if a dependency can not be
+   *  resolved
+   */
+  static Map<File, Artifact> resolveTestArtifacts(ProjectDependenciesResolver resolver, MavenSession session,
+          MavenProject project, boolean transitive) throws DependencyResolutionException {
+    DependencyResolutionResult result = resolver.resolve(
+            new DefaultDependencyResolutionRequest(project, session.getRepositorySession()));
+    Set<Artifact> artifacts = new LinkedHashSet<>();
+    List<String> trail = Collections.singletonList(project.getArtifact().getId());
+    RepositoryUtils.toArtifacts(artifacts, result.getDependencyGraph().getChildren(), trail, null);
+    if (!transitive) {
+      List<Artifact> direct = new ArrayList<>();
+      for (Artifact artifact : artifacts) {
+        // the trail starts with the project
+        if (artifact.getDependencyTrail().size() == 2) {
+          direct.add(artifact);
+        }
+      }
+      return filter(direct, false, new ScopeArtifactFilter(Artifact.SCOPE_TEST));
+    }
+    return filter(artifacts, true, new ScopeArtifactFilter(Artifact.SCOPE_TEST));
+  }
+
+  private static Map<File, Artifact> filter(Collection<Artifact> artifacts, boolean sorted, ArtifactFilter filter) {
+    Map<File, Artifact> files = sorted ? new TreeMap<File, Artifact>() : new LinkedHashMap<File, Artifact>(artifacts.size());
+    for (Artifact artifact : artifacts) {
+      File file = artifact.getFile();
+      if ((file != null) && filter.include(artifact)) {
+        files.put(file.getAbsoluteFile(), artifact);
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Adds the {@code -classpath} argument if the classpath is not empty,
+   * jdeps doesn't like an empty classpath.
+   *
+   * @param cmd the command line, not null
+   * @param files the classpath entries, not null
+   * @param argumentFile the argument file the classpath is written to,
+   *  {@code null} to pass it on the command line
+   * @throws IOException if the argument file can not be written
+   */
+  static void addArg(Commandline cmd, Collection<File> files, Path argumentFile) throws IOException {
+    if (files.isEmpty()) {
+      return;
+    }
+    List<String> fileNames = new ArrayList<>(files.size());
+    for (File file : files) {
+      fileNames.add(file.getAbsolutePath());
+    }
+    String classPath = StringUtils.join(fileNames.iterator(), File.pathSeparator);
+    if (argumentFile != null) {
+      cmd.createArg().setValue(ArgumentFile.write(argumentFile, Arrays.asList("-classpath", classPath)));
+    } else {
+      cmd.createArg().setValue("-classpath");
+      cmd.createArg().setValue(classPath);
+    }
+  }
+
+}
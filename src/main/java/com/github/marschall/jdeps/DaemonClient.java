@@ -0,0 +1,241 @@
+package com.github.marschall.jdeps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang3.SystemUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Runs analyses in an {@link AnalysisDaemon}, starting the daemon if
+ * none is running.
+ * <p>
+ * There is one daemon per JDK and plugin version, its socket is in the
+ * daemon directory and named after a hash of both. The daemon needs
+ * Unix domain sockets, so both Maven and the JDK of the daemon have to
+ * be Java 16 or later.
+ */
+final class DaemonClient {
+
+  private static final int MINIMUM_JAVA_VERSION = 16;
+
+  private static final long START_TIMEOUT_MILLIS = 10000L;
+
+  private static final long START_POLL_MILLIS = 50L;
+
+  private final Path directory;
+  private final long idleTimeout;
+  private final long cacheSize;
+  private final Log log;
+
+  /**
+   * Creates a new client.
+   *
+   * @param directory the directory of the sockets and log files
+   * @param idleTimeout the time in milliseconds after which an unused
+   *  daemon exits
+   * @param cacheSize the maximum memory in bytes a daemon uses to cache
+   *  JARs
+   * @param log the log, not null
+   */
+  DaemonClient(File directory, long idleTimeout, long cacheSize, Log log) {
+    this.directory = directory.toPath();
+    this.idleTimeout = idleTimeout;
+    this.cacheSize = cacheSize;
+    this.log = log;
+  }
+
+  /**
+   * Runs an analysis in the daemon of a JDK.
+   *
+   * @param jdkHome the JDK of the daemon, not null
+   * @param builtin whether to run the builtin engine instead of jdeps
+   * @param arguments the jdeps arguments, not null
+   * @param out receives standard output line by line, not null
+   * @param err receives error output line by line, not null
+   * @return the exit code
+   * @throws IOException if the daemon is not available and nothing was
+   *  passed to the consumers, the analysis can be run without the daemon
+   * @throws CommandLineException if the analysis failed
+   */
+  int run(Path jdkHome, boolean builtin, String[] arguments, StreamConsumer out, StreamConsumer err)
+          throws IOException, CommandLineException {
+    if (!UnixSockets.isSupported()) {
+      throw new IOException("Maven has to run on Java " + MINIMUM_JAVA_VERSION + " or later");
+    }
+    try (SocketChannel channel = this.connect(jdkHome)) {
+      DataOutputStream request = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+      request.writeInt(AnalysisDaemon.MAGIC);
+      request.writeInt(AnalysisDaemon.PROTOCOL_VERSION);
+      request.writeByte(builtin ? AnalysisDaemon.ENGINE_BUILTIN : AnalysisDaemon.ENGINE_JDEPS);
+      request.writeInt(arguments.length);
+      for (String argument : arguments) {
+        AnalysisDaemon.writeString(request, argument);
+      }
+      request.flush();
+
+      DataInputStream response = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+      boolean consumed = false;
+      try {
+        while (true) {
+          byte kind = response.readByte();
+          switch (kind) {
+            case AnalysisDaemon.OUT:
+              consume(out, AnalysisDaemon.readString(response));
+              consumed = true;
+              break;
+            case AnalysisDaemon.ERR:
+              consume(err, AnalysisDaemon.readString(response));
+              consumed = true;
+              break;
+            case AnalysisDaemon.EXIT:
+              return response.readInt();
+            case AnalysisDaemon.FAILED:
+              throw new CommandLineException("jdeps daemon failed: " + AnalysisDaemon.readString(response));
+            case AnalysisDaemon.UNAVAILABLE:
+              throw new IOException(AnalysisDaemon.readString(response));
+            default:
+              throw new IOException("unknown response " + kind);
+          }
+        }
+      } catch (IOException e) {
+        if (consumed) {
+          // falling back would repeat the output
+          throw new CommandLineException("Lost connection to jdeps daemon", e);
+        }
+        throw e;
+      }
+    }
+  }
+
+  private static void consume(StreamConsumer consumer, String line) throws CommandLineException {
+    try {
+      consumer.consumeLine(line);
+    } catch (IOException e) {
+      throw new CommandLineException("Unable to consume jdeps output", e);
+    }
+  }
+
+  private SocketChannel connect(Path jdkHome) throws IOException {
+    int version = InProcessJDeps.getMajorVersion(jdkHome);
+    if (version < MINIMUM_JAVA_VERSION) {
+      throw new IOException("the JDK " + jdkHome + " has to be Java " + MINIMUM_JAVA_VERSION + " or later");
+    }
+    Path socket = this.getSocket(jdkHome);
+    try {
+      return UnixSockets.connect(socket);
+    } catch (IOException e) {
+      this.log.debug("no jdeps daemon listening on " + socket + ": " + e.getMessage());
+    }
+
+    Process process = this.start(getJava(jdkHome), getClassPath(), socket);
+    long deadline = System.currentTimeMillis() + START_TIMEOUT_MILLIS;
+    while (true) {
+      try {
+        return UnixSockets.connect(socket);
+      } catch (IOException e) {
+        if ((System.currentTimeMillis() > deadline) || hasExited(process)) {
+          throw new IOException("jdeps daemon did not start, see " + this.getLogFile(socket), e);
+        }
+      }
+      try {
+        Thread.sleep(START_POLL_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("interrupted while starting jdeps daemon", e);
+      }
+    }
+  }
+
+  /**
+   * Returns the socket of the daemon of a JDK.
+   *
+   * @param jdkHome the JDK of the daemon, not null
+   * @return the socket, named after a hash of the JDK and the plugin
+   * @throws IOException if the plugin can not be located
+   */
+  Path getSocket(Path jdkHome) throws IOException {
+    String key = AnalysisFingerprint.compute(getJava(jdkHome).toString(),
+            new String[] {"daemon", Integer.toString(AnalysisDaemon.PROTOCOL_VERSION)},
+            Collections.singletonList(new File(getClassPath().get(0)))).substring(0, 16);
+    return this.directory.resolve(key + ".sock");
+  }
+
+  private static Path getJava(Path jdkHome) {
+    return jdkHome.resolve("bin").resolve(SystemUtils.IS_OS_WINDOWS ? "java.exe" : "java");
+  }
+
+  private Process start(Path java, List<String> classPath, Path socket) throws IOException {
+    Files.createDirectories(this.directory);
+    this.log.info("Starting jdeps daemon " + socket);
+    ProcessBuilder builder = new ProcessBuilder(java.toString(),
+            "-cp", StringUtils.join(classPath.iterator(), File.pathSeparator),
+            AnalysisDaemon.class.getName(),
+            socket.toString(),
+            Long.toString(this.idleTimeout),
+            Long.toString(this.cacheSize));
+    builder.redirectErrorStream(true);
+    builder.redirectOutput(Redirect.appendTo(this.getLogFile(socket).toFile()));
+    Process process = builder.start();
+    // the daemon does not read standard input
+    process.getOutputStream().close();
+    return process;
+  }
+
+  private Path getLogFile(Path socket) {
+    String name = socket.getFileName().toString();
+    return socket.resolveSibling(name.substring(0, name.length() - ".sock".length()) + ".log");
+  }
+
+  private static boolean hasExited(Process process) {
+    try {
+      process.exitValue();
+      return true;
+    } catch (IllegalThreadStateException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns the class path of the daemon, the plugin first.
+   */
+  private static List<String> getClassPath() throws IOException {
+    Set<String> classPath = new LinkedHashSet<>();
+    classPath.add(getLocation(AnalysisDaemon.class));
+    classPath.add(getLocation(StreamConsumer.class));
+    return new ArrayList<>(classPath);
+  }
+
+  private static String getLocation(Class<?> type) throws IOException {
+    CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+    if (codeSource == null) {
+      throw new IOException("location of " + type.getName() + " unknown");
+    }
+    try {
+      return Paths.get(codeSource.getLocation().toURI()).toString();
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      throw new IOException("location of " + type.getName() + " unknown", e);
+    }
+  }
+
+}
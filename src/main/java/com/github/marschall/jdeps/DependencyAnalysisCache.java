@@ -0,0 +1,313 @@
+package com.github.marschall.jdeps;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Persistent cache for the jdeps output of dependency artifacts, shared
+ * by all modules and builds that use the same cache directory.
+ * <p>
+ * Entries are keyed by the content of the artifact, the JDK of the
+ * jdeps executable, the options and the file names of the classpath
+ * the artifact was analyzed with. Entries are written to a temporary
+ * file and atomically renamed so concurrent Maven processes never see
+ * partial entries. Reading an entry updates its modification time,
+ * which is used for least recently used eviction once the cache
+ * exceeds its maximum size.
+ */
+final class DependencyAnalysisCache {
+
+  private static final String ENTRY_SUFFIX = ".txt";
+
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  /**
+   * Temporary files older than this are left over from crashed writers.
+   */
+  private static final long STALE_TEMP_MILLIS = 60L * 60L * 1000L;
+
+  private final Path directory;
+  private final long maxSize;
+  private final Log log;
+
+  DependencyAnalysisCache(File directory, long maxSize, Log log) {
+    this.directory = directory.toPath();
+    this.maxSize = maxSize;
+    this.log = log;
+  }
+
+  /**
+   * Removes the {@code -recursive} option.
+   *
+   * @param arguments the jdeps arguments, not null
+   * @return the arguments without {@code -recursive}
+   */
+  static String[] withoutRecursive(String[] arguments) {
+    List<String> result = new ArrayList<>(arguments.length);
+    for (String argument : arguments) {
+      if (!"-recursive".equals(argument)) {
+        result.add(argument);
+      }
+    }
+    return result.toArray(new String[result.size()]);
+  }
+
+  /**
+   * Derives the arguments to analyze a single dependency artifact from
+   * the arguments used to analyze the project: DOT output and the
+   * project input are removed, the artifact becomes the input.
+   *
+   * @param arguments the project arguments without {@code -recursive},
+   *  the last argument is the project input
+   * @param artifact the artifact to analyze
+   * @return the arguments to analyze the artifact
+   */
+  static String[] getArtifactArguments(String[] arguments, File artifact) {
+    List<String> result = new ArrayList<>(arguments.length);
+    for (int i = 0; i < arguments.length - 1; i++) {
+      String argument = arguments[i];
+      if ("-dotoutput".equals(argument)) {
+        i += 1;
+      } else {
+        result.add(argument);
+      }
+    }
+    result.add(artifact.getAbsolutePath());
+    return result.toArray(new String[result.size()]);
+  }
+
+  /**
+   * Computes the cache key of a dependency artifact.
+   *
+   * @param jdepsExecutable the jdeps executable, not null
+   * @param artifactArguments the arguments to analyze the artifact
+   * @param artifact the artifact file
+   * @return the key
+   * @throws IOException if the artifact can not be read
+   */
+  static String getKey(String jdepsExecutable, String[] artifactArguments, File artifact) throws IOException {
+    // the location of an argument file does not matter but its content does
+    String[] arguments = ArgumentFile.expand(artifactArguments);
+    String pathSeparator = System.getProperty("path.separator");
+    String[] keyArguments = new String[arguments.length - 1];
+    for (int i = 0; i < keyArguments.length; i++) {
+      String argument = arguments[i];
+      if ((i > 0) && "-classpath".equals(arguments[i - 1])) {
+        // the location of the local repository does not matter
+        // but which artifacts dependencies can be resolved to does
+        List<String> fileNames = new ArrayList<>();
+        for (String element : StringUtils.split(argument, pathSeparator)) {
+          fileNames.add(new File(element).getName());
+        }
+        Collections.sort(fileNames);
+        argument = StringUtils.join(fileNames.iterator(), pathSeparator);
+      }
+      keyArguments[i] = argument;
+    }
+    keyArguments[keyArguments.length - 1] = AnalysisFingerprint.hash(artifact.toPath());
+    return AnalysisFingerprint.compute(jdepsExecutable, keyArguments, Collections.<File>emptyList());
+  }
+
+  private Path getEntry(String key) {
+    // avoid huge directories
+    return this.directory.resolve(key.substring(0, 2)).resolve(key + ENTRY_SUFFIX);
+  }
+
+  /**
+   * Looks up the output of a dependency artifact and passes it line by
+   * line to a consumer.
+   *
+   * @param key the key, see {@link #getKey(String, String[], File)}
+   * @param consumer receives the cached output
+   * @return {@code true} if the artifact was cached, {@code false} if
+   *  the consumer was not called
+   * @throws IOException if the entry can not be read
+   */
+  boolean replay(String key, StreamConsumer consumer) throws IOException {
+    Path entry = this.getEntry(key);
+    BufferedReader reader;
+    try {
+      reader = Files.newBufferedReader(entry, StandardCharsets.UTF_8);
+    } catch (NoSuchFileException e) {
+      // not cached or evicted concurrently
+      return false;
+    }
+    try {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (NoSuchFileException e) {
+      // evicted concurrently, the open reader can still be read
+    }
+    try {
+      String line = reader.readLine();
+      while (line != null) {
+        consumer.consumeLine(line);
+        line = reader.readLine();
+      }
+    } finally {
+      reader.close();
+    }
+    return true;
+  }
+
+  /**
+   * Adds the output of a dependency artifact. Triggers eviction if the
+   * cache grows beyond its maximum size.
+   *
+   * @param key the key, see {@link #getKey(String, String[], File)}
+   * @param output the jdeps output
+   * @throws IOException if the entry can not be written
+   */
+  void put(String key, OutputBuffer output) throws IOException {
+    Path entry = this.getEntry(key);
+    Path parent = entry.getParent();
+    Files.createDirectories(parent);
+    Path temp = Files.createTempFile(parent, key, TEMP_SUFFIX);
+    try {
+      output.copyTo(temp);
+      Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    this.evictIfNecessary();
+  }
+
+  private void evictIfNecessary() throws IOException {
+    Files.createDirectories(this.directory);
+    Path lockFile = this.directory.resolve(".lock");
+    try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      FileLock lock;
+      try {
+        lock = channel.tryLock();
+      } catch (OverlappingFileLockException e) {
+        // an other thread of this JVM is evicting
+        return;
+      }
+      if (lock == null) {
+        // an other process is evicting
+        return;
+      }
+      try {
+        this.evict();
+      } finally {
+        lock.release();
+      }
+    }
+  }
+
+  private void evict() throws IOException {
+    final List<CacheEntry> entries = new ArrayList<>();
+    final long now = System.currentTimeMillis();
+    Files.walkFileTree(this.directory, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        String fileName = file.getFileName().toString();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        if (fileName.endsWith(ENTRY_SUFFIX)) {
+          entries.add(new CacheEntry(file, attrs.size(), lastModified));
+        } else if (fileName.endsWith(TEMP_SUFFIX) && ((now - lastModified) > STALE_TEMP_MILLIS)) {
+          Files.deleteIfExists(file);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(Path file, IOException exc) {
+        // deleted concurrently
+        return FileVisitResult.CONTINUE;
+      }
+
+    });
+
+    long size = 0L;
+    for (CacheEntry entry : entries) {
+      size += entry.size;
+    }
+    if (size <= this.maxSize) {
+      return;
+    }
+    // evict to 90% to avoid evicting on every write
+    long targetSize = (this.maxSize / 10L) * 9L;
+    Collections.sort(entries, new Comparator<CacheEntry>() {
+
+      @Override
+      public int compare(CacheEntry o1, CacheEntry o2) {
+        return Long.compare(o1.lastModified, o2.lastModified);
+      }
+
+    });
+    int evicted = 0;
+    for (CacheEntry entry : entries) {
+      if (size <= targetSize) {
+        break;
+      }
+      try {
+        Files.deleteIfExists(entry.path);
+      } catch (IOException e) {
+        // open by a reader on a platform that does not allow this
+        continue;
+      }
+      size -= entry.size;
+      evicted += 1;
+    }
+    this.deleteEmptyDirectories();
+    this.log.debug("evicted " + evicted + " entries from jdeps dependency cache " + this.directory);
+  }
+
+  private void deleteEmptyDirectories() throws IOException {
+    try (DirectoryStream<Path> subDirectories = Files.newDirectoryStream(this.directory)) {
+      for (Path subDirectory : subDirectories) {
+        if (Files.isDirectory(subDirectory)) {
+          try (DirectoryStream<Path> children = Files.newDirectoryStream(subDirectory)) {
+            if (children.iterator().hasNext()) {
+              continue;
+            }
+          }
+          try {
+            Files.delete(subDirectory);
+          } catch (IOException e) {
+            // an entry was added concurrently
+          }
+        }
+      }
+    }
+  }
+
+  static final class CacheEntry {
+
+    final Path path;
+    final long size;
+    final long lastModified;
+
+    CacheEntry(Path path, long size, long lastModified) {
+      this.path = path;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+
+  }
+
+}
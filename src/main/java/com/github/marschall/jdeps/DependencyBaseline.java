@@ -0,0 +1,320 @@
+package com.github.marschall.jdeps;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A snapshot of the dependencies of a graph that later runs are compared
+ * against.
+ * <p>
+ * The snapshot is a UTF-8 text file meant to be checked in. Each source
+ * is written once followed by its targets, indented by one space.
+ * Sources and the targets of each source are sorted so that two
+ * snapshots can be compared by merging them in a single pass, and so
+ * that changes show up as small diffs. Dependencies between packages or
+ * classes come first, summary dependencies between archives follow after
+ * a line {@value #ARCHIVES}:
+ * <pre>
+ * # jdeps baseline 1
+ * com.example.a
+ *  com.example.b
+ *  java.lang
+ * #archives
+ * classes
+ *  java.base
+ * </pre>
+ */
+final class DependencyBaseline {
+
+  static final String HEADER = "# jdeps baseline 1";
+
+  static final String ARCHIVES = "#archives";
+
+  private DependencyBaseline() {
+    throw new AssertionError("not instantiable");
+  }
+
+  /**
+   * Writes the dependencies of a graph.
+   *
+   * @param graph the graph, not null
+   * @param file the file to write, the parent directories are created
+   * @throws IOException if the file can not be written
+   */
+  static void write(DependencyGraph graph, Path file) throws IOException {
+    Path absolute = file.toAbsolutePath();
+    Files.createDirectories(absolute.getParent());
+    try (BufferedWriter writer = Files.newBufferedWriter(absolute, StandardCharsets.UTF_8)) {
+      NodeOrder order = new NodeOrder(graph);
+      writer.write(HEADER);
+      writer.write('\n');
+      writeEdges(new GraphEdges(graph, order, false), writer);
+      writer.write(ARCHIVES);
+      writer.write('\n');
+      writeEdges(new GraphEdges(graph, order, true), writer);
+    }
+  }
+
+  private static void writeEdges(GraphEdges edges, BufferedWriter writer) throws IOException {
+    String previousSource = null;
+    while (edges.next()) {
+      String source = edges.getSource();
+      if (!source.equals(previousSource)) {
+        writer.write(source);
+        writer.write('\n');
+        previousSource = source;
+      }
+      writer.write(' ');
+      writer.write(edges.getTarget());
+      writer.write('\n');
+    }
+  }
+
+  /**
+   * Compares the dependencies of a graph against a baseline.
+   *
+   * @param graph the graph, not null
+   * @param file the baseline, not null
+   * @return the dependencies added and removed since the baseline
+   * @throws IOException if the baseline can not be read or is invalid
+   */
+  static Delta compare(DependencyGraph graph, Path file) throws IOException {
+    Delta delta = new Delta();
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      if (!HEADER.equals(reader.readLine())) {
+        throw new IOException(file + " is not a jdeps baseline");
+      }
+      NodeOrder order = new NodeOrder(graph);
+      FileEdges baselineEdges = new FileEdges(reader);
+      compare(new GraphEdges(graph, order, false), baselineEdges, graph, false, delta);
+      if (!baselineEdges.startArchives()) {
+        throw new IOException(file + " is not a jdeps baseline, " + ARCHIVES + " missing");
+      }
+      compare(new GraphEdges(graph, order, true), baselineEdges, graph, true, delta);
+    }
+    return delta;
+  }
+
+  private static void compare(GraphEdges current, FileEdges baseline, DependencyGraph graph, boolean archives,
+          Delta delta) throws IOException {
+    boolean hasCurrent = current.next();
+    boolean hasBaseline = baseline.next();
+    while (hasCurrent || hasBaseline) {
+      int comparison;
+      if (!hasCurrent) {
+        comparison = 1;
+      } else if (!hasBaseline) {
+        comparison = -1;
+      } else {
+        comparison = current.getSource().compareTo(baseline.getSource());
+        if (comparison == 0) {
+          comparison = current.getTarget().compareTo(baseline.getTarget());
+        }
+      }
+      if (comparison < 0) {
+        // a module has the node of its package of the same name, which has an archive
+        delta.added.add(archives ? current.getSource() + " -> " + current.getTarget()
+                : format(current.getSource(), current.getTarget(), graph));
+        hasCurrent = current.next();
+      } else if (comparison > 0) {
+        delta.removed.add(baseline.getSource() + " -> " + baseline.getTarget());
+        hasBaseline = baseline.next();
+      } else {
+        hasCurrent = current.next();
+        hasBaseline = baseline.next();
+      }
+    }
+  }
+
+  private static String format(String source, String target, DependencyGraph graph) {
+    int archive = graph.getArchive(graph.getNode(target));
+    if (archive == DependencyGraph.NO_ARCHIVE) {
+      return source + " -> " + target;
+    }
+    return source + " -> " + target + " (" + graph.getName(archive) + ')';
+  }
+
+  /**
+   * The dependencies added and removed since a baseline, each as
+   * {@code source -> target}.
+   */
+  static final class Delta {
+
+    private final List<String> added;
+    private final List<String> removed;
+
+    Delta() {
+      this.added = new ArrayList<>();
+      this.removed = new ArrayList<>();
+    }
+
+    List<String> getAdded() {
+      return this.added;
+    }
+
+    List<String> getRemoved() {
+      return this.removed;
+    }
+
+    boolean isEmpty() {
+      return this.added.isEmpty() && this.removed.isEmpty();
+    }
+
+  }
+
+  /**
+   * The nodes of a graph sorted by name.
+   */
+  static final class NodeOrder {
+
+    final String[] names;
+    /**
+     * The position of the name of each node in {@link #names}.
+     */
+    final int[] ranks;
+
+    NodeOrder(DependencyGraph graph) {
+      int nodeCount = graph.getNodeCount();
+      this.names = new String[nodeCount];
+      for (int node = 0; node < nodeCount; node++) {
+        this.names[node] = graph.getName(node);
+      }
+      Arrays.sort(this.names);
+      this.ranks = new int[nodeCount];
+      for (int rank = 0; rank < nodeCount; rank++) {
+        this.ranks[graph.getNode(this.names[rank])] = rank;
+      }
+    }
+
+  }
+
+  /**
+   * Iterates over the dependencies of a graph sorted by source and
+   * target name.
+   */
+  static final class GraphEdges {
+
+    private final DependencyGraph graph;
+    private final boolean archives;
+    private final String[] names;
+    private final int[] ranks;
+    private int sourceIndex;
+    private int[] targetRanks;
+    private int targetIndex;
+
+    GraphEdges(DependencyGraph graph, NodeOrder order, boolean archives) {
+      this.graph = graph;
+      this.archives = archives;
+      this.names = order.names;
+      this.ranks = order.ranks;
+      this.sourceIndex = -1;
+      this.targetRanks = new int[0];
+    }
+
+    /**
+     * Advances to the next dependency.
+     *
+     * @return whether there is a next dependency
+     */
+    boolean next() {
+      this.targetIndex += 1;
+      while (this.targetIndex >= this.targetRanks.length) {
+        this.sourceIndex += 1;
+        if (this.sourceIndex >= this.names.length) {
+          return false;
+        }
+        int source = this.graph.getNode(this.names[this.sourceIndex]);
+        int start = this.archives ? this.graph.getArchiveEdgeStart(source) : this.graph.getEdgeStart(source);
+        int end = this.archives ? this.graph.getArchiveEdgeEnd(source) : this.graph.getEdgeEnd(source);
+        this.targetRanks = new int[end - start];
+        for (int edge = start; edge < end; edge++) {
+          int target = this.archives ? this.graph.getArchiveTarget(edge) : this.graph.getTarget(edge);
+          this.targetRanks[edge - start] = this.ranks[target];
+        }
+        Arrays.sort(this.targetRanks);
+        this.targetIndex = 0;
+      }
+      return true;
+    }
+
+    String getSource() {
+      return this.names[this.sourceIndex];
+    }
+
+    String getTarget() {
+      return this.names[this.targetRanks[this.targetIndex]];
+    }
+
+  }
+
+  /**
+   * Iterates over the dependencies of one section of a baseline file.
+   */
+  static final class FileEdges {
+
+    private final BufferedReader reader;
+    private String source;
+    private String target;
+    private boolean endOfSection;
+
+    FileEdges(BufferedReader reader) {
+      this.reader = reader;
+    }
+
+    /**
+     * Advances to the next dependency of the current section.
+     *
+     * @return whether there is a next dependency
+     * @throws IOException if the file can not be read
+     */
+    boolean next() throws IOException {
+      while (!this.endOfSection) {
+        String line = this.reader.readLine();
+        if ((line == null) || line.equals(ARCHIVES)) {
+          this.endOfSection = true;
+          this.source = line;
+        } else if (line.startsWith(" ")) {
+          if (this.source == null) {
+            throw new IOException("dependency without source: " + line);
+          }
+          this.target = line.substring(1);
+          return true;
+        } else if (!line.isEmpty()) {
+          this.source = line;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Continues with the archive section.
+     *
+     * @return whether the archive section starts
+     */
+    boolean startArchives() {
+      if (!ARCHIVES.equals(this.source)) {
+        return false;
+      }
+      this.source = null;
+      this.endOfSection = false;
+      return true;
+    }
+
+    String getSource() {
+      return this.source;
+    }
+
+    String getTarget() {
+      return this.target;
+    }
+
+  }
+
+}
@@ -0,0 +1,204 @@
+package com.github.marschall.jdeps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds the cycles between packages and between archives of a
+ * {@link DependencyGraph}.
+ * <p>
+ * A cycle is a strongly connected component of more than one node, all
+ * its members depend on each other directly or indirectly. Components
+ * are found with Tarjan's algorithm in time linear in the number of
+ * nodes and dependencies. The algorithm runs iteratively on the
+ * compressed sparse rows of the graph so that long dependency chains do
+ * not overflow the stack.
+ * <p>
+ * Class level graphs are reduced to packages first. Archive dependencies
+ * are derived from the dependencies between packages rather than taken
+ * from the summary because jdeps names a JAR by its path in the summary
+ * and by its file name everywhere else.
+ */
+final class DependencyCycles {
+
+  private static final int UNVISITED = -1;
+
+  private DependencyCycles() {
+    throw new AssertionError("not instantiable");
+  }
+
+  /**
+   * Finds the cycles between packages.
+   *
+   * @param graph the dependencies, not null
+   * @param classLevel whether the nodes of the graph are classes rather
+   *  than packages
+   * @return the packages of every cycle, sorted
+   */
+  static List<List<String>> findPackageCycles(DependencyGraph graph, boolean classLevel) {
+    return findCycles(classLevel ? toPackages(graph) : graph);
+  }
+
+  /**
+   * Finds the cycles between archives.
+   *
+   * @param graph the dependencies, not null
+   * @return the archives of every cycle, sorted
+   */
+  static List<List<String>> findArchiveCycles(DependencyGraph graph) {
+    return findCycles(toArchives(graph));
+  }
+
+  private static DependencyGraph toPackages(DependencyGraph graph) {
+    DependencyGraph.Builder builder = new DependencyGraph.Builder();
+    int nodeCount = graph.getNodeCount();
+    int[] packages = new int[nodeCount];
+    Arrays.fill(packages, UNVISITED);
+    for (int node = 0; node < nodeCount; node++) {
+      int start = graph.getEdgeStart(node);
+      int end = graph.getEdgeEnd(node);
+      if (start == end) {
+        continue;
+      }
+      int source = getPackage(graph, node, packages, builder);
+      for (int edge = start; edge < end; edge++) {
+        int target = getPackage(graph, graph.getTarget(edge), packages, builder);
+        if (source != target) {
+          builder.addEdge(source, target);
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  private static int getPackage(DependencyGraph graph, int node, int[] packages, DependencyGraph.Builder builder) {
+    if (packages[node] == UNVISITED) {
+      String name = graph.getName(node);
+      int lastDot = name.lastIndexOf('.');
+      packages[node] = builder.node(lastDot == -1 ? "<unnamed>" : name.substring(0, lastDot));
+    }
+    return packages[node];
+  }
+
+  private static DependencyGraph toArchives(DependencyGraph graph) {
+    DependencyGraph.Builder builder = new DependencyGraph.Builder();
+    int nodeCount = graph.getNodeCount();
+    int[] archives = new int[nodeCount];
+    Arrays.fill(archives, UNVISITED);
+    for (int node = 0; node < nodeCount; node++) {
+      int start = graph.getEdgeStart(node);
+      int end = graph.getEdgeEnd(node);
+      int source = getArchive(graph, node, archives, builder);
+      if ((start == end) || (source == DependencyGraph.NO_ARCHIVE)) {
+        continue;
+      }
+      for (int edge = start; edge < end; edge++) {
+        int target = getArchive(graph, graph.getTarget(edge), archives, builder);
+        if ((target != DependencyGraph.NO_ARCHIVE) && (source != target)) {
+          builder.addEdge(source, target);
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  private static int getArchive(DependencyGraph graph, int node, int[] archives, DependencyGraph.Builder builder) {
+    int archive = graph.getArchive(node);
+    if (archive == DependencyGraph.NO_ARCHIVE) {
+      return DependencyGraph.NO_ARCHIVE;
+    }
+    if (archives[archive] == UNVISITED) {
+      archives[archive] = builder.node(graph.getName(archive));
+    }
+    return archives[archive];
+  }
+
+  /**
+   * Runs Tarjan's algorithm, the recursion is replaced by a stack of nodes
+   * and the position in their dependencies.
+   */
+  private static List<List<String>> findCycles(DependencyGraph graph) {
+    int nodeCount = graph.getNodeCount();
+    int[] index = new int[nodeCount];
+    Arrays.fill(index, UNVISITED);
+    int[] lowLink = new int[nodeCount];
+    boolean[] onStack = new boolean[nodeCount];
+    // nodes of the components not yet completed
+    int[] stack = new int[nodeCount];
+    int stackSize = 0;
+    // the depth first search
+    int[] callNodes = new int[nodeCount];
+    int[] callEdges = new int[nodeCount];
+    int callSize = 0;
+    int nextIndex = 0;
+    List<List<String>> cycles = new ArrayList<>();
+
+    for (int root = 0; root < nodeCount; root++) {
+      if ((index[root] != UNVISITED) || (graph.getEdgeStart(root) == graph.getEdgeEnd(root))) {
+        continue;
+      }
+      index[root] = nextIndex;
+      lowLink[root] = nextIndex;
+      nextIndex += 1;
+      stack[stackSize++] = root;
+      onStack[root] = true;
+      callNodes[callSize] = root;
+      callEdges[callSize] = graph.getEdgeStart(root);
+      callSize += 1;
+
+      while (callSize > 0) {
+        int node = callNodes[callSize - 1];
+        int edge = callEdges[callSize - 1];
+        if (edge < graph.getEdgeEnd(node)) {
+          callEdges[callSize - 1] = edge + 1;
+          int target = graph.getTarget(edge);
+          if (index[target] == UNVISITED) {
+            index[target] = nextIndex;
+            lowLink[target] = nextIndex;
+            nextIndex += 1;
+            stack[stackSize++] = target;
+            onStack[target] = true;
+            callNodes[callSize] = target;
+            callEdges[callSize] = graph.getEdgeStart(target);
+            callSize += 1;
+          } else if (onStack[target]) {
+            lowLink[node] = Math.min(lowLink[node], index[target]);
+          }
+          continue;
+        }
+        // all dependencies of node visited
+        callSize -= 1;
+        if (callSize > 0) {
+          int parent = callNodes[callSize - 1];
+          lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+        }
+        if (lowLink[node] == index[node]) {
+          int member;
+          List<String> component = new ArrayList<>();
+          do {
+            member = stack[--stackSize];
+            onStack[member] = false;
+            component.add(graph.getName(member));
+          } while (member != node);
+          if (component.size() > 1) {
+            Collections.sort(component);
+            cycles.add(component);
+          }
+        }
+      }
+    }
+    Collections.sort(cycles, new Comparator<List<String>>() {
+
+      @Override
+      public int compare(List<String> o1, List<String> o2) {
+        return o1.get(0).compareTo(o2.get(0));
+      }
+
+    });
+    return cycles;
+  }
+
+}
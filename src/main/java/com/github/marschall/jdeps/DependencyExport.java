@@ -0,0 +1,216 @@
+package com.github.marschall.jdeps;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the dependencies of graphs as JSON Lines or CSV for other tools.
+ * <p>
+ * Every dependency is one row, written directly from the graph so that
+ * the export takes no memory beyond the graph. A row has the scope of the
+ * analyzed classes ({@code main} or {@code test}), the level
+ * ({@code archive}, {@code package} or {@code class}), the source and
+ * target and for packages and classes their archives:
+ * <pre>
+ * {"scope":"main","level":"archive","source":"classes","sourceArchive":null,"target":"java.base","targetArchive":null}
+ * {"scope":"main","level":"package","source":"com.example","sourceArchive":"classes","target":"java.lang","targetArchive":"java.base"}
+ * </pre>
+ * CSV files have a header line, missing archives are empty fields and
+ * fields are quoted as in RFC 4180 when needed.
+ */
+final class DependencyExport implements Closeable {
+
+  static final String JSON_LINES = "jsonl";
+
+  static final String CSV = "csv";
+
+  private static final String CSV_HEADER = "scope,level,source,sourceArchive,target,targetArchive";
+
+  private final Writer writer;
+  private final boolean csv;
+
+  private DependencyExport(Writer writer, boolean csv) {
+    this.writer = writer;
+    this.csv = csv;
+  }
+
+  /**
+   * Opens an export file.
+   *
+   * @param file the file to write, the parent directories are created
+   * @param format {@value #JSON_LINES} or {@value #CSV}
+   * @param gzip whether to compress the file
+   * @return the export, has to be closed
+   * @throws IOException if the file can not be created
+   * @throws IllegalArgumentException if the format is unknown
+   */
+  static DependencyExport open(Path file, String format, boolean gzip) throws IOException {
+    boolean csv;
+    if (CSV.equals(format)) {
+      csv = true;
+    } else if (JSON_LINES.equals(format)) {
+      csv = false;
+    } else {
+      throw new IllegalArgumentException("unknown export format: " + format + ", must be " + JSON_LINES + " or " + CSV);
+    }
+    Path absolute = file.toAbsolutePath();
+    Files.createDirectories(absolute.getParent());
+    OutputStream output = Files.newOutputStream(absolute);
+    try {
+      if (gzip) {
+        output = new GZIPOutputStream(output, 64 * 1024);
+      }
+      DependencyExport export = new DependencyExport(
+              new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 64 * 1024), csv);
+      if (csv) {
+        export.writer.write(CSV_HEADER);
+        export.writer.write('\n');
+      }
+      return export;
+    } catch (IOException e) {
+      output.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the file extension of a format.
+   *
+   * @param format {@value #JSON_LINES} or {@value #CSV}
+   * @param gzip whether the file is compressed
+   * @return the file extension, without a leading dot
+   */
+  static String getExtension(String format, boolean gzip) {
+    return gzip ? format + ".gz" : format;
+  }
+
+  /**
+   * Writes all dependencies of a graph.
+   *
+   * @param graph the graph, not null
+   * @param scope the scope of the analyzed classes, not null
+   * @param level the level of the dependencies between nodes,
+   *  {@code package} or {@code class}
+   * @throws IOException if writing fails
+   */
+  void write(DependencyGraph graph, String scope, String level) throws IOException {
+    int nodeCount = graph.getNodeCount();
+    for (int node = 0; node < nodeCount; node++) {
+      for (int edge = graph.getArchiveEdgeStart(node); edge < graph.getArchiveEdgeEnd(node); edge++) {
+        this.writeRow(scope, "archive", graph.getName(node), null,
+                graph.getName(graph.getArchiveTarget(edge)), null);
+      }
+    }
+    for (int node = 0; node < nodeCount; node++) {
+      int start = graph.getEdgeStart(node);
+      int end = graph.getEdgeEnd(node);
+      if (start == end) {
+        continue;
+      }
+      String source = graph.getName(node);
+      String sourceArchive = getArchiveName(graph, node);
+      for (int edge = start; edge < end; edge++) {
+        int target = graph.getTarget(edge);
+        this.writeRow(scope, level, source, sourceArchive, graph.getName(target), getArchiveName(graph, target));
+      }
+    }
+  }
+
+  private static String getArchiveName(DependencyGraph graph, int node) {
+    int archive = graph.getArchive(node);
+    return archive == DependencyGraph.NO_ARCHIVE ? null : graph.getName(archive);
+  }
+
+  private void writeRow(String scope, String level, String source, String sourceArchive,
+          String target, String targetArchive) throws IOException {
+    if (this.csv) {
+      this.writeCsvField(scope);
+      this.writer.write(',');
+      this.writeCsvField(level);
+      this.writer.write(',');
+      this.writeCsvField(source);
+      this.writer.write(',');
+      this.writeCsvField(sourceArchive);
+      this.writer.write(',');
+      this.writeCsvField(target);
+      this.writer.write(',');
+      this.writeCsvField(targetArchive);
+    } else {
+      this.writer.write("{\"scope\":");
+      this.writeJsonString(scope);
+      this.writer.write(",\"level\":");
+      this.writeJsonString(level);
+      this.writer.write(",\"source\":");
+      this.writeJsonString(source);
+      this.writer.write(",\"sourceArchive\":");
+      this.writeJsonString(sourceArchive);
+      this.writer.write(",\"target\":");
+      this.writeJsonString(target);
+      this.writer.write(",\"targetArchive\":");
+      this.writeJsonString(targetArchive);
+      this.writer.write('}');
+    }
+    this.writer.write('\n');
+  }
+
+  private void writeCsvField(String value) throws IOException {
+    if (value == null) {
+      return;
+    }
+    boolean quote = false;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if ((c == ',') || (c == '"') || (c == '\n') || (c == '\r')) {
+        quote = true;
+        break;
+      }
+    }
+    if (!quote) {
+      this.writer.write(value);
+      return;
+    }
+    this.writer.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"') {
+        this.writer.write('"');
+      }
+      this.writer.write(c);
+    }
+    this.writer.write('"');
+  }
+
+  private void writeJsonString(String value) throws IOException {
+    if (value == null) {
+      this.writer.write("null");
+      return;
+    }
+    this.writer.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if ((c == '"') || (c == '\\')) {
+        this.writer.write('\\');
+        this.writer.write(c);
+      } else if (c < ' ') {
+        this.writer.write(String.format("\\u%04x", (int) c));
+      } else {
+        this.writer.write(c);
+      }
+    }
+    this.writer.write('"');
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.writer.close();
+  }
+
+}
@@ -0,0 +1,262 @@
+package com.github.marschall.jdeps;
+
+import java.util.Arrays;
+
+/**
+ * The dependencies reported by jdeps as an immutable graph.
+ * <p>
+ * Nodes are the packages or classes reported by jdeps as well as the
+ * archives they belong to, all interned in a single {@link SymbolTable}
+ * so that a node is identified by an {@code int}. Dependencies between
+ * packages or classes and the summary dependencies between archives are
+ * stored in compressed sparse row form: the targets of node {@code n}
+ * are {@code targets[offsets[n]]} to {@code targets[offsets[n + 1] - 1]},
+ * sorted and without duplicates.
+ */
+final class DependencyGraph {
+
+  /**
+   * Returned for nodes without a known archive.
+   */
+  static final int NO_ARCHIVE = -1;
+
+  private final SymbolTable symbols;
+  private final int[] archives;
+  private final int[] offsets;
+  private final int[] targets;
+  private final int[] archiveOffsets;
+  private final int[] archiveTargets;
+
+  private DependencyGraph(SymbolTable symbols, int[] archives, int[] offsets, int[] targets,
+          int[] archiveOffsets, int[] archiveTargets) {
+    this.symbols = symbols;
+    this.archives = archives;
+    this.offsets = offsets;
+    this.targets = targets;
+    this.archiveOffsets = archiveOffsets;
+    this.archiveTargets = archiveTargets;
+  }
+
+  /**
+   * Returns the number of nodes, node ids range from zero to this value
+   * exclusive.
+   *
+   * @return the number of nodes
+   */
+  int getNodeCount() {
+    return this.symbols.size();
+  }
+
+  /**
+   * Returns the number of dependencies between packages or classes.
+   *
+   * @return the number of dependencies
+   */
+  int getEdgeCount() {
+    return this.targets.length;
+  }
+
+  /**
+   * Returns the number of dependencies between archives.
+   *
+   * @return the number of summary dependencies
+   */
+  int getArchiveEdgeCount() {
+    return this.archiveTargets.length;
+  }
+
+  String getName(int node) {
+    return this.symbols.getName(node);
+  }
+
+  /**
+   * Looks up a node by name.
+   *
+   * @param name the name of the package, class or archive
+   * @return the node or {@code -1} if there is no such node
+   */
+  int getNode(String name) {
+    return this.symbols.lookup(name);
+  }
+
+  /**
+   * Returns the archive of a package or class.
+   *
+   * @param node the node
+   * @return the node of the archive or {@link #NO_ARCHIVE}
+   */
+  int getArchive(int node) {
+    return this.archives[node];
+  }
+
+  /**
+   * Returns the index of the first dependency of a node, to be used
+   * with {@link #getTarget(int)}.
+   *
+   * @param node the node
+   * @return the index of the first dependency
+   */
+  int getEdgeStart(int node) {
+    return this.offsets[node];
+  }
+
+  /**
+   * Returns the index after the last dependency of a node.
+   *
+   * @param node the node
+   * @return the end index of the dependencies, exclusive
+   */
+  int getEdgeEnd(int node) {
+    return this.offsets[node + 1];
+  }
+
+  int getTarget(int edge) {
+    return this.targets[edge];
+  }
+
+  int getArchiveEdgeStart(int archive) {
+    return this.archiveOffsets[archive];
+  }
+
+  int getArchiveEdgeEnd(int archive) {
+    return this.archiveOffsets[archive + 1];
+  }
+
+  int getArchiveTarget(int edge) {
+    return this.archiveTargets[edge];
+  }
+
+  /**
+   * Checks whether a node directly depends on an other node.
+   *
+   * @param source the depending node
+   * @param target the node depended upon
+   * @return whether there is a dependency from source to target
+   */
+  boolean hasEdge(int source, int target) {
+    return Arrays.binarySearch(this.targets, this.offsets[source], this.offsets[source + 1], target) >= 0;
+  }
+
+  /**
+   * Collects dependencies in arbitrary order and builds a graph.
+   */
+  static final class Builder {
+
+    private final SymbolTable symbols;
+    private int[] archives;
+    private int[] sources;
+    private int[] targets;
+    private int edgeCount;
+    private int[] archiveSources;
+    private int[] archiveTargets;
+    private int archiveEdgeCount;
+
+    Builder() {
+      this.symbols = new SymbolTable();
+      this.archives = new int[256];
+      Arrays.fill(this.archives, NO_ARCHIVE);
+      this.sources = new int[1024];
+      this.targets = new int[1024];
+      this.archiveSources = new int[16];
+      this.archiveTargets = new int[16];
+    }
+
+    /**
+     * Returns the node of a name, adding it if necessary.
+     *
+     * @param name the name of a package, class or archive
+     * @return the node
+     */
+    int node(String name) {
+      int node = this.symbols.intern(name);
+      if (node >= this.archives.length) {
+        int oldLength = this.archives.length;
+        this.archives = Arrays.copyOf(this.archives, oldLength * 2);
+        Arrays.fill(this.archives, oldLength, this.archives.length, NO_ARCHIVE);
+      }
+      return node;
+    }
+
+    /**
+     * Sets the archive of a package or class unless it is already known.
+     *
+     * @param node the package or class
+     * @param archive the archive
+     */
+    void setArchive(int node, int archive) {
+      // split packages are attributed to the first archive
+      if (this.archives[node] == NO_ARCHIVE) {
+        this.archives[node] = archive;
+      }
+    }
+
+    void addEdge(int source, int target) {
+      if (this.edgeCount == this.sources.length) {
+        this.sources = Arrays.copyOf(this.sources, this.edgeCount * 2);
+        this.targets = Arrays.copyOf(this.targets, this.edgeCount * 2);
+      }
+      this.sources[this.edgeCount] = source;
+      this.targets[this.edgeCount] = target;
+      this.edgeCount += 1;
+    }
+
+    void addArchiveEdge(int source, int target) {
+      if (this.archiveEdgeCount == this.archiveSources.length) {
+        this.archiveSources = Arrays.copyOf(this.archiveSources, this.archiveEdgeCount * 2);
+        this.archiveTargets = Arrays.copyOf(this.archiveTargets, this.archiveEdgeCount * 2);
+      }
+      this.archiveSources[this.archiveEdgeCount] = source;
+      this.archiveTargets[this.archiveEdgeCount] = target;
+      this.archiveEdgeCount += 1;
+    }
+
+    DependencyGraph build() {
+      int nodeCount = this.symbols.size();
+      int[] offsets = new int[nodeCount + 1];
+      int[] csrTargets = toCsr(this.sources, this.targets, this.edgeCount, offsets);
+      int[] archiveOffsets = new int[nodeCount + 1];
+      int[] csrArchiveTargets = toCsr(this.archiveSources, this.archiveTargets, this.archiveEdgeCount, archiveOffsets);
+      return new DependencyGraph(this.symbols, Arrays.copyOf(this.archives, nodeCount),
+              offsets, csrTargets, archiveOffsets, csrArchiveTargets);
+    }
+
+    /**
+     * Converts an edge list into compressed sparse row form using a
+     * counting sort, then sorts and deduplicates the targets of every
+     * node.
+     */
+    private static int[] toCsr(int[] sources, int[] targets, int edgeCount, int[] offsets) {
+      int nodeCount = offsets.length - 1;
+      for (int i = 0; i < edgeCount; i++) {
+        offsets[sources[i] + 1] += 1;
+      }
+      for (int node = 0; node < nodeCount; node++) {
+        offsets[node + 1] += offsets[node];
+      }
+      int[] next = Arrays.copyOf(offsets, nodeCount);
+      int[] result = new int[edgeCount];
+      for (int i = 0; i < edgeCount; i++) {
+        result[next[sources[i]]++] = targets[i];
+      }
+
+      // compact in place, the write position never overtakes the read position
+      int write = 0;
+      int start = 0;
+      for (int node = 0; node < nodeCount; node++) {
+        int end = offsets[node + 1];
+        Arrays.sort(result, start, end);
+        offsets[node] = write;
+        for (int i = start; i < end; i++) {
+          if ((i == start) || (result[i] != result[i - 1])) {
+            result[write++] = result[i];
+          }
+        }
+        start = end;
+      }
+      offsets[nodeCount] = write;
+      return write == edgeCount ? result : Arrays.copyOf(result, write);
+    }
+
+  }
+
+}
@@ -0,0 +1,220 @@
+package com.github.marschall.jdeps;
+
+import static com.github.marschall.jdeps.DependencyGraph.NO_ARCHIVE;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Parses the text output of jdeps line by line, and optionally DOT files
+ * written with {@code -dotoutput}, into a {@link DependencyGraph}.
+ * <p>
+ * Summary lines become dependencies between archives, package and class
+ * level lines become dependencies between packages or classes. Lines
+ * that are neither, for example warnings, are ignored.
+ */
+final class DependencyGraphParser implements StreamConsumer {
+
+  // Java 9+: "   a.b      -> c.d      archive"
+  static final Pattern EDGE = Pattern.compile("^   (\\S+)\\s+-> (\\S+)\\s+(.*)$");
+
+  // Java 8: "   a.b (archive)"
+  static final Pattern JDK8_SOURCE = Pattern.compile("^   (\\S+) \\((.*)\\)$");
+
+  // Java 8: "      -> c.d      archive"
+  static final Pattern JDK8_EDGE = Pattern.compile("^      -> (\\S+)\\s+(.*)$");
+
+  // "classes -> java.base"
+  static final Pattern SUMMARY = Pattern.compile("^(\\S+) -> (.+)$");
+
+  // "digraph "classes" {"
+  private static final Pattern DOT_GRAPH = Pattern.compile("^digraph \"(.*)\" \\{$");
+
+  // "   "a.b"      -> "c.d (archive)";"
+  private static final Pattern DOT_EDGE = Pattern.compile("^\\s*\"([^\"]*)\"\\s*-> \"(.*)\";$");
+
+  private final DependencyGraph.Builder builder;
+  private int currentArchive;
+  private int currentSource;
+
+  DependencyGraphParser() {
+    this.builder = new DependencyGraph.Builder();
+    this.currentArchive = NO_ARCHIVE;
+    this.currentSource = -1;
+  }
+
+  @Override
+  public void consumeLine(String line) {
+    Matcher matcher = EDGE.matcher(line);
+    if (matcher.matches()) {
+      int source = this.builder.node(matcher.group(1));
+      if (this.currentArchive != NO_ARCHIVE) {
+        this.builder.setArchive(source, this.currentArchive);
+      }
+      this.addEdge(source, matcher.group(2), matcher.group(3).trim());
+      return;
+    }
+    matcher = JDK8_SOURCE.matcher(line);
+    if (matcher.matches()) {
+      this.currentSource = this.builder.node(matcher.group(1));
+      this.builder.setArchive(this.currentSource, this.builder.node(matcher.group(2)));
+      return;
+    }
+    matcher = JDK8_EDGE.matcher(line);
+    if (matcher.matches()) {
+      if (this.currentSource != -1) {
+        this.addEdge(this.currentSource, matcher.group(1), matcher.group(2).trim());
+      }
+      return;
+    }
+    matcher = SUMMARY.matcher(line);
+    if (matcher.matches()) {
+      // the package and class lines that follow belong to this archive
+      this.currentArchive = this.builder.node(matcher.group(1));
+      this.currentSource = -1;
+      this.builder.addArchiveEdge(this.currentArchive, this.builder.node(matcher.group(2).trim()));
+    }
+  }
+
+  /**
+   * Checks whether a line of jdeps output is a dependency, either
+   * between archives or between packages or classes.
+   *
+   * @param line the line, not null
+   * @return whether the line is parsed into the graph
+   */
+  static boolean isDependency(String line) {
+    return EDGE.matcher(line).matches()
+            || JDK8_SOURCE.matcher(line).matches()
+            || JDK8_EDGE.matcher(line).matches()
+            || SUMMARY.matcher(line).matches();
+  }
+
+  private void addEdge(int source, String targetName, String archiveName) {
+    int target = this.builder.node(targetName);
+    if (!archiveName.isEmpty()) {
+      this.builder.setArchive(target, this.builder.node(archiveName));
+    }
+    this.builder.addEdge(source, target);
+  }
+
+  /**
+   * Adds the dependencies of all DOT files in a directory written by
+   * jdeps.
+   *
+   * @param dotOutputDirectory the directory, not null
+   * @throws IOException if a file can not be read
+   */
+  void parseDotFiles(Path dotOutputDirectory) throws IOException {
+    this.parseDotFiles(dotOutputDirectory, null, false);
+  }
+
+  /**
+   * Adds the dependencies of the DOT files in a directory written by
+   * jdeps either of one archive or of all other archives.
+   *
+   * @param dotOutputDirectory the directory, not null
+   * @param archive the name of the archive, {@code null} for all
+   *  archives
+   * @param only {@code true} to add only the dependencies of the archive,
+   *  {@code false} to add the dependencies of all other archives
+   * @throws IOException if a file can not be read
+   */
+  void parseDotFiles(Path dotOutputDirectory, String archive, boolean only) throws IOException {
+    if (!Files.isDirectory(dotOutputDirectory)) {
+      return;
+    }
+    List<Path> dotFiles = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dotOutputDirectory, "*.dot")) {
+      for (Path dotFile : stream) {
+        dotFiles.add(dotFile);
+      }
+    }
+    Collections.sort(dotFiles);
+    for (Path dotFile : dotFiles) {
+      this.parseDotFile(dotFile, archive, only);
+    }
+  }
+
+  /**
+   * Adds the dependencies of a DOT file written by jdeps.
+   *
+   * @param dotFile the DOT file, not null
+   * @throws IOException if the file can not be read
+   */
+  void parseDotFile(Path dotFile) throws IOException {
+    this.parseDotFile(dotFile, null, false);
+  }
+
+  private void parseDotFile(Path dotFile, String archive, boolean only) throws IOException {
+    int graphArchive = NO_ARCHIVE;
+    boolean summary = false;
+    boolean skip = false;
+    try (BufferedReader reader = Files.newBufferedReader(dotFile, StandardCharsets.UTF_8)) {
+      String line = reader.readLine();
+      while (line != null) {
+        Matcher matcher = DOT_EDGE.matcher(line);
+        if (matcher.matches()) {
+          // the summary has the archive as source of each edge
+          String source = summary ? matcher.group(1) : null;
+          if (!skip && ((archive == null) || (source == null) || (archive.equals(source) == only))) {
+            this.addDotEdge(graphArchive, summary, matcher.group(1), matcher.group(2));
+          }
+        } else {
+          matcher = DOT_GRAPH.matcher(line);
+          if (matcher.matches()) {
+            summary = "summary".equals(matcher.group(1));
+            skip = !summary && (archive != null) && (archive.equals(matcher.group(1)) != only);
+            graphArchive = (summary || skip) ? NO_ARCHIVE : this.builder.node(matcher.group(1));
+          }
+        }
+        line = reader.readLine();
+      }
+    }
+  }
+
+  private void addDotEdge(int graphArchive, boolean summary, String sourceName, String targetLabel) {
+    // "c.d (archive)" for packages and classes, "archive" for archives
+    int archiveStart = targetLabel.indexOf(" (");
+    if ((archiveStart == -1) || !targetLabel.endsWith(")")) {
+      this.builder.addArchiveEdge(this.builder.node(sourceName), this.builder.node(targetLabel));
+      return;
+    }
+    String targetName = targetLabel.substring(0, archiveStart);
+    String archiveName = targetLabel.substring(archiveStart + 2, targetLabel.length() - 1);
+    if (summary) {
+      if (targetName.equals(archiveName)) {
+        // "java.base (java.base)" for modules
+        this.builder.addArchiveEdge(this.builder.node(sourceName), this.builder.node(targetName));
+      }
+      // with -verbose the summary repeats the dependencies on package level
+      return;
+    }
+    int source = this.builder.node(sourceName);
+    if (graphArchive != NO_ARCHIVE) {
+      this.builder.setArchive(source, graphArchive);
+    }
+    this.addEdge(source, targetName, archiveName);
+  }
+
+  /**
+   * Builds the graph of all lines and files parsed so far.
+   *
+   * @return the graph
+   */
+  DependencyGraph getGraph() {
+    return this.builder.build();
+  }
+
+}
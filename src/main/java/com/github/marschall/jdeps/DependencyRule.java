@@ -0,0 +1,120 @@
+package com.github.marschall.jdeps;
+
+import java.util.List;
+
+/**
+ * A rule that forbids dependencies, configured in the POM.
+ * <p>
+ * A dependency violates the rule if its source matches one of the
+ * {@code from} patterns, its target matches one of the {@code to}
+ * patterns and none of the {@code except} patterns. Patterns match
+ * package or class names:
+ * <dl>
+ *  <dt>{@code com.acme.api}</dt>
+ *  <dd>exactly this name</dd>
+ *  <dt>{@code sun..}</dt>
+ *  <dd>{@code sun} and everything below it</dd>
+ *  <dt>{@code ..domain..}</dt>
+ *  <dd>everything with a {@code domain} segment</dd>
+ *  <dt>{@code com.*.api..}</dt>
+ *  <dd>{@code *} matches within a single segment</dd>
+ *  <dt>{@code regex:.*Impl}</dt>
+ *  <dd>a regular expression for the whole name</dd>
+ * </dl>
+ * For example:
+ * <pre>
+ * &lt;rule&gt;
+ *   &lt;name&gt;domain is independent of infrastructure&lt;/name&gt;
+ *   &lt;from&gt;&lt;pattern&gt;..domain..&lt;/pattern&gt;&lt;/from&gt;
+ *   &lt;to&gt;&lt;pattern&gt;..infrastructure..&lt;/pattern&gt;&lt;/to&gt;
+ * &lt;/rule&gt;
+ * </pre>
+ * Rules apply to the project classes unless their scope includes the
+ * test classes, so a rule keeps test libraries out of the project
+ * classes while the tests may still use them.
+ */
+public class DependencyRule {
+
+  /**
+   * Name of the rule used in messages, optional.
+   */
+  private String name;
+
+  /**
+   * Patterns of the depending packages or classes, all if empty.
+   */
+  private List<String> from;
+
+  /**
+   * Patterns of the forbidden packages or classes.
+   */
+  private List<String> to;
+
+  /**
+   * Patterns of packages or classes that are allowed even though they
+   * match {@link #to}.
+   */
+  private List<String> except;
+
+  /**
+   * Only check dependencies between different archives, eg. to allow
+   * only the API packages of a module to be used by other modules.
+   */
+  private boolean acrossArchives;
+
+  /**
+   * The classes whose dependencies are checked: "main" (default) the
+   * classes of the project, "test" the test classes or "all" both. Test
+   * classes are only analyzed with "includeTestClasses".
+   */
+  private String scope;
+
+  public String getName() {
+    return this.name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public List<String> getFrom() {
+    return this.from;
+  }
+
+  public void setFrom(List<String> from) {
+    this.from = from;
+  }
+
+  public List<String> getTo() {
+    return this.to;
+  }
+
+  public void setTo(List<String> to) {
+    this.to = to;
+  }
+
+  public List<String> getExcept() {
+    return this.except;
+  }
+
+  public void setExcept(List<String> except) {
+    this.except = except;
+  }
+
+  public boolean isAcrossArchives() {
+    return this.acrossArchives;
+  }
+
+  public void setAcrossArchives(boolean acrossArchives) {
+    this.acrossArchives = acrossArchives;
+  }
+
+  public String getScope() {
+    return this.scope;
+  }
+
+  public void setScope(String scope) {
+    this.scope = scope;
+  }
+
+}
@@ -0,0 +1,321 @@
+package com.github.marschall.jdeps;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Records the duration of each phase of a goal execution together with
+ * the CPU time, output size and input size.
+ * <p>
+ * A phase may be recorded several times, for example when jdeps is run
+ * once per shard or per dependency artifact, its durations are added up.
+ * Phases may be recorded concurrently.
+ */
+final class ExecutionMetrics {
+
+  static final String GET_EXECUTABLE = "getJdepsExecutable";
+
+  static final String BUILD_COMMAND_LINE = "buildCommandLine";
+
+  static final String EXECUTE = "executeJDepsCommandLine";
+
+  static final String RENDER = "renderReport";
+
+  // USER_HZ, the unit of the times in /proc, is 100 on all common platforms
+  private static final long NANOS_PER_CLOCK_TICK = 10_000_000L;
+
+  private final String goal;
+  private final long startNanos;
+  private final long startCpuTime;
+  private final long startChildCpuTime;
+  private final Map<String, Phase> phases;
+
+  private long wallTime;
+  private long cpuTime;
+  private long childCpuTime;
+  private String executable;
+  private boolean upToDate;
+  private boolean success;
+  private long peakOutputSize;
+  private long outputLines;
+  private int classPathEntries;
+  private int classes;
+
+  /**
+   * Starts recording a goal execution.
+   *
+   * @param goal the name of the goal, not null
+   */
+  ExecutionMetrics(String goal) {
+    this.goal = goal;
+    this.phases = new LinkedHashMap<>();
+    this.startNanos = System.nanoTime();
+    this.startCpuTime = getProcessCpuTime();
+    this.startChildCpuTime = getChildCpuTime();
+    this.classes = -1;
+  }
+
+  /**
+   * Returns the start time of a phase, to be passed to
+   * {@link #stop(String, long)}.
+   *
+   * @return the current value of {@link System#nanoTime()}
+   */
+  static long start() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Records the end of a phase.
+   *
+   * @param phase the name of the phase, not null
+   * @param start the value of {@link #start()} at the begin of the phase
+   */
+  synchronized void stop(String phase, long start) {
+    long duration = System.nanoTime() - start;
+    Phase current = this.phases.get(phase);
+    if (current == null) {
+      current = new Phase();
+      this.phases.put(phase, current);
+    }
+    current.duration += duration;
+    current.count += 1;
+  }
+
+  synchronized void setExecutable(String executable) {
+    this.executable = executable;
+  }
+
+  synchronized void setUpToDate(boolean upToDate) {
+    this.upToDate = upToDate;
+  }
+
+  synchronized boolean isUpToDate() {
+    return this.upToDate;
+  }
+
+  synchronized void setClassPathEntries(int classPathEntries) {
+    this.classPathEntries = classPathEntries;
+  }
+
+  /**
+   * Records the size of an output buffer, the largest buffer is kept.
+   *
+   * @param output the output, not null
+   */
+  synchronized void recordOutput(OutputBuffer output) {
+    long size = output.getSize();
+    if (size >= this.peakOutputSize) {
+      this.peakOutputSize = size;
+      this.outputLines = output.getLineCount();
+    }
+  }
+
+  /**
+   * Counts the class files in a directory. Without this the number of
+   * classes is -1.
+   *
+   * @param directory the directory, may not exist
+   * @throws IOException if the directory can not be read
+   */
+  void countClasses(File directory) throws IOException {
+    Path root = directory.toPath();
+    if (!Files.isDirectory(root)) {
+      return;
+    }
+    final int[] count = new int[1];
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        if (file.getFileName().toString().endsWith(".class")) {
+          count[0] += 1;
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+    });
+    synchronized (this) {
+      this.classes = count[0];
+    }
+  }
+
+  /**
+   * Stops recording the goal execution.
+   *
+   * @param success whether the goal succeeded
+   */
+  synchronized void finish(boolean success) {
+    this.success = success;
+    this.wallTime = System.nanoTime() - this.startNanos;
+    this.cpuTime = difference(getProcessCpuTime(), this.startCpuTime);
+    this.childCpuTime = difference(getChildCpuTime(), this.startChildCpuTime);
+  }
+
+  private static long difference(long end, long start) {
+    if ((end == -1L) || (start == -1L)) {
+      return -1L;
+    }
+    return end - start;
+  }
+
+  /**
+   * Writes the metrics as a JSON object.
+   *
+   * @param file the file to write, the parent directories are created
+   * @throws IOException if the file can not be written
+   */
+  synchronized void write(File file) throws IOException {
+    StringBuilder json = new StringBuilder();
+    json.append("{\n");
+    json.append("  \"goal\": ").append(quote(this.goal)).append(",\n");
+    json.append("  \"executable\": ").append(quote(this.executable)).append(",\n");
+    json.append("  \"success\": ").append(this.success).append(",\n");
+    json.append("  \"upToDate\": ").append(this.upToDate).append(",\n");
+    json.append("  \"wallTimeMillis\": ").append(millis(this.wallTime)).append(",\n");
+    json.append("  \"cpuTimeMillis\": ").append(millis(this.cpuTime)).append(",\n");
+    json.append("  \"forkedCpuTimeMillis\": ").append(millis(this.childCpuTime)).append(",\n");
+    json.append("  \"phases\": {");
+    boolean first = true;
+    for (Entry<String, Phase> entry : this.phases.entrySet()) {
+      if (!first) {
+        json.append(',');
+      }
+      first = false;
+      Phase phase = entry.getValue();
+      json.append("\n    ").append(quote(entry.getKey())).append(": { \"millis\": ").append(millis(phase.duration))
+          .append(", \"count\": ").append(phase.count).append(" }");
+    }
+    json.append(first ? "},\n" : "\n  },\n");
+    json.append("  \"peakOutputChars\": ").append(this.peakOutputSize).append(",\n");
+    json.append("  \"outputLines\": ").append(this.outputLines).append(",\n");
+    json.append("  \"classPathEntries\": ").append(this.classPathEntries).append(",\n");
+    json.append("  \"classes\": ").append(this.classes).append('\n');
+    json.append("}\n");
+
+    Path path = file.toPath();
+    Files.createDirectories(path.toAbsolutePath().getParent());
+    Files.write(path, json.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Returns a one line summary for the log.
+   *
+   * @return the summary
+   */
+  synchronized String getSummary() {
+    StringBuilder summary = new StringBuilder();
+    summary.append(this.goal).append(" took ").append(this.wallTime / 1_000_000L).append(" ms (");
+    for (Entry<String, Phase> entry : this.phases.entrySet()) {
+      Phase phase = entry.getValue();
+      summary.append(entry.getKey()).append(' ').append(phase.duration / 1_000_000L).append(" ms");
+      if (phase.count > 1) {
+        summary.append(" in ").append(phase.count).append(" runs");
+      }
+      summary.append(", ");
+    }
+    if (this.cpuTime != -1L) {
+      summary.append("CPU ").append(this.cpuTime / 1_000_000L).append(" ms");
+      if (this.childCpuTime > 0L) {
+        summary.append(" + ").append(this.childCpuTime / 1_000_000L).append(" ms forked");
+      }
+      summary.append(", ");
+    }
+    summary.append(this.outputLines).append(" output lines, ");
+    summary.append(this.classPathEntries).append(" class path entries");
+    if (this.classes != -1) {
+      summary.append(", ").append(this.classes).append(" classes");
+    }
+    summary.append(')');
+    return summary.toString();
+  }
+
+  private static String millis(long nanos) {
+    if (nanos == -1L) {
+      return "-1";
+    }
+    return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0d);
+  }
+
+  private static String quote(String value) {
+    if (value == null) {
+      return "null";
+    }
+    StringBuilder quoted = new StringBuilder(value.length() + 2);
+    quoted.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if ((c == '"') || (c == '\\')) {
+        quoted.append('\\').append(c);
+      } else if (c < ' ') {
+        quoted.append(String.format("\\u%04x", (int) c));
+      } else {
+        quoted.append(c);
+      }
+    }
+    return quoted.append('"').toString();
+  }
+
+  /**
+   * Returns the CPU time of the Maven JVM, this includes jdeps when it
+   * runs in-process or with the builtin engine.
+   *
+   * @return the CPU time in nanoseconds, -1 if not available
+   */
+  private static long getProcessCpuTime() {
+    OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+    if (bean instanceof com.sun.management.OperatingSystemMXBean) {
+      return ((com.sun.management.OperatingSystemMXBean) bean).getProcessCpuTime();
+    }
+    return -1L;
+  }
+
+  /**
+   * Returns the CPU time of all terminated child processes, this
+   * includes forked jdeps processes.
+   *
+   * @return the CPU time in nanoseconds, -1 if not available
+   */
+  private static long getChildCpuTime() {
+    Path stat = Paths.get("/proc/self/stat");
+    if (!Files.isReadable(stat)) {
+      return -1L;
+    }
+    try {
+      List<String> lines = Files.readAllLines(stat, StandardCharsets.US_ASCII);
+      if (lines.isEmpty()) {
+        return -1L;
+      }
+      // the command in field 2 may contain spaces, field 3 follows the last ')'
+      String line = lines.get(0);
+      String[] fields = line.substring(line.lastIndexOf(')') + 2).split(" ");
+      // cutime and cstime are fields 16 and 17
+      long ticks = Long.parseLong(fields[13]) + Long.parseLong(fields[14]);
+      return ticks * NANOS_PER_CLOCK_TICK;
+    } catch (IOException | RuntimeException e) {
+      return -1L;
+    }
+  }
+
+  static final class Phase {
+
+    long duration;
+    int count;
+
+  }
+
+}
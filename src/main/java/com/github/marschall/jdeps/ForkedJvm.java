@@ -0,0 +1,200 @@
+package com.github.marschall.jdeps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * The options of the JVM of a forked jdeps, optionally with a dynamic
+ * CDS archive of the classes jdeps loads so that later runs start
+ * faster, and the time it may run.
+ * <p>
+ * There is one archive per JDK and set of JVM options. The first run
+ * dumps the archive at exit to a temporary file that is moved in place
+ * if jdeps succeeds, concurrent runs each dump their own and the last
+ * one wins. Dynamic archives require Java 13, for older JDKs only the
+ * options are used. JVM warnings, for example about an unusable
+ * archive, are logged to standard error so they are not mistaken for
+ * jdeps output.
+ */
+final class ForkedJvm {
+
+  private static final int MINIMUM_CDS_VERSION = 13;
+
+  private final List<String> options;
+  private final Path cdsDirectory;
+  private final int timeout;
+  private final Log log;
+
+  /**
+   * Creates new JVM settings.
+   *
+   * @param options the JVM options, may be null
+   * @param cdsDirectory the directory of the CDS archives, {@code null}
+   *  to not use CDS
+   * @param timeout the seconds after which jdeps is killed, 0 for no
+   *  timeout
+   * @param log the log, not null
+   */
+  ForkedJvm(List<String> options, File cdsDirectory, int timeout, Log log) {
+    this.options = options == null ? Collections.<String>emptyList() : options;
+    this.cdsDirectory = cdsDirectory == null ? null : cdsDirectory.toPath();
+    this.timeout = timeout;
+    this.log = log;
+  }
+
+  /**
+   * Returns the seconds after which jdeps is killed.
+   *
+   * @return the timeout, 0 for no timeout
+   */
+  int getTimeout() {
+    return this.timeout;
+  }
+
+  /**
+   * Returns the maximum heap set with {@code -Xmx}.
+   *
+   * @return the maximum heap in megabytes, -1 if not set
+   */
+  int getMaxHeapMegabytes() {
+    int maxHeap = -1;
+    for (String option : this.options) {
+      if (option.startsWith("-Xmx") && (option.length() > 4)) {
+        maxHeap = parseMegabytes(option.substring(4));
+      }
+    }
+    return maxHeap;
+  }
+
+  private static int parseMegabytes(String size) {
+    char unit = Character.toLowerCase(size.charAt(size.length() - 1));
+    String digits = Character.isDigit(unit) ? size : size.substring(0, size.length() - 1);
+    long value;
+    try {
+      value = Long.parseLong(digits);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+    switch (unit) {
+      case 'k':
+        return (int) (value / 1024L);
+      case 'm':
+        return (int) value;
+      case 'g':
+        return (int) (value * 1024L);
+      case 't':
+        return (int) (value * 1024L * 1024L);
+      default:
+        if (Character.isDigit(unit)) {
+          return (int) (value / (1024L * 1024L));
+        }
+        return -1;
+    }
+  }
+
+  /**
+   * Prepares forking jdeps. Problems with the CDS archive are logged and
+   * the archive is not used.
+   *
+   * @param jdepsExecutable the jdeps executable, not null
+   * @return the launch, {@link Launch#finish(boolean)} has to be called
+   *  once jdeps exited
+   */
+  Launch launch(String jdepsExecutable) {
+    List<String> jvmOptions = new ArrayList<>(this.options);
+    if (this.cdsDirectory == null) {
+      return new Launch(jvmOptions, null, null);
+    }
+    try {
+      int version = InProcessJDeps.getMajorVersion(InProcessJDeps.getJdkHome(jdepsExecutable));
+      if (version < MINIMUM_CDS_VERSION) {
+        this.log.debug("CDS archives for jdeps require Java " + MINIMUM_CDS_VERSION + ", "
+                + jdepsExecutable + " is Java " + version);
+        return new Launch(jvmOptions, null, null);
+      }
+      // other options, eg. the GC, can make an archive unusable
+      String key = AnalysisFingerprint.compute(jdepsExecutable,
+              this.options.toArray(new String[this.options.size()]), Collections.<File>emptyList()).substring(0, 16);
+      Path archive = this.cdsDirectory.resolve("jdeps-" + key + ".jsa");
+      jvmOptions.add("-Xlog:disable");
+      jvmOptions.add("-Xlog:all=warning:stderr");
+      if (Files.isRegularFile(archive) && (Files.size(archive) > 0L)) {
+        this.log.debug("Using CDS archive " + archive);
+        jvmOptions.add("-XX:SharedArchiveFile=" + archive);
+        return new Launch(jvmOptions, null, null);
+      }
+      Files.createDirectories(this.cdsDirectory);
+      Path dump = Files.createTempFile(this.cdsDirectory, "jdeps-" + key, ".jsa.tmp");
+      // the JVM writes the archive at exit
+      Files.delete(dump);
+      this.log.info("Creating CDS archive " + archive + " for jdeps");
+      jvmOptions.add("-XX:ArchiveClassesAtExit=" + dump);
+      return new Launch(jvmOptions, dump, archive);
+    } catch (IOException e) {
+      this.log.warn("Unable to use a CDS archive for jdeps: " + e.getMessage());
+      return new Launch(new ArrayList<>(this.options), null, null);
+    }
+  }
+
+  /**
+   * A single run of a forked jdeps.
+   */
+  final class Launch {
+
+    private final List<String> jvmOptions;
+    private final Path dump;
+    private final Path archive;
+
+    Launch(List<String> jvmOptions, Path dump, Path archive) {
+      this.jvmOptions = jvmOptions;
+      this.dump = dump;
+      this.archive = archive;
+    }
+
+    /**
+     * Returns the JVM options, without the {@code -J} prefix of the jdeps
+     * launcher.
+     *
+     * @return the JVM options
+     */
+    List<String> getJvmOptions() {
+      return this.jvmOptions;
+    }
+
+    /**
+     * Moves a newly dumped archive in place.
+     *
+     * @param success whether jdeps succeeded, otherwise the archive
+     *  is discarded
+     */
+    void finish(boolean success) {
+      if (this.dump == null) {
+        return;
+      }
+      try {
+        if (success && Files.isRegularFile(this.dump) && (Files.size(this.dump) > 0L)) {
+          try {
+            Files.move(this.dump, this.archive, StandardCopyOption.ATOMIC_MOVE);
+          } catch (AtomicMoveNotSupportedException e) {
+            Files.move(this.dump, this.archive, StandardCopyOption.REPLACE_EXISTING);
+          }
+        } else {
+          Files.deleteIfExists(this.dump);
+        }
+      } catch (IOException e) {
+        ForkedJvm.this.log.warn("Unable to store CDS archive " + this.archive + ": " + e.getMessage());
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,224 @@
+package com.github.marschall.jdeps;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Runs jdeps inside the Maven JVM instead of forking a new process.
+ * <p>
+ * Two flavors are supported:
+ * <ul>
+ *  <li>{@code java.util.spi.ToolProvider} if the JDK of the jdeps
+ *  executable is the JDK that runs Maven and it is Java 9 or later</li>
+ *  <li>{@code com.sun.tools.jdeps.Main} loaded from {@code lib/tools.jar}
+ *  through an isolated class loader if the JDK of the jdeps executable
+ *  is a Java 8 JDK and Maven runs on the same major version</li>
+ * </ul>
+ * Tools are looked up once per JDK and then reused for all modules of
+ * a build so that they stay warm.
+ */
+final class InProcessJDeps {
+
+  private static final ConcurrentMap<Path, InProcessJDeps> TOOLS = new ConcurrentHashMap<>();
+
+  private static final InProcessJDeps UNAVAILABLE = new InProcessJDeps(null, null, false, "unavailable");
+
+  private final Object tool;
+  private final Method run;
+  private final boolean toolProvider;
+  private final String description;
+
+  private InProcessJDeps(Object tool, Method run, boolean toolProvider, String description) {
+    this.tool = tool;
+    this.run = run;
+    this.toolProvider = toolProvider;
+    this.description = description;
+  }
+
+  /**
+   * Finds the in-process tool for the JDK of a jdeps executable.
+   *
+   * @param jdepsExecutable the path to the jdeps executable, not null
+   * @param log the log for diagnostic output, not null
+   * @return the in-process tool or {@code null} if jdeps of this JDK
+   *  can't be run inside this JVM
+   */
+  static InProcessJDeps forExecutable(String jdepsExecutable, Log log) {
+    Path jdkHome;
+    try {
+      jdkHome = getJdkHome(jdepsExecutable);
+    } catch (IOException e) {
+      log.debug("could not resolve JDK of " + jdepsExecutable, e);
+      return null;
+    }
+    InProcessJDeps jdeps = TOOLS.get(jdkHome);
+    if (jdeps == null) {
+      jdeps = lookUp(jdkHome, log);
+      InProcessJDeps previous = TOOLS.putIfAbsent(jdkHome, jdeps);
+      if (previous != null) {
+        jdeps = previous;
+      } else {
+        log.debug("in-process jdeps for " + jdkHome + ": " + jdeps.description);
+      }
+    }
+    return jdeps == UNAVAILABLE ? null : jdeps;
+  }
+
+  static Path getJdkHome(String jdepsExecutable) throws IOException {
+    // <jdk>/bin/jdeps
+    Path bin = Paths.get(jdepsExecutable).toRealPath().getParent();
+    if ((bin == null) || (bin.getParent() == null)) {
+      throw new IOException("unexpected jdeps location: " + jdepsExecutable);
+    }
+    return bin.getParent();
+  }
+
+  private static InProcessJDeps lookUp(Path jdkHome, Log log) {
+    try {
+      if (isRunningJdk(jdkHome)) {
+        InProcessJDeps toolProvider = lookUpToolProvider();
+        if (toolProvider != null) {
+          return toolProvider;
+        }
+      }
+      InProcessJDeps toolsJar = lookUpToolsJar(jdkHome);
+      if (toolsJar != null) {
+        return toolsJar;
+      }
+    } catch (ReflectiveOperationException | IOException | RuntimeException e) {
+      log.debug("could not load in-process jdeps from " + jdkHome, e);
+    }
+    return UNAVAILABLE;
+  }
+
+  private static boolean isRunningJdk(Path jdkHome) throws IOException {
+    Path javaHome = Paths.get(System.getProperty("java.home")).toRealPath();
+    // on Java 8 java.home points to the JRE inside the JDK
+    return javaHome.equals(jdkHome) || jdkHome.equals(javaHome.getParent());
+  }
+
+  static InProcessJDeps lookUpToolProvider() throws ReflectiveOperationException {
+    Class<?> toolProviderClass;
+    try {
+      toolProviderClass = Class.forName("java.util.spi.ToolProvider");
+    } catch (ClassNotFoundException e) {
+      // Java 8
+      return null;
+    }
+    Method findFirst = toolProviderClass.getMethod("findFirst", String.class);
+    Object optional = findFirst.invoke(null, "jdeps");
+    Object tool = optional.getClass().getMethod("orElse", Object.class).invoke(optional, (Object) null);
+    if (tool == null) {
+      return null;
+    }
+    Method run = toolProviderClass.getMethod("run", PrintWriter.class, PrintWriter.class, String[].class);
+    return new InProcessJDeps(tool, run, true, "ToolProvider");
+  }
+
+  private static InProcessJDeps lookUpToolsJar(Path jdkHome) throws ReflectiveOperationException, IOException {
+    Path toolsJar = jdkHome.resolve("lib").resolve("tools.jar");
+    if (!Files.isRegularFile(toolsJar) || !isSameMajorVersion(jdkHome)) {
+      return null;
+    }
+    // parent is the extension class loader so neither Maven nor plugin classes are visible
+    ClassLoader parent = ClassLoader.getSystemClassLoader().getParent();
+    @SuppressWarnings("resource") // kept open so the tool stays warm
+    URLClassLoader loader = new URLClassLoader(new URL[] {toolsJar.toUri().toURL()}, parent);
+    Class<?> mainClass = Class.forName("com.sun.tools.jdeps.Main", true, loader);
+    Method run = mainClass.getMethod("run", String[].class, PrintWriter.class);
+    return new InProcessJDeps(null, run, false, toolsJar.toString());
+  }
+
+  private static boolean isSameMajorVersion(Path jdkHome) throws IOException {
+    Path release = jdkHome.resolve("release");
+    if (!Files.isRegularFile(release)) {
+      return false;
+    }
+    String specificationVersion = System.getProperty("java.specification.version");
+    for (String line : Files.readAllLines(release, StandardCharsets.ISO_8859_1)) {
+      if (line.startsWith("JAVA_VERSION=")) {
+        String version = line.substring("JAVA_VERSION=".length()).replace("\"", "");
+        return version.equals(specificationVersion) || version.startsWith(specificationVersion + '.');
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads the major version of a JDK from its {@code release} file.
+   *
+   * @param jdkHome the JDK, not null
+   * @return the major version, eg. {@code 8} or {@code 17}
+   * @throws IOException if the version can not be determined
+   */
+  static int getMajorVersion(Path jdkHome) throws IOException {
+    Path release = jdkHome.resolve("release");
+    if (Files.isRegularFile(release)) {
+      for (String line : Files.readAllLines(release, StandardCharsets.ISO_8859_1)) {
+        if (line.startsWith("JAVA_VERSION=")) {
+          String version = line.substring("JAVA_VERSION=".length()).replace("\"", "");
+          String major = version.startsWith("1.") ? version.substring(2) : version;
+          int end = 0;
+          while ((end < major.length()) && Character.isDigit(major.charAt(end))) {
+            end += 1;
+          }
+          if (end > 0) {
+            return Integer.parseInt(major.substring(0, end));
+          }
+        }
+      }
+    }
+    throw new IOException("version of the JDK " + jdkHome + " unknown");
+  }
+
+
+  /**
+   * Runs jdeps.
+   *
+   * @param arguments the arguments without the executable, not null
+   * @param out receives standard output line by line, not null
+   * @param err receives error output line by line, not null,
+   *  Java 8 jdeps reports errors on standard output
+   * @return the exit code
+   * @throws CommandLineException if jdeps could not be run
+   */
+  int run(String[] arguments, StreamConsumer out, StreamConsumer err) throws CommandLineException {
+    LineConsumerWriter outWriter = new LineConsumerWriter(out);
+    LineConsumerWriter errWriter = new LineConsumerWriter(err);
+    try (PrintWriter outPrinter = new PrintWriter(outWriter);
+         PrintWriter errPrinter = new PrintWriter(errWriter)) {
+      Object exitCode;
+      if (this.toolProvider) {
+        exitCode = this.run.invoke(this.tool, outPrinter, errPrinter, arguments);
+      } else {
+        exitCode = this.run.invoke(null, arguments, outPrinter);
+      }
+      return (Integer) exitCode;
+    } catch (IllegalAccessException e) {
+      throw new CommandLineException("Unable to run jdeps in-process: " + e.getMessage(), e);
+    } catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      throw new CommandLineException("jdeps failed in-process: " + cause.getMessage(), cause);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "in-process jdeps (" + this.description + ')';
+  }
+
+}
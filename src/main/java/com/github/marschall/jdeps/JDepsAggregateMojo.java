@@ -0,0 +1,239 @@
+package com.github.marschall.jdeps;
+
+import static org.apache.maven.plugins.annotations.ResolutionScope.RUNTIME;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+
+import com.github.marschall.jdeps.ModuleOutputSplitter.ModuleOutput;
+
+/**
+ * Runs the jdeps tool once over all modules of the reactor.
+ * <p>
+ * The output directories of all modules are analyzed together with the
+ * union of their runtime classpaths, shared dependencies are only
+ * passed once. The output is split back per module.
+ * <p>
+ * The goal is run from the command line after the modules were built,
+ * for example {@code mvn package jdeps:jdeps-aggregate}. It is not bound
+ * to a phase because an aggregator bound to a phase runs in the root
+ * project before the modules were compiled.
+ *
+ * @author Philippe Marschall
+ */
+@Mojo(name = "jdeps-aggregate",
+  threadSafe = true,
+  requiresProject = true,
+  aggregator = true,
+  inheritByDefault = false,
+  requiresDependencyResolution = RUNTIME
+)
+public class JDepsAggregateMojo extends AbstractJDepsAnalysisMojo {
+
+  @Parameter(defaultValue = "${reactorProjects}", readonly = true)
+  private List<MavenProject> reactorProjects;
+
+  /**
+   * Destination directory for DOT file output. One file per module
+   * named after the group id and artifact id, for example
+   * {@code com.example.core.dot}, and a {@code summary.dot} with the
+   * module level dependencies are written.
+   */
+  @Parameter(property = "jdeps.dotOutputDirectory")
+  private File dotOutputDirectory;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    Map<String, File> outputDirectories = getOutputDirectories(this.reactorProjects);
+    if (outputDirectories.isEmpty()) {
+      this.getLog().info("No module with classes found, run the goal after the modules were compiled, skipping jdeps");
+      return;
+    }
+
+    String jExecutable;
+    try {
+      jExecutable = this.getJdepsExecutable();
+    } catch (IOException e ) {
+      throw new MojoFailureException("Unable to find jdeps command: " + e.getMessage(), e );
+    }
+    Commandline cmd = buildCommandLine(jExecutable, this.getAnalysisOptions(), this.reactorProjects, outputDirectories);
+
+    ModuleOutputSplitter splitter;
+    try {
+      splitter = ModuleOutputSplitter.forModules(outputDirectories, this.getLog());
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to scan module output directories", e);
+    }
+    this.executeJDepsCommandLine(cmd, splitter);
+
+    this.logOutput(splitter);
+    if (this.dotOutputDirectory != null) {
+      try {
+        this.writeDotFiles(splitter);
+      } catch (IOException e) {
+        throw new MojoExecutionException("Unable to write DOT files", e);
+      }
+    }
+  }
+
+  /**
+   * Returns the output directories of the modules that have classes.
+   *
+   * @param reactorProjects the modules of the reactor, not null
+   * @return the output directories keyed by module name, in reactor order
+   */
+  static Map<String, File> getOutputDirectories(List<MavenProject> reactorProjects) {
+    Map<String, File> outputDirectories = new LinkedHashMap<>();
+    for (MavenProject reactorProject : reactorProjects) {
+      File outputDirectory = new File(reactorProject.getBuild().getOutputDirectory());
+      if (outputDirectory.isDirectory()) {
+        outputDirectories.put(getModuleName(reactorProject), outputDirectory);
+      }
+    }
+    return outputDirectories;
+  }
+
+  /**
+   * Returns the name of a module in the output, unique in the reactor
+   * unlike the artifact id.
+   *
+   * @param reactorProject the module, not null
+   * @return the group id and artifact id separated by a colon
+   */
+  static String getModuleName(MavenProject reactorProject) {
+    return reactorProject.getGroupId() + ':' + reactorProject.getArtifactId();
+  }
+
+  /**
+   * Returns the name of the DOT file of a module, module names contain
+   * a colon which is not allowed in file names on Windows.
+   *
+   * @param moduleName the name of the module, not null
+   * @return the file name
+   */
+  static String getDotFileName(String moduleName) {
+    return moduleName.replace(':', '.') + ".dot";
+  }
+
+  /**
+   * Collects the runtime classpath of all modules, without the modules
+   * themselves, deduplicated and sorted so that the command line is
+   * stable.
+   *
+   * @param reactorProjects the modules of the reactor, not null
+   * @return the absolute paths of the classpath entries
+   */
+  static Set<String> getClassPath(List<MavenProject> reactorProjects) {
+    Set<String> reactorArtifacts = new HashSet<>();
+    for (MavenProject reactorProject : reactorProjects) {
+      reactorArtifacts.add(getModuleName(reactorProject));
+    }
+    ScopeArtifactFilter runtimeFilter = new ScopeArtifactFilter(Artifact.SCOPE_RUNTIME);
+    Set<String> classPath = new TreeSet<>();
+    for (MavenProject reactorProject : reactorProjects) {
+      for (Artifact artifact : reactorProject.getArtifacts()) {
+        File file = artifact.getFile();
+        if ((file != null) && runtimeFilter.include(artifact)
+                && !reactorArtifacts.contains(artifact.getGroupId() + ':' + artifact.getArtifactId())) {
+          classPath.add(file.getAbsolutePath());
+        }
+      }
+    }
+    return classPath;
+  }
+
+  /**
+   * Builds the command line that analyzes all modules at once, shared
+   * with the aggregate report.
+   *
+   * @param jExecutable the jdeps executable, not null
+   * @param options the options of the analysis, not null
+   * @param reactorProjects the modules of the reactor, not null
+   * @param outputDirectories the output directories of the modules with
+   *  classes, not null
+   * @return the command line
+   */
+  static Commandline buildCommandLine(String jExecutable, AnalysisOptions options, List<MavenProject> reactorProjects,
+          Map<String, File> outputDirectories) {
+    Commandline cmd = new Commandline();
+    cmd.setExecutable(jExecutable);
+
+    options.addApiOnly(cmd);
+    addClassPathArg(cmd, reactorProjects);
+    options.addInclude(cmd);
+    options.addPackagesArg(cmd);
+    options.addProfileArg(cmd);
+    options.addRegexArg(cmd);
+    options.addVerboseArg(cmd);
+    options.addVerboseLevelArg(cmd);
+    options.addFilterArg(cmd);
+    options.addFilterModeArg(cmd);
+
+    for (File outputDirectory : outputDirectories.values()) {
+      cmd.createArg().setFile(outputDirectory);
+    }
+    return cmd;
+  }
+
+  private static void addClassPathArg(Commandline cmd, List<MavenProject> reactorProjects) {
+    Set<String> classPath = getClassPath(reactorProjects);
+    if (!classPath.isEmpty()) {
+      // jdeps doesn't like an empty classpath
+      cmd.createArg().setValue("-classpath");
+      cmd.createArg().setValue(StringUtils.join(classPath.iterator(), File.pathSeparator));
+    }
+  }
+
+  private void logOutput(ModuleOutputSplitter splitter) {
+    for (ModuleOutput module : splitter.getModules()) {
+      String output = module.format(this.getAnalysisOptions().isSummary());
+      if (StringUtils.isNotEmpty(output)) {
+        this.getLog().info('\n' + output.trim());
+      }
+    }
+    List<String> otherLines = splitter.getOtherLines();
+    if (!otherLines.isEmpty()) {
+      this.getLog().info('\n' + StringUtils.join(otherLines.iterator(), "\n").trim());
+    }
+  }
+
+  private void writeDotFiles(ModuleOutputSplitter splitter) throws IOException {
+    Path dotDirectory = this.dotOutputDirectory.toPath();
+    Files.createDirectories(dotDirectory);
+    List<ModuleOutput> modules = new ArrayList<>(splitter.getModules());
+    for (ModuleOutput module : modules) {
+      module.writeDot(dotDirectory.resolve(getDotFileName(module.getName())));
+    }
+    try (Writer writer = Files.newBufferedWriter(dotDirectory.resolve("summary.dot"), StandardCharsets.UTF_8)) {
+      writer.write("digraph \"summary\" {\n");
+      for (ModuleOutput module : modules) {
+        for (String archive : module.getTargetArchives()) {
+          writer.write(String.format("  %-50s -> %s;\n", '"' + module.getName() + '"', '"' + archive + '"'));
+        }
+      }
+      writer.write("}\n");
+    }
+  }
+
+}
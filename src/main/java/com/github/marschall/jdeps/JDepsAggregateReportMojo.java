@@ -0,0 +1,134 @@
+package com.github.marschall.jdeps;
+
+import static org.apache.maven.plugins.annotations.LifecyclePhase.SITE;
+import static org.apache.maven.plugins.annotations.ResolutionScope.RUNTIME;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+
+import org.apache.maven.doxia.module.xhtml5.Xhtml5SinkFactory;
+import org.apache.maven.doxia.sink.SinkFactory;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.reporting.MavenReportException;
+import org.codehaus.plexus.util.cli.Commandline;
+
+/**
+ * Puts the dependencies of all modules of the reactor into one report
+ * page of the top level site.
+ * <p>
+ * Like the jdeps-aggregate goal jdeps runs once over the output
+ * directories of all modules with the union of their runtime classpaths,
+ * so dependencies shared by several modules are only read once. The
+ * packages of every module are attributed to the module, the report lists
+ * the dependencies between modules and highlights them on the package
+ * pages.
+ *
+ * @author Philippe Marschall
+ */
+@Mojo(name = "jdeps-aggregate-report",
+  threadSafe = true,
+  requiresProject = true,
+  aggregator = true,
+  inheritByDefault = false,
+  defaultPhase = SITE,
+  requiresDependencyResolution = RUNTIME
+)
+public class JDepsAggregateReportMojo extends AbstractJDepsReport {
+
+  @Parameter(defaultValue = "${reactorProjects}", readonly = true)
+  private List<MavenProject> reactorProjects;
+
+  /**
+   * Maximum number of table rows per report page. Larger tables are
+   * split into several pages.
+   */
+  @Parameter(defaultValue = "500", property = "jdeps.reportPageSize")
+  private int reportPageSize;
+
+  /**
+   * Maximum amount of jdeps output in megabytes that is kept in memory.
+   * Larger output is spilled to a file in the work directory and
+   * streamed from there.
+   */
+  @Parameter(defaultValue = "16", property = "jdeps.outputMemoryLimit")
+  private long outputMemoryLimit;
+
+  /**
+   * Directory where large jdeps output is spilled to.
+   */
+  @Parameter(defaultValue = "${project.build.directory}/jdeps", readonly = true)
+  private File workDirectory;
+
+  @Override
+  public String getOutputName() {
+    return "jdeps-aggregate-report";
+  }
+
+  private ResourceBundle getBundle(Locale locale) {
+    return ResourceBundle.getBundle("jdeps-report", locale, this.getClass().getClassLoader());
+  }
+
+  @Override
+  public String getName(Locale locale) {
+    return this.getBundle(locale).getString("report.jdeps.aggregate.name");
+  }
+
+  @Override
+  public String getDescription(Locale locale) {
+    return this.getBundle(locale).getString("report.jdeps.aggregate.description");
+  }
+
+  @Override
+  public boolean canGenerateReport() {
+    // only once for the whole reactor
+    return this.project.isExecutionRoot();
+  }
+
+  @Override
+  protected void executeReport(Locale locale) throws MavenReportException {
+    Map<String, File> outputDirectories = JDepsAggregateMojo.getOutputDirectories(this.reactorProjects);
+    if (outputDirectories.isEmpty()) {
+      this.getLog().info("No module with classes found, build the modules before the site");
+    }
+
+    String jExecutable;
+    try {
+      jExecutable = this.getJdepsExecutable();
+    } catch (IOException e ) {
+      throw new MavenReportException("Unable to find jdeps command: " + e.getMessage(), e );
+    }
+    Commandline cmd = JDepsAggregateMojo.buildCommandLine(jExecutable, this.getAnalysisOptions(), this.reactorProjects,
+            outputDirectories);
+
+    try (OutputBuffer output = new OutputBuffer(this.workDirectory, this.outputMemoryLimit * 512L * 1024L)) {
+      ModuleOutputSplitter splitter = ModuleOutputSplitter.forModules(outputDirectories, this.getLog());
+      if (!outputDirectories.isEmpty()) {
+        this.executeJDepsCommandLine(cmd, output);
+        output.replay(splitter);
+      }
+      this.renderReport(splitter.toGraph(), outputDirectories.keySet(), output);
+    } catch (IOException e) {
+      throw new MavenReportException("Unable to render jdeps aggregate report", e);
+    }
+  }
+
+  private void renderReport(DependencyGraph graph, Set<String> modules, OutputBuffer output) throws IOException {
+    SinkFactory sinkFactory = this.getSinkFactory();
+    if (sinkFactory == null) {
+      // not run by the site plugin, sub pages are not decorated
+      sinkFactory = new Xhtml5SinkFactory();
+    }
+    boolean classLevel = this.getAnalysisOptions().isClassLevel();
+    new JDepsReportRenderer(this.getOutputName(), "JDeps aggregate report", modules, this.getSink(), sinkFactory,
+            this.getReportOutputDirectory(), graph, classLevel, this.reportPageSize)
+            .render(output);
+  }
+
+}
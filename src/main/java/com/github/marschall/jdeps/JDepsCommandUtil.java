@@ -26,6 +26,24 @@ final class JDepsCommandUtil {
     this.session = session;
   }
 
+  /**
+   * Get the executable for an engine, either the path of the JDeps tool
+   * or the executable of the {@link ClassFileScanner}.
+   *
+   * @param engine {@code jdeps} or {@code builtin}
+   * @return the executable
+   * @throws IOException if the engine is unknown or jdeps is not found
+   */
+  String getExecutable(String engine) throws IOException {
+    if ("builtin".equals(engine)) {
+      return ClassFileScanner.getExecutable();
+    }
+    if (!"jdeps".equals(engine)) {
+      throw new IOException("Unknown engine '" + engine + "', expected 'jdeps' or 'builtin'.");
+    }
+    return this.getJdepsExecutable();
+  }
+
   /**
    * Get the path of the JDeps tool executable depending the user entry or try to find it depending the OS
    * or the <code>java.home</code> system property or the <code>JAVA_HOME</code> environment variable.
@@ -0,0 +1,268 @@
+package com.github.marschall.jdeps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.SystemUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Executes a jdeps command line either in-process or by forking a new
+ * JVM, or with the {@link ClassFileScanner} if the executable selects
+ * the builtin engine. Both can also be run in an {@link AnalysisDaemon}
+ * shared by all Maven invocations. A forked jdeps is started with the
+ * options of a {@link ForkedJvm}. Analyses wait for their turn in the
+ * {@link AnalysisScheduler} of the build.
+ */
+final class JDepsExecutor {
+
+  private final Log log;
+  private final boolean inProcess;
+  private final DaemonClient daemon;
+  private final ForkedJvm forkedJvm;
+  private final AnalysisScheduler.Lane lane;
+
+  JDepsExecutor(Log log, boolean inProcess) {
+    this(log, inProcess, null, null, null);
+  }
+
+  JDepsExecutor(Log log, boolean inProcess, DaemonClient daemon, ForkedJvm forkedJvm, AnalysisScheduler.Lane lane) {
+    this.log = log;
+    this.inProcess = inProcess;
+    this.daemon = daemon;
+    this.forkedJvm = forkedJvm;
+    this.lane = lane;
+  }
+
+  /**
+   * Creates a command line from an executable and arguments.
+   *
+   * @param executable the jdeps executable, not null
+   * @param arguments the arguments, not null
+   * @return the command line
+   */
+  static Commandline newCommandline(String executable, String[] arguments) {
+    Commandline cmd = new Commandline();
+    cmd.setExecutable(executable);
+    cmd.addArguments(arguments);
+    return cmd;
+  }
+
+  /**
+   * Describes a failed jdeps run for the build log.
+   *
+   * @param cmd the command line, not null
+   * @param exitCode the exit code of jdeps
+   * @param err the error output of jdeps, may be null
+   * @return the message
+   */
+  static String getFailureMessage(Commandline cmd, int exitCode, String err) {
+    String cmdLine = CommandLineUtils.toString(cmd.getCommandline()).replaceAll("'", "");
+
+    StringBuilder msg = new StringBuilder("\nExit code: ");
+    msg.append(exitCode);
+    if (StringUtils.isNotEmpty(err)) {
+      msg.append(" - ").append(err);
+    }
+    msg.append('\n');
+    msg.append("Command line was: ").append(cmdLine).append('\n').append('\n');
+    return msg.toString();
+  }
+
+  /**
+   * Executes jdeps. Falls back to in-process execution if the daemon is
+   * not available and to forking if in-process execution was requested
+   * but is not available for the JDK of the executable.
+   *
+   * @param cmd the command line, not null
+   * @param out receives standard output line by line, not null
+   * @param err receives error output line by line, not null
+   * @return the exit code
+   * @throws CommandLineException if jdeps could not be run or did not
+   *  finish in time
+   */
+  int execute(Commandline cmd, StreamConsumer out, StreamConsumer err) throws CommandLineException {
+    if (this.lane == null) {
+      return this.run(cmd, out, err);
+    }
+    AnalysisScheduler.Permit permit;
+    try {
+      permit = this.lane.acquire(this.forkedJvm != null ? this.forkedJvm.getMaxHeapMegabytes() : -1);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CommandLineException("Interrupted while waiting to run jdeps", e);
+    }
+    try {
+      return this.run(cmd, out, err);
+    } finally {
+      permit.close();
+    }
+  }
+
+  private int run(Commandline cmd, StreamConsumer out, StreamConsumer err) throws CommandLineException {
+    if (ClassFileScanner.isBuiltin(cmd.getLiteralExecutable())) {
+      if (this.daemon != null) {
+        Integer exitCode = this.runInDaemon(Paths.get(System.getProperty("java.home")), true,
+                cmd.getArguments(), out, err);
+        if (exitCode != null) {
+          return exitCode;
+        }
+      }
+      this.log.debug("Running the builtin engine");
+      try {
+        return ClassFileScanner.run(cmd.getArguments(), out, err);
+      } catch (IOException e) {
+        throw new CommandLineException("builtin engine failed", e);
+      }
+    }
+    String[] arguments = cmd.getArguments();
+    String[] expandedArguments;
+    try {
+      // jdeps itself does not read argument files
+      expandedArguments = ArgumentFile.expand(arguments);
+    } catch (IOException e) {
+      throw new CommandLineException("Unable to read argument file", e);
+    }
+    if (this.daemon != null) {
+      Integer exitCode;
+      try {
+        exitCode = this.runInDaemon(InProcessJDeps.getJdkHome(cmd.getLiteralExecutable()), false,
+                expandedArguments, out, err);
+      } catch (IOException e) {
+        this.log.info("JDK of " + cmd.getLiteralExecutable() + " unknown, not using the jdeps daemon");
+        exitCode = null;
+      }
+      if (exitCode != null) {
+        return exitCode;
+      }
+    }
+    if (this.inProcess) {
+      InProcessJDeps jdeps = InProcessJDeps.forExecutable(cmd.getLiteralExecutable(), this.log);
+      if (jdeps != null) {
+        this.log.debug("Running " + jdeps);
+        return jdeps.run(expandedArguments, out, err);
+      }
+      this.log.info("jdeps of " + cmd.getLiteralExecutable() + " can not be run in-process, forking");
+    }
+    return this.fork(cmd.getLiteralExecutable(), arguments, expandedArguments, out, err);
+  }
+
+  private int fork(String executable, String[] arguments, String[] expandedArguments,
+          StreamConsumer out, StreamConsumer err) throws CommandLineException {
+    ForkedJvm.Launch launch = this.forkedJvm != null ? this.forkedJvm.launch(executable) : null;
+    List<String> jvmOptions = launch != null ? launch.getJvmOptions() : Collections.<String>emptyList();
+    boolean success = false;
+    try {
+      int exitCode;
+      if (expandedArguments != arguments) {
+        exitCode = this.forkWithArgumentFile(executable, expandedArguments, jvmOptions, out, err);
+      } else {
+        exitCode = this.executeCommandLine(newCommandline(executable, withLauncherOptions(jvmOptions, arguments)), out, err);
+      }
+      success = exitCode == 0;
+      return exitCode;
+    } finally {
+      if (launch != null) {
+        launch.finish(success);
+      }
+    }
+  }
+
+  /**
+   * Prepends JVM options in the form the jdeps launcher expects.
+   */
+  private static String[] withLauncherOptions(List<String> jvmOptions, String[] arguments) {
+    if (jvmOptions.isEmpty()) {
+      return arguments;
+    }
+    List<String> launcherArguments = new ArrayList<>(jvmOptions.size() + arguments.length);
+    for (String jvmOption : jvmOptions) {
+      launcherArguments.add("-J" + jvmOption);
+    }
+    launcherArguments.addAll(Arrays.asList(arguments));
+    return launcherArguments.toArray(new String[launcherArguments.size()]);
+  }
+
+  /**
+   * Runs an analysis in the daemon.
+   *
+   * @return the exit code or {@code null} if the daemon is not available
+   */
+  private Integer runInDaemon(Path jdkHome, boolean builtin, String[] arguments,
+          StreamConsumer out, StreamConsumer err) throws CommandLineException {
+    try {
+      this.log.debug("Running " + (builtin ? "the builtin engine" : "jdeps") + " in the daemon of " + jdkHome);
+      return this.daemon.run(jdkHome, builtin, arguments, out, err);
+    } catch (IOException e) {
+      this.log.info("jdeps daemon not available, running without: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Forks jdeps through the java launcher of its JDK, which unlike the
+   * jdeps launcher reads argument files, so that a long classpath does
+   * not end up on the command line. The launcher does not expand
+   * argument files after the main class, therefore all arguments are
+   * passed in one temporary argument file. The file is written for every
+   * fork, only the classpath argument file of the goals is kept between
+   * runs. Falls back to passing the arguments on the command line for
+   * Java 8.
+   */
+  private int forkWithArgumentFile(String executable, String[] arguments, List<String> jvmOptions,
+          StreamConsumer out, StreamConsumer err) throws CommandLineException {
+    File bin = new File(executable).getAbsoluteFile().getParentFile();
+    File java = new File(bin, SystemUtils.IS_OS_WINDOWS ? "java.exe" : "java");
+    // lib/modules only exists in Java 9 and later runtime images
+    if (!java.isFile() || !new File(bin.getParentFile(), "lib/modules").isFile()) {
+      return this.executeCommandLine(newCommandline(executable, withLauncherOptions(jvmOptions, arguments)), out, err);
+    }
+    List<String> launcherArguments = new ArrayList<>(jvmOptions.size() + arguments.length + 2);
+    launcherArguments.addAll(jvmOptions);
+    launcherArguments.add("-m");
+    launcherArguments.add("jdk.jdeps/com.sun.tools.jdeps.Main");
+    launcherArguments.addAll(Arrays.asList(arguments));
+    Path argumentFile = null;
+    try {
+      argumentFile = Files.createTempFile("jdeps", ".args");
+      String argument = ArgumentFile.write(argumentFile, launcherArguments);
+      this.log.debug("Running jdeps with " + java + " " + argument);
+      return this.executeCommandLine(newCommandline(java.getPath(), new String[] {argument}), out, err);
+    } catch (IOException e) {
+      throw new CommandLineException("Unable to write argument file", e);
+    } finally {
+      if (argumentFile != null) {
+        try {
+          Files.deleteIfExists(argumentFile);
+        } catch (IOException e) {
+          this.log.debug("Unable to delete " + argumentFile, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Forks a process, kills it if it does not finish within the timeout.
+   */
+  private int executeCommandLine(Commandline cmd, StreamConsumer out, StreamConsumer err) throws CommandLineException {
+    int timeout = this.forkedJvm != null ? this.forkedJvm.getTimeout() : 0;
+    if (timeout <= 0) {
+      return CommandLineUtils.executeCommandLine(cmd, out, err);
+    }
+    // throws CommandLineTimeOutException after killing the process
+    return CommandLineUtils.executeCommandLine(cmd, out, err, timeout);
+  }
+
+}
@@ -0,0 +1,312 @@
+package com.github.marschall.jdeps;
+
+import static org.apache.maven.plugins.annotations.LifecyclePhase.PROCESS_TEST_CLASSES;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.codehaus.plexus.util.cli.CommandLineUtils.StringStreamConsumer;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Finds the classes and test classes that a change can affect, so that
+ * only the affected tests need to run.
+ * <p>
+ * The changed classes are read from a file or computed from the files
+ * changed since a git ref. The affected classes are the changed classes
+ * and all classes that directly or indirectly depend on them according
+ * to the class level dependencies jdeps reports between the classes and
+ * test classes of the project. The affected test classes are written as
+ * include patterns for the {@code includesFile} of Surefire.
+ * <p>
+ * The reversed dependencies are indexed in the work directory and reused
+ * as long as the classes are unchanged.
+ *
+ * @author Philippe Marschall
+ */
+@Mojo(name = "impact",
+  threadSafe = true,
+  requiresProject = true,
+  defaultPhase = PROCESS_TEST_CLASSES
+)
+public class JDepsImpactMojo extends AbstractJDepsMojo {
+
+  /**
+   * A file with the changed classes, one per line. A line is either a
+   * binary class name or the path of a changed file, relative to the
+   * project directory. Files other than Java sources of the project,
+   * empty lines and lines starting with {@code #} are ignored.
+   */
+  @Parameter(property = "jdeps.changedClassesFile")
+  private File changedClassesFile;
+
+  /**
+   * A git ref, the Java source files of the project that differ from it
+   * in the working tree, including untracked files, are the changed
+   * classes. Used if no changedClassesFile is set.
+   */
+  @Parameter(property = "jdeps.changedSince")
+  private String changedSince;
+
+  /**
+   * The git executable.
+   */
+  @Parameter(defaultValue = "git", property = "jdeps.gitExecutable")
+  private String gitExecutable;
+
+  /**
+   * The file the binary names of all affected top level classes are
+   * written to.
+   */
+  @Parameter(defaultValue = "${project.build.directory}/jdeps/impact/affected-classes.txt", property = "jdeps.affectedClassesFile")
+  private File affectedClassesFile;
+
+  /**
+   * The file the affected top level test classes are written to as
+   * Surefire include patterns, for example {@code com/example/FooTest.java}.
+   * Pass it to Surefire with {@code -Dsurefire.includesFile=...}.
+   */
+  @Parameter(defaultValue = "${project.build.directory}/jdeps/impact/affected-tests.txt", property = "jdeps.affectedTestsFile")
+  private File affectedTestsFile;
+
+  /**
+   * The engine that analyzes the class files: "jdeps" runs the jdeps
+   * tool, "builtin" reads the class files in the Maven JVM without
+   * starting jdeps. The builtin engine requires Maven to run on Java 9
+   * or later.
+   */
+  @Parameter(defaultValue = "jdeps", property = "jdeps.engine")
+  private String engine;
+
+  @Parameter(defaultValue = "${project.build.outputDirectory}", readonly = true)
+  private File outputDirectory;
+
+  @Parameter(defaultValue = "${project.build.testOutputDirectory}", readonly = true)
+  private File testOutputDirectory;
+
+  /**
+   * Directory where the reverse dependency index is stored.
+   */
+  @Parameter(defaultValue = "${project.build.directory}/jdeps/impact", readonly = true)
+  private File workDirectory;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    if (!this.outputDirectory.isDirectory() && !this.testOutputDirectory.isDirectory()) {
+      this.getLog().info("No classes to analyze, skipping");
+      return;
+    }
+    Set<String> changedClasses = this.getChangedClasses();
+
+    ReverseDependencyIndex index = this.getIndex();
+    long start = System.nanoTime();
+    BitSet affected = index.getAffected(changedClasses);
+    Set<String> affectedClasses = new TreeSet<>();
+    Set<String> affectedTests = new TreeSet<>();
+    for (int i = affected.nextSetBit(0); i >= 0; i = affected.nextSetBit(i + 1)) {
+      String topLevelClass = getTopLevelClass(index.getName(i));
+      affectedClasses.add(topLevelClass);
+      if (index.isTest(i)) {
+        affectedTests.add(topLevelClass.replace('.', '/') + ".java");
+      }
+    }
+    this.getLog().debug("Computed affected classes in " + (System.nanoTime() - start) / 1000000L + " ms");
+    this.getLog().info(changedClasses.size() + " changed classes affect " + affectedClasses.size()
+            + " classes and " + affectedTests.size() + " test classes");
+
+    this.writeLines(this.affectedClassesFile, affectedClasses);
+    this.writeLines(this.affectedTestsFile, affectedTests);
+  }
+
+  static String getTopLevelClass(String className) {
+    int dollar = className.indexOf('$');
+    return dollar == -1 ? className : className.substring(0, dollar);
+  }
+
+  private void writeLines(File file, Set<String> lines) throws MojoExecutionException {
+    Path path = file.toPath().toAbsolutePath();
+    try {
+      Files.createDirectories(path.getParent());
+      Files.write(path, lines, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to write " + path, e);
+    }
+  }
+
+  /**
+   * Reads the index or builds it if the classes changed since it was
+   * built.
+   */
+  private ReverseDependencyIndex getIndex() throws MojoExecutionException, MojoFailureException {
+    String jExecutable;
+    try {
+      jExecutable = this.getJdepsExecutable(this.engine);
+    } catch (IOException e ) {
+      throw new MojoFailureException("Unable to find jdeps command: " + e.getMessage(), e );
+    }
+    Commandline cmd = this.buildCommandLine(jExecutable);
+    Path indexFile = new File(this.workDirectory, "reverse-index.bin").toPath();
+    try {
+      String fingerprint = AnalysisFingerprint.compute(jExecutable, cmd.getArguments(), this.getInputFiles());
+      ReverseDependencyIndex index = ReverseDependencyIndex.read(indexFile, fingerprint);
+      if (index != null) {
+        this.getLog().debug("Classes unchanged, reusing reverse dependency index of " + index.size() + " classes");
+        return index;
+      }
+      DependencyGraphParser parser = new DependencyGraphParser();
+      try (OutputBuffer output = new OutputBuffer(this.workDirectory, 16L * 1024L * 1024L)) {
+        this.executeJDepsCommandLine(cmd, output);
+        output.replay(parser);
+      }
+      String testArchive = this.testOutputDirectory.isDirectory() ? this.testOutputDirectory.getName() : null;
+      index = ReverseDependencyIndex.build(parser.getGraph(), this.outputDirectory.getName(), testArchive);
+      index.write(indexFile, fingerprint);
+      return index;
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to build reverse dependency index " + indexFile, e);
+    }
+  }
+
+  private Commandline buildCommandLine(String jExecutable) {
+    Commandline cmd = new Commandline();
+    cmd.setExecutable(jExecutable);
+    cmd.createArg().setValue("-verbose:class");
+    // dependencies within a package affect as well
+    cmd.createArg().setValue("-filter:none");
+    for (File inputFile : this.getInputFiles()) {
+      cmd.createArg().setFile(inputFile);
+    }
+    return cmd;
+  }
+
+  private List<File> getInputFiles() {
+    List<File> inputFiles = new ArrayList<>(2);
+    if (this.outputDirectory.isDirectory()) {
+      inputFiles.add(this.outputDirectory);
+    }
+    if (this.testOutputDirectory.isDirectory()) {
+      inputFiles.add(this.testOutputDirectory);
+    }
+    return inputFiles;
+  }
+
+  /**
+   * Returns the binary names of the changed top level classes.
+   */
+  private Set<String> getChangedClasses() throws MojoExecutionException, MojoFailureException {
+    List<String> lines;
+    if (this.changedClassesFile != null) {
+      try {
+        lines = Files.readAllLines(this.changedClassesFile.toPath(), StandardCharsets.UTF_8);
+      } catch (IOException e) {
+        throw new MojoExecutionException("Unable to read changed classes from " + this.changedClassesFile, e);
+      }
+    } else if (StringUtils.isNotEmpty(this.changedSince)) {
+      lines = this.getChangedFiles();
+    } else {
+      throw new MojoFailureException("Either changedClassesFile or changedSince has to be set");
+    }
+
+    Set<String> changedClasses = new TreeSet<>();
+    int ignored = 0;
+    for (String line : lines) {
+      String trimmed = line.trim();
+      if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+        continue;
+      }
+      if (trimmed.indexOf('/') == -1 && trimmed.indexOf('\\') == -1 && !trimmed.endsWith(".java")
+              && !new File(this.project.getBasedir(), trimmed).exists()) {
+        changedClasses.add(getTopLevelClass(trimmed));
+        continue;
+      }
+      String className = this.getSourceClass(trimmed);
+      if (className != null) {
+        changedClasses.add(className);
+      } else {
+        this.getLog().debug("Ignoring changed file " + trimmed);
+        ignored += 1;
+      }
+    }
+    if (ignored > 0) {
+      this.getLog().info(ignored + " changed files are not Java sources of this project and are ignored");
+    }
+    return changedClasses;
+  }
+
+  /**
+   * Maps a Java source file to its class.
+   *
+   * @return the binary name of the class or {@code null} if the file is
+   *  not a Java source file of the project
+   */
+  private String getSourceClass(String fileName) {
+    if (!fileName.endsWith(".java")) {
+      return null;
+    }
+    File file = new File(fileName);
+    if (!file.isAbsolute()) {
+      file = new File(this.project.getBasedir(), fileName);
+    }
+    Path path = file.toPath().toAbsolutePath().normalize();
+    List<String> sourceRoots = new ArrayList<>(this.project.getCompileSourceRoots());
+    sourceRoots.addAll(this.project.getTestCompileSourceRoots());
+    for (String sourceRoot : sourceRoots) {
+      Path root = new File(sourceRoot).toPath().toAbsolutePath().normalize();
+      if (path.startsWith(root)) {
+        String relative = root.relativize(path).toString();
+        return relative.substring(0, relative.length() - ".java".length()).replace(File.separatorChar, '.');
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Lists the files of the project that differ from the git ref,
+   * relative to the project directory.
+   */
+  private List<String> getChangedFiles() throws MojoFailureException {
+    List<String> files = new ArrayList<>();
+    this.git(files, "diff", "--name-only", "--relative", this.changedSince, "--");
+    this.git(files, "ls-files", "--others", "--exclude-standard");
+    return files;
+  }
+
+  private void git(final List<String> lines, String... arguments) throws MojoFailureException {
+    Commandline cmd = JDepsExecutor.newCommandline(this.gitExecutable, arguments);
+    cmd.setWorkingDirectory(this.project.getBasedir());
+    StringStreamConsumer err = new StringStreamConsumer();
+    try {
+      int exitCode = CommandLineUtils.executeCommandLine(cmd, new StreamConsumer() {
+
+        @Override
+        public void consumeLine(String line) {
+          lines.add(line);
+        }
+
+      }, err);
+      if (exitCode != 0) {
+        throw new MojoFailureException("git " + StringUtils.join(arguments, " ") + " failed with exit code "
+                + exitCode + ": " + err.getOutput());
+      }
+    } catch (CommandLineException e) {
+      throw new MojoFailureException("Unable to execute git: " + e.getMessage(), e);
+    }
+  }
+
+}
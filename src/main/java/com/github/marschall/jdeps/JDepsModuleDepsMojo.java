@@ -0,0 +1,233 @@
+package com.github.marschall.jdeps;
+
+import static org.apache.maven.plugins.annotations.LifecyclePhase.PACKAGE;
+import static org.apache.maven.plugins.annotations.ResolutionScope.RUNTIME;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Computes the JDK modules the project and its runtime dependencies need,
+ * for example for {@code jlink --add-modules}.
+ * <p>
+ * Runs {@code jdeps --print-module-deps} over the classes of the project
+ * and all runtime dependencies. The comma separated list of modules is
+ * written to a file and set as a project property. The result is reused
+ * as long as the classes, the dependencies and the JDK are unchanged.
+ * Requires jdeps of Java 11 or later.
+ *
+ * @author Philippe Marschall
+ */
+@Mojo(name = "module-deps",
+  threadSafe = true,
+  requiresProject = true,
+  defaultPhase = PACKAGE,
+  requiresDependencyResolution = RUNTIME
+)
+public class JDepsModuleDepsMojo extends AbstractJDepsMojo {
+
+  /**
+   * A comma separated list of module names.
+   */
+  private static final Pattern MODULE_LIST = Pattern.compile("[\\w.]+(,[\\w.]+)*");
+
+  /**
+   * Scope of the dependencies that are analyzed, {@code runtime}
+   * includes compile dependencies.
+   */
+  @Parameter(defaultValue = "runtime", property = "jdeps.classpathScope")
+  private String classpathScope;
+
+  /**
+   * The version of multi-release JARs to analyze. Defaults to the
+   * version of the JDK of jdeps.
+   */
+  @Parameter(property = "jdeps.multiRelease")
+  private String multiRelease;
+
+  /**
+   * Ignore dependencies that are not on the classpath, for example of
+   * optional dependencies. Otherwise jdeps fails on them.
+   */
+  @Parameter(defaultValue = "true", property = "jdeps.ignoreMissingDeps")
+  private boolean ignoreMissingDeps;
+
+  /**
+   * The file the comma separated list of modules is written to.
+   */
+  @Parameter(defaultValue = "${project.build.directory}/jdeps/module-deps.txt", property = "jdeps.moduleDepsFile")
+  private File moduleDepsFile;
+
+  /**
+   * The name of the project property the comma separated list of
+   * modules is set as, for use in later plugins such as jlink.
+   */
+  @Parameter(defaultValue = "jdeps.modules", property = "jdeps.moduleDepsProperty")
+  private String moduleDepsProperty;
+
+  @Parameter(defaultValue = "${project.build.outputDirectory}", readonly = true)
+  private File outputDirectory;
+
+  /**
+   * Directory where the result of the last run is stored.
+   */
+  @Parameter(defaultValue = "${project.build.directory}/jdeps/module-deps", readonly = true)
+  private File workDirectory;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    if (!this.outputDirectory.isDirectory()) {
+      this.getLog().info("No classes to analyze, skipping");
+      return;
+    }
+    String jExecutable;
+    try {
+      jExecutable = this.getJdepsExecutable("jdeps");
+    } catch (IOException e ) {
+      throw new MojoFailureException("Unable to find jdeps command: " + e.getMessage(), e );
+    }
+    Commandline cmd = this.buildCommandLine(jExecutable);
+
+    StoredAnalysis storedAnalysis = new StoredAnalysis(this.workDirectory);
+    ModuleListConsumer modules = new ModuleListConsumer();
+    try {
+      String fingerprint = AnalysisFingerprint.compute(jExecutable, cmd.getArguments(), this.getInputFiles());
+      if (storedAnalysis.isUpToDate(fingerprint, false)) {
+        this.getLog().debug("Classes and dependencies unchanged, reusing previous module dependencies");
+        storedAnalysis.replayOutput(modules);
+      } else {
+        storedAnalysis.invalidate();
+        try (OutputBuffer output = new OutputBuffer(this.workDirectory, Long.MAX_VALUE)) {
+          this.executeJDepsCommandLine(cmd, output);
+          output.replay(modules);
+          storedAnalysis.save(fingerprint, output, null);
+        }
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to store jdeps output", e);
+    }
+
+    String moduleList = modules.getModuleList();
+    if (moduleList == null) {
+      throw new MojoFailureException("jdeps did not print module dependencies");
+    }
+    this.getLog().info("JDK modules: " + moduleList);
+    this.writeModuleList(moduleList);
+    this.project.getProperties().setProperty(this.moduleDepsProperty, moduleList);
+  }
+
+  private void writeModuleList(String moduleList) throws MojoExecutionException {
+    Path file = this.moduleDepsFile.toPath().toAbsolutePath();
+    byte[] content = (moduleList + '\n').getBytes(StandardCharsets.UTF_8);
+    try {
+      // keep the modification time for later incremental steps
+      if (Files.isRegularFile(file) && Arrays.equals(Files.readAllBytes(file), content)) {
+        return;
+      }
+      Files.createDirectories(file.getParent());
+      Files.write(file, content);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to write module dependencies to " + file, e);
+    }
+  }
+
+  private Commandline buildCommandLine(String jExecutable) throws MojoFailureException {
+    Commandline cmd = new Commandline();
+    cmd.setExecutable(jExecutable);
+    cmd.createArg().setValue("--print-module-deps");
+    if (this.ignoreMissingDeps) {
+      cmd.createArg().setValue("--ignore-missing-deps");
+    }
+    this.addMultiReleaseArg(cmd, jExecutable);
+    this.addClassPathArg(cmd);
+    this.addInputArgs(cmd);
+    return cmd;
+  }
+
+  private void addMultiReleaseArg(Commandline cmd, String jExecutable) throws MojoFailureException {
+    int jdkVersion;
+    try {
+      jdkVersion = InProcessJDeps.getMajorVersion(InProcessJDeps.getJdkHome(jExecutable));
+    } catch (IOException e) {
+      throw new MojoFailureException("Unable to determine the JDK version of " + jExecutable, e);
+    }
+    if (jdkVersion < 11) {
+      throw new MojoFailureException("module-deps requires jdeps of Java 11 or later, "
+              + jExecutable + " is Java " + jdkVersion);
+    }
+    cmd.createArg().setValue("--multi-release");
+    cmd.createArg().setValue(StringUtils.isEmpty(this.multiRelease) ? Integer.toString(jdkVersion) : this.multiRelease);
+  }
+
+  private List<File> getClassPathFiles() {
+    List<File> files = new ArrayList<>();
+    for (File file : ClassPath.getArtifacts(this.project, true, this.classpathScope).keySet()) {
+      // jdeps fails on reactor modules that were not packaged
+      if (file.isFile()) {
+        files.add(file);
+      }
+    }
+    return files;
+  }
+
+  private List<File> getInputFiles() {
+    List<File> inputFiles = this.getClassPathFiles();
+    inputFiles.add(this.outputDirectory);
+    return inputFiles;
+  }
+
+  private void addClassPathArg(Commandline cmd) throws MojoFailureException {
+    Path argumentFile = new File(this.workDirectory, "classpath.args").toPath();
+    try {
+      ClassPath.addArg(cmd, this.getClassPathFiles(), argumentFile);
+    } catch (IOException e) {
+      throw new MojoFailureException("Unable to write classpath argument file " + argumentFile, e);
+    }
+  }
+
+  private void addInputArgs(Commandline cmd) {
+    cmd.createArg().setFile(this.outputDirectory);
+    // dependencies are inputs as well, not only the ones reached from the project classes
+    for (File file : this.getClassPathFiles()) {
+      cmd.createArg().setFile(file);
+    }
+  }
+
+  /**
+   * Picks the module list out of the output of jdeps, which may also
+   * contain warnings.
+   */
+  static final class ModuleListConsumer implements StreamConsumer {
+
+    private String moduleList;
+
+    @Override
+    public void consumeLine(String line) {
+      String trimmed = line.trim();
+      if (MODULE_LIST.matcher(trimmed).matches()) {
+        this.moduleList = trimmed;
+      }
+    }
+
+    String getModuleList() {
+      return this.moduleList;
+    }
+
+  }
+
+}
@@ -5,25 +5,32 @@ import static org.apache.maven.plugins.annotations.ResolutionScope.COMPILE;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.maven.artifact.Artifact;
-import org.apache.maven.execution.MavenSession;
-import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.project.MavenProject;
-import org.apache.maven.toolchain.ToolchainManager;
+import org.apache.maven.project.DependencyResolutionException;
+import org.apache.maven.project.MavenProjectHelper;
+import org.apache.maven.project.ProjectDependenciesResolver;
+import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.StringUtils;
-import org.codehaus.plexus.util.cli.CommandLineException;
-import org.codehaus.plexus.util.cli.CommandLineUtils;
-import org.codehaus.plexus.util.cli.CommandLineUtils.StringStreamConsumer;
 import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
 
 /**
  * Runs the jdeps tool.
@@ -36,22 +43,13 @@ import org.codehaus.plexus.util.cli.Commandline;
   defaultPhase = VERIFY,
   requiresDependencyResolution = COMPILE
 )
-public class JDepsMojo extends AbstractMojo {
+public class JDepsMojo extends AbstractJDepsAnalysisMojo {
 
   @Component
-  private ToolchainManager toolchainManager;
+  private MavenProjectHelper projectHelper;
 
-  @Parameter(defaultValue = "${project}", readonly = true) // @Component is deprecated
-  private MavenProject project;
-
-  @Parameter(defaultValue = "${session}", readonly = true) // @Component is deprecated
-  private MavenSession session;
-
-  /**
-   * Print dependency summary only.
-   */
-  @Parameter(defaultValue = "false", property = "jdeps.summary")
-  private boolean summary;
+  @Component
+  private ProjectDependenciesResolver dependenciesResolver;
 
   /**
    * Finds class-level dependences on JDK internal APIs.
@@ -67,309 +65,857 @@ public class JDepsMojo extends AbstractMojo {
   private boolean jdkInternals;
 
   /**
-   * Restrict analysis to APIs.
+   * Recursively traverse all dependencies.
+   */
+  @Parameter(defaultValue = "false", property = "jdeps.recursive")
+  private boolean recursive;
+
+  /**
+   * Put all resolved dependencies on the classpath instead of only the
+   * direct dependencies.
    *
-   * i.e. dependences  from the signature of public and protected
-   * members of public classes including field type, method parameter
-   * types, returned type, checked exception types etc.
+   * The classpath is sorted, without duplicates, and written to the
+   * argument file classpath.args in the work directory, which only
+   * changes with the dependencies. A forked jdeps still gets the whole
+   * classpath on every run, in a temporary argument file for Java 9 or
+   * later and on the command line for Java 8.
    */
-  @Parameter(defaultValue = "false", property = "jdeps.apiOnly")
-  private boolean apiOnly;
+  @Parameter(defaultValue = "false", property = "jdeps.transitiveClasspath")
+  private boolean transitiveClasspath;
 
   /**
-   * Print all class level dependencies.
+   * The scope of the dependencies on the transitive classpath, "compile"
+   * includes compile, provided and system dependencies.
    */
-  @Parameter(defaultValue = "false", property = "jdeps.verbose")
-  private boolean verbose;
+  @Parameter(defaultValue = "compile", property = "jdeps.classpathScope")
+  private String classpathScope;
 
   /**
-   * Print package-level or class-level dependencies
-   * Valid levels are: "package" and "class".
+   * Version information.
    */
-  @Parameter(alias = "verbose-level", property = "jdeps.verboseLevel")
-  private String verboseLevel;
+  @Parameter(defaultValue = "false", property = "jdeps.version")
+  private boolean version;
 
   /**
-   * Restrict analysis to classes in these packages.
+   * Destination directory for DOT file output. Set to something like
+   * ${project.reporting.outputDirectory}/jdeps
    */
-  @Parameter
-  private List<String> packages;
+  @Parameter(property = "jdeps.dotOutputDirectory")
+  private File dotOutputDirectory;
+
+  @Parameter(defaultValue = "${project.build.outputDirectory}", readonly = true)
+  private File outputDirectory;
 
   /**
-   * Restrict analysis to packages matching pattern.
-   * ("packages" and "regex" are exclusive)
+   * Analyze the test classes together with the classes in the same
+   * jdeps run, with the test dependencies added to the classpath. The
+   * dependencies of the test classes are checked against the rules with
+   * scope "test" or "all", all other checks only apply to the classes.
+   * Sharding and "cacheDependencies" are not used with test classes.
+   * <p>
+   * The goal only requires the compile dependencies to be resolved, the
+   * test dependencies are resolved by the goal when this option is set.
    */
-  @Parameter(property = "jdeps.regex")
-  private String regex;
+  @Parameter(defaultValue = "false", property = "jdeps.includeTestClasses")
+  private boolean includeTestClasses;
+
+  @Parameter(defaultValue = "${project.build.testOutputDirectory}", readonly = true)
+  private File testOutputDirectory;
 
   /**
-   * Filter dependences matching the given pattern.
+   * Skip running jdeps if the class files, the classpath, the options
+   * and the jdeps executable are unchanged since the last run. The
+   * output of the last run is replayed instead.
    */
-  @Parameter(property = "jdeps.filter")
-  private String filter;
+  @Parameter(defaultValue = "true", property = "jdeps.incremental")
+  private boolean incremental;
 
   /**
-   * Filter mode. Options
+   * Cache the analysis of dependency artifacts when "recursive" is set.
    *
-   * <dl>
-   *  <dt>package</dt>
-   *  <dd>Filter dependences within the same package (default)</dd>
-   *  <dt>archive</dt>
-   *  <dd>Filter dependences within the same archive</dd>
-   *  <dt>none</dt>
-   *  <dd>No package and archive filtering. Filtering specified via the filter option still applies.</dd>
-   * </dl>
+   * Only the project classes are analyzed on every run. The output for
+   * each dependency artifact the project depends on, directly or through
+   * other artifacts, is taken from a cache shared by all modules and
+   * builds and appended to the output of the project. Unlike
+   * "recursive" alone an artifact is analyzed as a whole and not only
+   * the classes reached from the project. Not used with DOT output.
+   */
+  @Parameter(defaultValue = "false", property = "jdeps.cacheDependencies")
+  private boolean cacheDependencies;
+
+  /**
+   * Directory of the dependency cache, may be shared by several
+   * concurrent Maven processes.
+   */
+  @Parameter(defaultValue = "${user.home}/.m2/jdeps-cache", property = "jdeps.dependencyCacheDirectory")
+  private File dependencyCacheDirectory;
+
+  /**
+   * Maximum size of the dependency cache in megabytes. The least
+   * recently used entries are evicted once the cache grows larger.
+   */
+  @Parameter(defaultValue = "512", property = "jdeps.dependencyCacheSize")
+  private long dependencyCacheSize;
+
+  /**
+   * Split the analysis of the output directory into this many package
+   * shards that are analyzed concurrently on up to as many threads as
+   * there are cores. 0 means one shard per core, 1 disables sharding.
+   * The merged output is the same as the output of a single run.
+   * Sharding is not used with "jdkInternals" or "version" and with
+   * "recursive" only together with "cacheDependencies".
    */
-  @Parameter(property = "jdeps.filterMode")
-  private String filterMode;
+  @Parameter(defaultValue = "1", property = "jdeps.shards")
+  private int shards;
 
   /**
-   * Restricts analysis to classes matching pattern.
+   * Rules for forbidden dependencies, the build fails if a dependency
+   * reported by jdeps violates one of them.
    *
-   * This option filters the list of classes to be analyzed. It can be
-   * used together with "packages" or "regex" which apply pattern to
-   * the dependencies.
+   * @see DependencyRule
    */
-  @Parameter(property = "jdeps.include")
-  private String include;
+  @Parameter
+  private List<DependencyRule> rules;
 
   /**
-   * Show profile or the file containing a package.
+   * Stop checking the dependency rules at the first violation.
    */
-  @Parameter(defaultValue = "false", property = "jdeps.profile")
-  private boolean profile;
+  @Parameter(defaultValue = "false", property = "jdeps.failFast")
+  private boolean failFast;
 
   /**
-   * Recursively traverse all dependencies.
+   * Baseline of the dependencies to compare against, usually checked in.
+   * Only the dependencies added and removed since the baseline are
+   * logged, the jdeps output is logged at debug level.
    */
-  @Parameter(defaultValue = "false", property = "jdeps.recursive")
-  private boolean recursive;
+  @Parameter(property = "jdeps.baseline")
+  private File baseline;
 
   /**
-   * Version information.
+   * Write the dependencies of this run to the baseline instead of
+   * comparing against it.
    */
-  @Parameter(defaultValue = "false", property = "jdeps.version")
-  private boolean version;
+  @Parameter(defaultValue = "false", property = "jdeps.updateBaseline")
+  private boolean updateBaseline;
 
   /**
-   * Destination directory for DOT file output. Set to something like
-   * ${project.reporting.outputDirectory}/jdeps
+   * Which changes since the baseline fail the build: "none" only logs
+   * them, "added" fails on new dependencies, "any" fails on new and
+   * removed dependencies.
    */
-  @Parameter(property = "jdeps.dotOutputDirectory")
-  private File dotOutputDirectory;
+  @Parameter(defaultValue = "none", property = "jdeps.failOnBaselineChange")
+  private String failOnBaselineChange;
 
-  @Parameter(defaultValue = "${project.build.outputDirectory}", readonly = true)
-  private File outputDirectory;
+  /**
+   * Attach the dependencies of this run as baseline to the project with
+   * the classifier "jdeps-baseline" so that it is installed and
+   * deployed.
+   */
+  @Parameter(defaultValue = "false", property = "jdeps.attachBaseline")
+  private boolean attachBaseline;
+
+  /**
+   * The formats the dependencies are exported in for other tools,
+   * "jsonl" for JSON Lines and "csv". Every archive, package or class
+   * dependency is one row.
+   */
+  @Parameter(property = "jdeps.exports")
+  private List<String> exports;
+
+  /**
+   * The directory the exports are written to, as
+   * {@code jdeps-dependencies.<format>}.
+   */
+  @Parameter(defaultValue = "${project.build.directory}/jdeps", property = "jdeps.exportDirectory")
+  private File exportDirectory;
+
+  /**
+   * Compress the exports with gzip.
+   */
+  @Parameter(defaultValue = "false", property = "jdeps.compressExports")
+  private boolean compressExports;
+
+  /**
+   * Attach the exports to the project with the classifier "jdeps" so
+   * that they are installed and deployed.
+   */
+  @Parameter(defaultValue = "false", property = "jdeps.attachExports")
+  private boolean attachExports;
+
+  /**
+   * What to do about dependencies on the classpath that none of the
+   * analyzed classes references: "ignore" (default), "warn" logs them,
+   * "fail" fails the build. Only compile, provided and system
+   * dependencies are checked. Dependencies only used by other
+   * dependencies count as unused unless "recursive" is set.
+   */
+  @Parameter(defaultValue = "ignore", property = "jdeps.unusedDependencies")
+  private String unusedDependencies;
+
+  /**
+   * Dependencies that are never reported as unused, as
+   * {@code groupId:artifactId}, for example dependencies only loaded
+   * through reflection.
+   */
+  @Parameter
+  private List<String> ignoredUnusedDependencies;
+
+  /**
+   * What to do about cycles between packages and between archives:
+   * "ignore" (default), "warn" logs them, "fail" fails the build.
+   * Archive cycles are only found between archives that are analyzed,
+   * for example with "recursive".
+   */
+  @Parameter(defaultValue = "ignore", property = "jdeps.cycles")
+  private String cycles;
+
+  /**
+   * Maximum amount of jdeps output in megabytes that is kept in memory.
+   * Larger output is spilled to a file in the work directory and
+   * streamed from there. The shards of a sharded analysis share the limit.
+   */
+  @Parameter(defaultValue = "16", property = "jdeps.outputMemoryLimit")
+  private long outputMemoryLimit;
+
+  /**
+   * Directory where the result of the last run is stored.
+   */
+  @Parameter(defaultValue = "${project.build.directory}/jdeps", readonly = true)
+  private File workDirectory;
+
+  /**
+   * File where the duration of each phase, the CPU time and the size of
+   * the input and output of the run are written as JSON, for example
+   * {@code target/jdeps/metrics.json}. Not written if not set, the one
+   * line summary is logged at debug level either way.
+   */
+  @Parameter(property = "jdeps.metricsFile")
+  private File metricsFile;
+
+  private ExecutionMetrics metrics;
+
+  private Map<File, Artifact> classPathArtifacts;
 
   @Override
   public void execute() throws MojoExecutionException, MojoFailureException {
+    this.metrics = new ExecutionMetrics("jdeps");
+    boolean success = false;
+    try {
+      this.executeWithMetrics();
+      success = true;
+    } finally {
+      this.writeMetrics(success);
+    }
+  }
+
+  private void executeWithMetrics() throws MojoExecutionException, MojoFailureException {
+    this.classPathArtifacts = this.resolveClassPathArtifacts();
     String jExecutable;
+    long start = ExecutionMetrics.start();
     try {
       jExecutable = this.getJdepsExecutable();
     } catch (IOException e ) {
       throw new MojoFailureException("Unable to find jdeps command: " + e.getMessage(), e );
     }
+    this.metrics.stop(ExecutionMetrics.GET_EXECUTABLE, start);
+    this.metrics.setExecutable(jExecutable);
+    start = ExecutionMetrics.start();
     Commandline cmd = this.buildCommandLine(jExecutable);
+    this.metrics.stop(ExecutionMetrics.BUILD_COMMAND_LINE, start);
+
+    if (!this.incremental) {
+      try (OutputBuffer output = this.newOutputBuffer()) {
+        this.analyzeAndLog(cmd, output);
+      } catch (IOException e) {
+        throw new MojoExecutionException("Unable to buffer jdeps output", e);
+      }
+      return;
+    }
+
+    StoredAnalysis storedAnalysis = new StoredAnalysis(this.workDirectory);
+    String fingerprint;
+    try {
+      fingerprint = AnalysisFingerprint.compute(jExecutable, cmd.getArguments(), this.getOutputOptions(), this.getInputFiles());
+      // -dotoutput is not part of the fingerprint, a run that wrote DOT files has no text output
+      boolean requiresDot = this.dotOutputDirectory != null;
+      if (storedAnalysis.isUpToDate(fingerprint, requiresDot) && (requiresDot || storedAnalysis.hasTextOutput())) {
+        this.getLog().info("Classes and classpath unchanged, replaying previous jdeps output");
+        this.metrics.setUpToDate(true);
+        LogConsumer logConsumer = new LogConsumer(this.getLog(), this.isComparingToBaseline());
+        storedAnalysis.replayOutput(logConsumer);
+        logConsumer.flush();
+        if (this.dotOutputDirectory != null) {
+          storedAnalysis.restoreDotFiles(this.dotOutputDirectory);
+        }
+        if (this.needsGraph()) {
+          DependencyGraphParser parser = this.newGraphParser(false);
+          DependencyGraphParser testParser = this.analyzesTestClasses() ? this.newGraphParser(true) : null;
+          storedAnalysis.replayOutput(this.splitTestOutput(parser, testParser));
+          this.checkGraph(parser.getGraph(), testParser);
+        }
+        return;
+      }
+      storedAnalysis.invalidate();
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to check whether jdeps analysis is up to date", e);
+    }
 
-    this.executeJDepsCommandLine(cmd);
+    try (OutputBuffer output = this.newOutputBuffer()) {
+      this.analyzeAndLog(cmd, output);
+      storedAnalysis.save(fingerprint, output, this.dotOutputDirectory);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Unable to store jdeps output", e);
+    }
   }
 
-  private Commandline buildCommandLine(String jExecutable) throws MojoFailureException {
-    Commandline cmd = new Commandline();
-    cmd.setExecutable(jExecutable);
+  private void writeMetrics(boolean success) {
+    this.metrics.finish(success);
+    if (this.classPathArtifacts != null) {
+      this.metrics.setClassPathEntries(this.classPathArtifacts.size());
+    }
+    if (this.metricsFile != null) {
+      try {
+        // a replay does not read the classes, counting them would be most of its work
+        if (!this.metrics.isUpToDate()) {
+          this.metrics.countClasses(this.outputDirectory);
+        }
+        this.metrics.write(this.metricsFile);
+      } catch (IOException e) {
+        this.getLog().warn("Unable to write jdeps metrics to " + this.metricsFile, e);
+      }
+    }
+    if (this.getLog().isDebugEnabled()) {
+      this.getLog().debug(this.metrics.getSummary());
+    }
+  }
 
-    this.addApiOnly(cmd);
-    this.addClassPathArg(cmd);
-    this.addDotOutput(cmd);
-    this.addInclude(cmd);
-    this.addJdkinternals(cmd);
-    this.addPackagesArg(cmd);
-    this.addProfileArg(cmd);
-    this.addRegexArg(cmd);
-    this.addRecursiveArg(cmd);
-    this.addSummaryArg(cmd);
-    this.addVerboseArg(cmd);
-    this.addVerboseLevelArg(cmd);
-    this.addFilterArg(cmd);
-    this.addFilterModeArg(cmd);
-    this.addVersionArg(cmd);
+  private OutputBuffer newOutputBuffer() {
+    return this.newOutputBuffer(1);
+  }
 
-    this.addOutputArg(cmd);
-    return cmd;
+  /**
+   * Creates a buffer that shares the memory limit with other buffers.
+   *
+   * @param buffers the number of buffers that share the limit
+   */
+  private OutputBuffer newOutputBuffer(int buffers) {
+    // two bytes per char
+    return new OutputBuffer(this.workDirectory, this.outputMemoryLimit * 512L * 1024L / buffers);
   }
 
-  private void addPackagesArg(Commandline cmd) {
-    if ((this.packages != null) && !this.packages.isEmpty()) {
-      for (String each : this.packages) {
-        cmd.createArg().setValue("-package");
-        cmd.createArg().setValue(each);
-      }
+  private void analyzeAndLog(Commandline cmd, OutputBuffer output) throws MojoFailureException, IOException {
+    try {
+      this.analyze(cmd, output);
+    } finally {
+      this.metrics.recordOutput(output);
+      // also log the output of a failed run
+      LogConsumer logConsumer = new LogConsumer(this.getLog(), this.isComparingToBaseline());
+      output.replay(logConsumer);
+      logConsumer.flush();
+    }
+    if (this.needsGraph()) {
+      DependencyGraphParser parser = this.newGraphParser(false);
+      DependencyGraphParser testParser = this.analyzesTestClasses() ? this.newGraphParser(true) : null;
+      output.replay(this.splitTestOutput(parser, testParser));
+      this.checkGraph(parser.getGraph(), testParser);
     }
   }
 
-  private void addClassPathArg(Commandline cmd) throws MojoFailureException {
-    Set<Artifact> dependencyArtifacts = this.project.getDependencyArtifacts();
-    if (!dependencyArtifacts.isEmpty()) {
-      List<String> fileNames = new ArrayList<>(dependencyArtifacts.size());
-      for (Artifact artifact : dependencyArtifacts) {
-        File file = artifact.getFile();
-        if (file != null) {
-          fileNames.add(file.getAbsolutePath());
-        }
-      }
-      String pathSeparator = System.getProperty("path.separator");
-      if (pathSeparator == null) {
-        throw new MojoFailureException("Can't read path separator");
+  private boolean needsGraph() {
+    return this.getLog().isDebugEnabled() || ((this.rules != null) && !this.rules.isEmpty())
+            || (this.baseline != null) || this.attachBaseline || !"ignore".equals(this.unusedDependencies)
+            || ((this.exports != null) && !this.exports.isEmpty()) || !"ignore".equals(this.cycles);
+  }
+
+  private void writeBaseline(DependencyGraph graph, File file) throws MojoFailureException {
+    try {
+      DependencyBaseline.write(graph, file.toPath());
+    } catch (IOException e) {
+      throw new MojoFailureException("Unable to write jdeps baseline " + file + ": " + e.getMessage(), e);
+    }
+  }
+
+  private boolean isComparingToBaseline() {
+    return (this.baseline != null) && !this.updateBaseline;
+  }
+
+  private boolean analyzesTestClasses() {
+    return this.includeTestClasses && this.testOutputDirectory.isDirectory();
+  }
+
+  /**
+   * Passes the output of the test classes to the test parser, if any.
+   */
+  private StreamConsumer splitTestOutput(DependencyGraphParser parser, DependencyGraphParser testParser) {
+    if (testParser == null) {
+      return parser;
+    }
+    return new ArchiveOutputSplitter(this.testOutputDirectory.getName(), testParser, parser);
+  }
 
+  private void checkGraph(DependencyGraph graph, DependencyGraphParser testParser) throws MojoFailureException {
+    this.exportGraph(graph, testParser);
+    String baselineFailure = this.checkBaseline(graph);
+    String unusedFailure = this.checkUnusedDependencies(graph);
+    String cycleFailure = this.checkCycles(graph);
+    this.checkDependencies(graph, false);
+    if (testParser != null) {
+      this.checkDependencies(testParser.getGraph(), true);
+    }
+    if (baselineFailure != null) {
+      throw new MojoFailureException(baselineFailure);
+    }
+    if (unusedFailure != null) {
+      throw new MojoFailureException(unusedFailure);
+    }
+    if (cycleFailure != null) {
+      throw new MojoFailureException(cycleFailure);
+    }
+  }
+
+  /**
+   * Writes and attaches the exports, the test classes follow the classes.
+   */
+  private void exportGraph(DependencyGraph graph, DependencyGraphParser testParser) throws MojoFailureException {
+    if (this.exports == null) {
+      return;
+    }
+    String level = this.getAnalysisOptions().isClassLevel() ? "class" : "package";
+    for (String format : this.exports) {
+      String extension = DependencyExport.getExtension(format, this.compressExports);
+      File file = new File(this.exportDirectory, "jdeps-dependencies." + extension);
+      try (DependencyExport export = DependencyExport.open(file.toPath(), format, this.compressExports)) {
+        export.write(graph, "main", level);
+        if (testParser != null) {
+          export.write(testParser.getGraph(), "test", level);
+        }
+      } catch (IllegalArgumentException e) {
+        throw new MojoFailureException("Invalid export: " + e.getMessage(), e);
+      } catch (IOException e) {
+        throw new MojoFailureException("Unable to write jdeps export " + file + ": " + e.getMessage(), e);
       }
-      if (!fileNames.isEmpty()) {
-        // jdeps doesn't like an empty classpath
-        String classPath = StringUtils.join(fileNames.iterator(), pathSeparator);
-        cmd.createArg().setValue("-classpath");
-        cmd.createArg().setValue(classPath);
+      this.getLog().debug("Exported dependencies to " + file);
+      if (this.attachExports) {
+        this.projectHelper.attachArtifact(this.project, extension, "jdeps", file);
       }
     }
   }
 
-  private void addVerboseLevelArg(Commandline cmd) {
-    if (this.verboseLevel != null) {
-      cmd.createArg().setValue("-verbose:" + this.verboseLevel);
+  /**
+   * Logs the cycles between packages and between archives.
+   *
+   * @param graph the dependencies of this run
+   * @return the failure message if cycles fail the build, otherwise
+   *  {@code null}
+   */
+  private String checkCycles(DependencyGraph graph) throws MojoFailureException {
+    String mode = this.cycles == null ? "ignore" : this.cycles;
+    switch (mode) {
+      case "ignore":
+        return null;
+      case "warn":
+      case "fail":
+        break;
+      default:
+        throw new MojoFailureException("Unknown cycles: " + mode + ", must be ignore, warn or fail");
     }
+    List<List<String>> packageCycles = DependencyCycles.findPackageCycles(graph, this.getAnalysisOptions().isClassLevel());
+    List<List<String>> archiveCycles = DependencyCycles.findArchiveCycles(graph);
+    if (packageCycles.isEmpty() && archiveCycles.isEmpty()) {
+      this.getLog().debug("No dependency cycles");
+      return null;
+    }
+    for (List<String> cycle : packageCycles) {
+      this.getLog().warn("Package cycle: " + StringUtils.join(cycle.iterator(), ", "));
+    }
+    for (List<String> cycle : archiveCycles) {
+      this.getLog().warn("Archive cycle: " + StringUtils.join(cycle.iterator(), ", "));
+    }
+    return "fail".equals(mode) ? packageCycles.size() + " package cycles and " + archiveCycles.size() + " archive cycles" : null;
   }
 
-  private void addRegexArg(Commandline cmd) {
-    if (this.regex != null) {
-      cmd.createArg().setValue("-regex");
-      cmd.createArg().setValue(this.regex);
+  /**
+   * Logs the dependencies that are not used.
+   *
+   * @param graph the dependencies of this run
+   * @return the failure message if unused dependencies fail the build,
+   *  otherwise {@code null}
+   */
+  private String checkUnusedDependencies(DependencyGraph graph) throws MojoFailureException {
+    String mode = this.unusedDependencies == null ? "ignore" : this.unusedDependencies;
+    switch (mode) {
+      case "ignore":
+        return null;
+      case "warn":
+      case "fail":
+        break;
+      default:
+        throw new MojoFailureException("Unknown unusedDependencies: " + mode + ", must be ignore, warn or fail");
+    }
+    ArtifactFilter filter = new ScopeArtifactFilter(Artifact.SCOPE_COMPILE);
+    List<Artifact> checked = new ArrayList<>();
+    for (Artifact artifact : this.getClassPathArtifacts().values()) {
+      String key = artifact.getGroupId() + ':' + artifact.getArtifactId();
+      if (filter.include(artifact)
+              && ((this.ignoredUnusedDependencies == null) || !this.ignoredUnusedDependencies.contains(key))) {
+        checked.add(artifact);
+      }
     }
+    List<Artifact> unused = UnusedDependencies.find(graph, checked);
+    if (unused.isEmpty()) {
+      this.getLog().debug("All " + checked.size() + " dependencies are used");
+      return null;
+    }
+    for (Artifact artifact : unused) {
+      this.getLog().warn("Unused dependency " + UnusedDependencies.format(artifact));
+    }
+    return "fail".equals(mode) ? unused.size() + " unused dependencies" : null;
   }
 
-  private void addInclude(Commandline cmd) {
-    if (this.include != null) {
-      cmd.createArg().setValue("-regex");
-      cmd.createArg().setValue(this.include);
+  /**
+   * Writes, attaches or compares against the baseline.
+   *
+   * @param graph the dependencies of this run
+   * @return the failure message if the changes since the baseline fail
+   *  the build, otherwise {@code null}
+   */
+  private String checkBaseline(DependencyGraph graph) throws MojoFailureException {
+    if (this.attachBaseline) {
+      File attached = new File(this.workDirectory, "jdeps-baseline.txt");
+      this.writeBaseline(graph, attached);
+      this.projectHelper.attachArtifact(this.project, "txt", "jdeps-baseline", attached);
+    }
+    if (this.baseline == null) {
+      return null;
+    }
+    if (this.updateBaseline) {
+      this.writeBaseline(graph, this.baseline);
+      this.getLog().info("Wrote jdeps baseline " + this.baseline);
+      return null;
+    }
+    if (!this.baseline.isFile()) {
+      this.getLog().warn("jdeps baseline " + this.baseline + " does not exist, create it with -Djdeps.updateBaseline");
+      return null;
+    }
+
+    DependencyBaseline.Delta delta;
+    try {
+      delta = DependencyBaseline.compare(graph, this.baseline.toPath());
+    } catch (IOException e) {
+      throw new MojoFailureException("Unable to read jdeps baseline " + this.baseline + ": " + e.getMessage(), e);
+    }
+    if (delta.isEmpty()) {
+      this.getLog().info("No dependency changes since jdeps baseline " + this.baseline);
+      return null;
+    }
+    this.getLog().info(delta.getAdded().size() + " dependencies added and " + delta.getRemoved().size()
+            + " removed since jdeps baseline " + this.baseline);
+    for (String added : delta.getAdded()) {
+      this.getLog().info("+ " + added);
+    }
+    for (String removed : delta.getRemoved()) {
+      this.getLog().info("- " + removed);
+    }
+
+    String mode = this.failOnBaselineChange == null ? "none" : this.failOnBaselineChange;
+    switch (mode) {
+      case "none":
+        return null;
+      case "added":
+        return delta.getAdded().isEmpty() ? null : delta.getAdded().size() + " dependencies added since jdeps baseline";
+      case "any":
+        return delta.getAdded().size() + " dependencies added and " + delta.getRemoved().size()
+                + " removed since jdeps baseline";
+      default:
+        throw new MojoFailureException("Unknown failOnBaselineChange: " + mode + ", must be none, added or any");
     }
   }
 
-  private void addDotOutput(Commandline cmd) {
+  /**
+   * Creates the parser for the dependencies of either the classes or the
+   * test classes.
+   */
+  private DependencyGraphParser newGraphParser(boolean test) throws IOException {
+    DependencyGraphParser parser = new DependencyGraphParser();
     if (this.dotOutputDirectory != null) {
-      cmd.createArg().setValue("-dotoutput");
-      cmd.createArg().setFile(this.dotOutputDirectory);
+      // jdeps writes nothing to standard output
+      if (this.analyzesTestClasses()) {
+        parser.parseDotFiles(this.dotOutputDirectory.toPath(), this.testOutputDirectory.getName(), test);
+      } else {
+        parser.parseDotFiles(this.dotOutputDirectory.toPath());
+      }
     }
+    return parser;
   }
 
-  private void addVerboseArg(Commandline cmd) {
-    this.addBooleanArg(this.verbose, "-verbose", cmd);
+  private void checkDependencies(DependencyGraph graph, boolean test) throws MojoFailureException {
+    String classes = test ? "test classes" : "classes";
+    this.getLog().debug("jdeps reported " + graph.getEdgeCount() + " dependencies and "
+            + graph.getArchiveEdgeCount() + " archive dependencies between " + graph.getNodeCount() + " nodes"
+            + " for the " + classes);
+
+    RuleChecker checker;
+    try {
+      checker = RuleChecker.compile(this.rules, test);
+    } catch (IllegalArgumentException e) {
+      throw new MojoFailureException("Invalid dependency rule: " + e.getMessage(), e);
+    }
+    if (checker.isEmpty()) {
+      return;
+    }
+    List<RuleChecker.Violation> violations = checker.check(graph, this.failFast);
+    if (!violations.isEmpty()) {
+      for (RuleChecker.Violation violation : violations) {
+        this.getLog().error(violation.toString());
+      }
+      if (this.failFast) {
+        throw new MojoFailureException("Dependency rule violated by the " + classes + ": " + violations.get(0));
+      }
+      throw new MojoFailureException(violations.size() + " dependency rule violations by the " + classes);
+    }
   }
 
-  private void addSummaryArg(Commandline cmd) {
-    this.addBooleanArg(this.summary, "-summary", cmd);
+  private void analyze(Commandline cmd, StreamConsumer out) throws MojoFailureException, IOException {
+    if (this.usesDependencyCache()) {
+      this.analyzeWithDependencyCache(cmd, out);
+    } else {
+      this.analyzeProject(cmd, out);
+    }
   }
 
-  private void addJdkinternals(Commandline cmd) {
-    this.addBooleanArg(this.jdkInternals, "-jdkinternals", cmd);
+  private boolean usesDependencyCache() {
+    // the DOT files of the dependencies are only written by a recursive run
+    return this.recursive && this.cacheDependencies && !this.analyzesTestClasses() && (this.dotOutputDirectory == null);
   }
 
-  private void addApiOnly(Commandline cmd) {
-    this.addBooleanArg(this.apiOnly, "-apionly", cmd);
+  /**
+   * Returns the options that change the output without being arguments
+   * of jdeps. The dependency cache analyzes whole archives instead of
+   * only the classes that are reached.
+   */
+  private List<String> getOutputOptions() {
+    if (this.usesDependencyCache()) {
+      return Collections.singletonList("cacheDependencies");
+    }
+    return Collections.emptyList();
   }
 
-  private void addProfileArg(Commandline cmd) {
-    this.addBooleanArg(this.profile, "-profile", cmd);
+  private void analyzeProject(Commandline cmd, StreamConsumer out) throws MojoFailureException, IOException {
+    int shardCount = this.shards == 0 ? Runtime.getRuntime().availableProcessors() : this.shards;
+    if ((shardCount > 1) && ShardedAnalysis.canShard(cmd.getArguments()) && !this.analyzesTestClasses()) {
+      this.analyzeSharded(cmd, shardCount, out);
+    } else {
+      this.executeJDepsCommandLine(cmd, out);
+    }
   }
 
-  private void addRecursiveArg(Commandline cmd) {
-    this.addBooleanArg(this.recursive, "-recursive", cmd);
-  }
-
-  private void addFilterArg(Commandline cmd) {
-    if (this.filter != null) {
-      cmd.createArg().setValue("-filter");
-      cmd.createArg().setValue(this.filter);
-    }
-  }
-
-  private void addFilterModeArg(Commandline cmd) {
-    if (this.filterMode != null) {
-      switch (this.filterMode) {
-        case "package":
-          cmd.createArg().setValue("-filter:package");
-          break;
-        case "archive":
-          cmd.createArg().setValue("-filter:archive");
-          break;
-        case "none":
-          cmd.createArg().setValue("-filter:none");
-          break;
-        default:
-          // throw an exception?
-          break;
+  private void analyzeSharded(Commandline cmd, int shardCount, StreamConsumer out) throws MojoFailureException, IOException {
+    List<String> includePatterns = ShardedAnalysis.computeShards(this.outputDirectory.toPath(), shardCount);
+    if (includePatterns.size() <= 1) {
+      this.executeJDepsCommandLine(cmd, out);
+      return;
+    }
+
+    final String executable = cmd.getLiteralExecutable();
+    String[] arguments = cmd.getArguments();
+    List<Path> shardDotDirectories = new ArrayList<>(includePatterns.size());
+    final List<OutputBuffer> shardOutputs = new ArrayList<>(includePatterns.size());
+    List<Callable<Void>> tasks = new ArrayList<>(includePatterns.size());
+    try {
+      for (int i = 0; i < includePatterns.size(); i++) {
+        File shardDotDirectory = new File(this.workDirectory, "shards/" + i);
+        // don't merge DOT files of an earlier run
+        FileUtils.deleteDirectory(shardDotDirectory);
+        shardDotDirectories.add(shardDotDirectory.toPath());
+        final String[] shardArguments = ShardedAnalysis.getShardArguments(arguments, includePatterns.get(i), shardDotDirectory);
+        // the shards share the limit, together they keep as much in memory as the merged output
+        final OutputBuffer shardOutput = this.newOutputBuffer(includePatterns.size());
+        shardOutputs.add(shardOutput);
+        tasks.add(new Callable<Void>() {
+
+          @Override
+          public Void call() throws MojoFailureException {
+            JDepsMojo.this.executeJDepsCommandLine(JDepsExecutor.newCommandline(executable, shardArguments), shardOutput);
+            return null;
+          }
+
+        });
+      }
+
+      this.getLog().debug("Analyzing " + this.outputDirectory + " in " + tasks.size() + " shards");
+      int threads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+          future.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new MojoFailureException("Interrupted while waiting for jdeps", e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof MojoFailureException) {
+          throw (MojoFailureException) cause;
+        }
+        throw new MojoFailureException("Unable to execute jdeps command: " + cause.getMessage(), cause);
+      } finally {
+        executor.shutdownNow();
+      }
+
+      if (this.dotOutputDirectory != null) {
+        ShardedAnalysis.mergeDotFiles(shardDotDirectories, this.dotOutputDirectory.toPath());
+      }
+      ShardedAnalysis.merge(shardOutputs, out);
+    } finally {
+      for (OutputBuffer shardOutput : shardOutputs) {
+        shardOutput.close();
       }
     }
   }
 
-  private void addVersionArg(Commandline cmd) {
-    this.addBooleanArg(this.version, "-version", cmd);
+  private void analyzeWithDependencyCache(Commandline cmd, StreamConsumer out) throws MojoFailureException, IOException {
+    DependencyAnalysisCache cache = new DependencyAnalysisCache(this.dependencyCacheDirectory,
+            this.dependencyCacheSize * 1024L * 1024L, this.getLog());
+    String executable = cmd.getLiteralExecutable();
+    String[] arguments = DependencyAnalysisCache.withoutRecursive(cmd.getArguments());
+
+    ReachedArchives reached = new ReachedArchives(this.getClassPathFiles(), out);
+    this.analyzeProject(JDepsExecutor.newCommandline(executable, arguments), reached);
+    for (File file = reached.next(); file != null; file = reached.next()) {
+      String[] artifactArguments = DependencyAnalysisCache.getArtifactArguments(arguments, file);
+      String key = null;
+      if (file.isFile()) {
+        // directories are reactor modules that are not worth caching
+        try {
+          key = DependencyAnalysisCache.getKey(executable, artifactArguments, file);
+          if (cache.replay(key, reached)) {
+            continue;
+          }
+        } catch (IOException e) {
+          this.getLog().warn("Unable to read jdeps dependency cache for " + file, e);
+        }
+      }
+      try (OutputBuffer artifactOutput = this.newOutputBuffer()) {
+        this.executeJDepsCommandLine(JDepsExecutor.newCommandline(executable, artifactArguments), artifactOutput);
+        if (key != null) {
+          try {
+            cache.put(key, artifactOutput);
+          } catch (IOException e) {
+            this.getLog().warn("Unable to write jdeps dependency cache for " + file, e);
+          }
+        }
+        artifactOutput.replay(reached);
+      }
+    }
   }
 
-  private void addBooleanArg(boolean flag, String name, Commandline cmd) {
-    if (flag) {
-      cmd.createArg().setValue(name);
-    }
+  /**
+   * Builds the jdeps command line for the configured options.
+   *
+   * @param jExecutable the jdeps executable, not null
+   * @return the command line
+   * @throws MojoFailureException if the class path can not be built
+   */
+  Commandline buildCommandLine(String jExecutable) throws MojoFailureException {
+    Commandline cmd = new Commandline();
+    cmd.setExecutable(jExecutable);
+
+    AnalysisOptions options = this.getAnalysisOptions();
+    options.addApiOnly(cmd);
+    this.addClassPathArg(cmd);
+    this.addDotOutput(cmd);
+    options.addInclude(cmd);
+    this.addJdkinternals(cmd);
+    options.addPackagesArg(cmd);
+    options.addProfileArg(cmd);
+    options.addRegexArg(cmd);
+    this.addRecursiveArg(cmd);
+    options.addSummaryArg(cmd);
+    options.addVerboseArg(cmd);
+    options.addVerboseLevelArg(cmd);
+    options.addFilterArg(cmd);
+    options.addFilterModeArg(cmd);
+    this.addVersionArg(cmd);
+
+    this.addOutputArg(cmd);
+    return cmd;
   }
 
-  private void addOutputArg(Commandline cmd) {
-    cmd.createArg().setFile(this.outputDirectory);
+  private List<File> getClassPathFiles() {
+    return new ArrayList<>(this.getClassPathArtifacts().keySet());
   }
 
   /**
-   * Execute the JDeps command line
-   *
-   * @param cmd not null
-   * @throws MojoFailureException if any errors occur
+   * Returns the dependencies on the classpath by their file.
    */
-  private void executeJDepsCommandLine(Commandline cmd) throws MojoFailureException {
+  private Map<File, Artifact> getClassPathArtifacts() {
+    return this.classPathArtifacts;
+  }
 
-    StringStreamConsumer err = new StringStreamConsumer();
-    StringStreamConsumer out = new StringStreamConsumer();
+  private Map<File, Artifact> resolveClassPathArtifacts() throws MojoExecutionException {
+    if (!this.analyzesTestClasses()) {
+      String scope = this.transitiveClasspath ? this.classpathScope : Artifact.SCOPE_COMPILE;
+      return ClassPath.getArtifacts(this.project, this.transitiveClasspath, scope);
+    }
     try {
-      int exitCode = CommandLineUtils.executeCommandLine(cmd, out, err);
+      return ClassPath.resolveTestArtifacts(this.dependenciesResolver, this.session, this.project, this.transitiveClasspath);
+    } catch (DependencyResolutionException e) {
+      throw new MojoExecutionException("Unable to resolve the test dependencies", e);
+    }
+  }
 
-      String output = out.getOutput();
-      output = StringUtils.isEmpty(output) ? null : '\n' + output.trim();
-      if (StringUtils.isNotEmpty(output)) {
-        this.getLog().info(output);
-      }
+  private List<File> getInputFiles() {
+    List<File> inputFiles = this.getClassPathFiles();
+    inputFiles.add(this.outputDirectory);
+    if (this.analyzesTestClasses()) {
+      inputFiles.add(this.testOutputDirectory);
+    }
+    return inputFiles;
+  }
 
-      if (exitCode != 0) {
-        String cmdLine = CommandLineUtils.toString(cmd.getCommandline()).replaceAll("'", "");
+  private void addClassPathArg(Commandline cmd) throws MojoFailureException {
+    Path argumentFile = this.transitiveClasspath ? new File(this.workDirectory, "classpath.args").toPath() : null;
+    try {
+      ClassPath.addArg(cmd, this.getClassPathFiles(), argumentFile);
+    } catch (IOException e) {
+      throw new MojoFailureException("Unable to write classpath argument file " + argumentFile, e);
+    }
+  }
 
+  private void addDotOutput(Commandline cmd) {
+    if (this.dotOutputDirectory != null) {
+      cmd.createArg().setValue("-dotoutput");
+      cmd.createArg().setFile(this.dotOutputDirectory);
+    }
+  }
 
-        StringBuilder msg = new StringBuilder("\nExit code: ");
-        msg.append(exitCode);
-        if (StringUtils.isNotEmpty(err.getOutput())) {
-          msg.append(" - ").append(err.getOutput());
-        }
-        msg.append('\n');
-        msg.append("Command line was: ").append(cmdLine).append('\n').append('\n');
+  private void addJdkinternals(Commandline cmd) {
+    AnalysisOptions.addBooleanArg(this.jdkInternals, "-jdkinternals", cmd);
+  }
 
-        throw new MojoFailureException(msg.toString());
-      }
-    } catch (CommandLineException e) {
-      throw new MojoFailureException("Unable to execute jdeps command: " + e.getMessage(), e);
+  private void addRecursiveArg(Commandline cmd) {
+    AnalysisOptions.addBooleanArg(this.recursive, "-recursive", cmd);
+  }
+
+  private void addVersionArg(Commandline cmd) {
+    AnalysisOptions.addBooleanArg(this.version, "-version", cmd);
+  }
+
+  private void addOutputArg(Commandline cmd) {
+    cmd.createArg().setFile(this.outputDirectory);
+    if (this.analyzesTestClasses()) {
+      cmd.createArg().setFile(this.testOutputDirectory);
     }
   }
 
-  /**
-   * Get the path of the JDeps tool executable depending the user entry or try to find it depending the OS
-   * or the <code>java.home</code> system property or the <code>JAVA_HOME</code> environment variable.
-   *
-   * @return the path of the JDeps tool
-   * @throws IOException if not found
-   */
-  private String getJdepsExecutable() throws IOException {
-    JDepsCommandUtil jdepsCommandUtil = new JDepsCommandUtil(this.toolchainManager, this.getLog(), this.session);
-    return jdepsCommandUtil.getJdepsExecutable();
+  @Override
+  protected void executeJDepsCommandLine(Commandline cmd, StreamConsumer out) throws MojoFailureException {
+    long start = ExecutionMetrics.start();
+    try {
+      super.executeJDepsCommandLine(cmd, out);
+    } finally {
+      this.metrics.stop(ExecutionMetrics.EXECUTE, start);
+    }
   }
 
 }
@@ -0,0 +1,560 @@
+package com.github.marschall.jdeps;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.maven.doxia.sink.Sink;
+import org.apache.maven.doxia.sink.SinkFactory;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Renders a {@link DependencyGraph} as a structured report.
+ * <p>
+ * The main page contains the dependencies between archives and an index
+ * of all packages. The dependencies of every package are rendered on a
+ * sub page of their own so that class level detail is only loaded when
+ * requested. The package index and the sub pages are split into pages of
+ * a fixed number of rows. Every page is written to its sink and closed
+ * before the next one is started.
+ * <p>
+ * Cycles between packages and between archives are listed on the main
+ * page.
+ * <p>
+ * If the archives are the modules of a reactor the main page also lists
+ * the dependencies between modules and dependencies on an other module
+ * are highlighted on the package pages.
+ */
+final class JDepsReportRenderer {
+
+  private static final String MAIN_PAGE = "jdeps-report";
+
+  private final String mainPage;
+  private final String title;
+  private final Set<String> modules;
+  private final Sink mainSink;
+  private final SinkFactory sinkFactory;
+  private final File outputDirectory;
+  private final DependencyGraph graph;
+  private final boolean classLevel;
+  private final int pageSize;
+  private final Comparator<Integer> byName;
+
+  /**
+   * Creates a new renderer.
+   *
+   * @param mainSink the sink of the main page
+   * @param sinkFactory creates the sinks of the sub pages
+   * @param outputDirectory the directory of the sub pages
+   * @param graph the dependencies to render
+   * @param classLevel whether the nodes of the graph are classes rather
+   *  than packages
+   * @param pageSize the maximum number of table rows per page
+   */
+  JDepsReportRenderer(Sink mainSink, SinkFactory sinkFactory, File outputDirectory,
+          DependencyGraph graph, boolean classLevel, int pageSize) {
+    this(MAIN_PAGE, "JDeps report", null, mainSink, sinkFactory, outputDirectory, graph, classLevel, pageSize);
+  }
+
+  /**
+   * Creates a new renderer for a report with a different name.
+   *
+   * @param mainPage the output name of the main page, the sub pages
+   *  start with it
+   * @param title the title of the pages
+   * @param modules the names of the archives that are reactor modules,
+   *  {@code null} if the report is not for several modules
+   * @param mainSink the sink of the main page
+   * @param sinkFactory creates the sinks of the sub pages
+   * @param outputDirectory the directory of the sub pages
+   * @param graph the dependencies to render
+   * @param classLevel whether the nodes of the graph are classes rather
+   *  than packages
+   * @param pageSize the maximum number of table rows per page
+   */
+  JDepsReportRenderer(String mainPage, String title, Set<String> modules, Sink mainSink, SinkFactory sinkFactory,
+          File outputDirectory, DependencyGraph graph, boolean classLevel, int pageSize) {
+    this.mainPage = mainPage;
+    this.title = title;
+    this.modules = modules;
+    this.mainSink = mainSink;
+    this.sinkFactory = sinkFactory;
+    this.outputDirectory = outputDirectory;
+    this.graph = graph;
+    this.classLevel = classLevel;
+    this.pageSize = Math.max(pageSize, 1);
+    this.byName = new Comparator<Integer>() {
+
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        return JDepsReportRenderer.this.graph.getName(o1).compareTo(JDepsReportRenderer.this.graph.getName(o2));
+      }
+
+    };
+  }
+
+  /**
+   * Renders the main page and all sub pages.
+   *
+   * @param output the raw jdeps output, lines that are not dependencies
+   *  like warnings are rendered verbatim
+   * @throws IOException if a sub page can not be written or the output
+   *  can not be read
+   */
+  void render(OutputBuffer output) throws IOException {
+    Sink sink = this.mainSink;
+    startPage(sink, this.title);
+
+    this.renderArchives(sink);
+    this.renderModules(sink);
+    this.renderCycles(sink);
+
+    List<PackageRows> packages = this.groupByPackage();
+    if (!packages.isEmpty()) {
+      sink.section2();
+      sink.sectionTitle2();
+      sink.text("Packages");
+      sink.sectionTitle2_();
+      int pageCount = pageCount(packages.size(), this.pageSize);
+      this.renderPackageIndex(sink, packages, 1, pageCount);
+      sink.section2_();
+      for (int page = 2; page <= pageCount; page++) {
+        Sink indexSink = this.sinkFactory.createSink(this.outputDirectory, this.getPackageIndexName(page));
+        startPage(indexSink, this.title + " - packages " + page);
+        this.renderPackageIndex(indexSink, packages, page, pageCount);
+        endPage(indexSink);
+      }
+      for (PackageRows rows : packages) {
+        this.renderPackage(rows);
+      }
+    }
+
+    this.renderOtherOutput(sink, output);
+    endPage(sink);
+  }
+
+  private void renderArchives(Sink sink) {
+    if (this.graph.getArchiveEdgeCount() == 0) {
+      return;
+    }
+    sink.section2();
+    sink.sectionTitle2();
+    sink.text("Archives");
+    sink.sectionTitle2_();
+    startTable(sink, "Archive", "Depends on");
+    for (int archive = 0; archive < this.graph.getNodeCount(); archive++) {
+      int start = this.graph.getArchiveEdgeStart(archive);
+      int end = this.graph.getArchiveEdgeEnd(archive);
+      if (start == end) {
+        continue;
+      }
+      List<String> targets = new ArrayList<>(end - start);
+      for (int edge = start; edge < end; edge++) {
+        targets.add(this.graph.getName(this.graph.getArchiveTarget(edge)));
+      }
+      Collections.sort(targets);
+      sink.tableRow();
+      cell(sink, this.graph.getName(archive));
+      cell(sink, StringUtils.join(targets.iterator(), ", "));
+      sink.tableRow_();
+    }
+    endTable(sink);
+    sink.section2_();
+  }
+
+  private void renderModules(Sink sink) {
+    if (this.modules == null) {
+      return;
+    }
+    // module -> module it depends on -> number of dependencies
+    Map<String, Map<String, Integer>> moduleEdges = new TreeMap<>();
+    for (int source = 0; source < this.graph.getNodeCount(); source++) {
+      String sourceModule = this.getModule(source);
+      if (sourceModule == null) {
+        continue;
+      }
+      for (int edge = this.graph.getEdgeStart(source); edge < this.graph.getEdgeEnd(source); edge++) {
+        String targetModule = this.getModule(this.graph.getTarget(edge));
+        if ((targetModule != null) && !targetModule.equals(sourceModule)) {
+          Map<String, Integer> targets = moduleEdges.get(sourceModule);
+          if (targets == null) {
+            targets = new TreeMap<>();
+            moduleEdges.put(sourceModule, targets);
+          }
+          Integer count = targets.get(targetModule);
+          targets.put(targetModule, count == null ? 1 : count + 1);
+        }
+      }
+    }
+    sink.section2();
+    sink.sectionTitle2();
+    sink.text("Modules");
+    sink.sectionTitle2_();
+    if (moduleEdges.isEmpty()) {
+      sink.paragraph();
+      sink.text("No module depends on an other module.");
+      sink.paragraph_();
+    } else {
+      startTable(sink, "Module", "Depends on", this.classLevel ? "Class dependencies" : "Package dependencies");
+      for (Map.Entry<String, Map<String, Integer>> entry : moduleEdges.entrySet()) {
+        for (Map.Entry<String, Integer> target : entry.getValue().entrySet()) {
+          sink.tableRow();
+          cell(sink, entry.getKey());
+          cell(sink, target.getKey());
+          cell(sink, target.getValue().toString());
+          sink.tableRow_();
+        }
+      }
+      endTable(sink);
+      sink.paragraph();
+      sink.text("Dependencies on an other module are bold on the package pages.");
+      sink.paragraph_();
+    }
+    sink.section2_();
+  }
+
+  private void renderCycles(Sink sink) {
+    List<List<String>> packageCycles = DependencyCycles.findPackageCycles(this.graph, this.classLevel);
+    List<List<String>> archiveCycles = DependencyCycles.findArchiveCycles(this.graph);
+    if (packageCycles.isEmpty() && archiveCycles.isEmpty()) {
+      return;
+    }
+    sink.section2();
+    sink.sectionTitle2();
+    sink.text("Cycles");
+    sink.sectionTitle2_();
+    startTable(sink, "Kind", "Members");
+    for (List<String> cycle : packageCycles) {
+      sink.tableRow();
+      cell(sink, "Packages");
+      cell(sink, StringUtils.join(cycle.iterator(), ", "));
+      sink.tableRow_();
+    }
+    for (List<String> cycle : archiveCycles) {
+      sink.tableRow();
+      cell(sink, "Archives");
+      cell(sink, StringUtils.join(cycle.iterator(), ", "));
+      sink.tableRow_();
+    }
+    endTable(sink);
+    sink.section2_();
+  }
+
+  /**
+   * Returns the module of a package or class.
+   *
+   * @return the module or {@code null} if not in a module
+   */
+  private String getModule(int node) {
+    int archive = this.graph.getArchive(node);
+    if (archive == DependencyGraph.NO_ARCHIVE) {
+      return null;
+    }
+    String name = this.graph.getName(archive);
+    return this.modules.contains(name) ? name : null;
+  }
+
+  private void renderPackageIndex(Sink sink, List<PackageRows> packages, int page, int pageCount) {
+    startTable(sink, "Package", "Archive", this.classLevel ? "Classes" : "Packages", "Dependencies");
+    int end = Math.min(page * this.pageSize, packages.size());
+    for (int i = (page - 1) * this.pageSize; i < end; i++) {
+      PackageRows rows = packages.get(i);
+      sink.tableRow();
+      sink.tableCell();
+      sink.link(this.getPackagePageName(rows.name, 1));
+      sink.text(rows.name);
+      sink.link_();
+      sink.tableCell_();
+      cell(sink, rows.archive != DependencyGraph.NO_ARCHIVE ? this.graph.getName(rows.archive) : "");
+      cell(sink, Integer.toString(rows.sourceCount));
+      cell(sink, Integer.toString(rows.edgeCount));
+      sink.tableRow_();
+    }
+    endTable(sink);
+    renderNavigation(sink, page, pageCount, new PageNames() {
+
+      @Override
+      public String getName(int page) {
+        return JDepsReportRenderer.this.getPackageIndexName(page);
+      }
+
+    });
+  }
+
+  private void renderPackage(final PackageRows rows) throws IOException {
+    int pageCount = pageCount(rows.edgeCount, this.pageSize);
+    PageNames pageNames = new PageNames() {
+
+      @Override
+      public String getName(int page) {
+        return JDepsReportRenderer.this.getPackagePageName(rows.name, page);
+      }
+
+    };
+    int page = 1;
+    Sink sink = this.startPackagePage(rows, page);
+    int rowCount = 0;
+    for (int source : rows.getSources(this.byName)) {
+      String sourceModule = this.modules != null ? this.getModule(source) : null;
+      for (int target : this.getTargets(source)) {
+        if (rowCount == this.pageSize) {
+          this.endPackagePage(sink, page, pageCount, pageNames);
+          page += 1;
+          sink = this.startPackagePage(rows, page);
+          rowCount = 0;
+        }
+        int archive = this.graph.getArchive(target);
+        String archiveName = archive != DependencyGraph.NO_ARCHIVE ? this.graph.getName(archive) : "";
+        sink.tableRow();
+        cell(sink, this.graph.getName(source));
+        if ((sourceModule != null) && this.modules.contains(archiveName) && !archiveName.equals(sourceModule)) {
+          boldCell(sink, this.graph.getName(target));
+          boldCell(sink, archiveName);
+        } else {
+          cell(sink, this.graph.getName(target));
+          cell(sink, archiveName);
+        }
+        sink.tableRow_();
+        rowCount += 1;
+      }
+    }
+    this.endPackagePage(sink, page, pageCount, pageNames);
+  }
+
+  private Sink startPackagePage(PackageRows rows, int page) throws IOException {
+    Sink sink = this.sinkFactory.createSink(this.outputDirectory, this.getPackagePageName(rows.name, page));
+    startPage(sink, this.title + " - " + rows.name);
+    sink.paragraph();
+    sink.link(this.mainPage + ".html");
+    sink.text(this.title);
+    sink.link_();
+    sink.paragraph_();
+    startTable(sink, "Source", "Target", "Archive");
+    return sink;
+  }
+
+  private void endPackagePage(Sink sink, int page, int pageCount, PageNames pageNames) {
+    endTable(sink);
+    renderNavigation(sink, page, pageCount, pageNames);
+    endPage(sink);
+  }
+
+  private Integer[] getTargets(int source) {
+    int start = this.graph.getEdgeStart(source);
+    int end = this.graph.getEdgeEnd(source);
+    Integer[] targets = new Integer[end - start];
+    for (int edge = start; edge < end; edge++) {
+      targets[edge - start] = this.graph.getTarget(edge);
+    }
+    Arrays.sort(targets, this.byName);
+    return targets;
+  }
+
+  private void renderOtherOutput(final Sink sink, OutputBuffer output) throws IOException {
+    // warnings and the suggested replacements for JDK internal APIs
+    final boolean[] started = new boolean[1];
+    output.replay(new StreamConsumer() {
+
+      @Override
+      public void consumeLine(String line) {
+        if (DependencyGraphParser.isDependency(line)) {
+          return;
+        }
+        if (!started[0]) {
+          if (line.trim().isEmpty()) {
+            return;
+          }
+          sink.section2();
+          sink.sectionTitle2();
+          sink.text("Other output");
+          sink.sectionTitle2_();
+          sink.verbatim(true);
+          started[0] = true;
+        }
+        sink.text(line + '\n');
+      }
+
+    });
+    if (started[0]) {
+      sink.verbatim_();
+      sink.section2_();
+    }
+  }
+
+  private List<PackageRows> groupByPackage() {
+    Map<String, PackageRows> packages = new TreeMap<>();
+    for (int node = 0; node < this.graph.getNodeCount(); node++) {
+      int edgeCount = this.graph.getEdgeEnd(node) - this.graph.getEdgeStart(node);
+      if (edgeCount == 0) {
+        continue;
+      }
+      String packageName = this.getPackageName(this.graph.getName(node));
+      PackageRows rows = packages.get(packageName);
+      if (rows == null) {
+        rows = new PackageRows(packageName, this.graph.getArchive(node));
+        packages.put(packageName, rows);
+      }
+      rows.add(node, edgeCount);
+    }
+    return new ArrayList<>(packages.values());
+  }
+
+  private String getPackageName(String name) {
+    if (!this.classLevel) {
+      return name;
+    }
+    int lastDot = name.lastIndexOf('.');
+    return lastDot == -1 ? "<unnamed>" : name.substring(0, lastDot);
+  }
+
+  private String getPackageIndexName(int page) {
+    return page == 1 ? this.mainPage + ".html" : this.mainPage + "-packages-" + page + ".html";
+  }
+
+  private String getPackagePageName(String packageName, int page) {
+    StringBuilder buffer = new StringBuilder(this.mainPage).append('-');
+    for (int i = 0; i < packageName.length(); i++) {
+      char c = packageName.charAt(i);
+      if (Character.isLetterOrDigit(c) || (c == '.') || (c == '-') || (c == '_')) {
+        buffer.append(c);
+      } else {
+        buffer.append('_');
+      }
+    }
+    if (page > 1) {
+      buffer.append('-').append(page);
+    }
+    return buffer.append(".html").toString();
+  }
+
+  private static int pageCount(int rowCount, int pageSize) {
+    return Math.max((rowCount + pageSize - 1) / pageSize, 1);
+  }
+
+  private static void renderNavigation(Sink sink, int page, int pageCount, PageNames pageNames) {
+    if (pageCount == 1) {
+      return;
+    }
+    sink.paragraph();
+    sink.text("Page ");
+    for (int i = 1; i <= pageCount; i++) {
+      if (i > 1) {
+        sink.text(" ");
+      }
+      if (i == page) {
+        sink.bold();
+        sink.text(Integer.toString(i));
+        sink.bold_();
+      } else {
+        sink.link(pageNames.getName(i));
+        sink.text(Integer.toString(i));
+        sink.link_();
+      }
+    }
+    sink.paragraph_();
+  }
+
+  private static void startPage(Sink sink, String title) {
+    sink.head();
+    sink.title();
+    sink.text(title);
+    sink.title_();
+    sink.head_();
+
+    sink.body();
+    sink.section1();
+
+    sink.sectionTitle1();
+    sink.text(title);
+    sink.sectionTitle1_();
+  }
+
+  private static void endPage(Sink sink) {
+    sink.section1_();
+    sink.body_();
+    sink.flush();
+    sink.close();
+  }
+
+  private static void startTable(Sink sink, String... headers) {
+    sink.table();
+    sink.tableRows(null, false);
+    sink.tableRow();
+    for (String header : headers) {
+      sink.tableHeaderCell();
+      sink.text(header);
+      sink.tableHeaderCell_();
+    }
+    sink.tableRow_();
+  }
+
+  private static void endTable(Sink sink) {
+    sink.tableRows_();
+    sink.table_();
+  }
+
+  private static void cell(Sink sink, String text) {
+    sink.tableCell();
+    sink.text(text);
+    sink.tableCell_();
+  }
+
+  private static void boldCell(Sink sink, String text) {
+    sink.tableCell();
+    sink.bold();
+    sink.text(text);
+    sink.bold_();
+    sink.tableCell_();
+  }
+
+  interface PageNames {
+
+    String getName(int page);
+
+  }
+
+  /**
+   * The packages or classes of a package that have dependencies.
+   */
+  static final class PackageRows {
+
+    final String name;
+    final int archive;
+    int[] sources;
+    int sourceCount;
+    int edgeCount;
+
+    PackageRows(String name, int archive) {
+      this.name = name;
+      this.archive = archive;
+      this.sources = new int[4];
+    }
+
+    void add(int source, int sourceEdgeCount) {
+      if (this.sourceCount == this.sources.length) {
+        this.sources = Arrays.copyOf(this.sources, this.sourceCount * 2);
+      }
+      this.sources[this.sourceCount++] = source;
+      this.edgeCount += sourceEdgeCount;
+    }
+
+    Integer[] getSources(Comparator<Integer> byName) {
+      Integer[] result = new Integer[this.sourceCount];
+      for (int i = 0; i < this.sourceCount; i++) {
+        result[i] = this.sources[i];
+      }
+      Arrays.sort(result, byName);
+      return result;
+    }
+
+  }
+
+}
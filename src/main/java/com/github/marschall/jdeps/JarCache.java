@@ -0,0 +1,142 @@
+package com.github.marschall.jdeps;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the parsed classes of JARs in memory so that a long running
+ * {@link AnalysisDaemon} reads every JAR only once.
+ * <p>
+ * JARs that were only indexed are cached with their class names only.
+ * An entry is only used as long as size and modification time of the
+ * JAR are unchanged. The least recently used entries are evicted once
+ * the estimated memory used by all entries exceeds the limit.
+ */
+final class JarCache {
+
+  private final long maxMemory;
+  private final LinkedHashMap<Path, Entry> entries;
+  private long memory;
+
+  /**
+   * Creates a new cache.
+   *
+   * @param maxMemory the maximum estimated memory in bytes
+   */
+  JarCache(long maxMemory) {
+    this.maxMemory = maxMemory;
+    // access order for least recently used eviction
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /**
+   * Looks up the classes of a JAR.
+   *
+   * @param jar the JAR, not null
+   * @return the cached classes or {@code null} if the JAR is not cached
+   *  or has changed since
+   * @throws IOException if the attributes of the JAR can not be read
+   */
+  synchronized Entry get(Path jar) throws IOException {
+    Entry entry = this.entries.get(jar);
+    if (entry == null) {
+      return null;
+    }
+    BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+    if ((attributes.size() != entry.size) || (attributes.lastModifiedTime().toMillis() != entry.lastModified)) {
+      this.entries.remove(jar);
+      this.memory -= entry.memory;
+      return null;
+    }
+    return entry;
+  }
+
+  /**
+   * Adds the classes of a JAR.
+   *
+   * @param jar the JAR, not null
+   * @param size the size of the JAR when it was read
+   * @param lastModified the modification time of the JAR in milliseconds
+   *  when it was read
+   * @param classNames the names of all classes, from the entry names
+   * @param classes the parsed classes by name, {@code null} if the JAR
+   *  was only indexed
+   * @return the added entry
+   */
+  synchronized Entry put(Path jar, long size, long lastModified, List<String> classNames,
+          Map<String, ClassFileParser.ClassDependencies> classes) {
+    Entry entry = new Entry(size, lastModified, classNames, classes);
+    if (entry.memory > this.maxMemory) {
+      return entry;
+    }
+    Entry previous = this.entries.put(jar, entry);
+    if (previous != null) {
+      this.memory -= previous.memory;
+    }
+    this.memory += entry.memory;
+    Iterator<Entry> iterator = this.entries.values().iterator();
+    while ((this.memory > this.maxMemory) && iterator.hasNext()) {
+      Entry eldest = iterator.next();
+      iterator.remove();
+      this.memory -= eldest.memory;
+    }
+    return entry;
+  }
+
+  synchronized int size() {
+    return this.entries.size();
+  }
+
+  synchronized long getMemory() {
+    return this.memory;
+  }
+
+  /**
+   * The classes of a JAR.
+   */
+  static final class Entry {
+
+    final long size;
+    final long lastModified;
+    final List<String> classNames;
+    /**
+     * The parsed classes, {@code null} if the JAR was only indexed.
+     */
+    final Map<String, ClassFileParser.ClassDependencies> classes;
+    final long memory;
+
+    Entry(long size, long lastModified, List<String> classNames, Map<String, ClassFileParser.ClassDependencies> classes) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.classNames = classNames;
+      this.classes = classes;
+      this.memory = estimateMemory(classNames, classes);
+    }
+
+    private static long estimateMemory(List<String> classNames, Map<String, ClassFileParser.ClassDependencies> classes) {
+      // object headers and references plus two bytes per char
+      long memory = 64L;
+      for (String className : classNames) {
+        memory += 48L + (2L * className.length());
+      }
+      if (classes == null) {
+        return memory;
+      }
+      for (ClassFileParser.ClassDependencies dependencies : classes.values()) {
+        memory += 96L + (2L * dependencies.className.length());
+        for (String dependency : dependencies.dependencies) {
+          memory += 48L + (2L * dependency.length());
+        }
+      }
+      return memory;
+    }
+
+  }
+
+}
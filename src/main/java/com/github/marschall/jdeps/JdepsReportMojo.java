@@ -5,29 +5,22 @@ import static org.apache.maven.plugins.annotations.ResolutionScope.COMPILE;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
-import java.util.Set;
 
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.doxia.module.xhtml5.Xhtml5SinkFactory;
 import org.apache.maven.doxia.sink.Sink;
-import org.apache.maven.doxia.siterenderer.Renderer;
-import org.apache.maven.execution.MavenSession;
-import org.apache.maven.plugin.MojoFailureException;
-import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.doxia.sink.SinkFactory;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.project.MavenProject;
-import org.apache.maven.reporting.AbstractMavenReport;
 import org.apache.maven.reporting.MavenReportException;
-import org.apache.maven.toolchain.ToolchainManager;
-import org.codehaus.plexus.util.StringUtils;
-import org.codehaus.plexus.util.cli.CommandLineException;
-import org.codehaus.plexus.util.cli.CommandLineUtils;
-import org.codehaus.plexus.util.cli.CommandLineUtils.StringStreamConsumer;
 import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
 
 /**
  * Puts the output of the jdpes tool into a report page.
@@ -40,25 +33,7 @@ import org.codehaus.plexus.util.cli.Commandline;
   defaultPhase = SITE,
   requiresDependencyResolution = COMPILE
 )
-public class JdepsReportMojo extends AbstractMavenReport {
-
-  @Component
-  private ToolchainManager toolchainManager;
-
-  @Parameter(defaultValue = "${project}", readonly = true) // @Component is deprecated
-  private MavenProject project;
-
-  @Parameter(defaultValue = "${session}", readonly = true) // @Component is deprecated
-  private MavenSession session;
-
-  @Component
-  private Renderer siteRenderer;
-
-  /**
-   * Print dependency summary only.
-   */
-  @Parameter(defaultValue = "false", property = "jdeps.summary")
-  private boolean summary;
+public class JdepsReportMojo extends AbstractJDepsReport {
 
   /**
    * Finds class-level dependences on JDK internal APIs.
@@ -74,95 +49,100 @@ public class JdepsReportMojo extends AbstractMavenReport {
   private boolean jdkInternals;
 
   /**
-   * Restrict analysis to APIs.
-   *
-   * i.e. dependences  from the signature of public and protected
-   * members of public classes including field type, method parameter
-   * types, returned type, checked exception types etc.
+   * Recursively traverse all dependencies.
    */
-  @Parameter(defaultValue = "false", property = "jdeps.apiOnly")
-  private boolean apiOnly;
+  @Parameter(defaultValue = "false", property = "jdeps.recursive")
+  private boolean recursive;
 
   /**
-   * Print all class level dependencies.
+   * Put all resolved dependencies on the classpath instead of only the
+   * direct dependencies.
+   *
+   * The classpath is sorted, without duplicates, and written to the
+   * argument file classpath.args in the work directory, which only
+   * changes with the dependencies. A forked jdeps still gets the whole
+   * classpath on every run, in a temporary argument file for Java 9 or
+   * later and on the command line for Java 8.
    */
-  @Parameter(defaultValue = "false", property = "jdeps.verbose")
-  private boolean verbose;
+  @Parameter(defaultValue = "false", property = "jdeps.transitiveClasspath")
+  private boolean transitiveClasspath;
 
   /**
-   * Print package-level or class-level dependencies
-   * Valid levels are: "package" and "class".
+   * The scope of the dependencies on the transitive classpath, "compile"
+   * includes compile, provided and system dependencies.
    */
-  @Parameter(alias = "verbose-level", property = "jdeps.verboseLevel")
-  private String verboseLevel;
+  @Parameter(defaultValue = "compile", property = "jdeps.classpathScope")
+  private String classpathScope;
 
   /**
-   * Restrict analysis to classes in these packages.
+   * Version information.
    */
-  @Parameter
-  private List<String> packages;
+  @Parameter(defaultValue = "false", property = "jdeps.version")
+  private boolean version;
 
   /**
-   * Restrict analysis to packages matching pattern.
-   * ("packages" and "regex" are exclusive)
+   * Cache the analysis of dependency artifacts when "recursive" is set.
+   *
+   * Only the project classes are analyzed on every run. The output for
+   * each dependency artifact the project depends on, directly or through
+   * other artifacts, is taken from a cache shared by all modules and
+   * builds and appended to the output of the project. Unlike
+   * "recursive" alone an artifact is analyzed as a whole and not only
+   * the classes reached from the project.
    */
-  @Parameter(property = "jdeps.regex")
-  private String regex;
+  @Parameter(defaultValue = "false", property = "jdeps.cacheDependencies")
+  private boolean cacheDependencies;
 
   /**
-   * Filter dependences matching the given pattern.
+   * Directory of the dependency cache, may be shared by several
+   * concurrent Maven processes.
    */
-  @Parameter(property = "jdeps.filter")
-  private String filter;
+  @Parameter(defaultValue = "${user.home}/.m2/jdeps-cache", property = "jdeps.dependencyCacheDirectory")
+  private File dependencyCacheDirectory;
 
   /**
-   * Filter mode. Options
-   *
-   * <dl>
-   *  <dt>package</dt>
-   *  <dd>Filter dependences within the same package (default)</dd>
-   *  <dt>archive</dt>
-   *  <dd>Filter dependences within the same archive</dd>
-   *  <dt>none</dt>
-   *  <dd>No package and archive filtering. Filtering specified via the filter option still applies.</dd>
-   * </dl>
+   * Maximum size of the dependency cache in megabytes. The least
+   * recently used entries are evicted once the cache grows larger.
    */
-  @Parameter(property = "jdeps.filterMode")
-  private String filterMode;
+  @Parameter(defaultValue = "512", property = "jdeps.dependencyCacheSize")
+  private long dependencyCacheSize;
 
   /**
-   * Restricts analysis to classes matching pattern.
-   *
-   * This option filters the list of classes to be analyzed. It can be
-   * used together with "packages" or "regex" which apply pattern to
-   * the dependencies.
+   * Maximum amount of jdeps output in megabytes that is kept in memory.
+   * Larger output is spilled to a file in the work directory and
+   * streamed from there.
    */
-  @Parameter(property = "jdeps.include")
-  private String include;
+  @Parameter(defaultValue = "16", property = "jdeps.outputMemoryLimit")
+  private long outputMemoryLimit;
+
+  // AbstractMavenReport uses outputDirectory for the report
+  @Parameter(defaultValue = "${project.build.outputDirectory}", readonly = true)
+  private File classesDirectory;
 
   /**
-   * Show profile or the file containing a package.
+   * Maximum number of table rows per report page. Larger tables are
+   * split into several pages.
    */
-  @Parameter(defaultValue = "false", property = "jdeps.profile")
-  private boolean profile;
+  @Parameter(defaultValue = "500", property = "jdeps.reportPageSize")
+  private int reportPageSize;
 
   /**
-   * Recursively traverse all dependencies.
+   * Directory where the jdeps goal stores its result, reused if it was
+   * computed with the same options and inputs.
    */
-  @Parameter(defaultValue = "false", property = "jdeps.recursive")
-  private boolean recursive;
+  @Parameter(defaultValue = "${project.build.directory}/jdeps", readonly = true)
+  private File workDirectory;
 
   /**
-   * Version information.
+   * File where the duration of each phase, the CPU time and the size of
+   * the input and output of the report are written as JSON, for example
+   * {@code target/jdeps/report-metrics.json}. Not written if not set, the
+   * one line summary is logged at debug level either way.
    */
-  @Parameter(defaultValue = "false", property = "jdeps.version")
-  private boolean version;
+  @Parameter(property = "jdeps.reportMetricsFile")
+  private File metricsFile;
 
-  @Parameter(defaultValue = "${project.build.outputDirectory}", readonly = true)
-  private File outputDirectory;
-
-  @Parameter(defaultValue = "${project.reporting.outputDirectory}")
-  private File reportOutputDirectory;
+  private ExecutionMetrics metrics;
 
   @Override
   public String getOutputName() {
@@ -185,239 +165,221 @@ public class JdepsReportMojo extends AbstractMavenReport {
 
   @Override
   protected void executeReport(Locale locale) throws MavenReportException {
+    this.metrics = new ExecutionMetrics("jdeps-report");
+    boolean success = false;
+    try {
+      this.executeReportWithMetrics();
+      success = true;
+    } finally {
+      this.writeMetrics(success);
+    }
+  }
+
+  private void executeReportWithMetrics() throws MavenReportException {
     Sink sink = this.getSink();
     String jExecutable;
+    long start = ExecutionMetrics.start();
     try {
       jExecutable = this.getJdepsExecutable();
     } catch (IOException e ) {
       throw new MavenReportException("Unable to find jdeps command: " + e.getMessage(), e );
     }
+    this.metrics.stop(ExecutionMetrics.GET_EXECUTABLE, start);
+    this.metrics.setExecutable(jExecutable);
+    start = ExecutionMetrics.start();
     Commandline cmd = this.buildCommandLine(jExecutable);
+    this.metrics.stop(ExecutionMetrics.BUILD_COMMAND_LINE, start);
 
-    String output = this.executeJDepsCommandLine(cmd);
-
-    sink.head();
-    sink.title();
-    sink.text("JDeps report");
-    sink.title_();
-    sink.head_();
-
-    sink.body();
-    sink.section1();
-
-    sink.sectionTitle1();
-    sink.text("JDeps report");
-    sink.sectionTitle1_();
-
-    sink.verbatim(true);
-    sink.text(output);
-    sink.verbatim_();
-
-    sink.section1_();
-    sink.body_();
-    sink.flush();
-    sink.close();
-  }
-
-  private Commandline buildCommandLine(String jExecutable) throws MavenReportException {
-    Commandline cmd = new Commandline();
-    cmd.setExecutable(jExecutable);
-
-    this.addApiOnly(cmd);
-    this.addClassPathArg(cmd);
-    this.addInclude(cmd);
-    this.addJdkinternals(cmd);
-    this.addPackagesArg(cmd);
-    this.addProfileArg(cmd);
-    this.addRegexArg(cmd);
-    this.addRecursiveArg(cmd);
-    this.addSummaryArg(cmd);
-    this.addVerboseArg(cmd);
-    this.addVerboseLevelArg(cmd);
-    this.addFilterArg(cmd);
-    this.addFilterModeArg(cmd);
-    this.addVersionArg(cmd);
-
-    this.addOutputArg(cmd);
-    return cmd;
-  }
-
-  private void addPackagesArg(Commandline cmd) {
-    if ((this.packages != null) && !this.packages.isEmpty()) {
-      for (String each : this.packages) {
-        cmd.createArg().setValue("-package");
-        cmd.createArg().setValue(each);
+    try (OutputBuffer output = new OutputBuffer(this.workDirectory, this.outputMemoryLimit * 512L * 1024L)) {
+      try {
+        this.analyze(jExecutable, cmd, output);
+      } finally {
+        this.metrics.recordOutput(output);
       }
+      DependencyGraphParser parser = new DependencyGraphParser();
+      output.replay(parser);
+      start = ExecutionMetrics.start();
+      this.renderReport(sink, parser.getGraph(), output);
+      this.metrics.stop(ExecutionMetrics.RENDER, start);
+    } catch (IOException e) {
+      throw new MavenReportException("Unable to render jdeps report", e);
     }
   }
 
-  private void addClassPathArg(Commandline cmd) throws MavenReportException {
-    Set<Artifact> dependencyArtifacts = this.project.getDependencyArtifacts();
-    if (!dependencyArtifacts.isEmpty()) {
-      List<String> fileNames = new ArrayList<>(dependencyArtifacts.size());
-      for (Artifact artifact : dependencyArtifacts) {
-        File file = artifact.getFile();
-        if (file != null) {
-          fileNames.add(file.getAbsolutePath());
+  private void writeMetrics(boolean success) {
+    this.metrics.finish(success);
+    this.metrics.setClassPathEntries(this.getClassPathFiles().size());
+    if (this.metricsFile != null) {
+      try {
+        // a replay does not read the classes, counting them would be most of its work
+        if (!this.metrics.isUpToDate()) {
+          this.metrics.countClasses(this.classesDirectory);
         }
-      }
-      String pathSeparator = System.getProperty("path.separator");
-      if (pathSeparator == null) {
-        throw new MavenReportException("Can't read path separator");
-
-      }
-      if (!fileNames.isEmpty()) {
-        // jdeps doesn't like an empty classpath
-        String classPath = StringUtils.join(fileNames.iterator(), pathSeparator);
-        cmd.createArg().setValue("-classpath");
-        cmd.createArg().setValue(classPath);
+        this.metrics.write(this.metricsFile);
+      } catch (IOException e) {
+        this.getLog().warn("Unable to write jdeps metrics to " + this.metricsFile, e);
       }
     }
-  }
-
-  private void addVerboseLevelArg(Commandline cmd) {
-    if (this.verboseLevel != null) {
-      cmd.createArg().setValue("-verbose:" + this.verboseLevel);
+    if (this.getLog().isDebugEnabled()) {
+      this.getLog().debug(this.metrics.getSummary());
     }
   }
 
-  private void addRegexArg(Commandline cmd) {
-    if (this.regex != null) {
-      cmd.createArg().setValue("-regex");
-      cmd.createArg().setValue(this.regex);
+  private void renderReport(Sink sink, DependencyGraph graph, OutputBuffer output) throws IOException {
+    SinkFactory sinkFactory = this.getSinkFactory();
+    if (sinkFactory == null) {
+      // not run by the site plugin, sub pages are not decorated
+      sinkFactory = new Xhtml5SinkFactory();
     }
+    boolean classLevel = this.getAnalysisOptions().isClassLevel();
+    new JDepsReportRenderer(sink, sinkFactory, this.getReportOutputDirectory(), graph, classLevel, this.reportPageSize)
+            .render(output);
   }
 
-  private void addInclude(Commandline cmd) {
-    if (this.include != null) {
-      cmd.createArg().setValue("-regex");
-      cmd.createArg().setValue(this.include);
+  private void analyze(String jExecutable, Commandline cmd, StreamConsumer out) throws MavenReportException, IOException {
+    StoredAnalysis storedAnalysis = new StoredAnalysis(this.workDirectory);
+    try {
+      String fingerprint = AnalysisFingerprint.compute(jExecutable, cmd.getArguments(), this.getOutputOptions(),
+              this.getInputFiles());
+      if (storedAnalysis.isUpToDate(fingerprint, false) && storedAnalysis.hasTextOutput()) {
+        this.getLog().info("Reusing the output of the jdeps goal");
+        this.metrics.setUpToDate(true);
+        storedAnalysis.replayOutput(out);
+        return;
+      }
+    } catch (IOException e) {
+      this.getLog().warn("Unable to read the output of the jdeps goal", e);
     }
+    this.analyze(cmd, out);
   }
 
-  private void addVerboseArg(Commandline cmd) {
-    this.addBooleanArg(this.verbose, "-verbose", cmd);
-  }
-
-  private void addSummaryArg(Commandline cmd) {
-    this.addBooleanArg(this.summary, "-summary", cmd);
-  }
-
-  private void addJdkinternals(Commandline cmd) {
-    this.addBooleanArg(this.jdkInternals, "-jdkinternals", cmd);
-  }
-
-  private void addApiOnly(Commandline cmd) {
-    this.addBooleanArg(this.apiOnly, "-apionly", cmd);
-  }
-
-  private void addProfileArg(Commandline cmd) {
-    this.addBooleanArg(this.profile, "-profile", cmd);
+  private void analyze(Commandline cmd, StreamConsumer out) throws MavenReportException, IOException {
+    if (this.usesDependencyCache()) {
+      this.analyzeWithDependencyCache(cmd, out);
+    } else {
+      this.executeJDepsCommandLine(cmd, out);
+    }
   }
 
-  private void addRecursiveArg(Commandline cmd) {
-    this.addBooleanArg(this.recursive, "-recursive", cmd);
+  private boolean usesDependencyCache() {
+    return this.recursive && this.cacheDependencies;
   }
 
-
-  private void addFilterArg(Commandline cmd) {
-    if (this.filter != null) {
-      cmd.createArg().setValue("-filter");
-      cmd.createArg().setValue(this.filter);
+  /**
+   * Returns the options that change the output without being arguments
+   * of jdeps, the same as the jdeps goal so that its output is reused.
+   */
+  private List<String> getOutputOptions() {
+    if (this.usesDependencyCache()) {
+      return Collections.singletonList("cacheDependencies");
     }
+    return Collections.emptyList();
   }
 
-  private void addFilterModeArg(Commandline cmd) {
-    if (this.filterMode != null) {
-      switch (this.filterMode) {
-        case "package":
-          cmd.createArg().setValue("-filter:package");
-          break;
-        case "archive":
-          cmd.createArg().setValue("-filter:archive");
-          break;
-        case "none":
-          cmd.createArg().setValue("-filter:none");
-          break;
-        default:
-          // throw an exception?
-          break;
+  private void analyzeWithDependencyCache(Commandline cmd, StreamConsumer out) throws MavenReportException, IOException {
+    DependencyAnalysisCache cache = new DependencyAnalysisCache(this.dependencyCacheDirectory,
+            this.dependencyCacheSize * 1024L * 1024L, this.getLog());
+    String executable = cmd.getLiteralExecutable();
+    String[] arguments = DependencyAnalysisCache.withoutRecursive(cmd.getArguments());
+
+    ReachedArchives reached = new ReachedArchives(this.getClassPathFiles(), out);
+    this.executeJDepsCommandLine(JDepsExecutor.newCommandline(executable, arguments), reached);
+    for (File file = reached.next(); file != null; file = reached.next()) {
+      String[] artifactArguments = DependencyAnalysisCache.getArtifactArguments(arguments, file);
+      String key = null;
+      if (file.isFile()) {
+        // directories are reactor modules that are not worth caching
+        try {
+          key = DependencyAnalysisCache.getKey(executable, artifactArguments, file);
+          if (cache.replay(key, reached)) {
+            continue;
+          }
+        } catch (IOException e) {
+          this.getLog().warn("Unable to read jdeps dependency cache for " + file, e);
+        }
+      }
+      try (OutputBuffer artifactOutput = new OutputBuffer(this.workDirectory, this.outputMemoryLimit * 512L * 1024L)) {
+        this.executeJDepsCommandLine(JDepsExecutor.newCommandline(executable, artifactArguments), artifactOutput);
+        if (key != null) {
+          try {
+            cache.put(key, artifactOutput);
+          } catch (IOException e) {
+            this.getLog().warn("Unable to write jdeps dependency cache for " + file, e);
+          }
+        }
+        artifactOutput.replay(reached);
       }
     }
   }
 
-  private void addVersionArg(Commandline cmd) {
-    this.addBooleanArg(this.version, "-version", cmd);
-  }
+  private Commandline buildCommandLine(String jExecutable) throws MavenReportException {
+    Commandline cmd = new Commandline();
+    cmd.setExecutable(jExecutable);
 
-  private void addBooleanArg(boolean flag, String name, Commandline cmd) {
-    if (flag) {
-      cmd.createArg().setValue(name);
-    }
+    AnalysisOptions options = this.getAnalysisOptions();
+    options.addApiOnly(cmd);
+    this.addClassPathArg(cmd);
+    options.addInclude(cmd);
+    this.addJdkinternals(cmd);
+    options.addPackagesArg(cmd);
+    options.addProfileArg(cmd);
+    options.addRegexArg(cmd);
+    this.addRecursiveArg(cmd);
+    options.addSummaryArg(cmd);
+    options.addVerboseArg(cmd);
+    options.addVerboseLevelArg(cmd);
+    options.addFilterArg(cmd);
+    options.addFilterModeArg(cmd);
+    this.addVersionArg(cmd);
+
+    this.addOutputArg(cmd);
+    return cmd;
   }
 
-  private void addOutputArg(Commandline cmd) {
-    cmd.createArg().setFile(this.outputDirectory);
+  private List<File> getClassPathFiles() {
+    String scope = this.transitiveClasspath ? this.classpathScope : Artifact.SCOPE_COMPILE;
+    return new ArrayList<>(ClassPath.getArtifacts(this.project, this.transitiveClasspath, scope).keySet());
   }
 
-  /**
-   * Execute the JDeps command line
-   *
-   * @param cmd not null
-   * @throws MojoFailureException if any errors occur
-   */
-  private String executeJDepsCommandLine(Commandline cmd) throws MavenReportException {
+  private List<File> getInputFiles() {
+    List<File> inputFiles = this.getClassPathFiles();
+    inputFiles.add(this.classesDirectory);
+    return inputFiles;
+  }
 
-    StringStreamConsumer err = new StringStreamConsumer();
-    StringStreamConsumer out = new StringStreamConsumer();
+  private void addClassPathArg(Commandline cmd) throws MavenReportException {
+    Path argumentFile = this.transitiveClasspath ? new File(this.workDirectory, "classpath.args").toPath() : null;
     try {
-      int exitCode = CommandLineUtils.executeCommandLine(cmd, out, err);
-
-      if (exitCode == 0) {
-        return out.getOutput();
-      } else {
-        String cmdLine = CommandLineUtils.toString(cmd.getCommandline()).replaceAll("'", "");
-
-        StringBuilder msg = new StringBuilder("\nExit code: ");
-        msg.append(exitCode);
-        if (StringUtils.isNotEmpty(err.getOutput())) {
-          msg.append(" - ").append(err.getOutput());
-        }
-        msg.append('\n');
-        msg.append("Command line was: ").append(cmdLine).append('\n').append('\n');
-
-        throw new MavenReportException(msg.toString());
-      }
-    } catch (CommandLineException e) {
-      throw new MavenReportException("Unable to execute jdeps command: " + e.getMessage(), e);
+      ClassPath.addArg(cmd, this.getClassPathFiles(), argumentFile);
+    } catch (IOException e) {
+      throw new MavenReportException("Unable to write classpath argument file " + argumentFile, e);
     }
   }
 
-  /**
-   * Get the path of the JDeps tool executable depending the user entry or try to find it depending the OS
-   * or the <code>java.home</code> system property or the <code>JAVA_HOME</code> environment variable.
-   *
-   * @return the path of the JDeps tool
-   * @throws IOException if not found
-   */
-  private String getJdepsExecutable() throws IOException {
-    JDepsCommandUtil jdepsCommandUtil = new JDepsCommandUtil(this.toolchainManager, this.getLog(), this.session);
-    return jdepsCommandUtil.getJdepsExecutable();
+  private void addJdkinternals(Commandline cmd) {
+    AnalysisOptions.addBooleanArg(this.jdkInternals, "-jdkinternals", cmd);
   }
 
-  @Override
-  protected String getOutputDirectory() {
-    return this.reportOutputDirectory.getAbsolutePath();
+  private void addRecursiveArg(Commandline cmd) {
+    AnalysisOptions.addBooleanArg(this.recursive, "-recursive", cmd);
   }
 
-  @Override
-  protected MavenProject getProject() {
-    return this.project;
+  private void addVersionArg(Commandline cmd) {
+    AnalysisOptions.addBooleanArg(this.version, "-version", cmd);
+  }
+
+  private void addOutputArg(Commandline cmd) {
+    cmd.createArg().setFile(this.classesDirectory);
   }
 
   @Override
-  protected Renderer getSiteRenderer() {
-    return this.siteRenderer;
+  protected void executeJDepsCommandLine(Commandline cmd, StreamConsumer out) throws MavenReportException {
+    long start = ExecutionMetrics.start();
+    try {
+      super.executeJDepsCommandLine(cmd, out);
+    } finally {
+      this.metrics.stop(ExecutionMetrics.EXECUTE, start);
+    }
   }
 
 }
@@ -0,0 +1,129 @@
+package com.github.marschall.jdeps;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The packages of the modules of the JDK that runs Maven, read from the
+ * {@code jrt:/} file system.
+ * <p>
+ * Packages that a module does not export to all modules, and the
+ * packages of {@code jdk.unsupported}, are JDK internal APIs.
+ */
+final class JdkModules {
+
+  private static final String UNSUPPORTED = "jdk.unsupported";
+
+  private static volatile JdkModules instance;
+
+  private final FileSystem jrt;
+  private final Map<String, List<String>> modulesByPackage;
+  private final Set<String> exportedPackages;
+
+  private JdkModules(FileSystem jrt, Map<String, List<String>> modulesByPackage, Set<String> exportedPackages) {
+    this.jrt = jrt;
+    this.modulesByPackage = modulesByPackage;
+    this.exportedPackages = exportedPackages;
+  }
+
+  /**
+   * Returns the modules of the running JDK, reads them on first access.
+   *
+   * @return the modules
+   * @throws IOException if the JDK is older than Java 9 or the modules
+   *  can not be read
+   */
+  static JdkModules getInstance() throws IOException {
+    JdkModules modules = instance;
+    if (modules == null) {
+      synchronized (JdkModules.class) {
+        modules = instance;
+        if (modules == null) {
+          modules = read();
+          instance = modules;
+        }
+      }
+    }
+    return modules;
+  }
+
+  private static JdkModules read() throws IOException {
+    FileSystem jrt;
+    try {
+      jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+    } catch (RuntimeException e) {
+      // FileSystemNotFoundException or ProviderNotFoundException
+      throw new IOException("the builtin engine requires Maven to run on Java 9 or later", e);
+    }
+
+    // a few packages, eg. java.awt, are listed for more than one module
+    Map<String, List<String>> modulesByPackage = new HashMap<>();
+    try (DirectoryStream<Path> packages = Files.newDirectoryStream(jrt.getPath("/packages"))) {
+      for (Path packageDirectory : packages) {
+        List<String> moduleNames = new ArrayList<>(1);
+        try (DirectoryStream<Path> modules = Files.newDirectoryStream(packageDirectory)) {
+          for (Path module : modules) {
+            moduleNames.add(module.getFileName().toString());
+          }
+        }
+        modulesByPackage.put(packageDirectory.getFileName().toString(), moduleNames);
+      }
+    }
+
+    Set<String> exportedPackages = new HashSet<>();
+    try (DirectoryStream<Path> modules = Files.newDirectoryStream(jrt.getPath("/modules"))) {
+      for (Path module : modules) {
+        Path moduleInfo = module.resolve("module-info.class");
+        if (!UNSUPPORTED.equals(module.getFileName().toString()) && Files.isRegularFile(moduleInfo)) {
+          exportedPackages.addAll(ClassFileParser.parseExports(ByteBuffer.wrap(Files.readAllBytes(moduleInfo))));
+        }
+      }
+    }
+    return new JdkModules(jrt, modulesByPackage, exportedPackages);
+  }
+
+  /**
+   * Looks up the module of a class.
+   *
+   * @param className the fully qualified name of the class, not null
+   * @param packageName the name of the package of the class, not null
+   * @return the name of the module or {@code null} if the class is not
+   *  in the JDK
+   */
+  String getModule(String className, String packageName) {
+    List<String> modules = this.modulesByPackage.get(packageName);
+    if (modules == null) {
+      return null;
+    }
+    String classFile = className.replace('.', '/') + ".class";
+    for (String module : modules) {
+      if (Files.isRegularFile(this.jrt.getPath("/modules", module, classFile))) {
+        return module;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks whether a package of the JDK is internal.
+   *
+   * @param packageName the name of a package in the JDK, not null
+   * @return whether the package is not exported to all modules
+   */
+  boolean isInternal(String packageName) {
+    return !this.exportedPackages.contains(packageName);
+  }
+
+}
@@ -0,0 +1,61 @@
+package com.github.marschall.jdeps;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Adapts a {@link StreamConsumer} to a {@link Writer} so that tools
+ * that write to a {@link java.io.PrintWriter} can be consumed line by
+ * line just like the output of a forked process.
+ */
+final class LineConsumerWriter extends Writer {
+
+  private final StreamConsumer consumer;
+  private final StringBuilder line;
+  private boolean lastWasCarriageReturn;
+
+  LineConsumerWriter(StreamConsumer consumer) {
+    this.consumer = consumer;
+    this.line = new StringBuilder(128);
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    int end = off + len;
+    for (int i = off; i < end; i++) {
+      char c = cbuf[i];
+      if (c == '\n') {
+        if (!this.lastWasCarriageReturn) {
+          this.emitLine();
+        }
+        this.lastWasCarriageReturn = false;
+      } else if (c == '\r') {
+        this.emitLine();
+        this.lastWasCarriageReturn = true;
+      } else {
+        this.line.append(c);
+        this.lastWasCarriageReturn = false;
+      }
+    }
+  }
+
+  private void emitLine() throws IOException {
+    this.consumer.consumeLine(this.line.toString());
+    this.line.setLength(0);
+  }
+
+  @Override
+  public void flush() {
+    // lines are only emitted once they are complete
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.line.length() > 0) {
+      this.emitLine();
+    }
+  }
+
+}
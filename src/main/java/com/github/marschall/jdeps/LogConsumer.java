@@ -0,0 +1,72 @@
+package com.github.marschall.jdeps;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Logs jdeps output at info or debug level.
+ * <p>
+ * Lines are collected into chunks of bounded size that are logged as a
+ * single message so that the output is not prefixed line by line.
+ * Leading and trailing empty lines are dropped.
+ */
+final class LogConsumer implements StreamConsumer {
+
+  private static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+  private final Log log;
+  private final boolean debug;
+  private final StringBuilder chunk;
+  private int pendingEmptyLines;
+  private boolean started;
+
+  LogConsumer(Log log) {
+    this(log, false);
+  }
+
+  /**
+   * Creates a new consumer.
+   *
+   * @param log the log, not null
+   * @param debug whether to log at debug instead of info level
+   */
+  LogConsumer(Log log, boolean debug) {
+    this.log = log;
+    this.debug = debug;
+    this.chunk = new StringBuilder();
+  }
+
+  @Override
+  public void consumeLine(String line) {
+    if (line.trim().isEmpty()) {
+      if (this.started) {
+        this.pendingEmptyLines += 1;
+      }
+      return;
+    }
+    this.started = true;
+    for (int i = 0; i < this.pendingEmptyLines; i++) {
+      this.chunk.append('\n');
+    }
+    this.pendingEmptyLines = 0;
+    this.chunk.append('\n').append(line);
+    if (this.chunk.length() > MAX_CHUNK_SIZE) {
+      this.flush();
+    }
+  }
+
+  /**
+   * Logs the lines not yet logged. Has to be called after the last line.
+   */
+  void flush() {
+    if (this.chunk.length() > 0) {
+      if (this.debug) {
+        this.log.debug(this.chunk);
+      } else {
+        this.log.info(this.chunk);
+      }
+      this.chunk.setLength(0);
+    }
+  }
+
+}
@@ -0,0 +1,265 @@
+package com.github.marschall.jdeps;
+
+import static com.github.marschall.jdeps.DependencyGraphParser.EDGE;
+import static com.github.marschall.jdeps.DependencyGraphParser.JDK8_EDGE;
+import static com.github.marschall.jdeps.DependencyGraphParser.JDK8_SOURCE;
+import static com.github.marschall.jdeps.DependencyGraphParser.SUMMARY;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Splits the output of a single jdeps run over the output directories
+ * of several modules back into one output per module.
+ * <p>
+ * jdeps names every directory input after its file name so all modules
+ * show up as {@code classes}. Instead of relying on the archive name
+ * the source of every dependency is mapped to its module through the
+ * packages found in the output directories of the modules.
+ */
+final class ModuleOutputSplitter implements StreamConsumer {
+
+  private final Map<String, String> packageToModule;
+  private final Map<String, ModuleOutput> modules;
+  private final List<String> otherLines;
+  private String currentSource;
+
+  private ModuleOutputSplitter(Map<String, String> packageToModule, Map<String, ModuleOutput> modules) {
+    this.packageToModule = packageToModule;
+    this.modules = modules;
+    this.otherLines = new ArrayList<>();
+  }
+
+  /**
+   * Creates a new splitter by scanning the output directories of the
+   * modules for packages. A package split between modules is attributed
+   * to the first module, the split is logged as a warning.
+   *
+   * @param outputDirectories the output directory of every module,
+   *  keyed by module name, in reactor order
+   * @param log the log for split packages, not null
+   * @return the splitter
+   * @throws IOException if an output directory can not be scanned
+   */
+  static ModuleOutputSplitter forModules(Map<String, File> outputDirectories, Log log) throws IOException {
+    Map<String, String> packageToModule = new HashMap<>();
+    Map<String, ModuleOutput> modules = new LinkedHashMap<>();
+    for (Map.Entry<String, File> entry : outputDirectories.entrySet()) {
+      String module = entry.getKey();
+      File outputDirectory = entry.getValue();
+      modules.put(module, new ModuleOutput(module, outputDirectory));
+      for (String packageName : getPackages(outputDirectory.toPath())) {
+        String firstModule = packageToModule.get(packageName);
+        if (firstModule == null) {
+          packageToModule.put(packageName, module);
+        } else {
+          log.warn("Package " + packageName + " is split between the modules " + firstModule + " and " + module
+                  + ", its dependencies are attributed to " + firstModule);
+        }
+      }
+    }
+    return new ModuleOutputSplitter(packageToModule, modules);
+  }
+
+  private static Set<String> getPackages(final Path outputDirectory) throws IOException {
+    final Set<String> packages = new TreeSet<>();
+    if (!Files.isDirectory(outputDirectory)) {
+      return packages;
+    }
+    Files.walkFileTree(outputDirectory, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        if (file.getFileName().toString().endsWith(".class")) {
+          Path packagePath = outputDirectory.relativize(file).getParent();
+          if (packagePath != null) {
+            packages.add(packagePath.toString().replace(File.separatorChar, '.'));
+          }
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+    });
+    return packages;
+  }
+
+  @Override
+  public void consumeLine(String line) {
+    Matcher matcher = EDGE.matcher(line);
+    if (matcher.matches()) {
+      this.currentSource = null;
+      this.addEdge(line, matcher.group(1), matcher.group(2), matcher.group(3));
+      return;
+    }
+    matcher = JDK8_SOURCE.matcher(line);
+    if (matcher.matches()) {
+      this.currentSource = matcher.group(1);
+      return;
+    }
+    matcher = JDK8_EDGE.matcher(line);
+    if (matcher.matches() && (this.currentSource != null)) {
+      this.addEdge(line, this.currentSource, matcher.group(1), matcher.group(2));
+      return;
+    }
+    // summary lines are recomputed per module
+    if (!SUMMARY.matcher(line).matches()) {
+      this.otherLines.add(line);
+    }
+  }
+
+  private void addEdge(String line, String source, String target, String archive) {
+    String sourceModule = this.getModule(source);
+    if (sourceModule == null) {
+      this.otherLines.add(line);
+      return;
+    }
+    String targetModule = this.getModule(target);
+    String targetArchive = targetModule != null ? targetModule : archive;
+    this.modules.get(sourceModule).addEdge(source, target, targetArchive);
+  }
+
+  private String getModule(String name) {
+    // package level
+    String module = this.packageToModule.get(name);
+    if (module == null) {
+      // class level
+      int lastDot = name.lastIndexOf('.');
+      if (lastDot > 0) {
+        module = this.packageToModule.get(name.substring(0, lastDot));
+      }
+    }
+    return module;
+  }
+
+  Collection<ModuleOutput> getModules() {
+    return this.modules.values();
+  }
+
+  /**
+   * Builds one graph of the dependencies of all modules. The archive of
+   * every package or class of a module is the module, the summary
+   * dependencies are between modules and the archives they depend on.
+   *
+   * @return the graph
+   */
+  DependencyGraph toGraph() {
+    DependencyGraph.Builder builder = new DependencyGraph.Builder();
+    for (ModuleOutput module : this.modules.values()) {
+      int moduleNode = builder.node(module.name);
+      for (String[] edge : module.edges) {
+        int source = builder.node(edge[0]);
+        builder.setArchive(source, moduleNode);
+        int target = builder.node(edge[1]);
+        builder.setArchive(target, builder.node(edge[2]));
+        builder.addEdge(source, target);
+      }
+      for (String archive : module.targetArchives) {
+        builder.addArchiveEdge(moduleNode, builder.node(archive));
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the lines that could not be attributed to a module, for
+   * example warnings.
+   *
+   * @return the lines not belonging to a module
+   */
+  List<String> getOtherLines() {
+    return this.otherLines;
+  }
+
+  /**
+   * The dependencies of a single module.
+   */
+  static final class ModuleOutput {
+
+    private final String name;
+    private final File outputDirectory;
+    private final List<String[]> edges;
+    private final SortedSet<String> targetArchives;
+
+    ModuleOutput(String name, File outputDirectory) {
+      this.name = name;
+      this.outputDirectory = outputDirectory;
+      this.edges = new ArrayList<>();
+      this.targetArchives = new TreeSet<>();
+    }
+
+    void addEdge(String source, String target, String archive) {
+      this.edges.add(new String[] {source, target, archive});
+      if (!archive.equals(this.name)) {
+        this.targetArchives.add(archive);
+      }
+    }
+
+    String getName() {
+      return this.name;
+    }
+
+    SortedSet<String> getTargetArchives() {
+      return this.targetArchives;
+    }
+
+    /**
+     * Formats the dependencies of this module like jdeps does with the
+     * module name instead of the output directory name.
+     *
+     * @param summary whether only the summary should be formatted
+     * @return the formatted output
+     */
+    String format(boolean summary) {
+      StringBuilder buffer = new StringBuilder();
+      for (String archive : this.targetArchives) {
+        buffer.append(this.name).append(" -> ").append(archive).append('\n');
+      }
+      if (!summary) {
+        for (String[] edge : this.edges) {
+          buffer.append(String.format("   %-50s -> %-50s %s\n", edge[0], edge[1], edge[2]));
+        }
+      }
+      return buffer.toString();
+    }
+
+    /**
+     * Writes the dependencies of this module as a DOT file in the
+     * format of jdeps.
+     *
+     * @param dotFile the file to write to
+     * @throws IOException if the file can not be written
+     */
+    void writeDot(Path dotFile) throws IOException {
+      try (Writer writer = Files.newBufferedWriter(dotFile, StandardCharsets.UTF_8)) {
+        writer.write("digraph \"" + this.name + "\" {\n");
+        writer.write("    // Path: " + this.outputDirectory.getAbsolutePath() + '\n');
+        for (String[] edge : this.edges) {
+          writer.write(String.format("   %-50s -> %s;\n", '"' + edge[0] + '"', '"' + edge[1] + " (" + edge[2] + ")\""));
+        }
+        writer.write("}\n");
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,220 @@
+package com.github.marschall.jdeps;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Buffers the output of jdeps line by line with a fixed memory ceiling.
+ * <p>
+ * Lines are kept in memory until their total size exceeds the limit,
+ * then all lines are spilled to a file and further lines are appended
+ * to that file. The lines can be read back any number of times. Closing
+ * the buffer deletes the spill file.
+ */
+final class OutputBuffer implements StreamConsumer, Closeable {
+
+  private final Path spillDirectory;
+  private final long memoryLimit;
+
+  private List<String> lines;
+  private long size;
+  private long lineCount;
+  private Path spillFile;
+  private BufferedWriter spillWriter;
+
+  /**
+   * Creates a new buffer.
+   *
+   * @param spillDirectory the directory for the spill file, created if
+   *  it does not exist
+   * @param memoryLimit the maximum number of characters to keep in
+   *  memory
+   */
+  OutputBuffer(File spillDirectory, long memoryLimit) {
+    this.spillDirectory = spillDirectory.toPath();
+    this.memoryLimit = memoryLimit;
+    this.lines = new ArrayList<>();
+  }
+
+  @Override
+  public synchronized void consumeLine(String line) throws IOException {
+    this.lineCount += 1;
+    // plus one for the line separator
+    this.size += line.length() + 1;
+    if (this.spillWriter != null) {
+      this.writeLine(line);
+      return;
+    }
+    this.lines.add(line);
+    if (this.size > this.memoryLimit) {
+      this.spill();
+    }
+  }
+
+  private void spill() throws IOException {
+    Files.createDirectories(this.spillDirectory);
+    this.spillFile = Files.createTempFile(this.spillDirectory, "jdeps-output", ".txt");
+    this.spillWriter = Files.newBufferedWriter(this.spillFile, StandardCharsets.UTF_8);
+    for (String line : this.lines) {
+      this.writeLine(line);
+    }
+    this.lines = null;
+  }
+
+  private void writeLine(String line) throws IOException {
+    this.spillWriter.write(line);
+    this.spillWriter.write('\n');
+  }
+
+  synchronized boolean isEmpty() {
+    return this.lineCount == 0L;
+  }
+
+  synchronized boolean isSpilled() {
+    return this.spillWriter != null;
+  }
+
+  /**
+   * Returns the number of characters consumed, including one line
+   * separator per line.
+   *
+   * @return the size of the output in characters
+   */
+  synchronized long getSize() {
+    return this.size;
+  }
+
+  synchronized long getLineCount() {
+    return this.lineCount;
+  }
+
+  /**
+   * Opens the lines for reading from the beginning.
+   *
+   * @return the lines, to be closed after reading
+   * @throws IOException if the spill file can not be read
+   */
+  synchronized Lines read() throws IOException {
+    if (this.spillWriter != null) {
+      this.spillWriter.flush();
+      return new FileLines(Files.newBufferedReader(this.spillFile, StandardCharsets.UTF_8));
+    }
+    return new MemoryLines(new ArrayList<>(this.lines));
+  }
+
+  /**
+   * Passes all lines to a consumer.
+   *
+   * @param consumer the consumer, not null
+   * @throws IOException if the spill file can not be read or the
+   *  consumer fails
+   */
+  void replay(StreamConsumer consumer) throws IOException {
+    try (Lines reader = this.read()) {
+      String line = reader.next();
+      while (line != null) {
+        consumer.consumeLine(line);
+        line = reader.next();
+      }
+    }
+  }
+
+  /**
+   * Writes all lines to a file.
+   *
+   * @param target the file to write to, replaced if it exists
+   * @throws IOException if the file can not be written
+   */
+  synchronized void copyTo(Path target) throws IOException {
+    if (this.spillWriter != null) {
+      this.spillWriter.flush();
+      Files.copy(this.spillFile, target, StandardCopyOption.REPLACE_EXISTING);
+    } else {
+      try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+        for (String line : this.lines) {
+          writer.write(line);
+          writer.write('\n');
+        }
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (this.spillWriter != null) {
+      this.spillWriter.close();
+      Files.deleteIfExists(this.spillFile);
+    }
+  }
+
+  /**
+   * Reads lines in order.
+   */
+  interface Lines extends Closeable {
+
+    /**
+     * Reads the next line.
+     *
+     * @return the next line or {@code null} at the end
+     * @throws IOException if the line can not be read
+     */
+    String next() throws IOException;
+
+  }
+
+  static final class MemoryLines implements Lines {
+
+    private final List<String> lines;
+    private int index;
+
+    MemoryLines(List<String> lines) {
+      this.lines = lines;
+    }
+
+    @Override
+    public String next() {
+      if (this.index < this.lines.size()) {
+        return this.lines.get(this.index++);
+      }
+      return null;
+    }
+
+    @Override
+    public void close() {
+      // nothing to close
+    }
+
+  }
+
+  static final class FileLines implements Lines {
+
+    private final BufferedReader reader;
+
+    FileLines(BufferedReader reader) {
+      this.reader = reader;
+    }
+
+    @Override
+    public String next() throws IOException {
+      return this.reader.readLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.reader.close();
+    }
+
+  }
+
+}
@@ -0,0 +1,89 @@
+package com.github.marschall.jdeps;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Finds the classpath entries that {@code -recursive} would analyze when
+ * the project and its dependencies are analyzed one archive at a time.
+ * <p>
+ * Passes jdeps output on and reads the archives it depends on from the
+ * summary lines. Archives are recognized by their path and, if it is
+ * unique on the classpath, by their file name. Every archive is reached
+ * once, in the order it is first depended on.
+ * <p>
+ * The difference to {@code -recursive} is that a reached archive is
+ * analyzed as a whole while jdeps only analyzes the classes it reaches.
+ */
+final class ReachedArchives implements StreamConsumer {
+
+  // "classes -> /path/to/dependency.jar"
+  private static final Pattern SUMMARY = Pattern.compile("^(\\S+) -> (.+)$");
+
+  private final StreamConsumer delegate;
+  private final Map<String, File> archives;
+  private final Set<File> reached;
+  private final Deque<File> pending;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param classPath the classpath the project is analyzed with, not null
+   * @param delegate receives all lines, not null
+   */
+  ReachedArchives(Collection<File> classPath, StreamConsumer delegate) {
+    this.delegate = delegate;
+    this.archives = new HashMap<>();
+    Set<String> ambiguousNames = new HashSet<>();
+    for (File file : classPath) {
+      String name = file.getName();
+      if (this.archives.containsKey(name)) {
+        ambiguousNames.add(name);
+      }
+      this.archives.put(name, file);
+    }
+    // only paths identify an archive whose name is not unique
+    this.archives.keySet().removeAll(ambiguousNames);
+    for (File file : classPath) {
+      this.archives.put(file.getAbsolutePath(), file);
+    }
+    this.reached = new HashSet<>();
+    this.pending = new ArrayDeque<>();
+  }
+
+  @Override
+  public void consumeLine(String line) throws IOException {
+    this.delegate.consumeLine(line);
+    Matcher matcher = SUMMARY.matcher(line);
+    if (matcher.matches()) {
+      File archive = this.archives.get(matcher.group(2));
+      if ((archive != null) && this.reached.add(archive)) {
+        this.pending.add(archive);
+      }
+    }
+  }
+
+  /**
+   * Returns the next archive that was depended on and was not returned
+   * before. Archives depended on by the output of the returned archive
+   * are returned later.
+   *
+   * @return the next archive, {@code null} if all reached archives were
+   *  returned
+   */
+  File next() {
+    return this.pending.poll();
+  }
+
+}
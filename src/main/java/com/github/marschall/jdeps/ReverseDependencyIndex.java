@@ -0,0 +1,239 @@
+package com.github.marschall.jdeps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * The classes of a project with the classes that depend on them, for
+ * finding the classes a change can affect.
+ * <p>
+ * Only classes of the analyzed output directories are indexed, they are
+ * sorted by name so that a class and its nested classes are adjacent.
+ * The dependents of every class are stored in compressed sparse row form
+ * like in {@link DependencyGraph} but with the direction reversed. The
+ * index is stored in a binary file together with the fingerprint of the
+ * analysis it was built from.
+ */
+final class ReverseDependencyIndex {
+
+  private static final int VERSION = 1;
+
+  private final String[] names;
+  private final boolean[] test;
+  private final int[] offsets;
+  private final int[] sources;
+
+  private ReverseDependencyIndex(String[] names, boolean[] test, int[] offsets, int[] sources) {
+    this.names = names;
+    this.test = test;
+    this.offsets = offsets;
+    this.sources = sources;
+  }
+
+  /**
+   * Builds the index from a class level graph.
+   *
+   * @param graph the dependencies between classes, not null
+   * @param mainArchive the name of the archive of the classes
+   * @param testArchive the name of the archive of the test classes,
+   *  {@code null} if there are none
+   * @return the index
+   */
+  static ReverseDependencyIndex build(DependencyGraph graph, String mainArchive, String testArchive) {
+    int nodeCount = graph.getNodeCount();
+    int mainNode = graph.getNode(mainArchive);
+    int testNode = testArchive != null ? graph.getNode(testArchive) : -1;
+
+    // classes of the project sorted by name
+    int[] classNodes = new int[nodeCount];
+    int classCount = 0;
+    for (int node = 0; node < nodeCount; node++) {
+      int archive = graph.getArchive(node);
+      if ((archive != DependencyGraph.NO_ARCHIVE) && ((archive == mainNode) || (archive == testNode))) {
+        classNodes[classCount++] = node;
+      }
+    }
+    String[] names = new String[classCount];
+    for (int i = 0; i < classCount; i++) {
+      names[i] = graph.getName(classNodes[i]);
+    }
+    Arrays.sort(names);
+    int[] indexOfNode = new int[nodeCount];
+    Arrays.fill(indexOfNode, -1);
+    boolean[] test = new boolean[classCount];
+    for (int i = 0; i < classCount; i++) {
+      int node = graph.getNode(names[i]);
+      indexOfNode[node] = i;
+      test[i] = graph.getArchive(node) == testNode;
+    }
+
+    // counting sort of the reversed dependencies
+    int[] offsets = new int[classCount + 1];
+    for (int i = 0; i < classCount; i++) {
+      int node = graph.getNode(names[i]);
+      for (int edge = graph.getEdgeStart(node); edge < graph.getEdgeEnd(node); edge++) {
+        int target = indexOfNode[graph.getTarget(edge)];
+        if ((target != -1) && (target != i)) {
+          offsets[target + 1] += 1;
+        }
+      }
+    }
+    for (int i = 0; i < classCount; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+    int[] next = Arrays.copyOf(offsets, classCount);
+    int[] sources = new int[offsets[classCount]];
+    for (int i = 0; i < classCount; i++) {
+      int node = graph.getNode(names[i]);
+      for (int edge = graph.getEdgeStart(node); edge < graph.getEdgeEnd(node); edge++) {
+        int target = indexOfNode[graph.getTarget(edge)];
+        if ((target != -1) && (target != i)) {
+          sources[next[target]++] = i;
+        }
+      }
+    }
+    return new ReverseDependencyIndex(names, test, offsets, sources);
+  }
+
+  /**
+   * Reads an index.
+   *
+   * @param file the index file, not null
+   * @param fingerprint the fingerprint of the current analysis
+   * @return the index or {@code null} if there is none or it was built
+   *  from a different analysis
+   * @throws IOException if the file can not be read
+   */
+  static ReverseDependencyIndex read(Path file, String fingerprint) throws IOException {
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+      if ((input.readInt() != VERSION) || !input.readUTF().equals(fingerprint)) {
+        return null;
+      }
+      int classCount = input.readInt();
+      String[] names = new String[classCount];
+      boolean[] test = new boolean[classCount];
+      for (int i = 0; i < classCount; i++) {
+        names[i] = input.readUTF();
+        test[i] = input.readBoolean();
+      }
+      int[] offsets = new int[classCount + 1];
+      for (int i = 0; i <= classCount; i++) {
+        offsets[i] = input.readInt();
+      }
+      int[] sources = new int[offsets[classCount]];
+      for (int i = 0; i < sources.length; i++) {
+        sources[i] = input.readInt();
+      }
+      return new ReverseDependencyIndex(names, test, offsets, sources);
+    }
+  }
+
+  /**
+   * Writes the index, replacing the file atomically.
+   *
+   * @param file the index file, the parent directories are created
+   * @param fingerprint the fingerprint of the analysis the index was
+   *  built from
+   * @throws IOException if the file can not be written
+   */
+  void write(Path file, String fingerprint) throws IOException {
+    Path absolute = file.toAbsolutePath();
+    Files.createDirectories(absolute.getParent());
+    Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+    try {
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 64 * 1024))) {
+        output.writeInt(VERSION);
+        output.writeUTF(fingerprint);
+        output.writeInt(this.names.length);
+        for (int i = 0; i < this.names.length; i++) {
+          output.writeUTF(this.names[i]);
+          output.writeBoolean(this.test[i]);
+        }
+        for (int offset : this.offsets) {
+          output.writeInt(offset);
+        }
+        for (int source : this.sources) {
+          output.writeInt(source);
+        }
+      }
+      Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Returns the number of classes.
+   *
+   * @return the number of classes, class ids range from zero to this
+   *  value exclusive
+   */
+  int size() {
+    return this.names.length;
+  }
+
+  String getName(int index) {
+    return this.names[index];
+  }
+
+  boolean isTest(int index) {
+    return this.test[index];
+  }
+
+  /**
+   * Finds the classes that directly or indirectly depend on the changed
+   * classes, including the changed classes themselves. A change to a
+   * class also changes its nested classes.
+   *
+   * @param changedClasses the binary names of the changed top level
+   *  classes, not null
+   * @return the ids of the affected classes
+   */
+  BitSet getAffected(Collection<String> changedClasses) {
+    BitSet affected = new BitSet(this.names.length);
+    int[] queue = new int[this.names.length];
+    int queueSize = 0;
+    for (String changedClass : changedClasses) {
+      int start = Arrays.binarySearch(this.names, changedClass);
+      if (start < 0) {
+        start = -(start + 1);
+      }
+      String nestedPrefix = changedClass + '$';
+      for (int i = start; i < this.names.length; i++) {
+        String name = this.names[i];
+        if (!name.equals(changedClass) && !name.startsWith(nestedPrefix)) {
+          break;
+        }
+        if (!affected.get(i)) {
+          affected.set(i);
+          queue[queueSize++] = i;
+        }
+      }
+    }
+    // breadth first over the dependents, every class is queued at most once
+    for (int head = 0; head < queueSize; head++) {
+      int index = queue[head];
+      for (int i = this.offsets[index]; i < this.offsets[index + 1]; i++) {
+        int source = this.sources[i];
+        if (!affected.get(source)) {
+          affected.set(source);
+          queue[queueSize++] = source;
+        }
+      }
+    }
+    return affected;
+  }
+
+}
@@ -0,0 +1,320 @@
+package com.github.marschall.jdeps;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Checks a {@link DependencyGraph} against {@link DependencyRule}s.
+ * <p>
+ * The patterns of the rules are compiled once into prefix, exact or
+ * regex matchers. They are evaluated once per node rather than once per
+ * dependency, after that a single pass over the dependencies only has to
+ * test bits.
+ */
+final class RuleChecker {
+
+  private final List<CompiledRule> rules;
+
+  private RuleChecker(List<CompiledRule> rules) {
+    this.rules = rules;
+  }
+
+  /**
+   * Compiles rules.
+   *
+   * @param rules the rules from the POM, may be null
+   * @return the checker
+   * @throws IllegalArgumentException if a rule is invalid
+   */
+  static RuleChecker compile(List<DependencyRule> rules) {
+    return compile(rules, false);
+  }
+
+  /**
+   * Compiles the rules for either the project or the test classes.
+   *
+   * @param rules the rules from the POM, may be null
+   * @param test {@code true} for the rules of the test classes,
+   *  {@code false} for the rules of the project classes
+   * @return the checker
+   * @throws IllegalArgumentException if a rule is invalid
+   */
+  static RuleChecker compile(List<DependencyRule> rules, boolean test) {
+    if (rules == null) {
+      return new RuleChecker(Collections.<CompiledRule>emptyList());
+    }
+    List<CompiledRule> compiled = new ArrayList<>(rules.size());
+    for (int i = 0; i < rules.size(); i++) {
+      DependencyRule rule = rules.get(i);
+      if ((rule.getTo() == null) || rule.getTo().isEmpty()) {
+        throw new IllegalArgumentException("rule " + (i + 1) + " has no 'to' patterns");
+      }
+      if (!appliesTo(rule, i, test)) {
+        continue;
+      }
+      String name = rule.getName() != null ? rule.getName() : "rule " + (i + 1);
+      compiled.add(new CompiledRule(name, compileAll(rule.getFrom()), compileAll(rule.getTo()),
+              compileAll(rule.getExcept()), rule.isAcrossArchives()));
+    }
+    return new RuleChecker(compiled);
+  }
+
+  private static boolean appliesTo(DependencyRule rule, int index, boolean test) {
+    String scope = rule.getScope() == null ? "main" : rule.getScope();
+    switch (scope) {
+      case "main":
+        return !test;
+      case "test":
+        return test;
+      case "all":
+        return true;
+      default:
+        throw new IllegalArgumentException("rule " + (index + 1) + " has unknown scope '" + scope
+                + "', must be main, test or all");
+    }
+  }
+
+  boolean isEmpty() {
+    return this.rules.isEmpty();
+  }
+
+  /**
+   * Checks all dependencies of a graph.
+   *
+   * @param graph the graph, not null
+   * @param failFast whether to stop after the first violation
+   * @return the violations, empty if there are none
+   */
+  List<Violation> check(DependencyGraph graph, boolean failFast) {
+    int ruleCount = this.rules.size();
+    BitSet[] sources = new BitSet[ruleCount];
+    BitSet[] targets = new BitSet[ruleCount];
+    for (int r = 0; r < ruleCount; r++) {
+      CompiledRule rule = this.rules.get(r);
+      sources[r] = rule.matchSources(graph);
+      targets[r] = rule.matchTargets(graph);
+    }
+
+    List<Violation> violations = new ArrayList<>();
+    int nodeCount = graph.getNodeCount();
+    for (int source = 0; source < nodeCount; source++) {
+      int start = graph.getEdgeStart(source);
+      int end = graph.getEdgeEnd(source);
+      if (start == end) {
+        continue;
+      }
+      for (int r = 0; r < ruleCount; r++) {
+        if (!sources[r].get(source)) {
+          continue;
+        }
+        boolean acrossArchives = this.rules.get(r).acrossArchives;
+        for (int edge = start; edge < end; edge++) {
+          int target = graph.getTarget(edge);
+          if (targets[r].get(target)
+                  && (!acrossArchives || (graph.getArchive(source) != graph.getArchive(target)))) {
+            violations.add(new Violation(this.rules.get(r).name, graph.getName(source), graph.getName(target)));
+            if (failFast) {
+              return violations;
+            }
+          }
+        }
+      }
+    }
+    return violations;
+  }
+
+  private static List<NameMatcher> compileAll(List<String> patterns) {
+    if (patterns == null) {
+      return Collections.emptyList();
+    }
+    List<NameMatcher> matchers = new ArrayList<>(patterns.size());
+    for (String pattern : patterns) {
+      matchers.add(compilePattern(pattern.trim()));
+    }
+    return matchers;
+  }
+
+  static NameMatcher compilePattern(String pattern) {
+    if (pattern.startsWith("regex:")) {
+      return new RegexMatcher(Pattern.compile(pattern.substring("regex:".length())));
+    }
+    if (pattern.isEmpty() || pattern.equals("..")) {
+      throw new IllegalArgumentException("invalid pattern: '" + pattern + "'");
+    }
+    String body = pattern.endsWith("..") ? pattern.substring(0, pattern.length() - 2) : pattern;
+    if ((body.indexOf('*') == -1) && !body.contains("..")) {
+      if (body.length() < pattern.length()) {
+        return new PrefixMatcher(body);
+      }
+      return new ExactMatcher(body);
+    }
+    return new RegexMatcher(Pattern.compile(toRegex(pattern)));
+  }
+
+  private static String toRegex(String pattern) {
+    StringBuilder regex = new StringBuilder();
+    int literalStart = 0;
+    int i = 0;
+    while (i < pattern.length()) {
+      String wildcard;
+      int length;
+      if (pattern.startsWith("..", i)) {
+        length = 2;
+        if (i == 0) {
+          // any number of leading segments
+          wildcard = "(?:.*\\.)?";
+        } else if (i + 2 == pattern.length()) {
+          // any number of trailing segments
+          wildcard = "(?:\\..*)?";
+        } else {
+          // any number of segments in between
+          wildcard = "\\.(?:.*\\.)?";
+        }
+      } else if (pattern.charAt(i) == '*') {
+        length = 1;
+        wildcard = "[^.]*";
+      } else {
+        i += 1;
+        continue;
+      }
+      if (literalStart < i) {
+        regex.append(Pattern.quote(pattern.substring(literalStart, i)));
+      }
+      regex.append(wildcard);
+      i += length;
+      literalStart = i;
+    }
+    if (literalStart < pattern.length()) {
+      regex.append(Pattern.quote(pattern.substring(literalStart)));
+    }
+    return regex.toString();
+  }
+
+  /**
+   * A dependency that violates a rule.
+   */
+  static final class Violation {
+
+    private final String rule;
+    private final String source;
+    private final String target;
+
+    Violation(String rule, String source, String target) {
+      this.rule = rule;
+      this.source = source;
+      this.target = target;
+    }
+
+    @Override
+    public String toString() {
+      return this.rule + ": " + this.source + " -> " + this.target;
+    }
+
+  }
+
+  static final class CompiledRule {
+
+    final String name;
+    final boolean acrossArchives;
+    private final List<NameMatcher> from;
+    private final List<NameMatcher> to;
+    private final List<NameMatcher> except;
+
+    CompiledRule(String name, List<NameMatcher> from, List<NameMatcher> to, List<NameMatcher> except, boolean acrossArchives) {
+      this.name = name;
+      this.from = from;
+      this.to = to;
+      this.except = except;
+      this.acrossArchives = acrossArchives;
+    }
+
+    BitSet matchSources(DependencyGraph graph) {
+      BitSet result = new BitSet(graph.getNodeCount());
+      for (int node = 0; node < graph.getNodeCount(); node++) {
+        if ((graph.getEdgeStart(node) != graph.getEdgeEnd(node))
+                && (this.from.isEmpty() || matchesAny(this.from, graph.getName(node)))) {
+          result.set(node);
+        }
+      }
+      return result;
+    }
+
+    BitSet matchTargets(DependencyGraph graph) {
+      BitSet result = new BitSet(graph.getNodeCount());
+      for (int node = 0; node < graph.getNodeCount(); node++) {
+        String name = graph.getName(node);
+        if (matchesAny(this.to, name) && !matchesAny(this.except, name)) {
+          result.set(node);
+        }
+      }
+      return result;
+    }
+
+    private static boolean matchesAny(List<NameMatcher> matchers, String name) {
+      for (NameMatcher matcher : matchers) {
+        if (matcher.matches(name)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+  }
+
+  interface NameMatcher {
+
+    boolean matches(String name);
+
+  }
+
+  static final class ExactMatcher implements NameMatcher {
+
+    private final String name;
+
+    ExactMatcher(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public boolean matches(String name) {
+      return this.name.equals(name);
+    }
+
+  }
+
+  static final class PrefixMatcher implements NameMatcher {
+
+    private final String name;
+    private final String prefix;
+
+    PrefixMatcher(String name) {
+      this.name = name;
+      this.prefix = name + '.';
+    }
+
+    @Override
+    public boolean matches(String name) {
+      return name.startsWith(this.prefix) || name.equals(this.name);
+    }
+
+  }
+
+  static final class RegexMatcher implements NameMatcher {
+
+    private final Pattern pattern;
+
+    RegexMatcher(Pattern pattern) {
+      this.pattern = pattern;
+    }
+
+    @Override
+    public boolean matches(String name) {
+      return this.pattern.matcher(name).matches();
+    }
+
+  }
+
+}
@@ -0,0 +1,494 @@
+package com.github.marschall.jdeps;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+import com.github.marschall.jdeps.OutputBuffer.Lines;
+
+/**
+ * Splits the analysis of a large output directory into package shards
+ * that can be analyzed concurrently and merges the results back.
+ * <p>
+ * Each shard restricts the analysis with {@code -include} to the
+ * classes of its packages. As jdeps sorts its output by source every
+ * source belongs to exactly one shard, merging sorts the sources again
+ * and combines the summaries, which gives the same result as a single
+ * run.
+ */
+final class ShardedAnalysis {
+
+  // Java 9+: "   a.b      -> c.d      archive"
+  private static final Pattern EDGE = Pattern.compile("^   (\\S+)\\s+-> \\S+.*$");
+
+  // Java 8: "   a.b (archive)" followed by "      -> c.d      archive"
+  private static final Pattern JDK8_SOURCE = Pattern.compile("^   (\\S+) \\(.*\\)$");
+
+  private static final Pattern JDK8_EDGE = Pattern.compile("^      -> .*$");
+
+  // "classes -> java.base"
+  private static final Pattern SUMMARY = Pattern.compile("^(\\S+) -> (.+)$");
+
+  // DOT: "   "a.b"    -> "c (classes)";"
+  private static final Pattern DOT_EDGE = Pattern.compile("^\\s*\"([^\"]*)\"\\s+-> .*;$");
+
+  /**
+   * The order of the targets of a summary. jdeps sorts them by archive
+   * name but prints archives on the classpath with their path.
+   */
+  private static final Comparator<String> ARCHIVE_ORDER = new Comparator<String>() {
+
+    @Override
+    public int compare(String o1, String o2) {
+      int nameComparison = getArchiveName(o1).compareTo(getArchiveName(o2));
+      if (nameComparison != 0) {
+        return nameComparison;
+      }
+      return o1.compareTo(o2);
+    }
+
+  };
+
+  private ShardedAnalysis() {
+    throw new AssertionError("not instantiable");
+  }
+
+  /**
+   * Checks whether a run can be sharded. {@code -include} also
+   * restricts the classes analyzed in dependencies so recursive runs
+   * can't be sharded. The additional output of {@code -jdkinternals}
+   * and {@code -version} can't be merged.
+   *
+   * @param arguments the arguments of a single run
+   * @return whether the run can be sharded
+   */
+  static boolean canShard(String[] arguments) {
+    for (String argument : arguments) {
+      if ("-recursive".equals(argument) || "-jdkinternals".equals(argument) || "-version".equals(argument)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Partitions the packages of an output directory into shards of
+   * similar class count. The partitioning is deterministic.
+   *
+   * @param outputDirectory the directory containing the class files
+   * @param shardCount the maximum number of shards
+   * @return the {@code -include} pattern of every shard, at most
+   *  {@code shardCount} but fewer if there are fewer packages
+   * @throws IOException if the output directory can not be read
+   */
+  static List<String> computeShards(Path outputDirectory, int shardCount) throws IOException {
+    final Map<String, Integer> classCounts = countClasses(outputDirectory);
+    List<String> packages = new ArrayList<>(classCounts.keySet());
+    // largest packages first, ties broken by name for stable shards
+    Collections.sort(packages, new Comparator<String>() {
+
+      @Override
+      public int compare(String o1, String o2) {
+        int countComparison = Integer.compare(classCounts.get(o2), classCounts.get(o1));
+        if (countComparison != 0) {
+          return countComparison;
+        }
+        return o1.compareTo(o2);
+      }
+
+    });
+
+    int actualShardCount = Math.min(shardCount, packages.size());
+    List<List<String>> shards = new ArrayList<>(actualShardCount);
+    int[] shardSizes = new int[actualShardCount];
+    for (int i = 0; i < actualShardCount; i++) {
+      shards.add(new ArrayList<String>());
+    }
+    for (String packageName : packages) {
+      int smallest = 0;
+      for (int i = 1; i < actualShardCount; i++) {
+        if (shardSizes[i] < shardSizes[smallest]) {
+          smallest = i;
+        }
+      }
+      shards.get(smallest).add(packageName);
+      shardSizes[smallest] += classCounts.get(packageName);
+    }
+
+    List<String> patterns = new ArrayList<>(actualShardCount);
+    for (List<String> shard : shards) {
+      patterns.add(toIncludePattern(shard));
+    }
+    return patterns;
+  }
+
+  private static Map<String, Integer> countClasses(final Path outputDirectory) throws IOException {
+    final Map<String, Integer> classCounts = new TreeMap<>();
+    if (!Files.isDirectory(outputDirectory)) {
+      return classCounts;
+    }
+    Files.walkFileTree(outputDirectory, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        if (file.getFileName().toString().endsWith(".class")) {
+          Path packagePath = outputDirectory.relativize(file).getParent();
+          String packageName = packagePath == null ? "" : packagePath.toString().replace(File.separatorChar, '.');
+          Integer count = classCounts.get(packageName);
+          classCounts.put(packageName, count == null ? 1 : count + 1);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+    });
+    return classCounts;
+  }
+
+  private static String toIncludePattern(List<String> packages) {
+    StringBuilder pattern = new StringBuilder();
+    for (String packageName : packages) {
+      if (pattern.length() > 0) {
+        pattern.append('|');
+      }
+      if (packageName.isEmpty()) {
+        // classes in the default package
+        pattern.append("[^.]+");
+      } else {
+        pattern.append(Pattern.quote(packageName)).append("\\.[^.]+");
+      }
+    }
+    return pattern.toString();
+  }
+
+  /**
+   * Derives the arguments of a shard from the arguments of a single run.
+   *
+   * @param arguments the arguments of a single run, the last argument
+   *  is the input
+   * @param includePattern the pattern of the shard
+   * @param dotOutputDirectory the DOT output directory of the shard,
+   *  replaces the DOT output directory of the single run
+   * @return the arguments of the shard
+   */
+  static String[] getShardArguments(String[] arguments, String includePattern, File dotOutputDirectory) {
+    List<String> result = new ArrayList<>(arguments.length + 2);
+    for (int i = 0; i < arguments.length - 1; i++) {
+      String argument = arguments[i];
+      result.add(argument);
+      if ("-dotoutput".equals(argument)) {
+        result.add(dotOutputDirectory.getAbsolutePath());
+        i += 1;
+      }
+    }
+    result.add("-include");
+    result.add(includePattern);
+    result.add(arguments[arguments.length - 1]);
+    return result.toArray(new String[result.size()]);
+  }
+
+  /**
+   * Merges the outputs of all shards. Every shard output is sorted by
+   * source so the sources are merged in a single pass while only the
+   * current source of every shard is kept in memory.
+   *
+   * @param outputs the output of every shard in shard order
+   * @param merged receives the merged output
+   * @throws IOException if an output can not be read
+   */
+  static void merge(List<OutputBuffer> outputs, StreamConsumer merged) throws IOException {
+    List<ShardReader> readers = new ArrayList<>(outputs.size());
+    try {
+      for (OutputBuffer output : outputs) {
+        readers.add(new ShardReader(output.read()));
+      }
+
+      // source archive -> target archives, in order of appearance
+      Map<String, SortedSet<String>> summaries = new LinkedHashMap<>();
+      for (ShardReader reader : readers) {
+        reader.readSummary(summaries);
+      }
+      for (Map.Entry<String, SortedSet<String>> summary : summaries.entrySet()) {
+        for (String target : summary.getValue()) {
+          merged.consumeLine(summary.getKey() + " -> " + target);
+        }
+      }
+
+      Set<String> otherLines = new LinkedHashSet<>();
+      for (ShardReader reader : readers) {
+        reader.readBlock(otherLines);
+      }
+      ShardReader smallest = getSmallestBlock(readers);
+      while (smallest != null) {
+        for (String line : smallest.block) {
+          merged.consumeLine(line);
+        }
+        smallest.readBlock(otherLines);
+        smallest = getSmallestBlock(readers);
+      }
+
+      for (String line : otherLines) {
+        merged.consumeLine(line);
+      }
+    } finally {
+      for (ShardReader reader : readers) {
+        reader.close();
+      }
+    }
+  }
+
+  private static String getArchiveName(String target) {
+    int separator = Math.max(target.lastIndexOf('/'), target.lastIndexOf(File.separatorChar));
+    return target.substring(separator + 1);
+  }
+
+  private static ShardReader getSmallestBlock(List<ShardReader> readers) {
+    ShardReader smallest = null;
+    for (ShardReader reader : readers) {
+      if ((reader.blockSource != null)
+              && ((smallest == null) || (reader.blockSource.compareTo(smallest.blockSource) < 0))) {
+        smallest = reader;
+      }
+    }
+    return smallest;
+  }
+
+  /**
+   * Merges the DOT files of all shards. Files with the same name are
+   * merged into one graph with the edges sorted by source and target.
+   *
+   * @param shardDirectories the DOT output directory of every shard
+   * @param target the DOT output directory of the merged result
+   * @throws IOException if the files can not be read or written
+   */
+  static void mergeDotFiles(List<Path> shardDirectories, Path target) throws IOException {
+    SortedSet<String> fileNames = new TreeSet<>();
+    for (Path shardDirectory : shardDirectories) {
+      if (Files.isDirectory(shardDirectory)) {
+        try (DirectoryStream<Path> dotFiles = Files.newDirectoryStream(shardDirectory, "*.dot")) {
+          for (Path dotFile : dotFiles) {
+            fileNames.add(dotFile.getFileName().toString());
+          }
+        }
+      }
+    }
+
+    Files.createDirectories(target);
+    for (String fileName : fileNames) {
+      List<Path> shardFiles = new ArrayList<>(shardDirectories.size());
+      for (Path shardDirectory : shardDirectories) {
+        Path shardFile = shardDirectory.resolve(fileName);
+        if (Files.isRegularFile(shardFile)) {
+          shardFiles.add(shardFile);
+        }
+      }
+      mergeDotFile(shardFiles, target.resolve(fileName));
+    }
+  }
+
+  private static void mergeDotFile(List<Path> shardFiles, Path target) throws IOException {
+    List<DotReader> readers = new ArrayList<>(shardFiles.size());
+    try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+      for (Path shardFile : shardFiles) {
+        readers.add(new DotReader(Files.newBufferedReader(shardFile, StandardCharsets.UTF_8)));
+      }
+      for (String line : readers.get(0).header) {
+        writer.write(line);
+        writer.write('\n');
+      }
+      String previous = null;
+      DotReader smallest = getSmallestEdge(readers);
+      while (smallest != null) {
+        // the summary graph of every shard has the same sources
+        if (!smallest.edge.equals(previous)) {
+          writer.write(smallest.edge);
+          writer.write('\n');
+          previous = smallest.edge;
+        }
+        smallest.readEdge();
+        smallest = getSmallestEdge(readers);
+      }
+      writer.write("}\n");
+    } finally {
+      for (DotReader reader : readers) {
+        reader.close();
+      }
+    }
+  }
+
+  private static DotReader getSmallestEdge(List<DotReader> readers) {
+    DotReader smallest = null;
+    for (DotReader reader : readers) {
+      if ((reader.edge != null) && ((smallest == null) || (reader.compareTo(smallest) < 0))) {
+        smallest = reader;
+      }
+    }
+    return smallest;
+  }
+
+  /**
+   * Reads the output of a shard one source block at a time.
+   */
+  static final class ShardReader implements Closeable {
+
+    private final Lines lines;
+    private String next;
+
+    String blockSource;
+    final List<String> block;
+
+    ShardReader(Lines lines) throws IOException {
+      this.lines = lines;
+      this.block = new ArrayList<>();
+      this.next = lines.next();
+    }
+
+    private void advance() throws IOException {
+      this.next = this.lines.next();
+    }
+
+    void readSummary(Map<String, SortedSet<String>> summaries) throws IOException {
+      while (this.next != null) {
+        Matcher matcher = SUMMARY.matcher(this.next);
+        if (!matcher.matches()) {
+          return;
+        }
+        String sourceArchive = matcher.group(1);
+        SortedSet<String> targets = summaries.get(sourceArchive);
+        if (targets == null) {
+          targets = new TreeSet<>(ARCHIVE_ORDER);
+          summaries.put(sourceArchive, targets);
+        }
+        targets.add(matcher.group(2));
+        this.advance();
+      }
+    }
+
+    /**
+     * Reads all lines of the next source. Lines that do not belong to
+     * a source are added to the other lines.
+     */
+    void readBlock(Set<String> otherLines) throws IOException {
+      this.block.clear();
+      this.blockSource = null;
+      boolean jdk8Block = false;
+      while (this.next != null) {
+        String line = this.next;
+        if (this.blockSource == null) {
+          Matcher matcher = EDGE.matcher(line);
+          if (matcher.matches()) {
+            this.blockSource = matcher.group(1);
+          } else {
+            matcher = JDK8_SOURCE.matcher(line);
+            if (matcher.matches()) {
+              this.blockSource = matcher.group(1);
+              jdk8Block = true;
+            } else if (!line.isEmpty()) {
+              otherLines.add(line);
+            }
+          }
+        } else if (jdk8Block) {
+          if (!JDK8_EDGE.matcher(line).matches()) {
+            return;
+          }
+        } else {
+          Matcher matcher = EDGE.matcher(line);
+          if (!matcher.matches() || !matcher.group(1).equals(this.blockSource)) {
+            return;
+          }
+        }
+        if (this.blockSource != null) {
+          this.block.add(line);
+        }
+        this.advance();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.lines.close();
+    }
+
+  }
+
+  /**
+   * Reads the edges of a shard DOT file one at a time.
+   */
+  static final class DotReader implements Closeable, Comparable<DotReader> {
+
+    private final BufferedReader reader;
+
+    final List<String> header;
+    String edge;
+    String edgeSource;
+
+    DotReader(BufferedReader reader) throws IOException {
+      this.reader = reader;
+      this.header = new ArrayList<>();
+      String line = reader.readLine();
+      while ((line != null) && !DOT_EDGE.matcher(line).matches() && !line.equals("}")) {
+        this.header.add(line);
+        line = reader.readLine();
+      }
+      this.setEdge(line);
+    }
+
+    void readEdge() throws IOException {
+      this.setEdge(this.reader.readLine());
+    }
+
+    private void setEdge(String line) throws IOException {
+      String current = line;
+      while (current != null) {
+        Matcher matcher = DOT_EDGE.matcher(current);
+        if (matcher.matches()) {
+          this.edge = current;
+          this.edgeSource = matcher.group(1);
+          return;
+        }
+        current = this.reader.readLine();
+      }
+      this.edge = null;
+      this.edgeSource = null;
+    }
+
+    @Override
+    public int compareTo(DotReader o) {
+      int sourceComparison = this.edgeSource.compareTo(o.edgeSource);
+      if (sourceComparison != 0) {
+        return sourceComparison;
+      }
+      return this.edge.compareTo(o.edge);
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.reader.close();
+    }
+
+  }
+
+}
@@ -0,0 +1,165 @@
+package com.github.marschall.jdeps;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * The result of the last jdeps run of a module stored under
+ * {@code target/} together with the fingerprint of its inputs.
+ * <p>
+ * The layout is:
+ * <dl>
+ *  <dt>{@code fingerprint}</dt>
+ *  <dd>the {@link AnalysisFingerprint} of the run, written last</dd>
+ *  <dt>{@code output.txt}</dt>
+ *  <dd>the standard output of jdeps</dd>
+ *  <dt>{@code dot/}</dt>
+ *  <dd>copies of the generated DOT files, if any</dd>
+ * </dl>
+ */
+final class StoredAnalysis {
+
+  private final Path directory;
+
+  StoredAnalysis(File directory) {
+    this.directory = directory.toPath();
+  }
+
+  private Path getFingerprintFile() {
+    return this.directory.resolve("fingerprint");
+  }
+
+  private Path getOutputFile() {
+    return this.directory.resolve("output.txt");
+  }
+
+  private Path getDotDirectory() {
+    return this.directory.resolve("dot");
+  }
+
+  /**
+   * Checks whether the stored result was computed from the same inputs.
+   *
+   * @param fingerprint the fingerprint of the current inputs
+   * @param requiresDot whether DOT files have to be available
+   * @return {@code true} if the stored output can be used instead of
+   *  running jdeps
+   * @throws IOException if the stored result can not be read
+   */
+  boolean isUpToDate(String fingerprint, boolean requiresDot) throws IOException {
+    Path fingerprintFile = this.getFingerprintFile();
+    if (!Files.isRegularFile(fingerprintFile) || !Files.isRegularFile(this.getOutputFile())) {
+      return false;
+    }
+    if (requiresDot && !Files.isDirectory(this.getDotDirectory())) {
+      return false;
+    }
+    String stored = new String(Files.readAllBytes(fingerprintFile), StandardCharsets.US_ASCII);
+    return stored.equals(fingerprint);
+  }
+
+  /**
+   * Checks whether the stored output contains the text output of jdeps.
+   * If the run wrote DOT files jdeps did not write anything to standard
+   * output.
+   *
+   * @return {@code true} if the stored output is the text output
+   */
+  boolean hasTextOutput() {
+    return !Files.isDirectory(this.getDotDirectory());
+  }
+
+  /**
+   * Passes the stored output line by line to a consumer.
+   *
+   * @param consumer the consumer, not null
+   * @throws IOException if the output can not be read or the consumer
+   *  fails
+   */
+  void replayOutput(StreamConsumer consumer) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(this.getOutputFile(), StandardCharsets.UTF_8)) {
+      String line = reader.readLine();
+      while (line != null) {
+        consumer.consumeLine(line);
+        line = reader.readLine();
+      }
+    }
+  }
+
+  /**
+   * Copies the stored DOT files to the DOT output directory.
+   *
+   * @param dotOutputDirectory the DOT output directory, not null
+   * @throws IOException if the files can not be copied
+   */
+  void restoreDotFiles(File dotOutputDirectory) throws IOException {
+    copyFiles(this.getDotDirectory(), dotOutputDirectory.toPath());
+  }
+
+  /**
+   * Deletes the fingerprint so that the stored result is no longer
+   * considered up to date.
+   *
+   * @throws IOException if the fingerprint can not be deleted
+   */
+  void invalidate() throws IOException {
+    Files.deleteIfExists(this.getFingerprintFile());
+  }
+
+  /**
+   * Stores the result of a successful jdeps run.
+   *
+   * @param fingerprint the fingerprint of the inputs
+   * @param output the standard output of jdeps
+   * @param dotOutputDirectory the DOT output directory, may be null
+   * @throws IOException if the result can not be written
+   */
+  void save(String fingerprint, OutputBuffer output, File dotOutputDirectory) throws IOException {
+    // readers ignore the result until the fingerprint is written
+    this.invalidate();
+    Files.createDirectories(this.directory);
+    output.copyTo(this.getOutputFile());
+
+    Path dotDirectory = this.getDotDirectory();
+    deleteFiles(dotDirectory);
+    if ((dotOutputDirectory != null) && dotOutputDirectory.isDirectory()) {
+      Files.createDirectories(dotDirectory);
+      copyFiles(dotOutputDirectory.toPath(), dotDirectory);
+    }
+
+    Files.write(this.getFingerprintFile(), fingerprint.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private static void copyFiles(Path source, Path target) throws IOException {
+    if (!Files.isDirectory(source)) {
+      return;
+    }
+    Files.createDirectories(target);
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(source, "*.dot")) {
+      for (Path file : files) {
+        Files.copy(file, target.resolve(file.getFileName().toString()), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+  }
+
+  private static void deleteFiles(Path directory) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return;
+    }
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+}
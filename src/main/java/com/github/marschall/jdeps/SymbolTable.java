@@ -0,0 +1,113 @@
+package com.github.marschall.jdeps;
+
+import java.util.Arrays;
+
+/**
+ * Interns names into dense {@code int} ids starting at zero.
+ * <p>
+ * Uses open addressing over a plain {@code int[]} so that looking up a
+ * name does not allocate and every distinct name is stored once.
+ */
+final class SymbolTable {
+
+  private static final int NO_SYMBOL = -1;
+
+  private String[] names;
+  private int[] hashes;
+  private int[] slots;
+  private int size;
+
+  SymbolTable() {
+    this(256);
+  }
+
+  SymbolTable(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(expectedSize, 16) * 2 - 1) * 2;
+    this.names = new String[capacity / 2];
+    this.hashes = new int[capacity / 2];
+    this.slots = new int[capacity];
+    Arrays.fill(this.slots, NO_SYMBOL);
+  }
+
+  /**
+   * Returns the id of a name, adding it if it is not yet present.
+   *
+   * @param name the name, not null
+   * @return the id of the name
+   */
+  int intern(String name) {
+    int hash = mix(name.hashCode());
+    int mask = this.slots.length - 1;
+    int slot = hash & mask;
+    while (true) {
+      int symbol = this.slots[slot];
+      if (symbol == NO_SYMBOL) {
+        break;
+      }
+      if ((this.hashes[symbol] == hash) && this.names[symbol].equals(name)) {
+        return symbol;
+      }
+      slot = (slot + 1) & mask;
+    }
+    int symbol = this.size;
+    if (symbol == this.names.length) {
+      this.grow();
+      return this.intern(name);
+    }
+    this.names[symbol] = name;
+    this.hashes[symbol] = hash;
+    this.slots[slot] = symbol;
+    this.size += 1;
+    return symbol;
+  }
+
+  /**
+   * Returns the id of a name.
+   *
+   * @param name the name, not null
+   * @return the id of the name or {@code -1} if the name is not present
+   */
+  int lookup(String name) {
+    int hash = mix(name.hashCode());
+    int mask = this.slots.length - 1;
+    int slot = hash & mask;
+    while (true) {
+      int symbol = this.slots[slot];
+      if ((symbol == NO_SYMBOL) || ((this.hashes[symbol] == hash) && this.names[symbol].equals(name))) {
+        return symbol;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  String getName(int symbol) {
+    return this.names[symbol];
+  }
+
+  int size() {
+    return this.size;
+  }
+
+  private void grow() {
+    // keep the load factor of the slots at most 0.5
+    this.names = Arrays.copyOf(this.names, this.names.length * 2);
+    this.hashes = Arrays.copyOf(this.hashes, this.hashes.length * 2);
+    this.slots = new int[this.slots.length * 2];
+    Arrays.fill(this.slots, NO_SYMBOL);
+    int mask = this.slots.length - 1;
+    for (int symbol = 0; symbol < this.size; symbol++) {
+      int slot = this.hashes[symbol] & mask;
+      while (this.slots[slot] != NO_SYMBOL) {
+        slot = (slot + 1) & mask;
+      }
+      this.slots[slot] = symbol;
+    }
+  }
+
+  private static int mix(int hash) {
+    // package names share long prefixes, spread the bits
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+}
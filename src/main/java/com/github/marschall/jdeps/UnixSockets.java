@@ -0,0 +1,125 @@
+package com.github.marschall.jdeps;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * Opens Unix domain socket channels, which are available on Java 16 and
+ * later, through reflection since the plugin is compiled for Java 7.
+ */
+final class UnixSockets {
+
+  private static final UnixSockets INSTANCE = lookUp();
+
+  private final Method addressOf;
+  private final ProtocolFamily family;
+  private final Method openServer;
+  private final Method openClient;
+
+  private UnixSockets(Method addressOf, ProtocolFamily family, Method openServer, Method openClient) {
+    this.addressOf = addressOf;
+    this.family = family;
+    this.openServer = openServer;
+    this.openClient = openClient;
+  }
+
+  private static UnixSockets lookUp() {
+    try {
+      Class<?> addressClass = Class.forName("java.net.UnixDomainSocketAddress");
+      Method addressOf = addressClass.getMethod("of", Path.class);
+      ProtocolFamily family = StandardProtocolFamily.valueOf("UNIX");
+      Method openServer = ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+      Method openClient = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+      return new UnixSockets(addressOf, family, openServer, openClient);
+    } catch (ReflectiveOperationException | IllegalArgumentException e) {
+      // before Java 16
+      return null;
+    }
+  }
+
+  /**
+   * Checks whether the running JVM supports Unix domain sockets.
+   *
+   * @return whether Unix domain sockets are supported
+   */
+  static boolean isSupported() {
+    return INSTANCE != null;
+  }
+
+  /**
+   * Opens a server socket bound to a path.
+   *
+   * @param path the path of the socket file, must not exist
+   * @return the server socket channel
+   * @throws IOException if the socket can not be bound or Unix domain
+   *  sockets are not supported
+   */
+  static ServerSocketChannel bind(Path path) throws IOException {
+    UnixSockets sockets = getInstance();
+    ServerSocketChannel server = (ServerSocketChannel) sockets.invoke(sockets.openServer);
+    try {
+      server.bind(sockets.address(path));
+    } catch (IOException e) {
+      server.close();
+      throw e;
+    }
+    return server;
+  }
+
+  /**
+   * Connects to a server socket.
+   *
+   * @param path the path of the socket file
+   * @return the connected channel
+   * @throws IOException if no server is listening or Unix domain sockets
+   *  are not supported
+   */
+  static SocketChannel connect(Path path) throws IOException {
+    UnixSockets sockets = getInstance();
+    SocketChannel channel = (SocketChannel) sockets.invoke(sockets.openClient);
+    try {
+      channel.connect(sockets.address(path));
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return channel;
+  }
+
+  private static UnixSockets getInstance() throws IOException {
+    if (INSTANCE == null) {
+      throw new IOException("Unix domain sockets require Java 16 or later");
+    }
+    return INSTANCE;
+  }
+
+  private Object invoke(Method open) throws IOException {
+    try {
+      return open.invoke(null, this.family);
+    } catch (IllegalAccessException e) {
+      throw new IOException("could not open Unix domain socket", e);
+    } catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException("could not open Unix domain socket", cause);
+    }
+  }
+
+  private SocketAddress address(Path path) throws IOException {
+    try {
+      return (SocketAddress) this.addressOf.invoke(null, path);
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      throw new IOException("invalid Unix domain socket path: " + path, e);
+    }
+  }
+
+}
@@ -0,0 +1,75 @@
+package com.github.marschall.jdeps;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Finds the dependencies none of the analyzed archives references.
+ * <p>
+ * jdeps names a JAR on the classpath by its path in the archive
+ * dependencies and by its file name in the package and class
+ * dependencies, a dependency is used if either name is the target of a
+ * dependency. Only dependencies of archives jdeps analyzed are seen, so
+ * a JAR only used by other JARs counts as unused unless the analysis is
+ * recursive.
+ */
+final class UnusedDependencies {
+
+  private UnusedDependencies() {
+    throw new AssertionError("not instantiable");
+  }
+
+  /**
+   * Finds the unused dependencies.
+   *
+   * @param graph the dependencies reported by jdeps, not null
+   * @param artifacts the dependencies to check, not null
+   * @return the artifacts in the order given that are never referenced
+   */
+  static List<Artifact> find(DependencyGraph graph, Collection<Artifact> artifacts) {
+    Set<String> referenced = getReferencedArchives(graph);
+    List<Artifact> unused = new ArrayList<>();
+    for (Artifact artifact : artifacts) {
+      File file = artifact.getFile();
+      if ((file != null) && !referenced.contains(file.getAbsolutePath()) && !referenced.contains(file.getName())) {
+        unused.add(artifact);
+      }
+    }
+    return unused;
+  }
+
+  private static Set<String> getReferencedArchives(DependencyGraph graph) {
+    Set<String> referenced = new HashSet<>();
+    int nodeCount = graph.getNodeCount();
+    for (int node = 0; node < nodeCount; node++) {
+      for (int edge = graph.getArchiveEdgeStart(node); edge < graph.getArchiveEdgeEnd(node); edge++) {
+        referenced.add(graph.getName(graph.getArchiveTarget(edge)));
+      }
+      for (int edge = graph.getEdgeStart(node); edge < graph.getEdgeEnd(node); edge++) {
+        int archive = graph.getArchive(graph.getTarget(edge));
+        if (archive != DependencyGraph.NO_ARCHIVE) {
+          referenced.add(graph.getName(archive));
+        }
+      }
+    }
+    return referenced;
+  }
+
+  /**
+   * Formats an artifact for the log.
+   *
+   * @param artifact the artifact, not null
+   * @return the coordinates and the scope
+   */
+  static String format(Artifact artifact) {
+    return artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getVersion()
+            + " (" + artifact.getScope() + ')';
+  }
+
+}
@@ -0,0 +1,43 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AnalysisFingerprintTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void options() throws IOException {
+    List<File> inputs = Collections.singletonList(this.folder.newFolder("classes"));
+    String[] arguments = {"-recursive", "classes"};
+    String withoutOptions = AnalysisFingerprint.compute("jdeps", arguments, inputs);
+
+    assertEquals(withoutOptions, AnalysisFingerprint.compute("jdeps", arguments, Collections.<String>emptyList(), inputs));
+    assertNotEquals(withoutOptions,
+            AnalysisFingerprint.compute("jdeps", arguments, Collections.singletonList("cacheDependencies"), inputs));
+    // an option is not an argument
+    assertNotEquals(AnalysisFingerprint.compute("jdeps", new String[] {"cacheDependencies", "-recursive", "classes"}, inputs),
+            AnalysisFingerprint.compute("jdeps", arguments, Collections.singletonList("cacheDependencies"), inputs));
+  }
+
+  @Test
+  public void dotOutput() throws IOException {
+    List<File> inputs = Collections.singletonList(this.folder.newFolder("classes"));
+    assertEquals(AnalysisFingerprint.compute("jdeps", new String[] {"classes"}, inputs),
+            AnalysisFingerprint.compute("jdeps", new String[] {"-dotoutput", "dot", "classes"}, inputs));
+    assertNotEquals(AnalysisFingerprint.compute("jdeps", new String[] {"classes"}, inputs),
+            AnalysisFingerprint.compute("jdeps", new String[] {"-summary", "classes"}, inputs));
+  }
+
+}
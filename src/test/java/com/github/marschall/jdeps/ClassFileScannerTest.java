@@ -0,0 +1,71 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeFalse;
+
+import java.io.IOException;
+
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClassFileScannerTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private JDepsFixture fixture;
+
+  @BeforeClass
+  public static void requireJava9() {
+    // the builtin engine resolves JDK classes through jrt:/
+    assumeFalse(System.getProperty("java.specification.version").startsWith("1."));
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    this.fixture = JDepsFixture.create(this.folder.newFolder());
+  }
+
+  @Test
+  public void packageLevel() throws IOException, CommandLineException {
+    this.assertSameOutput();
+    this.assertSameOutput("-verbose:package");
+  }
+
+  @Test
+  public void classLevel() throws IOException, CommandLineException {
+    this.assertSameOutput("-verbose:class");
+  }
+
+  @Test
+  public void summary() throws IOException, CommandLineException {
+    this.assertSameOutput("-summary");
+  }
+
+  @Test
+  public void filterNone() throws IOException, CommandLineException {
+    this.assertSameOutput("-filter:none");
+    this.assertSameOutput("-verbose:class", "-filter:none");
+  }
+
+  @Test
+  public void recursive() throws IOException, CommandLineException {
+    // lib.z is not reached and not analyzed
+    this.assertSameOutput("-recursive");
+    this.assertSameOutput("-recursive", "-verbose:class");
+    this.assertSameOutput("-recursive", "-summary");
+  }
+
+  private void assertSameOutput(String... options) throws IOException, CommandLineException {
+    String[] arguments = this.fixture.getArguments(options);
+    JDepsFixture.Lines out = new JDepsFixture.Lines();
+    JDepsFixture.Lines err = new JDepsFixture.Lines();
+    assertEquals("builtin engine failed: " + err.getLines(), 0, ClassFileScanner.run(arguments, out, err));
+    assertEquals(JDepsFixture.jdeps(arguments), out.getLines());
+  }
+
+}
@@ -0,0 +1,264 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DaemonClientTest {
+
+  private static final String[] VERSION = new String[] {"-version"};
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path jdkHome;
+
+  private DaemonClient client;
+
+  private FakeDaemon fakeDaemon;
+
+  @BeforeClass
+  public static void requireJava16() {
+    // Unix domain sockets
+    assumeTrue(UnixSockets.isSupported());
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    this.jdkHome = Paths.get(System.getProperty("java.home"));
+    // exits a few seconds after the last request
+    this.client = new DaemonClient(this.folder.newFolder("daemon"), 5000L, 16L * 1024L * 1024L, new SystemStreamLog());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (this.fakeDaemon != null) {
+      this.fakeDaemon.finish();
+    }
+  }
+
+  @Test
+  public void frames() throws Exception {
+    this.fakeDaemon = new FakeDaemon(this.client.getSocket(this.jdkHome)) {
+
+      @Override
+      void respond(DataOutputStream response) throws IOException {
+        AnalysisDaemon.writeFrame(response, AnalysisDaemon.OUT, "first");
+        AnalysisDaemon.writeFrame(response, AnalysisDaemon.ERR, "Warning: ü");
+        AnalysisDaemon.writeFrame(response, AnalysisDaemon.OUT, "");
+        response.writeByte(AnalysisDaemon.EXIT);
+        response.writeInt(3);
+      }
+
+    };
+    JDepsFixture.Lines out = new JDepsFixture.Lines();
+    JDepsFixture.Lines err = new JDepsFixture.Lines();
+    assertEquals(3, this.client.run(this.jdkHome, true, new String[] {"-summary", "/path with spaces"}, out, err));
+    assertEquals(Arrays.asList("first", ""), out.getLines());
+    assertEquals(Collections.singletonList("Warning: ü"), err.getLines());
+
+    this.fakeDaemon.finish();
+    assertEquals(AnalysisDaemon.ENGINE_BUILTIN, this.fakeDaemon.engine);
+    assertEquals(Arrays.asList("-summary", "/path with spaces"), this.fakeDaemon.arguments);
+  }
+
+  @Test
+  public void failed() throws Exception {
+    this.fakeDaemon = new FakeDaemon(this.client.getSocket(this.jdkHome)) {
+
+      @Override
+      void respond(DataOutputStream response) throws IOException {
+        AnalysisDaemon.writeFrame(response, AnalysisDaemon.FAILED, "out of memory");
+      }
+
+    };
+    try {
+      this.client.run(this.jdkHome, false, VERSION, new JDepsFixture.Lines(), new JDepsFixture.Lines());
+      fail("failure not reported");
+    } catch (CommandLineException e) {
+      assertTrue(e.getMessage(), e.getMessage().endsWith("out of memory"));
+    }
+    this.fakeDaemon.finish();
+    assertEquals(AnalysisDaemon.ENGINE_JDEPS, this.fakeDaemon.engine);
+  }
+
+  @Test
+  public void unavailable() throws Exception {
+    this.fakeDaemon = new FakeDaemon(this.client.getSocket(this.jdkHome)) {
+
+      @Override
+      void respond(DataOutputStream response) throws IOException {
+        AnalysisDaemon.writeFrame(response, AnalysisDaemon.UNAVAILABLE, "jdeps not found");
+      }
+
+    };
+    try {
+      this.client.run(this.jdkHome, false, VERSION, new JDepsFixture.Lines(), new JDepsFixture.Lines());
+      fail("unavailability not reported");
+    } catch (IOException e) {
+      assertEquals("jdeps not found", e.getMessage());
+    }
+  }
+
+  @Test
+  public void fallBackIfUnavailable() throws Exception {
+    this.fakeDaemon = new FakeDaemon(this.client.getSocket(this.jdkHome)) {
+
+      @Override
+      void respond(DataOutputStream response) throws IOException {
+        AnalysisDaemon.writeFrame(response, AnalysisDaemon.UNAVAILABLE, "busy");
+      }
+
+    };
+    JDepsFixture.Lines out = new JDepsFixture.Lines();
+    JDepsFixture.Lines err = new JDepsFixture.Lines();
+    assertEquals(0, this.newExecutor().execute(JDepsExecutor.newCommandline(ClassFileScanner.EXECUTABLE_PREFIX, VERSION), out, err));
+
+    JDepsFixture.Lines expected = new JDepsFixture.Lines();
+    ClassFileScanner.run(VERSION, expected, new JDepsFixture.Lines());
+    assertEquals(expected.getLines(), out.getLines());
+    assertEquals(Collections.emptyList(), err.getLines());
+  }
+
+  @Test
+  public void noFallBackAfterOutput() throws Exception {
+    this.fakeDaemon = new FakeDaemon(this.client.getSocket(this.jdkHome)) {
+
+      @Override
+      void respond(DataOutputStream response) throws IOException {
+        // the daemon dies after the first line
+        AnalysisDaemon.writeFrame(response, AnalysisDaemon.OUT, "first");
+      }
+
+    };
+    JDepsFixture.Lines out = new JDepsFixture.Lines();
+    try {
+      this.newExecutor().execute(JDepsExecutor.newCommandline(ClassFileScanner.EXECUTABLE_PREFIX, VERSION),
+              out, new JDepsFixture.Lines());
+      fail("lost connection not reported");
+    } catch (CommandLineException e) {
+      // expected
+    }
+    // the output is not repeated
+    assertEquals(Collections.singletonList("first"), out.getLines());
+  }
+
+  @Test
+  public void daemon() throws IOException, CommandLineException {
+    JDepsFixture fixture = JDepsFixture.create(this.folder.newFolder());
+    String[] arguments = fixture.getArguments("-verbose:class");
+
+    // starts the daemon
+    JDepsFixture.Lines out = new JDepsFixture.Lines();
+    JDepsFixture.Lines err = new JDepsFixture.Lines();
+    assertEquals(0, this.client.run(this.jdkHome, true, arguments, out, err));
+    JDepsFixture.Lines expected = new JDepsFixture.Lines();
+    ClassFileScanner.run(arguments, expected, new JDepsFixture.Lines());
+    assertEquals(expected.getLines(), out.getLines());
+    assertEquals(Collections.emptyList(), err.getLines());
+
+    // connects to the running daemon
+    out = new JDepsFixture.Lines();
+    assertEquals(0, this.client.run(this.jdkHome, false, arguments, out, new JDepsFixture.Lines()));
+    assertEquals(JDepsFixture.jdeps(arguments), out.getLines());
+
+    // errors are sent as lines and the exit code
+    err = new JDepsFixture.Lines();
+    assertEquals(2, this.client.run(this.jdkHome, true, new String[] {"-apionly"}, new JDepsFixture.Lines(), err));
+    assertEquals(1, err.getLines().size());
+
+    try (SocketChannel channel = UnixSockets.connect(this.client.getSocket(this.jdkHome))) {
+      DataOutputStream request = new DataOutputStream(Channels.newOutputStream(channel));
+      request.writeInt(AnalysisDaemon.MAGIC);
+      request.writeInt(AnalysisDaemon.PROTOCOL_VERSION + 1);
+      request.flush();
+      DataInputStream response = new DataInputStream(Channels.newInputStream(channel));
+      assertEquals(AnalysisDaemon.UNAVAILABLE, response.readByte());
+      assertEquals("unsupported protocol version", AnalysisDaemon.readString(response));
+    }
+  }
+
+  private JDepsExecutor newExecutor() {
+    return new JDepsExecutor(new SystemStreamLog(), false, this.client, null, null);
+  }
+
+  /**
+   * Answers a single request with fixed frames.
+   */
+  abstract static class FakeDaemon extends Thread {
+
+    private final ServerSocketChannel server;
+
+    volatile byte engine;
+
+    volatile List<String> arguments;
+
+    private volatile Throwable failure;
+
+    FakeDaemon(Path socket) throws IOException {
+      this.server = UnixSockets.bind(socket);
+      this.start();
+    }
+
+    abstract void respond(DataOutputStream response) throws IOException;
+
+    @Override
+    public void run() {
+      try (ServerSocketChannel serverChannel = this.server;
+           SocketChannel channel = serverChannel.accept()) {
+        DataInputStream request = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        assertEquals(AnalysisDaemon.MAGIC, request.readInt());
+        assertEquals(AnalysisDaemon.PROTOCOL_VERSION, request.readInt());
+        this.engine = request.readByte();
+        List<String> requestArguments = new ArrayList<>();
+        int argumentCount = request.readInt();
+        for (int i = 0; i < argumentCount; i++) {
+          requestArguments.add(AnalysisDaemon.readString(request));
+        }
+        this.arguments = requestArguments;
+        DataOutputStream response = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        this.respond(response);
+        response.flush();
+      } catch (IOException | RuntimeException | AssertionError e) {
+        this.failure = e;
+      }
+    }
+
+    /**
+     * Waits for the request to be answered.
+     */
+    void finish() throws InterruptedException {
+      this.join();
+      if (this.failure != null) {
+        throw new AssertionError("fake daemon failed", this.failure);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,102 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DependencyBaselineTest {
+
+  private static final DependencyGraph GRAPH = DependencyGraphParserTest.parse(Arrays.asList(
+          "classes -> java.base",
+          "classes -> lib.jar",
+          "   com.example.b                                      -> java.lang                                          java.base",
+          "   com.example.a                                      -> java.lang                                          java.base",
+          "   com.example.a                                      -> com.example.b                                      classes",
+          "   com.example.a                                      -> org.lib                                            lib.jar"));
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void write() throws IOException {
+    Path file = this.folder.getRoot().toPath().resolve("baseline/jdeps-baseline.txt");
+    DependencyBaseline.write(GRAPH, file);
+    assertEquals(Arrays.asList(
+            "# jdeps baseline 1",
+            "com.example.a",
+            " com.example.b",
+            " java.lang",
+            " org.lib",
+            "com.example.b",
+            " java.lang",
+            "#archives",
+            "classes",
+            " java.base",
+            " lib.jar"), Files.readAllLines(file, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void unchanged() throws IOException {
+    Path file = this.folder.newFile().toPath();
+    DependencyBaseline.write(GRAPH, file);
+    assertTrue(DependencyBaseline.compare(GRAPH, file).isEmpty());
+  }
+
+  @Test
+  public void changed() throws IOException {
+    Path file = this.folder.newFile().toPath();
+    DependencyBaseline.write(GRAPH, file);
+    DependencyGraph current = DependencyGraphParserTest.parse(Arrays.asList(
+            "classes -> java.base",
+            "classes -> java.sql",
+            "   com.example.a                                      -> com.example.b                                      classes",
+            "   com.example.a                                      -> java.lang                                          java.base",
+            "   com.example.a                                      -> java.sql                                           java.sql",
+            "   com.example.b                                      -> java.lang                                          java.base",
+            "   com.example.c                                      -> com.example.a                                      classes"));
+
+    DependencyBaseline.Delta delta = DependencyBaseline.compare(current, file);
+    assertEquals(Arrays.asList(
+            "com.example.a -> java.sql (java.sql)",
+            "com.example.c -> com.example.a (classes)",
+            "classes -> java.sql"), delta.getAdded());
+    assertEquals(Arrays.asList(
+            "com.example.a -> org.lib",
+            "classes -> lib.jar"), delta.getRemoved());
+
+    // the fixed dependencies are no longer reported once the baseline is updated
+    DependencyBaseline.write(current, file);
+    assertTrue(DependencyBaseline.compare(current, file).isEmpty());
+  }
+
+  @Test
+  public void invalid() throws IOException {
+    Path noHeader = this.folder.newFile().toPath();
+    Files.write(noHeader, Collections.singletonList("com.example.a"), StandardCharsets.UTF_8);
+    Path noArchives = this.folder.newFile().toPath();
+    Files.write(noArchives, Arrays.asList(DependencyBaseline.HEADER, "com.example.a", " java.lang"), StandardCharsets.UTF_8);
+    Path noSource = this.folder.newFile().toPath();
+    Files.write(noSource, Arrays.asList(DependencyBaseline.HEADER, " java.lang"), StandardCharsets.UTF_8);
+
+    for (Path file : new Path[] {noHeader, noArchives, noSource}) {
+      try {
+        DependencyBaseline.compare(GRAPH, file);
+        fail("invalid baseline accepted: " + file);
+      } catch (IOException e) {
+        // expected
+      }
+    }
+  }
+
+}
@@ -0,0 +1,112 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DependencyCyclesTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void packageCycles() {
+    DependencyGraph graph = DependencyGraphParserTest.parse(Arrays.asList(
+            "   a                                                  -> b                                                  classes",
+            "   b                                                  -> a                                                  classes",
+            "   b                                                  -> c                                                  classes",
+            "   c                                                  -> d                                                  classes",
+            "   d                                                  -> e                                                  classes",
+            "   e                                                  -> c                                                  classes",
+            "   e                                                  -> java.lang                                          java.base",
+            "   f                                                  -> a                                                  classes"));
+    assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c", "d", "e")),
+            DependencyCycles.findPackageCycles(graph, false));
+  }
+
+  @Test
+  public void noCycles() {
+    DependencyGraph graph = DependencyGraphParserTest.parse(Arrays.asList(
+            "   a                                                  -> b                                                  classes",
+            "   a                                                  -> c                                                  classes",
+            "   b                                                  -> c                                                  classes"));
+    assertTrue(DependencyCycles.findPackageCycles(graph, false).isEmpty());
+    assertTrue(DependencyCycles.findArchiveCycles(graph).isEmpty());
+  }
+
+  @Test
+  public void classLevel() {
+    // no cycle between the classes but between their packages
+    DependencyGraph graph = DependencyGraphParserTest.parse(Arrays.asList(
+            "   a.A                                                -> b.B                                                classes",
+            "   b.B2                                               -> a.A2                                               classes",
+            "   b.B2                                               -> b.B                                                classes",
+            "   Main                                               -> a.A                                                classes",
+            "   c.C$Inner                                          -> Main                                               classes"));
+    assertTrue(DependencyCycles.findPackageCycles(graph, false).isEmpty());
+    assertEquals(Collections.singletonList(Arrays.asList("a", "b")), DependencyCycles.findPackageCycles(graph, true));
+  }
+
+  @Test
+  public void archiveCycles() {
+    DependencyGraph graph = DependencyGraphParserTest.parse(Arrays.asList(
+            "first.jar -> /path/to/second.jar",
+            "   a                                                  -> b                                                  second.jar",
+            "second.jar -> first.jar",
+            "   b                                                  -> c                                                  first.jar",
+            "   c                                                  -> java.lang                                          java.base",
+            "third.jar -> first.jar",
+            "   d                                                  -> a                                                  first.jar"));
+    assertEquals(Collections.singletonList(Arrays.asList("first.jar", "second.jar")),
+            DependencyCycles.findArchiveCycles(graph));
+    // the packages don't form a cycle
+    assertTrue(DependencyCycles.findPackageCycles(graph, false).isEmpty());
+  }
+
+  @Test
+  public void longChain() {
+    // deeper than a recursive implementation could go on a default stack
+    int length = 200000;
+    DependencyGraph.Builder builder = new DependencyGraph.Builder();
+    int first = builder.node("p0");
+    int previous = first;
+    for (int i = 1; i < length; i++) {
+      int node = builder.node("p" + i);
+      builder.addEdge(previous, node);
+      previous = node;
+    }
+    DependencyGraph chain = builder.build();
+    assertTrue(DependencyCycles.findPackageCycles(chain, false).isEmpty());
+
+    // closing the chain makes all packages a single cycle
+    builder.addEdge(previous, first);
+    List<List<String>> cycles = DependencyCycles.findPackageCycles(builder.build(), false);
+    assertEquals(1, cycles.size());
+    assertEquals(length, cycles.get(0).size());
+  }
+
+  @Test
+  public void jdeps() throws IOException, CommandLineException {
+    JDepsFixture fixture = JDepsFixture.create(this.folder.newFolder());
+    List<List<String>> expected = new ArrayList<>();
+    expected.add(Arrays.asList("a", "b"));
+    expected.add(Arrays.asList("c", "d"));
+
+    DependencyGraph packages = DependencyGraphParserTest.parse(JDepsFixture.jdeps(fixture.getArguments()));
+    assertEquals(expected, DependencyCycles.findPackageCycles(packages, false));
+    DependencyGraph classes = DependencyGraphParserTest.parse(JDepsFixture.jdeps(fixture.getArguments("-verbose:class")));
+    assertEquals(expected, DependencyCycles.findPackageCycles(classes, true));
+    assertTrue(DependencyCycles.findArchiveCycles(packages).isEmpty());
+  }
+
+}
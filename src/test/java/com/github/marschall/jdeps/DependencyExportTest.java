@@ -0,0 +1,128 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DependencyExportTest {
+
+  private static final DependencyGraph GRAPH = DependencyGraphParserTest.parse(Arrays.asList(
+          "classes -> java.base",
+          "classes -> lib.jar",
+          "   com.example                                        -> java.lang                                          java.base",
+          "   com.example                                        -> org.lib                                            lib.jar"));
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void jsonLines() throws IOException {
+    Path file = this.folder.getRoot().toPath().resolve("export/dependencies.jsonl");
+    try (DependencyExport export = DependencyExport.open(file, DependencyExport.JSON_LINES, false)) {
+      export.write(GRAPH, "main", "package");
+    }
+    assertEquals(Arrays.asList(
+            "{\"scope\":\"main\",\"level\":\"archive\",\"source\":\"classes\",\"sourceArchive\":null,\"target\":\"java.base\",\"targetArchive\":null}",
+            "{\"scope\":\"main\",\"level\":\"archive\",\"source\":\"classes\",\"sourceArchive\":null,\"target\":\"lib.jar\",\"targetArchive\":null}",
+            "{\"scope\":\"main\",\"level\":\"package\",\"source\":\"com.example\",\"sourceArchive\":\"classes\",\"target\":\"java.lang\",\"targetArchive\":\"java.base\"}",
+            "{\"scope\":\"main\",\"level\":\"package\",\"source\":\"com.example\",\"sourceArchive\":\"classes\",\"target\":\"org.lib\",\"targetArchive\":\"lib.jar\"}"),
+            Files.readAllLines(file, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void csv() throws IOException {
+    Path file = this.folder.newFile("dependencies.csv").toPath();
+    try (DependencyExport export = DependencyExport.open(file, DependencyExport.CSV, false)) {
+      export.write(GRAPH, "test", "package");
+    }
+    assertEquals(Arrays.asList(
+            "scope,level,source,sourceArchive,target,targetArchive",
+            "test,archive,classes,,java.base,",
+            "test,archive,classes,,lib.jar,",
+            "test,package,com.example,classes,java.lang,java.base",
+            "test,package,com.example,classes,org.lib,lib.jar"),
+            Files.readAllLines(file, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void escaping() throws IOException {
+    // archive names are file names and can contain any character
+    DependencyGraph.Builder builder = new DependencyGraph.Builder();
+    int source = builder.node("a");
+    int target = builder.node("b");
+    builder.addEdge(source, target);
+    builder.setArchive(source, builder.node("my \"lib\", 1.0.jar"));
+    builder.setArchive(target, builder.node("C:\\lib\u0001.jar"));
+    DependencyGraph graph = builder.build();
+
+    Path csv = this.folder.newFile("escaping.csv").toPath();
+    try (DependencyExport export = DependencyExport.open(csv, DependencyExport.CSV, false)) {
+      export.write(graph, "main", "class");
+    }
+    assertEquals(Arrays.asList(
+            "scope,level,source,sourceArchive,target,targetArchive",
+            "main,class,a,\"my \"\"lib\"\", 1.0.jar\",b,C:\\lib\u0001.jar"),
+            Files.readAllLines(csv, StandardCharsets.UTF_8));
+
+    Path jsonLines = this.folder.newFile("escaping.jsonl").toPath();
+    try (DependencyExport export = DependencyExport.open(jsonLines, DependencyExport.JSON_LINES, false)) {
+      export.write(graph, "main", "class");
+    }
+    assertEquals(Arrays.asList(
+            "{\"scope\":\"main\",\"level\":\"class\",\"source\":\"a\",\"sourceArchive\":\"my \\\"lib\\\", 1.0.jar\",\"target\":\"b\",\"targetArchive\":\"C:\\\\lib\\u0001.jar\"}"),
+            Files.readAllLines(jsonLines, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void gzip() throws IOException {
+    Path file = this.folder.newFile("dependencies.csv.gz").toPath();
+    try (DependencyExport export = DependencyExport.open(file, DependencyExport.CSV, true)) {
+      export.write(GRAPH, "main", "package");
+    }
+    List<String> lines = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+      String line = reader.readLine();
+      while (line != null) {
+        lines.add(line);
+        line = reader.readLine();
+      }
+    }
+    assertEquals(5, lines.size());
+    assertEquals("main,package,com.example,classes,org.lib,lib.jar", lines.get(4));
+  }
+
+  @Test
+  public void extension() {
+    assertEquals("jsonl", DependencyExport.getExtension(DependencyExport.JSON_LINES, false));
+    assertEquals("csv.gz", DependencyExport.getExtension(DependencyExport.CSV, true));
+  }
+
+  @Test
+  public void unknownFormat() throws IOException {
+    Path file = this.folder.getRoot().toPath().resolve("dependencies.xml");
+    try {
+      DependencyExport.open(file, "xml", false).close();
+      fail("unknown format accepted");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("xml"));
+    }
+    assertTrue(Files.notExists(file));
+  }
+
+}
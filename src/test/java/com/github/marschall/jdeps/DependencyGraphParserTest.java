@@ -0,0 +1,216 @@
+package com.github.marschall.jdeps;
+
+import static com.github.marschall.jdeps.DependencyGraph.NO_ARCHIVE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DependencyGraphParserTest {
+
+  // jdeps of Java 8, the archive of JDK packages is only printed with -profile
+  private static final List<String> JDK8_PACKAGE_LEVEL = Arrays.asList(
+          "classes -> /usr/lib/jvm/java-8-openjdk/jre/lib/rt.jar",
+          "classes -> lib",
+          "   a (classes)",
+          "      -> b                                                  classes",
+          "      -> java.lang                                          ",
+          "      -> lib.x                                              lib",
+          "   b (classes)",
+          "      -> a                                                  classes",
+          "      -> java.sql                                           ");
+
+  // the same dependencies from jdeps of Java 9 and later
+  private static final List<String> JDK9_PACKAGE_LEVEL = Arrays.asList(
+          "classes -> java.base",
+          "classes -> java.sql",
+          "classes -> lib",
+          "   a                                                  -> b                                                  classes",
+          "   a                                                  -> java.lang                                          java.base",
+          "   a                                                  -> lib.x                                              lib",
+          "   b                                                  -> a                                                  classes",
+          "   b                                                  -> java.sql                                           java.sql");
+
+  private static final List<String> JDK8_CLASS_LEVEL = Arrays.asList(
+          "classes -> /usr/lib/jvm/java-8-openjdk/jre/lib/rt.jar",
+          "classes -> lib",
+          "   a.A (classes)",
+          "      -> b.B                                                classes",
+          "      -> java.lang.Object                                   ",
+          "   a.A2 (classes)",
+          "      -> java.io.Serializable                               ",
+          "      -> lib.x.X                                            lib",
+          "   c.C1$Inner (classes)",
+          "      -> lib.y.Y                                            lib");
+
+  private static final List<String> JDK9_CLASS_LEVEL = Arrays.asList(
+          "classes -> java.base",
+          "classes -> lib",
+          "   a.A                                                -> b.B                                                classes",
+          "   a.A                                                -> java.lang.Object                                   java.base",
+          "   a.A2                                               -> java.io.Serializable                               java.base",
+          "   a.A2                                               -> lib.x.X                                            lib",
+          "   c.C1$Inner                                         -> lib.y.Y                                            lib");
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void jdk8PackageLevel() {
+    DependencyGraph graph = parse(JDK8_PACKAGE_LEVEL);
+    assertEquals(getEdges(parse(JDK9_PACKAGE_LEVEL)), getEdges(graph));
+    assertEquals("classes", getArchive(graph, "a"));
+    assertEquals("lib", getArchive(graph, "lib.x"));
+    // Java 8 prints no archive for JDK packages
+    assertEquals(NO_ARCHIVE, graph.getArchive(graph.getNode("java.lang")));
+    assertEquals(new TreeSet<>(Arrays.asList("classes -> /usr/lib/jvm/java-8-openjdk/jre/lib/rt.jar", "classes -> lib")),
+            getArchiveEdges(graph));
+  }
+
+  @Test
+  public void jdk9PackageLevel() {
+    DependencyGraph graph = parse(JDK9_PACKAGE_LEVEL);
+    assertEquals(new TreeSet<>(Arrays.asList("a -> b", "a -> java.lang", "a -> lib.x", "b -> a", "b -> java.sql")),
+            getEdges(graph));
+    assertEquals("classes", getArchive(graph, "a"));
+    assertEquals("classes", getArchive(graph, "b"));
+    assertEquals("lib", getArchive(graph, "lib.x"));
+    assertEquals("java.base", getArchive(graph, "java.lang"));
+    assertEquals("java.sql", getArchive(graph, "java.sql"));
+    assertEquals(new TreeSet<>(Arrays.asList("classes -> java.base", "classes -> java.sql", "classes -> lib")),
+            getArchiveEdges(graph));
+  }
+
+  @Test
+  public void jdk8ClassLevel() {
+    DependencyGraph graph = parse(JDK8_CLASS_LEVEL);
+    assertEquals(getEdges(parse(JDK9_CLASS_LEVEL)), getEdges(graph));
+    assertEquals("classes", getArchive(graph, "c.C1$Inner"));
+    assertEquals("lib", getArchive(graph, "lib.y.Y"));
+  }
+
+  @Test
+  public void jdk9ClassLevel() {
+    DependencyGraph graph = parse(JDK9_CLASS_LEVEL);
+    assertEquals(new TreeSet<>(Arrays.asList("a.A -> b.B", "a.A -> java.lang.Object", "a.A2 -> java.io.Serializable",
+            "a.A2 -> lib.x.X", "c.C1$Inner -> lib.y.Y")), getEdges(graph));
+    assertEquals("classes", getArchive(graph, "a.A2"));
+    assertEquals("lib", getArchive(graph, "lib.x.X"));
+    assertEquals("java.base", getArchive(graph, "java.io.Serializable"));
+  }
+
+  @Test
+  public void otherLines() {
+    assertFalse(DependencyGraphParser.isDependency("Warning: split package: a classes lib"));
+    assertFalse(DependencyGraphParser.isDependency(""));
+    assertTrue(DependencyGraphParser.isDependency(JDK8_PACKAGE_LEVEL.get(2)));
+    assertTrue(DependencyGraphParser.isDependency(JDK9_PACKAGE_LEVEL.get(3)));
+
+    DependencyGraphParser parser = new DependencyGraphParser();
+    parser.consumeLine("Warning: split package: a classes lib");
+    // an edge without source line is ignored
+    parser.consumeLine(JDK8_PACKAGE_LEVEL.get(3));
+    assertEquals(0, parser.getGraph().getEdgeCount());
+  }
+
+  @Test
+  public void jdepsPackageLevel() throws IOException, CommandLineException {
+    JDepsFixture fixture = JDepsFixture.create(this.folder.newFolder());
+    DependencyGraph graph = parse(JDepsFixture.jdeps(fixture.getArguments()));
+    assertEquals(new TreeSet<>(Arrays.asList("<unnamed> -> a", "a -> b", "a -> c", "a -> lib.x", "b -> a", "c -> d",
+            "c -> lib.y", "d -> c")), getEdges(graph, "java."));
+    assertEquals("classes", getArchive(graph, "a"));
+    assertEquals("lib", getArchive(graph, "lib.y"));
+    // the summary has the path of a directory on the classpath
+    assertTrue(getArchiveEdges(graph).contains("classes -> " + fixture.getLib().getAbsolutePath()));
+  }
+
+  @Test
+  public void jdepsClassLevel() throws IOException, CommandLineException {
+    JDepsFixture fixture = JDepsFixture.create(this.folder.newFolder());
+    DependencyGraph graph = parse(JDepsFixture.jdeps(fixture.getArguments("-verbose:class")));
+    assertEquals(new TreeSet<>(Arrays.asList("Main -> a.A", "a.A -> b.B", "a.A -> c.C", "a.A2 -> lib.x.X",
+            "b.B -> a.A", "c.C -> d.D", "c.C1$Inner -> lib.y.Y", "d.D -> c.C")), getEdges(graph, "java."));
+    assertEquals("classes", getArchive(graph, "c.C1$Inner"));
+    assertEquals("lib", getArchive(graph, "lib.x.X"));
+  }
+
+  @Test
+  public void jdepsDotFiles() throws IOException, CommandLineException {
+    JDepsFixture fixture = JDepsFixture.create(this.folder.newFolder());
+    DependencyGraph text = parse(JDepsFixture.jdeps(fixture.getArguments()));
+    File dotOutputDirectory = this.folder.newFolder("dot");
+    JDepsFixture.jdeps(fixture.getArguments("-dotoutput", dotOutputDirectory.getAbsolutePath()));
+
+    DependencyGraphParser parser = new DependencyGraphParser();
+    parser.parseDotFiles(dotOutputDirectory.toPath());
+    DependencyGraph dot = parser.getGraph();
+    assertEquals(getEdges(text), getEdges(dot));
+    // the DOT summary has only the name of a directory on the classpath
+    Set<String> archiveEdges = new TreeSet<>();
+    for (String edge : getArchiveEdges(text)) {
+      archiveEdges.add(edge.replace(fixture.getLib().getAbsolutePath(), fixture.getLib().getName()));
+    }
+    assertEquals(archiveEdges, getArchiveEdges(dot));
+    assertEquals("classes", getArchive(dot, "a"));
+  }
+
+  static DependencyGraph parse(List<String> lines) {
+    DependencyGraphParser parser = new DependencyGraphParser();
+    for (String line : lines) {
+      parser.consumeLine(line);
+    }
+    return parser.getGraph();
+  }
+
+  static Set<String> getEdges(DependencyGraph graph) {
+    return getEdges(graph, null);
+  }
+
+  /**
+   * Returns the dependencies as "source -> target" without the ones on
+   * targets starting with a prefix, JDK dependencies change between
+   * versions.
+   */
+  private static Set<String> getEdges(DependencyGraph graph, String ignoredPrefix) {
+    Set<String> edges = new TreeSet<>();
+    for (int node = 0; node < graph.getNodeCount(); node++) {
+      for (int edge = graph.getEdgeStart(node); edge < graph.getEdgeEnd(node); edge++) {
+        String target = graph.getName(graph.getTarget(edge));
+        if ((ignoredPrefix == null) || !target.startsWith(ignoredPrefix)) {
+          edges.add(graph.getName(node) + " -> " + target);
+        }
+      }
+    }
+    return edges;
+  }
+
+  private static Set<String> getArchiveEdges(DependencyGraph graph) {
+    Set<String> edges = new TreeSet<>();
+    for (int node = 0; node < graph.getNodeCount(); node++) {
+      for (int edge = graph.getArchiveEdgeStart(node); edge < graph.getArchiveEdgeEnd(node); edge++) {
+        edges.add(graph.getName(node) + " -> " + graph.getName(graph.getArchiveTarget(edge)));
+      }
+    }
+    return edges;
+  }
+
+  private static String getArchive(DependencyGraph graph, String name) {
+    int node = graph.getNode(name);
+    assertTrue(name, node != -1);
+    int archive = graph.getArchive(node);
+    return archive != NO_ARCHIVE ? graph.getName(archive) : null;
+  }
+
+}
@@ -0,0 +1,78 @@
+package com.github.marschall.jdeps;
+
+import static com.github.marschall.jdeps.DependencyGraph.NO_ARCHIVE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DependencyGraphTest {
+
+  @Test
+  public void edges() {
+    DependencyGraph.Builder builder = new DependencyGraph.Builder();
+    int a = builder.node("a");
+    int b = builder.node("b");
+    int c = builder.node("c");
+    builder.addEdge(a, c);
+    builder.addEdge(a, b);
+    builder.addEdge(c, a);
+    // duplicates are removed
+    builder.addEdge(a, c);
+    DependencyGraph graph = builder.build();
+
+    assertEquals(3, graph.getNodeCount());
+    assertEquals(3, graph.getEdgeCount());
+    assertEquals(2, graph.getEdgeEnd(a) - graph.getEdgeStart(a));
+    // sorted
+    assertEquals(b, graph.getTarget(graph.getEdgeStart(a)));
+    assertEquals(c, graph.getTarget(graph.getEdgeStart(a) + 1));
+    assertEquals(graph.getEdgeStart(b), graph.getEdgeEnd(b));
+    assertTrue(graph.hasEdge(a, b));
+    assertTrue(graph.hasEdge(c, a));
+    assertFalse(graph.hasEdge(b, a));
+    assertEquals(c, graph.getNode("c"));
+    assertEquals(-1, graph.getNode("d"));
+  }
+
+  @Test
+  public void archives() {
+    DependencyGraph.Builder builder = new DependencyGraph.Builder();
+    int p = builder.node("p");
+    int first = builder.node("first.jar");
+    int second = builder.node("second.jar");
+    builder.setArchive(p, first);
+    // split packages are attributed to the first archive
+    builder.setArchive(p, second);
+    builder.addArchiveEdge(first, second);
+    builder.addArchiveEdge(first, second);
+    DependencyGraph graph = builder.build();
+
+    assertEquals(first, graph.getArchive(p));
+    assertEquals(NO_ARCHIVE, graph.getArchive(first));
+    assertEquals(1, graph.getArchiveEdgeCount());
+    assertEquals(second, graph.getArchiveTarget(graph.getArchiveEdgeStart(first)));
+    assertEquals(0, graph.getEdgeCount());
+  }
+
+  @Test
+  public void manyNodes() {
+    DependencyGraph.Builder builder = new DependencyGraph.Builder();
+    int count = 5000;
+    for (int i = 1; i < count; i++) {
+      builder.addEdge(builder.node("n" + (i - 1)), builder.node("n" + i));
+    }
+    builder.setArchive(builder.node("n" + (count - 1)), builder.node("archive"));
+    DependencyGraph graph = builder.build();
+
+    assertEquals(count + 1, graph.getNodeCount());
+    assertEquals(count - 1, graph.getEdgeCount());
+    for (int i = 1; i < count; i++) {
+      assertTrue(graph.hasEdge(graph.getNode("n" + (i - 1)), graph.getNode("n" + i)));
+    }
+    assertEquals(graph.getNode("archive"), graph.getArchive(graph.getNode("n" + (count - 1))));
+    assertEquals(NO_ARCHIVE, graph.getArchive(graph.getNode("n0")));
+  }
+
+}
@@ -0,0 +1,194 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.apache.commons.lang3.SystemUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * A small project for the tests that compare with jdeps. The classes
+ * directory has classes in five packages including the unnamed package,
+ * with a package cycle and dependencies to JDK modules and to the lib
+ * directory. Of the packages in lib only {@code lib.x} and
+ * {@code lib.y} are reached from the classes. The unused directory is
+ * on the classpath but not reached.
+ */
+final class JDepsFixture {
+
+  private static final Map<String, String> LIB_SOURCES;
+
+  private static final Map<String, String> UNUSED_SOURCES;
+
+  private static final Map<String, String> SOURCES;
+
+  static {
+    LIB_SOURCES = new LinkedHashMap<>();
+    LIB_SOURCES.put("lib/x/X.java", "package lib.x; public class X { lib.y.Y y; java.util.logging.Logger logger; }");
+    LIB_SOURCES.put("lib/y/Y.java", "package lib.y; public class Y { }");
+    LIB_SOURCES.put("lib/z/Z.java", "package lib.z; public class Z { java.awt.Point point; }");
+
+    UNUSED_SOURCES = new LinkedHashMap<>();
+    UNUSED_SOURCES.put("unused/U.java", "package unused; public class U { lib.z.Z z; }");
+
+    SOURCES = new LinkedHashMap<>();
+    SOURCES.put("Main.java", "public class Main { a.A a; }");
+    SOURCES.put("a/A.java", "package a; public class A { b.B b; java.util.List<c.C> list; }");
+    SOURCES.put("a/A2.java", "package a; public class A2 extends A implements java.io.Serializable { lib.x.X x; }");
+    SOURCES.put("b/B.java", "package b; public class B { a.A a; java.sql.Connection connection; }");
+    SOURCES.put("c/C.java", "package c; public class C { public static d.D d() { return null; } }");
+    SOURCES.put("c/C1.java", "package c; public class C1 { class Inner { lib.y.Y y; } }");
+    SOURCES.put("d/D.java", "package d; public interface D { c.C c(); }");
+  }
+
+  private final File classes;
+  private final File lib;
+  private final File unused;
+
+  private JDepsFixture(File classes, File lib, File unused) {
+    this.classes = classes;
+    this.lib = lib;
+    this.unused = unused;
+  }
+
+  /**
+   * Compiles the project.
+   *
+   * @param directory an empty directory
+   * @return the compiled project
+   * @throws IOException if the sources can not be written
+   */
+  static JDepsFixture create(File directory) throws IOException {
+    File lib = new File(directory, "lib");
+    compile(new File(directory, "lib-src"), LIB_SOURCES, lib, null);
+    File unused = new File(directory, "unused");
+    compile(new File(directory, "unused-src"), UNUSED_SOURCES, unused, lib);
+    File classes = new File(directory, "classes");
+    compile(new File(directory, "src"), SOURCES, classes, lib);
+    return new JDepsFixture(classes, lib, unused);
+  }
+
+  private static void compile(File sourceDirectory, Map<String, String> sources, File outputDirectory, File classPath)
+          throws IOException {
+    List<String> arguments = new ArrayList<>();
+    arguments.add("-d");
+    arguments.add(outputDirectory.getAbsolutePath());
+    if (classPath != null) {
+      arguments.add("-classpath");
+      arguments.add(classPath.getAbsolutePath());
+    }
+    for (Entry<String, String> source : sources.entrySet()) {
+      Path file = new File(sourceDirectory, source.getKey()).toPath();
+      Files.createDirectories(file.getParent());
+      Files.write(file, source.getValue().getBytes(StandardCharsets.UTF_8));
+      arguments.add(file.toString());
+    }
+    Files.createDirectories(outputDirectory.toPath());
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assertNotNull("tests require a JDK", compiler);
+    assertEquals("javac failed", 0, compiler.run(null, null, null, arguments.toArray(new String[arguments.size()])));
+  }
+
+  File getClasses() {
+    return this.classes;
+  }
+
+  File getLib() {
+    return this.lib;
+  }
+
+  List<File> getClassPath() {
+    return Arrays.asList(this.lib, this.unused);
+  }
+
+  /**
+   * Returns the arguments that analyze the classes with lib and unused
+   * on the classpath.
+   *
+   * @param options the jdeps options
+   * @return the arguments, the classes directory is the last one
+   */
+  String[] getArguments(String... options) {
+    List<String> arguments = new ArrayList<>(Arrays.asList(options));
+    arguments.add("-classpath");
+    arguments.add(this.lib.getAbsolutePath() + File.pathSeparator + this.unused.getAbsolutePath());
+    arguments.add(this.classes.getAbsolutePath());
+    return arguments.toArray(new String[arguments.size()]);
+  }
+
+  /**
+   * Runs the jdeps of the JDK running the tests.
+   *
+   * @param arguments the arguments
+   * @param out receives the output
+   * @throws CommandLineException if jdeps can not be run
+   */
+  static void jdeps(String[] arguments, StreamConsumer out) throws CommandLineException {
+    Lines err = new Lines();
+    int exitCode = new JDepsExecutor(new SystemStreamLog(), false)
+            .execute(JDepsExecutor.newCommandline(getJdepsExecutable(), arguments), out, err);
+    assertEquals("jdeps failed: " + err.getLines(), 0, exitCode);
+  }
+
+  /**
+   * Runs the jdeps of the JDK running the tests.
+   *
+   * @param arguments the arguments
+   * @return the output
+   * @throws CommandLineException if jdeps can not be run
+   */
+  static List<String> jdeps(String... arguments) throws CommandLineException {
+    Lines out = new Lines();
+    jdeps(arguments, out);
+    return out.getLines();
+  }
+
+  private static String getJdepsExecutable() {
+    File javaHome = new File(System.getProperty("java.home"));
+    String executable = SystemUtils.IS_OS_WINDOWS ? "bin/jdeps.exe" : "bin/jdeps";
+    File jdeps = new File(javaHome, executable);
+    if (!jdeps.isFile()) {
+      // the JRE of a Java 8 JDK
+      jdeps = new File(javaHome.getParentFile(), executable);
+    }
+    assertTrue("tests require jdeps", jdeps.isFile());
+    return jdeps.getPath();
+  }
+
+  /**
+   * Collects the lines of an output.
+   */
+  static final class Lines implements StreamConsumer {
+
+    private final List<String> lines = new ArrayList<>();
+
+    @Override
+    public synchronized void consumeLine(String line) {
+      this.lines.add(line);
+    }
+
+    synchronized List<String> getLines() {
+      return new ArrayList<>(this.lines);
+    }
+
+  }
+
+}
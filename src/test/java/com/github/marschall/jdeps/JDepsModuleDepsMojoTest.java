@@ -0,0 +1,56 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JDepsModuleDepsMojoTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void moduleList() {
+    JDepsModuleDepsMojo.ModuleListConsumer consumer = new JDepsModuleDepsMojo.ModuleListConsumer();
+    consumer.consumeLine("Warning: split package: a classes lib");
+    assertNull(consumer.getModuleList());
+    consumer.consumeLine("java.base,java.sql,jdk.unsupported  ");
+    consumer.consumeLine("");
+    assertEquals("java.base,java.sql,jdk.unsupported", consumer.getModuleList());
+  }
+
+  @Test
+  public void singleModule() {
+    JDepsModuleDepsMojo.ModuleListConsumer consumer = new JDepsModuleDepsMojo.ModuleListConsumer();
+    consumer.consumeLine("java.base");
+    assertEquals("java.base", consumer.getModuleList());
+  }
+
+  @Test
+  public void jdeps() throws IOException, CommandLineException {
+    // --print-module-deps of Java 11
+    String version = System.getProperty("java.specification.version");
+    assumeTrue(!version.startsWith("1.") && (Integer.parseInt(version) >= 11));
+
+    JDepsFixture fixture = JDepsFixture.create(this.folder.newFolder());
+    // the arguments of the goal, dependencies are inputs as well
+    List<String> arguments = new ArrayList<>(Arrays.asList(fixture.getArguments("--print-module-deps", "--ignore-missing-deps")));
+    arguments.add(fixture.getLib().getAbsolutePath());
+    JDepsModuleDepsMojo.ModuleListConsumer consumer = new JDepsModuleDepsMojo.ModuleListConsumer();
+    JDepsFixture.jdeps(arguments.toArray(new String[arguments.size()]), consumer);
+
+    // java.logging of lib.x is required by java.sql, java.desktop by lib.z
+    assertEquals("java.base,java.desktop,java.sql", consumer.getModuleList());
+  }
+
+}
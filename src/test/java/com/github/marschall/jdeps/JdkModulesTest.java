@@ -0,0 +1,69 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class JdkModulesTest {
+
+  private JdkModules modules;
+
+  @BeforeClass
+  public static void requireJava9() {
+    // the modules are read from jrt:/
+    assumeFalse(System.getProperty("java.specification.version").startsWith("1."));
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    this.modules = JdkModules.getInstance();
+  }
+
+  @Test
+  public void getInstance() throws IOException {
+    assertSame(this.modules, JdkModules.getInstance());
+  }
+
+  @Test
+  public void getModule() {
+    assertEquals("java.base", this.modules.getModule("java.lang.String", "java.lang"));
+    assertEquals("java.sql", this.modules.getModule("java.sql.Connection", "java.sql"));
+    assertEquals("java.logging", this.modules.getModule("java.util.logging.Logger", "java.util.logging"));
+    assertEquals("jdk.unsupported", this.modules.getModule("sun.misc.Unsafe", "sun.misc"));
+    assertEquals("java.base", this.modules.getModule("java.util.Map$Entry", "java.util"));
+  }
+
+  @Test
+  public void packageInSeveralModules() {
+    // java.awt is listed for java.datatransfer and java.desktop, sun.nio.ch for java.base and jdk.sctp
+    assertEquals("java.desktop", this.modules.getModule("java.awt.Point", "java.awt"));
+    assertEquals("java.base", this.modules.getModule("sun.nio.ch.FileChannelImpl", "sun.nio.ch"));
+  }
+
+  @Test
+  public void notInJdk() {
+    assertNull(this.modules.getModule("com.example.Foo", "com.example"));
+    // the package is in the JDK but the class is not
+    assertNull(this.modules.getModule("java.lang.Foo", "java.lang"));
+  }
+
+  @Test
+  public void internal() {
+    assertFalse(this.modules.isInternal("java.lang"));
+    assertFalse(this.modules.isInternal("javax.sql"));
+    assertTrue(this.modules.isInternal("jdk.internal.misc"));
+    assertTrue(this.modules.isInternal("sun.nio.ch"));
+    // exported by jdk.unsupported but still internal
+    assertTrue(this.modules.isInternal("sun.misc"));
+  }
+
+}
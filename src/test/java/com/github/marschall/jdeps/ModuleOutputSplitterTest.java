@@ -0,0 +1,97 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.marschall.jdeps.ModuleOutputSplitter.ModuleOutput;
+
+public class ModuleOutputSplitterTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void sameArtifactId() throws IOException {
+    MavenProject first = this.newProject("com.example.first", "core", "first/a/A.class");
+    MavenProject second = this.newProject("com.example.second", "core", "second/b/B.class");
+
+    Map<String, File> outputDirectories = JDepsAggregateMojo.getOutputDirectories(Arrays.asList(first, second));
+    assertEquals(Arrays.asList("com.example.first:core", "com.example.second:core"),
+            new ArrayList<>(outputDirectories.keySet()));
+    assertEquals("com.example.first.core.dot", JDepsAggregateMojo.getDotFileName("com.example.first:core"));
+
+    ModuleOutputSplitter splitter = ModuleOutputSplitter.forModules(outputDirectories, new WarningLog());
+    splitter.consumeLine("   a (classes)");
+    splitter.consumeLine("      -> b                                                  classes");
+    splitter.consumeLine("   b (classes)");
+    splitter.consumeLine("      -> java.lang                                          rt.jar");
+    List<String> targets = new ArrayList<>();
+    for (ModuleOutput module : splitter.getModules()) {
+      targets.add(module.getName() + " -> " + module.getTargetArchives());
+    }
+    assertEquals(Arrays.asList("com.example.first:core -> [com.example.second:core]", "com.example.second:core -> [rt.jar]"),
+            targets);
+  }
+
+  @Test
+  public void splitPackage() throws IOException {
+    Map<String, File> outputDirectories = new LinkedHashMap<>();
+    outputDirectories.put("g:first", this.newOutputDirectory("first/p/A.class"));
+    outputDirectories.put("g:second", this.newOutputDirectory("second/p/B.class"));
+    WarningLog log = new WarningLog();
+
+    ModuleOutputSplitter splitter = ModuleOutputSplitter.forModules(outputDirectories, log);
+    assertEquals(1, log.warnings.size());
+    assertEquals("Package p is split between the modules g:first and g:second, its dependencies are attributed to g:first",
+            log.warnings.get(0));
+
+    splitter.consumeLine("   p                                                  -> java.lang                                          java.base");
+    List<String> output = new ArrayList<>();
+    for (ModuleOutput module : splitter.getModules()) {
+      output.add(module.format(true));
+    }
+    assertEquals(Arrays.asList("g:first -> java.base\n", ""), output);
+  }
+
+  private MavenProject newProject(String groupId, String artifactId, String classFile) throws IOException {
+    MavenProject project = new MavenProject();
+    project.setGroupId(groupId);
+    project.setArtifactId(artifactId);
+    project.getBuild().setOutputDirectory(this.newOutputDirectory(classFile).getAbsolutePath());
+    return project;
+  }
+
+  private File newOutputDirectory(String classFile) throws IOException {
+    String directory = classFile.substring(0, classFile.indexOf('/'));
+    File file = new File(this.folder.getRoot(), classFile);
+    Files.createDirectories(file.getParentFile().toPath());
+    Files.createFile(file.toPath());
+    return new File(this.folder.getRoot(), directory);
+  }
+
+  static final class WarningLog extends SystemStreamLog {
+
+    final List<String> warnings = new ArrayList<>();
+
+    @Override
+    public void warn(CharSequence content) {
+      this.warnings.add(content.toString());
+    }
+
+  }
+
+}
@@ -0,0 +1,85 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReachedArchivesTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private JDepsFixture fixture;
+
+  @Before
+  public void setUp() throws IOException {
+    this.fixture = JDepsFixture.create(this.folder.newFolder());
+  }
+
+  @Test
+  public void sameArchivesAsRecursive() throws IOException, CommandLineException {
+    String[] arguments = this.fixture.getArguments("-verbose:class");
+    JDepsFixture.Lines out = new JDepsFixture.Lines();
+    ReachedArchives reached = new ReachedArchives(this.fixture.getClassPath(), out);
+    JDepsFixture.jdeps(arguments, reached);
+    List<File> analyzed = new ArrayList<>();
+    for (File archive = reached.next(); archive != null; archive = reached.next()) {
+      analyzed.add(archive);
+      JDepsFixture.jdeps(DependencyAnalysisCache.getArtifactArguments(arguments, archive), reached);
+    }
+    assertEquals(Collections.singletonList(this.fixture.getLib()), analyzed);
+
+    List<String> recursive = new ArrayList<>(Arrays.asList(arguments));
+    recursive.add(0, "-recursive");
+    assertEquals(getSourceArchives(JDepsFixture.jdeps(recursive.toArray(new String[recursive.size()]))),
+            getSourceArchives(out.getLines()));
+  }
+
+  @Test
+  public void fileName() throws IOException {
+    File first = new File(this.folder.getRoot(), "first/dependency.jar");
+    File second = new File(this.folder.getRoot(), "second/dependency.jar");
+    File other = new File(this.folder.getRoot(), "other.jar");
+    ReachedArchives reached = new ReachedArchives(Arrays.asList(first, second, other), new JDepsFixture.Lines());
+
+    reached.consumeLine("classes -> java.base");
+    reached.consumeLine("classes -> not found");
+    // not unique
+    reached.consumeLine("classes -> dependency.jar");
+    reached.consumeLine("classes -> other.jar");
+    reached.consumeLine("classes -> " + second.getAbsolutePath());
+    reached.consumeLine("   p -> other.jar");
+    reached.consumeLine("classes -> " + other.getAbsolutePath());
+
+    assertEquals(other, reached.next());
+    assertEquals(second, reached.next());
+    assertNull(reached.next());
+  }
+
+  private static Set<String> getSourceArchives(List<String> output) {
+    Set<String> archives = new TreeSet<>();
+    for (String line : output) {
+      if (!line.startsWith(" ")) {
+        archives.add(line.substring(0, line.indexOf(" -> ")));
+      }
+    }
+    assertTrue(archives.contains("classes"));
+    return archives;
+  }
+
+}
@@ -0,0 +1,38 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.reporting.MavenReport;
+import org.junit.Test;
+
+public class ReportBundleTest {
+
+  @Test
+  public void keys() {
+    ResourceBundle bundle = ResourceBundle.getBundle("jdeps-report", Locale.ROOT, this.getClass().getClassLoader());
+    Set<String> expected = new TreeSet<>();
+    Collections.addAll(expected, "report.jdeps.name", "report.jdeps.description", "report.jdeps.header",
+            "report.jdeps.aggregate.name", "report.jdeps.aggregate.description");
+    assertEquals(expected, new TreeSet<>(bundle.keySet()));
+    for (String key : bundle.keySet()) {
+      // a missing line break merges two entries
+      assertFalse(key, bundle.getString(key).contains("report.jdeps."));
+    }
+  }
+
+  @Test
+  public void reports() {
+    for (MavenReport report : new MavenReport[] {new JdepsReportMojo(), new JDepsAggregateReportMojo()}) {
+      assertFalse(report.getName(Locale.ROOT).isEmpty());
+      assertFalse(report.getDescription(Locale.ROOT).isEmpty());
+    }
+  }
+
+}
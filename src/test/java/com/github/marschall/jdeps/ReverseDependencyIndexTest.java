@@ -0,0 +1,142 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReverseDependencyIndexTest {
+
+  private static final DependencyGraph GRAPH = DependencyGraphParserTest.parse(Arrays.asList(
+          "classes -> java.base",
+          "classes -> lib.jar",
+          "   com.example.Service                                -> com.example.Repository                             classes",
+          "   com.example.Service$Cache                          -> java.util.Map                                      java.base",
+          "   com.example.Repository                             -> org.lib.Connection                                 lib.jar",
+          "   com.example.Repository$Row                         -> com.example.Model                                  classes",
+          "   com.example.Controller                             -> com.example.Service$Cache                          classes",
+          "   com.example.Model                                  -> com.example.Model                                  classes",
+          "   com.example.Unrelated                              -> java.lang.Object                                   java.base",
+          "test-classes -> classes",
+          "   com.example.ServiceTest                            -> com.example.Service                                classes",
+          "   com.example.ModelTest                              -> com.example.Model                                  classes",
+          "   com.example.Fixtures                               -> com.example.ModelTest                              test-classes"));
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void build() {
+    ReverseDependencyIndex index = ReverseDependencyIndex.build(GRAPH, "classes", "test-classes");
+    // only classes of the project, JDK and library classes are not indexed
+    assertEquals(Arrays.asList("com.example.Controller", "com.example.Fixtures", "com.example.Model",
+            "com.example.ModelTest", "com.example.Repository", "com.example.Repository$Row", "com.example.Service",
+            "com.example.Service$Cache", "com.example.ServiceTest", "com.example.Unrelated"), getNames(index));
+    assertTrue(index.isTest(getIndex(index, "com.example.ServiceTest")));
+    assertTrue(index.isTest(getIndex(index, "com.example.Fixtures")));
+    assertFalse(index.isTest(getIndex(index, "com.example.Service")));
+  }
+
+  @Test
+  public void affected() {
+    ReverseDependencyIndex index = ReverseDependencyIndex.build(GRAPH, "classes", "test-classes");
+    // transitively into the test classes, a nested class does not affect its enclosing class
+    assertEquals(new TreeSet<>(Arrays.asList("com.example.Fixtures", "com.example.Model", "com.example.ModelTest",
+            "com.example.Repository$Row")), getAffected(index, "com.example.Model"));
+    assertEquals(new TreeSet<>(Arrays.asList("com.example.Repository", "com.example.Repository$Row",
+            "com.example.Service", "com.example.ServiceTest")),
+            getAffected(index, "org.lib.Connection", "com.example.Repository"));
+    // a change to a class changes its nested classes
+    assertEquals(new TreeSet<>(Arrays.asList("com.example.Controller", "com.example.Service",
+            "com.example.Service$Cache", "com.example.ServiceTest")), getAffected(index, "com.example.Service"));
+    assertEquals(Collections.singleton("com.example.Unrelated"), getAffected(index, "com.example.Unrelated"));
+    // the prefix of a class name is not a nested class
+    assertEquals(Collections.emptySet(), getAffected(index, "com.example.Serv"));
+    // classes outside the project are not indexed
+    assertEquals(Collections.emptySet(), getAffected(index, "org.lib.Connection"));
+  }
+
+  @Test
+  public void noTestClasses() {
+    ReverseDependencyIndex index = ReverseDependencyIndex.build(GRAPH, "classes", null);
+    assertEquals(7, index.size());
+    assertEquals(new TreeSet<>(Arrays.asList("com.example.Controller", "com.example.Service",
+            "com.example.Service$Cache")), getAffected(index, "com.example.Service"));
+  }
+
+  @Test
+  public void writeAndRead() throws IOException {
+    ReverseDependencyIndex index = ReverseDependencyIndex.build(GRAPH, "classes", "test-classes");
+    Path file = this.folder.getRoot().toPath().resolve("impact/reverse-index.bin");
+    assertNull(ReverseDependencyIndex.read(file, "1"));
+    index.write(file, "1");
+
+    ReverseDependencyIndex read = ReverseDependencyIndex.read(file, "1");
+    assertNotNull(read);
+    assertEquals(getNames(index), getNames(read));
+    for (int i = 0; i < index.size(); i++) {
+      assertEquals(index.isTest(i), read.isTest(i));
+      assertEquals(getAffected(index, index.getName(i)), getAffected(read, read.getName(i)));
+    }
+    // built from a different analysis
+    assertNull(ReverseDependencyIndex.read(file, "2"));
+  }
+
+  @Test
+  public void jdeps() throws IOException, CommandLineException {
+    // the analysis of the impact goal
+    JDepsFixture fixture = JDepsFixture.create(this.folder.newFolder());
+    DependencyGraph graph = DependencyGraphParserTest.parse(
+            JDepsFixture.jdeps(fixture.getArguments("-verbose:class", "-filter:none")));
+    ReverseDependencyIndex index = ReverseDependencyIndex.build(graph, "classes", null);
+
+    assertEquals(new TreeSet<>(Arrays.asList("Main", "a.A", "a.A2", "b.B", "c.C", "d.D")), getAffected(index, "d.D"));
+    assertEquals(new TreeSet<>(Arrays.asList("c.C1", "c.C1$Inner")), getAffected(index, "c.C1"));
+  }
+
+  @Test
+  public void topLevelClass() {
+    assertEquals("com.example.Service", JDepsImpactMojo.getTopLevelClass("com.example.Service$Cache"));
+    assertEquals("com.example.Service", JDepsImpactMojo.getTopLevelClass("com.example.Service$Cache$1"));
+    assertEquals("com.example.Service", JDepsImpactMojo.getTopLevelClass("com.example.Service"));
+  }
+
+  private static Set<String> getAffected(ReverseDependencyIndex index, String... changedClasses) {
+    BitSet affected = index.getAffected(Arrays.asList(changedClasses));
+    Set<String> names = new TreeSet<>();
+    for (int i = affected.nextSetBit(0); i >= 0; i = affected.nextSetBit(i + 1)) {
+      names.add(index.getName(i));
+    }
+    return names;
+  }
+
+  private static List<String> getNames(ReverseDependencyIndex index) {
+    String[] names = new String[index.size()];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = index.getName(i);
+    }
+    return Arrays.asList(names);
+  }
+
+  private static int getIndex(ReverseDependencyIndex index, String name) {
+    int i = getNames(index).indexOf(name);
+    assertTrue(name, i != -1);
+    return i;
+  }
+
+}
@@ -0,0 +1,179 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.marschall.jdeps.RuleChecker.NameMatcher;
+
+public class RuleCheckerTest {
+
+  private static final DependencyGraph GRAPH = DependencyGraphParserTest.parse(Arrays.asList(
+          "classes -> java.base",
+          "classes -> lib.jar",
+          "   com.acme.domain                                    -> com.acme.infrastructure                            classes",
+          "   com.acme.domain                                    -> java.util                                          java.base",
+          "   com.acme.domain.model                              -> com.acme.infrastructure.db                         classes",
+          "   com.acme.domain.model                              -> sun.misc                                           JDK internal API (java.base)",
+          "   com.acme.infrastructure                            -> com.acme.domain                                    classes",
+          "   com.acme.infrastructure                            -> org.lib.api                                        lib.jar",
+          "   com.acme.infrastructure                            -> org.lib.impl                                       lib.jar"));
+
+  @Test
+  public void patterns() {
+    assertMatches("com.acme.api", "com.acme.api");
+    assertNotMatches("com.acme.api", "com.acme.api.v1", "com.acme");
+
+    assertMatches("sun..", "sun", "sun.misc", "sun.misc.Unsafe");
+    assertNotMatches("sun..", "sunx", "com.sun");
+
+    assertMatches("..domain..", "domain", "com.acme.domain", "com.acme.domain.model");
+    assertNotMatches("..domain..", "com.acme.domains", "com.acme.subdomain");
+
+    assertMatches("com.*.api..", "com.acme.api", "com.acme.api.v1");
+    assertNotMatches("com.*.api..", "com.api", "com.acme.impl.api");
+
+    assertMatches("com..api", "com.api", "com.acme.api", "com.acme.x.api");
+    assertNotMatches("com..api", "com.acme.apis");
+
+    assertMatches("regex:.*Impl", "com.acme.FooImpl");
+    assertNotMatches("regex:.*Impl", "com.acme.Impls");
+  }
+
+  @Test
+  public void invalidPatterns() {
+    for (String pattern : new String[] {"", ".."}) {
+      try {
+        RuleChecker.compilePattern(pattern);
+        fail("invalid pattern '" + pattern + "' accepted");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void violations() {
+    DependencyRule rule = newRule("domain is independent of infrastructure", "..domain..", "..infrastructure..");
+    List<RuleChecker.Violation> violations = RuleChecker.compile(Collections.singletonList(rule)).check(GRAPH, false);
+    assertEquals(Arrays.asList(
+            "domain is independent of infrastructure: com.acme.domain -> com.acme.infrastructure",
+            "domain is independent of infrastructure: com.acme.domain.model -> com.acme.infrastructure.db"),
+            toStrings(violations));
+  }
+
+  @Test
+  public void noViolations() {
+    DependencyRule rule = newRule(null, "com.acme.infrastructure", "java..");
+    assertTrue(RuleChecker.compile(Collections.singletonList(rule)).check(GRAPH, false).isEmpty());
+  }
+
+  @Test
+  public void allSources() {
+    DependencyRule rule = newRule(null, null, "sun..");
+    assertEquals(Collections.singletonList("rule 1: com.acme.domain.model -> sun.misc"),
+            toStrings(RuleChecker.compile(Collections.singletonList(rule)).check(GRAPH, false)));
+  }
+
+  @Test
+  public void except() {
+    DependencyRule rule = newRule("only the API of lib", "com.acme..", "org.lib..");
+    rule.setExcept(Collections.singletonList("org.lib.api.."));
+    assertEquals(Collections.singletonList("only the API of lib: com.acme.infrastructure -> org.lib.impl"),
+            toStrings(RuleChecker.compile(Collections.singletonList(rule)).check(GRAPH, false)));
+  }
+
+  @Test
+  public void acrossArchives() {
+    DependencyRule rule = newRule(null, "com.acme.infrastructure", null);
+    rule.setTo(Arrays.asList("com..", "org.lib.impl"));
+    rule.setAcrossArchives(true);
+    // com.acme.domain is in the same archive
+    assertEquals(Collections.singletonList("rule 1: com.acme.infrastructure -> org.lib.impl"),
+            toStrings(RuleChecker.compile(Collections.singletonList(rule)).check(GRAPH, false)));
+  }
+
+  @Test
+  public void failFast() {
+    DependencyRule rule = newRule(null, "com.acme..", "com.acme..");
+    RuleChecker checker = RuleChecker.compile(Collections.singletonList(rule));
+    assertEquals(3, checker.check(GRAPH, false).size());
+    assertEquals(1, checker.check(GRAPH, true).size());
+  }
+
+  @Test
+  public void scope() {
+    DependencyRule main = newRule("main", null, "sun..");
+    DependencyRule test = newRule("test", null, "sun..");
+    test.setScope("test");
+    DependencyRule all = newRule("all", null, "sun..");
+    all.setScope("all");
+    List<DependencyRule> rules = Arrays.asList(main, test, all);
+
+    assertEquals(Arrays.asList("main: com.acme.domain.model -> sun.misc", "all: com.acme.domain.model -> sun.misc"),
+            toStrings(RuleChecker.compile(rules, false).check(GRAPH, false)));
+    assertEquals(Arrays.asList("test: com.acme.domain.model -> sun.misc", "all: com.acme.domain.model -> sun.misc"),
+            toStrings(RuleChecker.compile(rules, true).check(GRAPH, false)));
+  }
+
+  @Test
+  public void invalidRules() {
+    assertTrue(RuleChecker.compile(null).isEmpty());
+    assertFalse(RuleChecker.compile(Collections.singletonList(newRule(null, null, "a"))).isEmpty());
+
+    DependencyRule noTo = newRule(null, "a", null);
+    DependencyRule unknownScope = newRule(null, null, "a");
+    unknownScope.setScope("it");
+    for (DependencyRule rule : new DependencyRule[] {noTo, unknownScope}) {
+      try {
+        RuleChecker.compile(Collections.singletonList(rule));
+        fail("invalid rule accepted");
+      } catch (IllegalArgumentException e) {
+        assertTrue(e.getMessage(), e.getMessage().startsWith("rule 1 "));
+      }
+    }
+  }
+
+  private static DependencyRule newRule(String name, String from, String to) {
+    DependencyRule rule = new DependencyRule();
+    rule.setName(name);
+    if (from != null) {
+      rule.setFrom(Collections.singletonList(from));
+    }
+    if (to != null) {
+      rule.setTo(Collections.singletonList(to));
+    }
+    return rule;
+  }
+
+  private static List<String> toStrings(List<RuleChecker.Violation> violations) {
+    List<String> strings = new ArrayList<>(violations.size());
+    for (RuleChecker.Violation violation : violations) {
+      strings.add(violation.toString());
+    }
+    return strings;
+  }
+
+  private static void assertMatches(String pattern, String... names) {
+    NameMatcher matcher = RuleChecker.compilePattern(pattern);
+    for (String name : names) {
+      assertTrue(pattern + " does not match " + name, matcher.matches(name));
+    }
+  }
+
+  private static void assertNotMatches(String pattern, String... names) {
+    NameMatcher matcher = RuleChecker.compilePattern(pattern);
+    for (String name : names) {
+      assertFalse(pattern + " matches " + name, matcher.matches(name));
+    }
+  }
+
+}
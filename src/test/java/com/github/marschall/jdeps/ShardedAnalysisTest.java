@@ -0,0 +1,114 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ShardedAnalysisTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private JDepsFixture fixture;
+
+  @Before
+  public void setUp() throws IOException {
+    this.fixture = JDepsFixture.create(this.folder.newFolder());
+  }
+
+  @Test
+  public void computeShards() throws IOException {
+    Path classes = this.fixture.getClasses().toPath();
+    List<String> shards = ShardedAnalysis.computeShards(classes, 3);
+    assertEquals(3, shards.size());
+    assertEquals(shards, ShardedAnalysis.computeShards(classes, 3));
+
+    // the unnamed package and a, b, c, d
+    assertEquals(5, ShardedAnalysis.computeShards(classes, 8).size());
+  }
+
+  @Test
+  public void canShard() {
+    assertTrue(ShardedAnalysis.canShard(this.fixture.getArguments("-verbose:class")));
+    assertFalse(ShardedAnalysis.canShard(this.fixture.getArguments("-recursive")));
+    assertFalse(ShardedAnalysis.canShard(this.fixture.getArguments("-jdkinternals")));
+  }
+
+  @Test
+  public void mergePackageLevel() throws IOException, CommandLineException {
+    this.assertMergedOutput();
+    this.assertMergedOutput("-verbose:package");
+  }
+
+  @Test
+  public void mergeClassLevel() throws IOException, CommandLineException {
+    this.assertMergedOutput("-verbose:class");
+    this.assertMergedOutput("-verbose:class", "-filter:none");
+  }
+
+  @Test
+  public void mergeSummary() throws IOException, CommandLineException {
+    this.assertMergedOutput("-summary");
+  }
+
+  @Test
+  public void mergeDotFiles() throws IOException, CommandLineException {
+    for (String verbose : new String[] {"-verbose:package", "-verbose:class"}) {
+      File dotOutputDirectory = this.folder.newFolder();
+      String[] arguments = this.fixture.getArguments(verbose, "-dotoutput", dotOutputDirectory.getAbsolutePath());
+      JDepsFixture.jdeps(arguments);
+
+      List<Path> shardDirectories = new ArrayList<>();
+      for (String includePattern : ShardedAnalysis.computeShards(this.fixture.getClasses().toPath(), 3)) {
+        File shardDirectory = this.folder.newFolder();
+        shardDirectories.add(shardDirectory.toPath());
+        JDepsFixture.jdeps(ShardedAnalysis.getShardArguments(arguments, includePattern, shardDirectory));
+      }
+      Path merged = this.folder.newFolder().toPath();
+      ShardedAnalysis.mergeDotFiles(shardDirectories, merged);
+
+      for (String dotFile : new String[] {"classes.dot", "summary.dot"}) {
+        assertEquals(verbose + " " + dotFile,
+                Files.readAllLines(dotOutputDirectory.toPath().resolve(dotFile), StandardCharsets.UTF_8),
+                Files.readAllLines(merged.resolve(dotFile), StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  private void assertMergedOutput(String... options) throws IOException, CommandLineException {
+    String[] arguments = this.fixture.getArguments(options);
+    List<String> expected = JDepsFixture.jdeps(arguments);
+
+    List<OutputBuffer> shardOutputs = new ArrayList<>();
+    try {
+      for (String includePattern : ShardedAnalysis.computeShards(this.fixture.getClasses().toPath(), 3)) {
+        // small enough that the output of a shard is spilled to a file
+        OutputBuffer shardOutput = new OutputBuffer(this.folder.newFolder(), 200L);
+        shardOutputs.add(shardOutput);
+        JDepsFixture.jdeps(ShardedAnalysis.getShardArguments(arguments, includePattern, null), shardOutput);
+      }
+      JDepsFixture.Lines merged = new JDepsFixture.Lines();
+      ShardedAnalysis.merge(shardOutputs, merged);
+      assertEquals(expected, merged.getLines());
+    } finally {
+      for (OutputBuffer shardOutput : shardOutputs) {
+        shardOutput.close();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,47 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SymbolTableTest {
+
+  @Test
+  public void intern() {
+    SymbolTable symbols = new SymbolTable();
+    assertEquals(0, symbols.intern("a"));
+    assertEquals(1, symbols.intern("b"));
+    assertEquals(0, symbols.intern("a"));
+    assertEquals(2, symbols.size());
+    assertEquals("b", symbols.getName(1));
+    assertEquals(1, symbols.lookup("b"));
+    assertEquals(-1, symbols.lookup("c"));
+  }
+
+  @Test
+  public void sameHashCode() {
+    SymbolTable symbols = new SymbolTable();
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+    assertEquals(0, symbols.intern("Aa"));
+    assertEquals(-1, symbols.lookup("BB"));
+    assertEquals(1, symbols.intern("BB"));
+    assertEquals(0, symbols.lookup("Aa"));
+    assertEquals(1, symbols.lookup("BB"));
+  }
+
+  @Test
+  public void grow() {
+    SymbolTable symbols = new SymbolTable(1);
+    int count = 10000;
+    for (int i = 0; i < count; i++) {
+      assertEquals(i, symbols.intern("com.example.package" + i));
+    }
+    assertEquals(count, symbols.size());
+    for (int i = 0; i < count; i++) {
+      assertEquals(i, symbols.lookup("com.example.package" + i));
+      assertEquals("com.example.package" + i, symbols.getName(i));
+    }
+    assertEquals(-1, symbols.lookup("com.example.package" + count));
+  }
+
+}
@@ -0,0 +1,64 @@
+package com.github.marschall.jdeps;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class UnusedDependenciesTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void find() {
+    DependencyGraph graph = DependencyGraphParserTest.parse(Arrays.asList(
+            "classes -> java.base",
+            "classes -> /repository/api-1.0.jar",
+            "   com.example                                        -> java.lang                                          java.base",
+            "   com.example                                        -> org.api                                            api-1.0.jar",
+            "   com.example                                        -> org.impl                                           impl-1.0.jar"));
+    Artifact api = newArtifact("api", new File("/repository/api-1.0.jar"));
+    // only referenced by its file name
+    Artifact impl = newArtifact("impl", new File("/repository/impl-1.0.jar"));
+    Artifact unused = newArtifact("unused", new File("/repository/unused-1.0.jar"));
+    Artifact unresolved = newArtifact("unresolved", null);
+
+    assertEquals(Collections.singletonList(unused),
+            UnusedDependencies.find(graph, Arrays.asList(unused, api, unresolved, impl)));
+    assertEquals(Collections.emptyList(), UnusedDependencies.find(graph, Arrays.asList(api, impl)));
+  }
+
+  @Test
+  public void jdeps() throws IOException, CommandLineException {
+    JDepsFixture fixture = JDepsFixture.create(this.folder.newFolder());
+    DependencyGraph graph = DependencyGraphParserTest.parse(JDepsFixture.jdeps(fixture.getArguments()));
+    Artifact lib = newArtifact("lib", fixture.getLib());
+    Artifact unused = newArtifact("unused", fixture.getClassPath().get(1));
+
+    assertEquals(Collections.singletonList(unused), UnusedDependencies.find(graph, Arrays.asList(lib, unused)));
+  }
+
+  @Test
+  public void format() {
+    assertEquals("com.example:api:1.0 (compile)", UnusedDependencies.format(newArtifact("api", null)));
+  }
+
+  private static Artifact newArtifact(String artifactId, File file) {
+    Artifact artifact = new DefaultArtifact("com.example", artifactId, "1.0", Artifact.SCOPE_COMPILE, "jar", null,
+            new DefaultArtifactHandler("jar"));
+    artifact.setFile(file);
+    return artifact;
+  }
+
+}